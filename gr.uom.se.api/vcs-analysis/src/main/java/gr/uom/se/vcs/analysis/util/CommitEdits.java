@@ -7,7 +7,6 @@ import gr.uom.se.vcs.VCSFile;
 import gr.uom.se.vcs.VCSFileDiff;
 import gr.uom.se.vcs.walker.filter.VCSFilter;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -15,9 +14,6 @@ import java.util.Date;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
-
 /**
  * A simple class that stores changes between two commits.
  * <p>
@@ -264,25 +260,7 @@ public class CommitEdits implements Comparable<CommitEdits> {
    }
 
    public static int countLines(VCSFile file) throws IOException {
-      LineIterator it = null;
-      try {
-         byte[] contents = file.getContents();
-         if (contents == null || contents.length == 0) {
-            return 0;
-         }
-         it = IOUtils.lineIterator(new ByteArrayInputStream(contents),
-               (String) null);
-         int counter = 0;
-         while (it.hasNext()) {
-            it.next();
-            counter++;
-         }
-         return counter;
-      } finally {
-         if (it != null) {
-            it.close();
-         }
-      }
+      return file.countLines();
    }
 
    public Collection<VCSFileDiff<?>> getFileChanges() {
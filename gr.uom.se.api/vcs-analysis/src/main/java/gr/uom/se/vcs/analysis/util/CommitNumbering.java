@@ -0,0 +1,214 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.analysis.util;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dense numbering of the commits of a repository.
+ * <p>
+ *
+ * Each commit is given a number, starting from 0, so the numbers of n commits
+ * are the integers from 0 to n-1. This allows a set of commits to be stored
+ * as a bitmap of their numbers (see {@link CommitSet}), which for large
+ * histories is much smaller than a hash set of commits, and set operations
+ * between such sets are bitmap operations.
+ * <p>
+ * The numbering of a repository (see {@link #of(VCSRepository)}) uses the
+ * numbers the repository gives to its commits (see
+ * {@link VCSRepository#getCommitNumber(VCSCommit)}), so it doesn't keep any
+ * commit, and all numberings of the same repository are equal. A parent has
+ * always a lower number than its children, so a set that is filled by
+ * scanning the numbers in increasing order receives them in increasing order.
+ * <p>
+ * When there is not a repository, a {@link Local} numbering may be used
+ * instead, which numbers the commits in the order it is first given them.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see CommitSet
+ */
+public abstract class CommitNumbering {
+
+   /**
+    * Get the numbering of the commits of the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository of the commits, must not be null
+    * @return the numbering of the commits of the given repository
+    */
+   public static CommitNumbering of(VCSRepository repo) {
+      ArgsCheck.notNull("repo", repo);
+      return new RepositoryNumbering(repo);
+   }
+
+   /**
+    * Get the number of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get its number
+    * @return the number of the commit, or -1 if it is not numbered
+    */
+   public abstract int getNumber(VCSCommit commit);
+
+   /**
+    * Get the commit of the given number.
+    * <p>
+    *
+    * @param number
+    *           of the commit
+    * @return the commit of the given number, or null if there is not a
+    *         commit with the given number
+    */
+   public abstract VCSCommit getCommit(int number);
+
+   /**
+    * @return the number of numbered commits
+    */
+   public abstract int size();
+
+   /**
+    * The numbering of the commits of a repository.
+    * <p>
+    * A failure of the repository is thrown as an
+    * {@link IllegalStateException}.
+    */
+   private static class RepositoryNumbering extends CommitNumbering {
+
+      private final VCSRepository repo;
+
+      RepositoryNumbering(VCSRepository repo) {
+         this.repo = repo;
+      }
+
+      @Override
+      public int getNumber(VCSCommit commit) {
+         if (commit == null) {
+            return -1;
+         }
+         try {
+            return repo.getCommitNumber(commit);
+         } catch (VCSRepositoryException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      @Override
+      public VCSCommit getCommit(int number) {
+         try {
+            return repo.getCommit(number);
+         } catch (VCSRepositoryException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      @Override
+      public int size() {
+         try {
+            return repo.getCommitCount();
+         } catch (VCSRepositoryException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      @Override
+      public int hashCode() {
+         return repo.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         return obj instanceof RepositoryNumbering
+               && ((RepositoryNumbering) obj).repo == repo;
+      }
+   }
+
+   /**
+    * A numbering that keeps its commits, for when there is not a repository
+    * to number them.
+    * <p>
+    * Each commit is given the next number the first time it is passed to
+    * {@link #number(VCSCommit)}, so when commits are numbered as they are
+    * visited by a walk, the number of a commit is greater than the numbers of
+    * all commits visited before it.
+    * <p>
+    * This class is not thread safe, however once all commits are numbered it
+    * can be read concurrently.
+    *
+    * @author Elvis Ligu
+    * @version 0.0.1
+    * @since 0.0.1
+    */
+   public static class Local extends CommitNumbering {
+
+      /**
+       * Commit to number.
+       * <p>
+       */
+      private final Map<VCSCommit, Integer> numbers;
+
+      /**
+       * Number to commit.
+       * <p>
+       */
+      private final List<VCSCommit> commits;
+
+      /**
+       * Creates an empty numbering.
+       * <p>
+       */
+      public Local() {
+         this.numbers = new HashMap<VCSCommit, Integer>();
+         this.commits = new ArrayList<VCSCommit>();
+      }
+
+      /**
+       * Get the number of the given commit, giving it the next number if it
+       * is not numbered.
+       * <p>
+       *
+       * @param commit
+       *           to number, must not be null
+       * @return the number of the commit
+       */
+      public int number(VCSCommit commit) {
+         ArgsCheck.notNull("commit", commit);
+         Integer number = numbers.get(commit);
+         if (number == null) {
+            number = commits.size();
+            numbers.put(commit, number);
+            commits.add(commit);
+         }
+         return number;
+      }
+
+      @Override
+      public int getNumber(VCSCommit commit) {
+         Integer number = numbers.get(commit);
+         return number == null ? -1 : number;
+      }
+
+      @Override
+      public VCSCommit getCommit(int number) {
+         return number < 0 || number >= commits.size() ? null : commits
+               .get(number);
+      }
+
+      @Override
+      public int size() {
+         return commits.size();
+      }
+   }
+}
@@ -0,0 +1,162 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.analysis.util;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.VCSCommit;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.googlecode.javaewah.EWAHCompressedBitmap;
+import com.googlecode.javaewah.IntIterator;
+
+/**
+ * An immutable set of commits, stored as a compressed bitmap of their numbers.
+ * <p>
+ *
+ * The commits of the set are numbered by a {@link CommitNumbering}, and the
+ * set keeps only a bitmap of their numbers. Operations between two sets of
+ * the same numbering (such as 'commits in A but not in B') are computed as
+ * bitmap operations, without looking up each commit.
+ * <p>
+ * The commits are iterated in the order of their numbers.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see CommitNumbering
+ */
+public class CommitSet extends AbstractSet<VCSCommit> {
+
+   /**
+    * The numbering of the commits of this set.
+    * <p>
+    */
+   private final CommitNumbering numbering;
+
+   /**
+    * The numbers of the commits of this set.
+    * <p>
+    */
+   private final EWAHCompressedBitmap bitmap;
+
+   /**
+    * The number of commits of this set.
+    * <p>
+    */
+   private final int size;
+
+   /**
+    * Creates a set of the commits with the given numbers.
+    * <p>
+    * The bitmap must not be changed after it is passed to this set.
+    *
+    * @param numbering
+    *           the numbering of the commits, must not be null
+    * @param bitmap
+    *           the numbers of the commits, must not be null
+    */
+   public CommitSet(CommitNumbering numbering, EWAHCompressedBitmap bitmap) {
+      ArgsCheck.notNull("numbering", numbering);
+      ArgsCheck.notNull("bitmap", bitmap);
+      this.numbering = numbering;
+      this.bitmap = bitmap;
+      this.size = bitmap.cardinality();
+   }
+
+   /**
+    * @return the numbering of the commits of this set
+    */
+   public CommitNumbering getNumbering() {
+      return numbering;
+   }
+
+   /**
+    * Get the commits of this set that are also in the given set.
+    * <p>
+    *
+    * @param other
+    *           a set of the same numbering
+    * @return the intersection of the two sets
+    */
+   public CommitSet and(CommitSet other) {
+      check(other);
+      return new CommitSet(numbering, bitmap.and(other.bitmap));
+   }
+
+   /**
+    * Get the commits that are in this set or in the given set.
+    * <p>
+    *
+    * @param other
+    *           a set of the same numbering
+    * @return the union of the two sets
+    */
+   public CommitSet or(CommitSet other) {
+      check(other);
+      return new CommitSet(numbering, bitmap.or(other.bitmap));
+   }
+
+   /**
+    * Get the commits of this set that are not in the given set.
+    * <p>
+    *
+    * @param other
+    *           a set of the same numbering
+    * @return the difference of the two sets
+    */
+   public CommitSet andNot(CommitSet other) {
+      check(other);
+      return new CommitSet(numbering, bitmap.andNot(other.bitmap));
+   }
+
+   private void check(CommitSet other) {
+      ArgsCheck.notNull("other", other);
+      if (!other.numbering.equals(numbering)) {
+         throw new IllegalArgumentException(
+               "sets with different numbering of commits");
+      }
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      if (!(o instanceof VCSCommit)) {
+         return false;
+      }
+      int number = numbering.getNumber((VCSCommit) o);
+      return number >= 0 && bitmap.get(number);
+   }
+
+   @Override
+   public int size() {
+      return size;
+   }
+
+   @Override
+   public Iterator<VCSCommit> iterator() {
+      final IntIterator numbers = bitmap.intIterator();
+      return new Iterator<VCSCommit>() {
+
+         @Override
+         public boolean hasNext() {
+            return numbers.hasNext();
+         }
+
+         @Override
+         public VCSCommit next() {
+            if (!numbers.hasNext()) {
+               throw new NoSuchElementException();
+            }
+            return numbering.getCommit(numbers.next());
+         }
+
+         @Override
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+}
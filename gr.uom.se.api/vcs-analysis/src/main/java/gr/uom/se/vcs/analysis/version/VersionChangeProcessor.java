@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -95,6 +96,14 @@ public class VersionChangeProcessor extends CommitVersionProcessor implements
     */
    private final Processor<CommitEdits> commitEditsProcessor;
 
+   /**
+    * The executor to compute the edits of the file diffs with.
+    * <p>
+    * If null the edits will be computed when they are required, by the thread
+    * that uses them.
+    */
+   private volatile ExecutorService editsExecutor;
+
    /**
     * Create an instance based on the given version provider.
     * <p>
@@ -227,6 +236,25 @@ public class VersionChangeProcessor extends CommitVersionProcessor implements
       this.commitEditsProcessor = commitEditsProcessor;
    }
 
+   /**
+    * Set an executor to compute the edits of the file diffs in parallel.
+    * <p>
+    * When a commit is compared with its parent, or a version with its previous
+    * one, the edits of the modified files will be computed by the given
+    * executor while the changes are being walked (see
+    * {@link VCSCommit#walkFileChanges(VCSCommit, ExecutorService, gr.uom.se.vcs.walker.ChangeVisitor)}
+    * ). This is useful when comparing versions, where a lot of files are
+    * changed. The executor should be bounded (i.e. a fixed thread pool) and
+    * it will not be shut down by this processor.
+    * 
+    * @param executor
+    *           to compute the edits with, if null the edits will be computed
+    *           by the thread that uses them
+    */
+   public void setEditsExecutor(ExecutorService executor) {
+      this.editsExecutor = executor;
+   }
+
    @Override
    protected boolean process(String ver, VCSCommit entity) {
 
@@ -318,7 +346,17 @@ public class VersionChangeProcessor extends CommitVersionProcessor implements
       DiffVisitor visitor = new DiffVisitor(oldC, newC, changeFilter,
             resourceFilter);
       // Wait until the changes are walked
-      oldC.walkFileChanges(newC, visitor);
+      // Only modifications (and renames or copies) have edits, so there is
+      // no need to compute them in parallel if we do not collect them
+      ExecutorService executor = editsExecutor;
+      if (executor != null
+            && (types.contains(VCSChange.Type.MODIFIED)
+                  || types.contains(VCSChange.Type.RENAMED) || types
+                     .contains(VCSChange.Type.COPIED))) {
+         oldC.walkFileChanges(newC, executor, visitor);
+      } else {
+         oldC.walkFileChanges(newC, visitor);
+      }
       return visitor.ce;
    }
 
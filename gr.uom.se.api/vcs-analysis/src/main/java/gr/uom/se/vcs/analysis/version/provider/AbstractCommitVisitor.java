@@ -1,16 +1,19 @@
 package gr.uom.se.vcs.analysis.version.provider;
 
 import gr.uom.se.vcs.VCSResource;
-import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.HeaderCommitVisitor;
 import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
 import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
 
 /**
  * Simple visitor to be used by methods of this package.
+ * <p>
+ * The visitors of this package need only the ids of the commits, so the
+ * commits are walked without their bodies (see {@link HeaderCommitVisitor}).
  * 
  * @author Elvis Ligu
  */
-abstract class AbstractCommitVisitor implements CommitVisitor {
+abstract class AbstractCommitVisitor implements HeaderCommitVisitor {
 
    /**
     * {@inheritDoc}
@@ -5,23 +5,28 @@ package gr.uom.se.vcs.analysis.version.provider;
 
 import gr.uom.se.util.validation.ArgsCheck;
 import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.analysis.util.CommitNumbering;
+import gr.uom.se.vcs.analysis.util.CommitSet;
 import gr.uom.se.vcs.VCSRepository;
-import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
-import gr.uom.se.vcs.walker.CommitVisitor;
-import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
-import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
+import gr.uom.se.vcs.walker.MembershipVisitor;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.googlecode.javaewah.EWAHCompressedBitmap;
+
 /**
  * A tag version provider consider each tag as a version of a project.
  * <p>
@@ -40,27 +45,57 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
     * The version name provider.
     */
    private final ConnectedVersionNameProvider provider;
+
+   /**
+    * The repository of the versions, null if this provider was created from
+    * a version name provider.
+    */
+   private final VCSRepository repo;
    /**
     * The lock used for versions info
     */
    final private ReadWriteLock lock = new ReentrantReadWriteLock();
 
    /**
-    * The version commits and the commit that logically belongs to each version.
+    * The numbering of the commits that belong to a version.
     * <p>
-    * Note this require all commits of the repository to be stored here!!!
+    * This is the numbering of the repository (see
+    * {@link CommitNumbering#of(VCSRepository)}), so no commit is kept. Only
+    * if this provider was created from a version name provider, the commits
+    * are numbered as they are visited.
     */
-   private Map<VCSCommit, Set<VCSCommit>> versionsInfo;
+   private CommitNumbering numbering;
 
    /**
-    * Size of versions.
+    * The version commits, in the order of the provider.
+    * <p>
     */
-   private final int vsize;
+   private List<VCSCommit> versions;
 
    /**
-    * The first version.
+    * The version commits and a bitmap of the commits (by their number) that
+    * logically belong to each version.
+    * <p>
+    * The bitmaps are filled from {@link #commitVersions} once all commits are
+    * collected.
     */
-   private final VCSCommit first;
+   private Map<VCSCommit, EWAHCompressedBitmap> versionsInfo;
+
+   /**
+    * The version each commit belongs to, by the number of the commit.
+    * <p>
+    * The value is the index of the version in {@link #versions} plus one, or
+    * 0 if the commit doesn't belong to a version. A commit belongs to only
+    * one version, so this is the reverse of {@link #versionsInfo}, and it is
+    * used to find the version of a commit without checking the commits of
+    * each version.
+    */
+   private int[] commitVersions;
+
+   /**
+    * Size of versions.
+    */
+   private final int vsize;
 
    /**
     * Creates a tag provider for the following repository.
@@ -81,17 +116,12 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
          throws VCSRepositoryException {
       // Repo must not be null
       ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
       this.provider = createVersions(repo);
       if (provider == null) {
          throw new IllegalStateException("version mapping is not created");
       }
-      Collection<VCSCommit> commits = this.provider.getCommits();
-      vsize = commits.size();
-      if (vsize > 0) {
-         first = commits.iterator().next();
-      } else {
-         first = null;
-      }
+      vsize = this.provider.getCommits().size();
       this.initVersionsInfo();
    }
 
@@ -108,14 +138,9 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
    public ConnectedTagVersionProvider(ConnectedVersionNameProvider provider) {
       ArgsCheck.notNull("provider", provider);
       this.provider = provider;
+      this.repo = null;
 
-      Collection<VCSCommit> commits = this.provider.getCommits();
-      vsize = commits.size();
-      if (vsize > 0) {
-         first = commits.iterator().next();
-      } else {
-         first = null;
-      }
+      vsize = this.provider.getCommits().size();
       this.initVersionsInfo();
    }
 
@@ -123,10 +148,60 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
     * Initialize the versions info
     */
    private void initVersionsInfo() {
-      this.versionsInfo = new HashMap<VCSCommit, Set<VCSCommit>>(vsize);
+      this.numbering = repo != null ? CommitNumbering.of(repo)
+            : new CommitNumbering.Local();
+      this.versions = new ArrayList<VCSCommit>(vsize);
+      this.versionsInfo = new HashMap<VCSCommit, EWAHCompressedBitmap>(vsize);
       for (VCSCommit version : provider) {
-         versionsInfo.put(version, new HashSet<VCSCommit>());
+         versions.add(version);
+         versionsInfo.put(version, new EWAHCompressedBitmap());
       }
+      this.commitVersions = new int[0];
+   }
+
+   /**
+    * Add the commit of the given number to the version of the given index.
+    * <p>
+    */
+   private void addToVersion(int version, int number) {
+      if (number >= commitVersions.length) {
+         commitVersions = Arrays.copyOf(commitVersions,
+               Math.max(number + 1, commitVersions.length * 2));
+      }
+      commitVersions[number] = version + 1;
+   }
+
+   /**
+    * Fill the bitmap of each version from {@link #commitVersions}.
+    * <p>
+    * The numbers are scanned in increasing order, as the bitmaps require.
+    */
+   private void fillVersionsInfo() {
+      EWAHCompressedBitmap[] bitmaps = new EWAHCompressedBitmap[vsize];
+      for (int i = 0; i < vsize; i++) {
+         bitmaps[i] = versionsInfo.get(versions.get(i));
+      }
+      for (int number = 0; number < commitVersions.length; number++) {
+         int version = commitVersions[number];
+         if (version > 0) {
+            bitmaps[version - 1].set(number);
+         }
+      }
+   }
+
+   /**
+    * Get the version of the given commit, or null if it doesn't belong to a
+    * version.
+    * <p>
+    * Must be called with the read lock held.
+    */
+   private VCSCommit versionOf(VCSCommit commit) {
+      int number = numbering.getNumber(commit);
+      if (number < 0 || number >= commitVersions.length) {
+         return null;
+      }
+      int version = commitVersions[number];
+      return version == 0 ? null : versions.get(version - 1);
    }
 
    /**
@@ -181,17 +256,14 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
          return provider.getName(commit);
       }
 
+      VCSCommit version = null;
       lock.readLock().lock();
       try {
-         for (VCSCommit version : versionsInfo.keySet()) {
-            if (versionsInfo.get(version).contains(commit)) {
-               return provider.getName(version);
-            }
-         }
+         version = versionOf(commit);
       } finally {
          lock.readLock().unlock();
       }
-      return null;
+      return version == null ? null : provider.getName(version);
    }
 
    /**
@@ -213,7 +285,7 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
       }
       lock.readLock().lock();
       try {
-         return versionsInfo.get(version).contains(commit);
+         return version.equals(versionOf(commit));
       } finally {
          lock.readLock().unlock();
       }
@@ -229,7 +301,7 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
       }
       lock.readLock().lock();
       try {
-         return versionsInfo.get(versionCommit).contains(commit);
+         return versionCommit.equals(versionOf(commit));
       } finally {
          lock.readLock().unlock();
       }
@@ -286,9 +358,11 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
     * commits, but you should call this method in order to find for a specific
     * commit that is not a version commit, where he belongs.
     * <p>
-    * This method is very expensive an will try to load all commits of a
-    * repository by performing multiply walks on commits in order to load all
-    * informations required to answer {@link #findVersion(VCSCommit)}.
+    * This method will load all commits of a repository in order to load all
+    * informations required to answer {@link #findVersion(VCSCommit)}. A
+    * commit that is not a version belongs to the oldest version it is
+    * reachable from. Each commit is visited once, so the time of this method
+    * is linear to the size of the history.
     * 
     * @throws VCSRepositoryException
     *            if the repository could not be read
@@ -298,17 +372,80 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
       lock.writeLock().lock();
       try {
          initVersionsInfo();
-         CommitCollector collector = new CommitCollector();
-         // Collect commits for each version
-         for (VCSCommit version : provider) {
-            collector.version = version;
-            version.walkCommits(collector, true);
+         if (vsize == 0) {
+            return;
+         }
+         if (repo != null) {
+            collectByMembership();
+         } else {
+            collectByParents();
          }
+         fillVersionsInfo();
       } finally {
          lock.writeLock().unlock();
       }
    }
 
+   /**
+    * Walk the history of all versions at once, and add each commit to the
+    * oldest version that reaches it.
+    * <p>
+    * The walk gives for each commit the versions it is reachable from (see
+    * {@link VCSRepository#walkAll(List, MembershipVisitor)}), and the oldest
+    * is the first of them, because the versions are walked in the order of
+    * this provider.
+    */
+   private void collectByMembership() throws VCSRepositoryException {
+
+      commitVersions = new int[repo.getCommitCount()];
+      repo.walkAll(versions, new MembershipVisitor() {
+
+         @Override
+         public boolean visit(VCSCommit commit, BitSet heads) {
+            if (!provider.isVersion(commit)) {
+               int number = numbering.getNumber(commit);
+               if (number >= 0) {
+                  addToVersion(heads.nextSetBit(0), number);
+               }
+            }
+            return true;
+         }
+      });
+   }
+
+   /**
+    * Visit the parents of each version, from the oldest to the newest, and add
+    * each commit to the version it was first visited from.
+    * <p>
+    * A commit that is visited from an older version is not visited again, and
+    * neither are its parents: they are reachable from the older version, so
+    * they are already visited.
+    */
+   private void collectByParents() throws VCSRepositoryException {
+
+      final CommitNumbering.Local local = (CommitNumbering.Local) numbering;
+      final Set<VCSCommit> visited = new HashSet<VCSCommit>();
+      final Deque<VCSCommit> pending = new ArrayDeque<VCSCommit>();
+      for (int i = 0; i < vsize; i++) {
+         VCSCommit version = versions.get(i);
+         pending.push(version);
+         while (!pending.isEmpty()) {
+            VCSCommit commit = pending.pop();
+            if (!visited.add(commit)) {
+               continue;
+            }
+            if (!provider.isVersion(commit)) {
+               addToVersion(i, local.number(commit));
+            }
+            for (VCSCommit parent : commit.getPrevious()) {
+               if (!visited.contains(parent)) {
+                  pending.push(parent);
+               }
+            }
+         }
+      }
+   }
+
    /**
     * Given a version will return the number of commits this version contains.
     * <p>
@@ -323,7 +460,7 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
       }
       lock.readLock().lock();
       try {
-         return versionsInfo.get(version).size() + 1;
+         return versionsInfo.get(version).cardinality() + 1;
       } finally {
          lock.readLock().unlock();
       }
@@ -347,19 +484,22 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
    /**
     * Given a commit version get all commits of this version.
     * <p>
+    * The commits of all versions share the same numbering, so the commits of
+    * several versions can be combined with bitmap operations (i.e.
+    * {@link CommitSet#or(CommitSet)}).
     * 
     * @param version
     *           commit of the version
     * @return the commits of the given version
     */
    @Override
-   public Set<VCSCommit> getCommits(VCSCommit version) {
+   public CommitSet getCommits(VCSCommit version) {
       if (!provider.isVersion(version)) {
          throw new IllegalArgumentException("commit is not a version");
       }
       lock.readLock().lock();
       try {
-         return Collections.unmodifiableSet(versionsInfo.get(version));
+         return new CommitSet(numbering, versionsInfo.get(version));
       } finally {
          lock.readLock().unlock();
       }
@@ -374,7 +514,7 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
     * @return the commits of this version
     */
    @Override
-   public Set<VCSCommit> getCommits(String ver) {
+   public CommitSet getCommits(String ver) {
       VCSCommit version = provider.getCommit(ver);
       ArgsCheck.notNull("version", version);
       return this.getCommits(version);
@@ -385,71 +525,6 @@ public class ConnectedTagVersionProvider implements ConnectedVersionProvider {
       this.collectVersionInfo();
    }
 
-   /**
-    * This visitor will be used to collect the commits for each version.
-    * <p>
-    * The algorithm used is: using sorted versions it assumes that is going to
-    * perform a walk for each version. For each version walking, each commit
-    * that is visited will be check if he is in a previous version, if not than
-    * it will count this commit as belonging to the current version.
-    */
-   private class CommitCollector implements CommitVisitor {
-
-      VCSCommit version;
-
-      @Override
-      public boolean visit(VCSCommit entity) {
-         // This is not a version commit
-         if (!provider.isVersion(entity)) {
-            // If this is the first version we do not need to check
-            // any previous version
-            if (first.equals(version)) {
-               versionsInfo.get(version).add(entity);
-               return true;
-            }
-            // Check the previous versions
-            Iterator<VCSCommit> it = provider.iterator();
-            boolean contains = false;
-            // Here we are sure that we have at least our first
-            // version so we must check all previous versions
-            // until to this one if any of them contains this commit
-            // If so then this commit is not part of our version
-            while (it.hasNext() && !contains) {
-               VCSCommit previousVersion = it.next();
-               // If we arrived at our version than we need to stop
-               // checking previous versions
-               if (previousVersion.equals(version)) {
-                  break; // we need to break because we have our
-                         // version here so
-                  // no need to check ourself
-               }
-               // If previous version contains current commit
-               // we need to break
-               if (versionsInfo.get(previousVersion).contains(entity)) {
-                  contains = true;
-               }
-            }
-            // We have checked previous versions and now
-            // we are sure no other version contains this commit
-            if (!contains) {
-               versionsInfo.get(version).add(entity);
-            }
-         }
-         return true;
-      }
-
-      @Override
-      public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
-         return null;
-      }
-
-      @SuppressWarnings("unchecked")
-      @Override
-      public VCSCommitFilter getFilter() {
-         return null;
-      }
-   }
-
    @Override
    public Iterator<VCSCommit> iterator() {
       return provider.iterator();
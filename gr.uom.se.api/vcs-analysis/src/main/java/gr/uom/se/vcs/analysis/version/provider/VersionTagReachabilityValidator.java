@@ -8,14 +8,15 @@ import gr.uom.se.vcs.VCSCommit;
 import gr.uom.se.vcs.VCSRepository;
 import gr.uom.se.vcs.VCSTag;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.walker.MembershipVisitor;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
@@ -185,6 +186,12 @@ public class VersionTagReachabilityValidator extends VersionTagValidator {
     * Will check if a given version tag can reach all its previous version tags,
     * by walking the commits starting from newest to oldest.
     * <p>
+    * The commits of all version tags are walked at once (see
+    * {@link VCSRepository#walkAll(List, MembershipVisitor)}), and for each
+    * commit of a tag the walk tells which versions it is reachable from. So
+    * all versions are checked by a single walk, instead of walking the history
+    * of each version. When checking the ordering, the first tag a version
+    * reaches is the first one it reaches in the topological order of the walk.
     * 
     * @param versionTags
     *           the tags that are supposed to be versions.
@@ -193,7 +200,6 @@ public class VersionTagReachabilityValidator extends VersionTagValidator {
     * @return true if each current version can reach all its oldest versions
     *         while walking back from its head commit.
     */
-   @SuppressWarnings("unchecked")
    public boolean areValidTags(Map<VersionString, VCSTag> versionTags,
          final Map<VCSCommit, VCSTag> vcommits) {
       ArgsCheck.notNull("versionTags", versionTags);
@@ -206,59 +212,58 @@ public class VersionTagReachabilityValidator extends VersionTagValidator {
          versionTags = temp;
       }
 
-      try {
+      // The version tags from oldest to newest, the index of a
+      // version is its bit in the sets of the walk
+      final List<VCSTag> versions = new ArrayList<>(versionTags.values());
+      if (versions.size() < 2) {
+         return true;
+      }
 
-         TreeMap<VersionString, VCSTag> versions = (TreeMap<VersionString, VCSTag>) versionTags;
+      try {
+         final List<VCSCommit> heads = new ArrayList<>(versions.size());
+         for (VCSTag tag : versions) {
+            heads.add(tag.getCommit());
+         }
 
-         // For each version tag, starting from newest to oldest
-         // check if all the previous tags are reachable by the current
-         for (VersionString vs : versions.descendingKeySet()) {
-            // Get the map with the previous versions
-            final SortedMap<VersionString, VCSTag> previous = versions
-                  .headMap(vs);
-            // If empty that means there are no previous
-            // versions
-            if (previous.isEmpty()) {
-               return true;
-            }
-            // Get the current head tag
-            final VCSTag headTag = versions.get(vs);
-            // Resolve the commit of the head
-            VCSCommit cc = headTag.getCommit();
-            final List<VCSTag> tags = new ArrayList<>();
+         // The versions each tag is reachable from, and the first
+         // tag each version reaches while walking
+         final Map<VCSTag, BitSet> reachable = new HashMap<>();
+         final VCSTag[] first = new VCSTag[versions.size()];
 
-            // Walk all commits back and collect all tags
-            // that we find
-            cc.walkCommits(new AbstractCommitVisitor() {
+         getRepository().walkAll(heads, new MembershipVisitor() {
 
-               @Override
-               public boolean visit(VCSCommit entity) {
-                  VCSTag tag = vcommits.get(entity);
-                  if (tag != null && !tag.equals(headTag)) {
-                     tags.add(tag);
+            @Override
+            public boolean visit(VCSCommit commit, BitSet bits) {
+               VCSTag tag = vcommits.get(commit);
+               if (tag != null) {
+                  reachable.put(tag, bits);
+                  for (int i = bits.nextSetBit(0); i >= 0; i = bits
+                        .nextSetBit(i + 1)) {
+                     if (first[i] == null && !tag.equals(versions.get(i))) {
+                        first[i] = tag;
+                     }
                   }
-                  return true;
                }
-
-            }, true);
-            // If we did not collect a tag that is not
-            // in the previous map, that means one of the
-            // previous tags is not reachable by the current tag
-            Collection<VCSTag> values = previous.values();
-            if (!tags.containsAll(values)) {
-               return false;
+               return true;
             }
+         });
 
+         // For each version tag, starting from newest to oldest
+         // check if all the previous tags are reachable by the current
+         for (int i = versions.size() - 1; i > 0; i--) {
+            final VCSTag headTag = versions.get(i);
+            for (int j = 0; j < i; j++) {
+               VCSTag previous = versions.get(j);
+               BitSet bits = reachable.get(previous);
+               if (bits == null || !bits.get(i) || previous.equals(headTag)) {
+                  return false;
+               }
+            }
             // If check ordering is true
             // we should check if all versions
             // are order as they are walked.
-            if (checkOrdering) {
-               VCSTag before = tags.get(0);
-               VersionString previousString = previous.lastKey();
-               VCSTag previousTag = previous.get(previousString);
-               if (!before.equals(previousTag)) {
-                  return false;
-               }
+            if (checkOrdering && !versions.get(i - 1).equals(first[i])) {
+               return false;
             }
          }
          // Return true if all tags are checked
@@ -39,6 +39,13 @@ public class VersionTagValidator extends VersionStringValidator {
       this.repo = repo;
    }
 
+   /**
+    * @return the repository the tags are resolved from
+    */
+   protected VCSRepository getRepository() {
+      return repo;
+   }
+
    /**
     * {@inheritDoc}
     * <p>
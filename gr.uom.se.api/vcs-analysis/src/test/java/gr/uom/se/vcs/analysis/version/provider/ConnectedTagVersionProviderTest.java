@@ -0,0 +1,180 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.analysis.version.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.analysis.util.CommitSet;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ConnectedTagVersionProvider}.
+ * <p>
+ *
+ * The versions found by the provider are compared to the versions found by
+ * walking the history of each version, on the small repository (see
+ * {@link SmallRepo}).
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class ConnectedTagVersionProviderTest {
+
+   private static final Map<String, String> MAJORS = new HashMap<String, String>();
+
+   static {
+      MAJORS.put("first_commit", "1");
+      MAJORS.put("fix_first_commit", "2");
+   }
+
+   private VCSRepository repo;
+
+   @Before
+   public void setUp() throws Exception {
+      repo = SmallRepo.open();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      repo.close();
+   }
+
+   private static ConnectedTagVersionNameProvider names(VCSRepository repo)
+         throws VCSRepositoryException {
+      return new ConnectedTagVersionNameProvider(SmallRepo.tags(repo),
+            SmallRepo.resolver(MAJORS), null);
+   }
+
+   /**
+    * Test method for {@link ConnectedTagVersionProvider#findVersion(VCSCommit)}
+    * and {@link ConnectedTagVersionProvider#getCommits(VCSCommit)}, of a
+    * provider created from a repository.
+    * <p>
+    * The versions are collected by a single walk of all versions, and the
+    * commits are numbered by the repository.
+    */
+   @Test
+   public void testRepositoryProvider() throws Exception {
+
+      ConnectedTagVersionProvider provider = new ConnectedTagVersionProvider(
+            repo) {
+
+         @Override
+         protected ConnectedTagVersionNameProvider createVersions(
+               VCSRepository repo) throws VCSRepositoryException {
+            return names(repo);
+         }
+      };
+      provider.collectVersionInfo();
+      check(provider);
+   }
+
+   /**
+    * Test method for {@link ConnectedTagVersionProvider#findVersion(VCSCommit)}
+    * and {@link ConnectedTagVersionProvider#getCommits(VCSCommit)}, of a
+    * provider created from a version name provider.
+    * <p>
+    * The versions are collected by visiting the parents of each version, and
+    * the commits are numbered by the provider.
+    */
+   @Test
+   public void testNameProvider() throws Exception {
+
+      ConnectedTagVersionProvider provider = new ConnectedTagVersionProvider(
+            names(repo));
+      provider.collectVersionInfo();
+      check(provider);
+   }
+
+   /**
+    * Test method for {@link ConnectedTagVersionProvider#findVersion(VCSCommit)}
+    * , {@link ConnectedTagVersionProvider#isInVersion(String, VCSCommit)} and
+    * {@link ConnectedTagVersionProvider#isInVersion(VCSCommit, VCSCommit)}.
+    * <p>
+    * Each commit belongs to at most one version, so the version a commit is
+    * found in must be the only one it is in, and a commit that is not a
+    * version, or an unknown name, must not contain any commit.
+    */
+   @Test
+   public void testIsInVersion() throws Exception {
+
+      ConnectedTagVersionProvider provider = new ConnectedTagVersionProvider(
+            names(repo));
+      provider.collectVersionInfo();
+
+      for (VCSCommit commit : SmallRepo.allCommits(repo)) {
+         String found = provider.findVersion(commit);
+         for (VCSCommit version : provider) {
+            String name = provider.getName(version);
+            boolean in = name.equals(found);
+            assertEquals(in, provider.isInVersion(name, commit));
+            assertEquals(in, provider.isInVersion(version, commit));
+         }
+         assertFalse(provider.isInVersion("unknown", commit));
+         if (!provider.isVersion(commit)) {
+            assertFalse(provider.isInVersion(commit, commit));
+         }
+      }
+   }
+
+   /**
+    * Check the given provider against a walk of each version.
+    * <p>
+    * A commit that is not a version belongs to the oldest version it is
+    * reachable from, and a commit that is not reachable from any version
+    * belongs to none.
+    */
+   private void check(ConnectedTagVersionProvider provider)
+         throws VCSRepositoryException {
+
+      List<VCSCommit> versions = new ArrayList<VCSCommit>();
+      for (VCSCommit version : provider) {
+         versions.add(version);
+      }
+      assertEquals(MAJORS.size(), versions.size());
+
+      Set<VCSCommit> older = new HashSet<VCSCommit>();
+      for (VCSCommit version : versions) {
+         Set<VCSCommit> reachable = SmallRepo.reachable(version);
+
+         Set<VCSCommit> expected = new HashSet<VCSCommit>(reachable);
+         expected.removeAll(older);
+         expected.removeAll(versions);
+
+         CommitSet commits = provider.getCommits(version);
+         assertEquals(expected, new HashSet<VCSCommit>(commits));
+         assertEquals(expected.size(), commits.size());
+
+         String name = provider.getName(version);
+         assertEquals(name, provider.findVersion(version));
+         for (VCSCommit commit : expected) {
+            assertTrue(commits.contains(commit));
+            assertEquals(name, provider.findVersion(commit));
+            assertTrue(provider.isInVersion(version, commit));
+         }
+         older.addAll(reachable);
+      }
+
+      for (VCSCommit commit : SmallRepo.allCommits(repo)) {
+         if (!older.contains(commit)) {
+            assertNull(provider.findVersion(commit));
+         }
+      }
+   }
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.analysis.version.provider;
+
+import gr.uom.se.vcs.VCSBranch;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.VCSTag;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The small repository of the vcs-jgit tests, and the baseline walks the
+ * version tests compare to.
+ * <p>
+ *
+ * The repository is cloned from the zipped repository of the vcs-jgit test
+ * resources, which the build unzips to the test classes of this module. It
+ * has two tags, 'first_commit' at the first commit and 'fix_first_commit' at
+ * a later commit.
+ *
+ * @author Elvis Ligu
+ */
+class SmallRepo {
+
+   public static final String RESOURCES = "target/test-classes/";
+
+   public static final String LOCAL_GIT_SMALL = RESOURCES + "local_small";
+
+   public static final String REMOTE_GIT_SMALL = RESOURCES
+         + "remote_small/git-test/.git";
+
+   /**
+    * @return the small repository, cloned if it is not already
+    * @throws VCSRepositoryException
+    *            if the repository can not be cloned or updated
+    */
+   static VCSRepository open() throws VCSRepositoryException {
+      VCSRepository repo = new VCSRepositoryImp(LOCAL_GIT_SMALL, new File(
+            REMOTE_GIT_SMALL).getAbsolutePath());
+      if (!VCSRepositoryImp.containsGitDir(LOCAL_GIT_SMALL)) {
+         repo.cloneRemote();
+      } else {
+         repo.update();
+      }
+      return repo;
+   }
+
+   /**
+    * Get a resolver that gives each of the given tags the given major
+    * version, and no version to the other tags.
+    * <p>
+    *
+    * @param majors
+    *           tag name to major version
+    * @return the resolver
+    */
+   static VersionNameResolver resolver(final Map<String, String> majors) {
+      return new VersionNameResolver() {
+
+         @Override
+         public VersionString resolveVersionString(String label) {
+            String major = majors.get(label);
+            return major == null ? null : new VersionString(label, major,
+                  null, null);
+         }
+      };
+   }
+
+   /**
+    * @return a provider of all tags of the given repository
+    */
+   static TagProvider tags(final VCSRepository repo) {
+      return new TagProvider() {
+
+         @Override
+         public Collection<VCSTag> getTags() throws VCSRepositoryException {
+            return repo.getTags();
+         }
+      };
+   }
+
+   /**
+    * Walk the history of the given commit.
+    * <p>
+    *
+    * @return the given commit and all its ancestors
+    */
+   static Set<VCSCommit> reachable(VCSCommit commit)
+         throws VCSRepositoryException {
+      final Set<VCSCommit> commits = new HashSet<VCSCommit>();
+      commits.add(commit);
+      commit.walkCommits(new AbstractCommitVisitor() {
+
+         @Override
+         public boolean visit(VCSCommit entity) {
+            commits.add(entity);
+            return true;
+         }
+      }, true);
+      return commits;
+   }
+
+   /**
+    * @return all commits of all branches of the given repository
+    */
+   static Set<VCSCommit> allCommits(VCSRepository repo)
+         throws VCSRepositoryException {
+      Set<VCSCommit> commits = new HashSet<VCSCommit>();
+      for (VCSBranch branch : repo.getBranches()) {
+         commits.addAll(branch.getAllCommits());
+      }
+      return commits;
+   }
+}
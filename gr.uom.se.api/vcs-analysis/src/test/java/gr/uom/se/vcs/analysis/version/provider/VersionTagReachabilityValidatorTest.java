@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.analysis.version.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.VCSTag;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link VersionTagReachabilityValidator}.
+ * <p>
+ *
+ * The result of the validator is compared to the result of walking the
+ * history of each version, on the small repository (see {@link SmallRepo}).
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class VersionTagReachabilityValidatorTest {
+
+   private VCSRepository repo;
+
+   @Before
+   public void setUp() throws Exception {
+      repo = SmallRepo.open();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      repo.close();
+   }
+
+   /**
+    * Test method for
+    * {@link VersionTagReachabilityValidator#areValidTags(Map)}.
+    * <p>
+    * The tags are valid when 'first_commit' is the older version, because it
+    * is reachable from 'fix_first_commit', and they are not valid when it is
+    * the newer.
+    */
+   @Test
+   public void testAreValidTags() throws Exception {
+
+      Map<String, String> majors = new HashMap<String, String>();
+      majors.put("first_commit", "1");
+      majors.put("fix_first_commit", "2");
+      assertTrue(check(majors, true));
+      assertTrue(check(majors, false));
+
+      majors.put("first_commit", "3");
+      assertFalse(check(majors, true));
+      assertFalse(check(majors, false));
+   }
+
+   /**
+    * Test method for
+    * {@link VersionTagReachabilityValidator#areValidTags(Map)}.
+    * <p>
+    * A single version reaches no other version, so it is always valid. The
+    * tags of a map that is not sorted must be sorted by their versions before
+    * they are walked, so the result must be the same as for a sorted map.
+    */
+   @Test
+   public void testAreValidTagsUnsorted() throws Exception {
+
+      Map<String, String> majors = new HashMap<String, String>();
+      majors.put("fix_first_commit", "1");
+      assertTrue(check(majors, true));
+
+      majors.put("first_commit", "2");
+      VersionNameResolver resolver = SmallRepo.resolver(majors);
+      Map<VersionString, VCSTag> versionTags = new HashMap<VersionString, VCSTag>();
+      for (VCSTag tag : repo.getTags()) {
+         VersionString vs = resolver.resolveVersionString(tag.getName());
+         if (vs != null) {
+            versionTags.put(vs, tag);
+         }
+      }
+      VersionTagReachabilityValidator validator = new VersionTagReachabilityValidator(
+            resolver, repo, false);
+      assertEquals(check(majors, false), validator.areValidTags(versionTags));
+      assertFalse(validator.areValidTags(versionTags));
+   }
+
+   /**
+    * Check the validator against a walk of each version, and return its
+    * result.
+    * <p>
+    * The tags are valid when each version reaches all older versions. The
+    * small repository has two versions, so the older version is also the
+    * first one a version reaches, and the result is the same with or without
+    * checking the ordering.
+    */
+   private boolean check(Map<String, String> majors, boolean checkOrdering)
+         throws VCSRepositoryException {
+
+      VersionNameResolver resolver = SmallRepo.resolver(majors);
+      TreeMap<VersionString, VCSTag> versionTags = new TreeMap<VersionString, VCSTag>();
+      for (VCSTag tag : repo.getTags()) {
+         VersionString vs = resolver.resolveVersionString(tag.getName());
+         if (vs != null) {
+            versionTags.put(vs, tag);
+         }
+      }
+      assertEquals(majors.size(), versionTags.size());
+
+      boolean expected = true;
+      List<VCSTag> older = new ArrayList<VCSTag>();
+      for (VCSTag tag : versionTags.values()) {
+         Set<VCSCommit> reachable = SmallRepo.reachable(tag.getCommit());
+         for (VCSTag previous : older) {
+            if (!reachable.contains(previous.getCommit())) {
+               expected = false;
+            }
+         }
+         older.add(tag);
+      }
+
+      VersionTagReachabilityValidator validator = new VersionTagReachabilityValidator(
+            resolver, repo, checkOrdering);
+      boolean valid = validator.areValidTags(versionTags);
+      assertEquals(expected, valid);
+      return valid;
+   }
+}
@@ -4,7 +4,9 @@
 package gr.uom.se.vcs;
 
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
 
 import java.util.Collection;
 
@@ -100,6 +102,22 @@ public interface VCSBranch {
     */
    boolean isContained(VCSCommit commit) throws VCSRepositoryException;
 
+   /**
+    * Get all commits of this branch that are not contained in the given
+    * branch.
+    * <p>
+    * The commits are returned from newer to older.
+    * 
+    * @param other
+    *           the branch whose commits should be excluded, must not be null
+    * @return the commits that are reachable from this branch but not from the
+    *         other
+    * @throws VCSRepositoryException
+    *            if a problem occurs during repository querying
+    */
+   Collection<VCSCommit> getCommitsNotIn(VCSBranch other)
+         throws VCSRepositoryException;
+
    /**
     * Return the name of this branch.
     * <p>
@@ -148,4 +166,28 @@ public interface VCSBranch {
     */
    void walkCommits(CommitVisitor visitor, boolean descending)
          throws VCSRepositoryException;
+
+   /**
+    * Get a lazy iterator of the commits of this branch.
+    * <p>
+    * Use this instead of {@link #getAllCommits()} when the history is large
+    * and it should not be collected in memory. See
+    * {@link VCSCommit#iterateCommits(VCSCommitFilter, boolean)}.
+    * <p>
+    * <b>NOTE:</b> if the implementation does not support branching this method
+    * may return all commits of repository.
+    * <p>
+    *
+    * @param filter
+    *           only the commits allowed by this filter will be returned, may
+    *           be null
+    * @param descending
+    *           if true the commits will be returned from new to old, if false
+    *           they will be returned from old to new
+    * @return an iterator of the commits of this branch
+    * @throws VCSRepositoryException
+    *            if the iterator can not be created
+    */
+   CommitIterator iterateCommits(VCSCommitFilter filter, boolean descending)
+         throws VCSRepositoryException;
 }
@@ -6,12 +6,15 @@ package gr.uom.se.vcs;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
 import gr.uom.se.vcs.exceptions.VCSResourceNotFoundException;
 import gr.uom.se.vcs.walker.ChangeVisitor;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
 import gr.uom.se.vcs.walker.ResourceVisitor;
+import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
 
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Represents the commit of a {@link VCSRepository}.
@@ -215,6 +218,34 @@ public interface VCSCommit {
    List<VCSFileDiff<?>> getFileChanges(VCSCommit commit, boolean recursive,
          String... paths) throws VCSRepositoryException;
 
+   /**
+    * Get only file changes that are under the specified paths (do not include
+    * directories), and compute their edits in parallel.
+    * <p>
+    * This method behaves the same as
+    * {@link #getFileChanges(VCSCommit, boolean, String...)}, however the edits
+    * of each file diff (see {@link VCSFileDiff#getEdits()}) will be computed
+    * by the given executor, while the changes are being collected. The
+    * returned list is in the same order as the one of the sequential method.
+    * 
+    * @param commit
+    *           the commit to check against
+    * @param executor
+    *           to compute the edits of the file diffs, must not be null
+    * @param recursive
+    *           if true, return all changes under the specified paths (if they
+    *           are directories)
+    * @param paths
+    *           if specifying any, limit the changes to only those paths
+    * @return a list of changes
+    * @throws VCSRepositoryException
+    *            in case there is a problem with change calculating
+    * @see #walkFileChanges(VCSCommit, ExecutorService, ChangeVisitor)
+    */
+   List<VCSFileDiff<?>> getFileChanges(VCSCommit commit,
+         ExecutorService executor, boolean recursive, String... paths)
+         throws VCSRepositoryException;
+
    /**
     * Check if this commit is a merge commit.
     * <p>
@@ -337,6 +368,39 @@ public interface VCSCommit {
    public void walkFileChanges(VCSCommit commit,
          ChangeVisitor<VCSFileDiff<?>> visitor) throws VCSRepositoryException;
 
+   /**
+    * Walk file diff entries, computing their edits in parallel, until there are
+    * no more entries or the {@link ChangeVisitor#visit(Object)} returns false.
+    * <p>
+    * This method works the same as
+    * {@link #walkFileChanges(VCSCommit, ChangeVisitor)}, however the edits of
+    * each file diff (see {@link VCSFileDiff#getEdits()}) will be computed by
+    * the given executor, ahead of the visitor. The visitor is always called
+    * from the calling thread, and it will visit the file diffs in the same
+    * order as the sequential method. Only a bounded number of diffs will wait
+    * for their edits at any time, so the executor should be bounded too (i.e.
+    * a fixed thread pool), and may be shared by many walks.
+    * <p>
+    * This method is preferable when the visitor needs the edits of many large
+    * diffs (i.e. when comparing two versions).
+    * 
+    * <p>
+    * The executor is the second argument, so a call with a null executor is
+    * not confused with the other overloads.
+    * 
+    * @param commit
+    *           the commit to check against
+    * @param executor
+    *           to compute the edits of the file diffs, must not be null
+    * @param visitor
+    *           that will be accepting changes
+    * @throws VCSRepositoryException
+    *            in case there is a problem with change calculating
+    * @see #walkFileChanges(VCSCommit, ChangeVisitor)
+    */
+   public void walkFileChanges(VCSCommit commit, ExecutorService executor,
+         ChangeVisitor<VCSFileDiff<?>> visitor) throws VCSRepositoryException;
+
    /**
     * Get the resource in the given path.
     * <p>
@@ -414,6 +478,38 @@ public interface VCSCommit {
    void checkout(final String path, String... paths)
          throws VCSRepositoryException;
 
+   /**
+    * Check out repository contents at the time this commit made the changes,
+    * incrementally and in parallel.
+    * <p>
+    * If the directory denoted by the first argument contains the checkout of
+    * another commit (made by this method, limited to the same paths), only
+    * the files that differ between the two commits will be written or deleted.
+    * Otherwise all contents of the directory will be cleaned, and all files
+    * will be written. Implementations that can not know the previous checkout
+    * of the directory should do a full checkout.
+    * <p>
+    * The files will be written by the given executor, if any. This method
+    * returns when all files are written.
+    * <p>
+    * Implementations should find the files of the directory that were changed
+    * or added by others after the previous checkout, and write them again or
+    * delete them. If a problem occurs the contents of this directory are
+    * cleaned.
+    * 
+    * @param path
+    *           directory path were the contents will be written
+    * @param executor
+    *           to write the files, if null the files will be written by the
+    *           calling thread
+    * @param paths
+    *           limit the check out only to given paths
+    * @throws VCSRepositoryException
+    * @see #checkout(String, String...)
+    */
+   void checkout(final String path, ExecutorService executor, String... paths)
+         throws VCSRepositoryException;
+
    /**
     * Starting from this commit, walk backward to all ancestors of this one.
     * <p>
@@ -443,4 +539,29 @@ public interface VCSCommit {
     */
    void walkCommits(final CommitVisitor visitor, boolean descending)
          throws VCSRepositoryException;
+
+   /**
+    * Get a lazy iterator of the ancestors of this commit.
+    * <p>
+    *
+    * The iterator returns the same commits, in the same order, as
+    * {@link #walkCommits(CommitVisitor, boolean)} would visit, however the
+    * commits are computed while iterating, so the history can be consumed by
+    * pulling commits when they are needed, without collecting them in memory.
+    * The caller should close the iterator if it will not iterate all the
+    * commits (see {@link CommitIterator#close()}).
+    * <p>
+    *
+    * @param filter
+    *           only the commits allowed by this filter will be returned, may
+    *           be null
+    * @param descending
+    *           if true the iterator will start from this commit until the
+    *           first commit, otherwise it will start from the oldest to newest
+    * @return an iterator of the ancestors of this commit
+    * @throws VCSRepositoryException
+    *            if the iterator can not be created
+    */
+   CommitIterator iterateCommits(VCSCommitFilter filter, boolean descending)
+         throws VCSRepositoryException;
 }
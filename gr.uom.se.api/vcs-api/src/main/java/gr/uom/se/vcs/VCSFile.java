@@ -3,9 +3,12 @@
  */
 package gr.uom.se.vcs;
 
+import gr.uom.se.vcs.walker.Visitor;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Represents a file of {@link VCSRepository}.
@@ -58,4 +61,61 @@ public interface VCSFile extends VCSResource {
     *            if contents can not be read
     */
    InputStream getContentStream() throws IOException;
+
+   /**
+    * Get the size of the contents of this file, in bytes.
+    * <p>
+    * The size should be read without reading the contents.
+    * 
+    * @return the size of this file
+    * @throws IOException
+    *            if the size can not be read
+    */
+   long getSize() throws IOException;
+
+   /**
+    * Count the lines of this file.
+    * <p>
+    * 
+    * A line is terminated by a line feed ('\n'), a carriage return ('\r') or
+    * a carriage return followed by a line feed, and the last line may not be
+    * terminated. Implementations should count the lines without decoding the
+    * contents, and may cache the count of the same contents.
+    * 
+    * @return the number of lines of this file, 0 if it has no contents
+    * @throws IOException
+    *            if contents can not be read
+    */
+   int countLines() throws IOException;
+
+   /**
+    * Get the contents of this file as a read only buffer.
+    * <p>
+    * 
+    * Implementations should avoid copying the contents, that is the returned
+    * buffer may be a view of contents that are already in memory. If the
+    * contents are large prefer {@link #walkContents(Visitor)}.
+    * 
+    * @return the contents, never null, when there are no contents an empty
+    *         buffer is returned
+    * @throws IOException
+    *            if contents can not be read
+    */
+   ByteBuffer getContentBuffer() throws IOException;
+
+   /**
+    * Pass the contents of this file to the given visitor, in one or more
+    * chunks, until there are no more contents or the visitor returns false.
+    * <p>
+    * 
+    * Each chunk is a read only buffer, which is valid only during the call of
+    * {@link Visitor#visit(Object)}, that is the same buffer may be reused for
+    * the next chunk, so the visitor must not keep a reference to it.
+    * 
+    * @param visitor
+    *           to pass the contents to
+    * @throws IOException
+    *            if contents can not be read
+    */
+   void walkContents(Visitor<ByteBuffer> visitor) throws IOException;
 }
@@ -5,9 +5,11 @@ package gr.uom.se.vcs;
 
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
 import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.MembershipVisitor;
 import java.io.Closeable;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -145,6 +147,38 @@ public interface VCSRepository extends Closeable {
     */
    Collection<VCSTag> getTags() throws VCSRepositoryException;
 
+   /**
+    * Return all branches that contain the given commit.
+    * <p>
+    * A branch contains a commit if the commit is reachable from the branch's
+    * head (see {@link VCSBranch#isContained(VCSCommit)}). This is a batch
+    * version of that check, and implementations are encouraged to answer it
+    * without walking the history of each branch.
+    * 
+    * @param commit
+    *           to check, must not be null
+    * @return the branches that contain the given commit
+    * @throws VCSRepositoryException
+    *            when a problem occurs while reading the repository
+    */
+   Collection<VCSBranch> getBranchesContaining(VCSCommit commit)
+         throws VCSRepositoryException;
+
+   /**
+    * Return all tags that contain the given commit.
+    * <p>
+    * A tag contains a commit if the commit is reachable from the commit the
+    * tag points to.
+    * 
+    * @param commit
+    *           to check, must not be null
+    * @return the tags that contain the given commit
+    * @throws VCSRepositoryException
+    *            when a problem occurs while reading the repository
+    */
+   Collection<VCSTag> getTagsContaining(VCSCommit commit)
+         throws VCSRepositoryException;
+
    /**
     * Resolve the commit with the specified id.
     * <p>
@@ -238,4 +272,72 @@ public interface VCSRepository extends Closeable {
    public void walkAll(Set<VCSCommit> commits,
          CommitVisitor visitor, boolean descending)
          throws VCSRepositoryException;
+
+   /**
+    * Walk all commits reachable from the given heads at once, and find which
+    * heads reach each commit.
+    * <p>
+    * Each commit is visited once, from newer to older, and a commit is always
+    * visited before its parents. The visitor gets the commit together with a
+    * bit set, where the bit <code>i</code> is set if the commit is reachable
+    * from <code>heads.get(i)</code>. The membership is computed during the
+    * walk, so overlapping histories of the heads are walked only once. This
+    * should be preferred to walking each branch separately when the branches
+    * (or tags) that contain each commit are required.
+    *
+    * @param heads
+    *           the commits to walk (usually heads of branches, or commits of
+    *           tags), must not be null
+    * @param visitor
+    *           to visit each commit, must not be null
+    * @throws VCSRepositoryException
+    *            if a problem occurs during walking
+    */
+   public void walkAll(List<? extends VCSCommit> heads,
+         MembershipVisitor visitor) throws VCSRepositoryException;
+
+   /**
+    * Get the number of the given commit.
+    * <p>
+    * The commits reachable from the branches and tags of this repository are
+    * given a dense number, from 0 to {@link #getCommitCount()} - 1, and a
+    * parent has always a lower number than its children. The number of a
+    * commit doesn't change when this repository is updated, the new commits
+    * take the next numbers. This allows a set of commits to be kept as a
+    * bitmap of their numbers, without keeping the commits.
+    * 
+    * @param commit
+    *           the commit to get its number, must not be null
+    * @return the number of the commit, or -1 if it is not reachable from any
+    *         branch or tag
+    * @throws VCSRepositoryException
+    *            if the commits can not be numbered
+    */
+   public int getCommitNumber(VCSCommit commit) throws VCSRepositoryException;
+
+   /**
+    * Get the commit of the given number.
+    * <p>
+    * 
+    * @param number
+    *           the number of the commit
+    * @return the commit of the given number, or null if there is not a commit
+    *         with this number
+    * @throws VCSRepositoryException
+    *            if the commits can not be numbered
+    * @see #getCommitNumber(VCSCommit)
+    */
+   public VCSCommit getCommit(int number) throws VCSRepositoryException;
+
+   /**
+    * Get the number of numbered commits.
+    * <p>
+    * 
+    * @return the number of commits reachable from the branches and tags of
+    *         this repository
+    * @throws VCSRepositoryException
+    *            if the commits can not be numbered
+    * @see #getCommitNumber(VCSCommit)
+    */
+   public int getCommitCount() throws VCSRepositoryException;
 }
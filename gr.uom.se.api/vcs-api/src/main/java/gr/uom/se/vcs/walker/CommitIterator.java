@@ -0,0 +1,44 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.walker;
+
+import gr.uom.se.vcs.VCSCommit;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator of commits that are computed lazily while iterating.
+ * <p>
+ *
+ * Unlike {@link VCSCommit#walkCommits(CommitVisitor, boolean)} the caller of
+ * this iterator controls the walk, that is it can pull the commits when it
+ * needs them, stop at any point, or pass the iterator to other code, and no
+ * more commits than those returned by {@link #next()} are kept in memory.
+ * <p>
+ * An iterator holds the resources of the underlying walk until it is
+ * exhausted or closed. The resources are released automatically when
+ * {@link #hasNext()} returns false, so a caller that doesn't iterate all
+ * commits should call {@link #close()}. After an iterator is closed it will
+ * have no more commits.
+ * <p>
+ * An iterator is not thread safe, however it may be consumed by a thread
+ * other than the one that created it.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see VCSCommit#iterateCommits(gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter,
+ *      boolean)
+ */
+public interface CommitIterator extends Iterator<VCSCommit>, Closeable {
+
+   /**
+    * Release the resources of this iterator.
+    * <p>
+    * Calling this method more than once has no effect.
+    */
+   @Override
+   void close();
+}
@@ -0,0 +1,30 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.walker;
+
+import gr.uom.se.vcs.VCSCommit;
+
+/**
+ * A commit visitor that needs only the headers of the commits it visits.
+ * <p>
+ *
+ * Implement this interface instead of {@link CommitVisitor} when the visitor
+ * needs only the id, the parents ({@link VCSCommit#getPrevious()}) and the
+ * commit date ({@link VCSCommit#getCommitDate()}) of the commits. It tells the
+ * implementation that it may skip loading the message and the identities of
+ * the commits while walking, which saves memory and time for large histories.
+ * <p>
+ * The visitor can still call any method of a commit, however methods that
+ * require the message or the identities (such as {@link VCSCommit#getMessage()}
+ * or {@link VCSCommit#getAuthor()}) will load them on demand, so they will be
+ * slower than they would be in a normal walk. Implementations that can not
+ * skip the commit bodies will walk as they do for a {@link CommitVisitor}.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see VCSCommit#walkCommits(CommitVisitor, boolean)
+ */
+public interface HeaderCommitVisitor extends CommitVisitor {
+}
@@ -0,0 +1,45 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.walker;
+
+import gr.uom.se.vcs.VCSCommit;
+
+import java.util.BitSet;
+
+/**
+ * A visitor of commits that knows which of the walked heads reach each commit.
+ * <p>
+ *
+ * When walking several heads at once (i.e. the heads of all branches, or the
+ * commits of all tags), each commit is passed to the visitor together with a
+ * bit set of the heads it is reachable from. The bit <code>i</code> is set if
+ * the commit is reachable from the head at index <code>i</code> of the walked
+ * heads, so the branches (or tags) that contain each commit are known after a
+ * single walk, instead of walking each branch separately.
+ * <p>
+ * The visiting of commits should stop when
+ * {@link #visit(VCSCommit, BitSet)} returns false.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see gr.uom.se.vcs.VCSRepository#walkAll(java.util.List, MembershipVisitor)
+ */
+public interface MembershipVisitor {
+
+   /**
+    * Pass the current commit to this visitor, and the heads it is reachable
+    * from.
+    * <p>
+    * The bit set will not be changed after it is passed to this visitor, so it
+    * can be kept, however the visitor should not change it.
+    *
+    * @param commit
+    *           to visit
+    * @param heads
+    *           the indexes of the heads this commit is reachable from
+    * @return true if this visitor should accept more commits
+    */
+   boolean visit(VCSCommit commit, BitSet heads);
+}
@@ -0,0 +1,154 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit;
+
+import gr.uom.se.util.validation.ArgsCheck;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Keeps one {@link VCSCommitImp} instance for each commit id of a repository.
+ * <p>
+ *
+ * Commits are created each time a walk, a resolve or a parent/child lookup
+ * returns them. Interning them allows all callers to share the same instance,
+ * with its parsed JGit commit and its cached author, committer and children,
+ * and makes comparison of commits (i.e. within hash sets) an identity check
+ * in most cases. Interned commits are lightweight, they keep only their id
+ * until their headers or body are required.
+ * <p>
+ * The commits are weakly referenced, so a commit that is not used anymore
+ * will be removed from this interner.
+ * <p>
+ * This class is thread safe, and {@link #intern(AnyObjectId)} will not block.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class CommitInterner {
+
+   /**
+    * A weak reference to an interned commit, that knows its key.
+    * <p>
+    */
+   private static class Handle extends WeakReference<VCSCommitImp> {
+
+      final ObjectId key;
+
+      Handle(final ObjectId key, final VCSCommitImp commit,
+            final ReferenceQueue<VCSCommitImp> queue) {
+         super(commit, queue);
+         this.key = key;
+      }
+   }
+
+   /**
+    * The repository of the interned commits.
+    * <p>
+    */
+   private final VCSRepositoryImp owner;
+
+   /**
+    * Commit id to interned commit.
+    * <p>
+    */
+   private final ConcurrentHashMap<ObjectId, Handle> handles = new ConcurrentHashMap<ObjectId, Handle>();
+
+   /**
+    * The queue of collected commits, so their handles can be removed.
+    * <p>
+    */
+   private final ReferenceQueue<VCSCommitImp> queue = new ReferenceQueue<VCSCommitImp>();
+
+   /**
+    * Creates a new interner for the given repository.
+    * <p>
+    *
+    * @param owner
+    *           the repository of the commits, must not be null
+    */
+   public CommitInterner(final VCSRepositoryImp owner) {
+      ArgsCheck.notNull("owner", owner);
+      this.owner = owner;
+   }
+
+   /**
+    * Get the commit with the given id.
+    * <p>
+    * If there is an interned commit with the same id it will be returned,
+    * otherwise a new one will be created and interned. The id is not checked
+    * to be a commit of the repository until the commit is parsed.
+    *
+    * @param id
+    *           the id of the commit, must not be null
+    * @return the interned commit
+    */
+   public VCSCommitImp intern(final AnyObjectId id) {
+
+      ArgsCheck.notNull("id", id);
+      this.expunge();
+
+      Handle handle = this.handles.get(id);
+      if (handle != null) {
+         final VCSCommitImp commit = handle.get();
+         if (commit != null) {
+            return commit;
+         }
+      }
+
+      final ObjectId key = id.copy();
+      final VCSCommitImp commit = new VCSCommitImp(key, this.owner);
+      final Handle created = new Handle(key, commit, this.queue);
+      while (true) {
+         handle = this.handles.putIfAbsent(key, created);
+         if (handle == null) {
+            return commit;
+         }
+         final VCSCommitImp existing = handle.get();
+         if (existing != null) {
+            return existing;
+         }
+         // The existing commit was collected, replace it
+         if (this.handles.replace(key, handle, created)) {
+            return commit;
+         }
+      }
+   }
+
+   /**
+    * @return the number of interned commits (some of them may be collected)
+    */
+   public int size() {
+      this.expunge();
+      return this.handles.size();
+   }
+
+   /**
+    * Remove all interned commits.
+    * <p>
+    * Commits that are already returned will still be valid, however they
+    * will not be returned again.
+    */
+   public void clear() {
+      this.handles.clear();
+   }
+
+   /**
+    * Remove the handles of collected commits.
+    * <p>
+    */
+   private void expunge() {
+      Object ref;
+      while ((ref = this.queue.poll()) != null) {
+         final Handle handle = (Handle) ref;
+         this.handles.remove(handle.key, handle);
+      }
+   }
+}
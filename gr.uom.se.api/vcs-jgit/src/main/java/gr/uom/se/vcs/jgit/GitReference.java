@@ -4,6 +4,7 @@
 package gr.uom.se.vcs.jgit;
 
 import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 
 import java.io.IOException;
 
@@ -32,6 +33,20 @@ public abstract class GitReference {
     * <p>
     */
    protected Repository repo;
+
+   /**
+    * The id of the commit the reference points to, or null if it is not
+    * known and should be resolved from the reference.
+    * <p>
+    */
+   protected ObjectId commit;
+
+   /**
+    * The repository this reference comes from, or null if it was created
+    * directly from a JGit repository.
+    * <p>
+    */
+   protected VCSRepositoryImp owner;
    
    /**
     * Creates a new instance based on the given reference and repository.
@@ -60,6 +75,44 @@ public abstract class GitReference {
 
       this.repo = repository;
    }
+
+   /**
+    * Creates a new instance based on the given reference, and the commit it
+    * points to.
+    * <p>
+    * 
+    * The reference is not checked against the repository, and the commit is
+    * not resolved again, so this should be used when the reference is read
+    * from a {@link gr.uom.se.vcs.jgit.index.RefSnapshot snapshot} of the
+    * repository references.
+    * 
+    * @param ref
+    *           the reference this is related to
+    * @param owner
+    *           the repository this reference comes from
+    * @param commit
+    *           the peeled commit id of the reference, may be null if it is not
+    *           known
+    */
+   protected GitReference(final Ref ref, final VCSRepositoryImp owner,
+         final ObjectId commit) {
+
+      ArgsCheck.notNull("branch", ref);
+      ArgsCheck.notNull("owner", owner);
+
+      this.ref = ref;
+      this.owner = owner;
+      this.repo = owner.repo;
+      this.commit = commit;
+   }
+
+   /**
+    * @return the reader pool of the repository this reference comes from, or
+    *         null if there is not any
+    */
+   ReaderPool pool() {
+      return this.owner == null ? null : this.owner.getReaderPool();
+   }
    
    /**
     * The ID of a JGit reference is retrieved by calling {@link Ref#getName()}
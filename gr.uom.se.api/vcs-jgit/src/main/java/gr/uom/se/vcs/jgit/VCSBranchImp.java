@@ -8,7 +8,9 @@ import gr.uom.se.vcs.VCSBranch;
 import gr.uom.se.vcs.VCSCommit;
 import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 import gr.uom.se.vcs.jgit.utils.RevUtils;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
 import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
 import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
@@ -20,6 +22,7 @@ import java.util.List;
 
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -55,18 +58,47 @@ public class VCSBranchImp extends GitReference implements VCSBranch {
       super(branch, repository);
    }
 
+   /**
+    * Creates a new instance of a branch that points to the given commit.
+    * <p>
+    * 
+    * @param branch
+    *           must not be null
+    * @param owner
+    *           the repository this branch comes from, must not be null
+    * @param head
+    *           the head commit id of the branch, or null if it is not known
+    * @see GitReference#GitReference(Ref, VCSRepositoryImp, ObjectId)
+    */
+   public VCSBranchImp(final Ref branch, final VCSRepositoryImp owner,
+         final ObjectId head) {
+      super(branch, owner, head);
+   }
+
+   /**
+    * @return the id of the head commit of this branch, the one it was created
+    *         with if it is known
+    */
+   private ObjectId headId() {
+      return this.commit != null ? this.commit : this.ref.getObjectId();
+   }
+
    /**
     * {@inheritDoc}
     */
    @Override
    public VCSCommit getHead() throws VCSRepositoryException {
 
+      if (this.commit != null) {
+         return VCSCommitImp.of(this.commit, this.repo, this.owner);
+      }
+
       RevWalk walk = null;
       try {
 
-         walk = new RevWalk(this.repo);
-         return new VCSCommitImp(walk.parseCommit(this.ref.getObjectId()),
-               this.repo);
+         walk = ReaderPool.revWalk(this.pool(), this.repo);
+         return VCSCommitImp.of(walk.parseCommit(this.ref.getObjectId()),
+               this.repo, this.owner);
 
       } catch (final MissingObjectException e) {
          throw new VCSRepositoryException(e);
@@ -120,6 +152,15 @@ public class VCSBranchImp extends GitReference implements VCSBranch {
       this.getHead().walkCommits(visitor, descending);
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public CommitIterator iterateCommits(VCSCommitFilter filter,
+         boolean descending) throws VCSRepositoryException {
+      return this.getHead().iterateCommits(filter, descending);
+   }
+
    /**
     * {@inheritDoc}
     * <p>
@@ -133,17 +174,19 @@ public class VCSBranchImp extends GitReference implements VCSBranch {
       // because we need access to JGit RevCommit
       ArgsCheck.isSubtype("commit", VCSCommitImp.class, commit);
 
-      final RevCommit rCommit = ((VCSCommitImp) commit).commit;
+      final RevCommit rCommit = ((VCSCommitImp) commit).getRevCommit();
 
       // We can not check if the commit is null so return false
       ArgsCheck.notNull("'commit' property of commit argument", rCommit);
       
       RevWalk walk = null;
       try {
-         walk = new RevWalk(this.repo);
-         return RevUtils.isAncestor(rCommit,
-               walk.parseCommit(this.ref.getObjectId()),
-               this.repo);
+         walk = ReaderPool.revWalk(this.pool(), this.repo);
+         final RevCommit head = walk.parseCommit(this.headId());
+         if (this.owner != null) {
+            return this.owner.isAncestor(rCommit, head);
+         }
+         return RevUtils.isAncestor(rCommit, head, this.repo);
       } catch (final MissingObjectException e) {
          throw new VCSRepositoryException(e);
       } catch (final IncorrectObjectTypeException e) {
@@ -156,4 +199,55 @@ public class VCSBranchImp extends GitReference implements VCSBranch {
          }
       }
    }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Given branch must be of type {@link VCSBranchImp}. If this branch comes
+    * from a {@link VCSRepositoryImp} its reachability index will be used,
+    * and the commits will be parsed the first time they are required,
+    * otherwise the commits will be walked.
+    */
+   @Override
+   public Collection<VCSCommit> getCommitsNotIn(final VCSBranch other)
+         throws VCSRepositoryException {
+
+      ArgsCheck.isSubtype("other", VCSBranchImp.class, other);
+      final VCSBranchImp otherBranch = (VCSBranchImp) other;
+
+      final List<VCSCommit> commits = new ArrayList<VCSCommit>();
+      final RevWalk walk = ReaderPool.revWalk(this.pool(), this.repo);
+      try {
+
+         // Try first the reachability index
+         if (this.owner != null) {
+            final List<ObjectId> ids = this.owner.getReachabilityIndex()
+                  .getCommitsNotIn(this.ref.getName(),
+                        otherBranch.ref.getName());
+            if (ids != null) {
+               for (final ObjectId id : ids) {
+                  commits.add(VCSCommitImp.of(id, this.owner));
+               }
+               return commits;
+            }
+         }
+
+         walk.markStart(walk.parseCommit(this.headId()));
+         walk.markUninteresting(walk.parseCommit(otherBranch.headId()));
+         RevCommit current = null;
+         while ((current = walk.next()) != null) {
+            commits.add(VCSCommitImp.of(current, this.repo, this.owner));
+         }
+         return commits;
+
+      } catch (final MissingObjectException e) {
+         throw new VCSRepositoryException(e);
+      } catch (final IncorrectObjectTypeException e) {
+         throw new VCSRepositoryException(e);
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+   }
 }
@@ -11,31 +11,50 @@ import gr.uom.se.vcs.VCSFileDiff;
 import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
 import gr.uom.se.vcs.exceptions.VCSResourceNotFoundException;
+import gr.uom.se.vcs.jgit.index.CheckoutIndex;
+import gr.uom.se.vcs.jgit.index.CommitChildrenIndex;
+import gr.uom.se.vcs.jgit.index.RefSnapshot;
+import gr.uom.se.vcs.jgit.index.TreeManifestCache;
+import gr.uom.se.vcs.jgit.utils.BlobWriter;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 import gr.uom.se.vcs.jgit.utils.RevUtils;
 import gr.uom.se.vcs.jgit.utils.TreeUtils;
+import gr.uom.se.vcs.jgit.walker.ChangedPathRevFilter;
 import gr.uom.se.vcs.jgit.walker.DiffCollector;
+import gr.uom.se.vcs.jgit.walker.ParallelDiffVisitor;
+import gr.uom.se.vcs.jgit.walker.RenameDetection;
 import gr.uom.se.vcs.jgit.walker.filter.commit.CommitFilter;
 import gr.uom.se.vcs.jgit.walker.filter.commit.OptimizedCommitFilter;
 import gr.uom.se.vcs.jgit.walker.filter.resource.OptimizedResourceFilter;
 import gr.uom.se.vcs.jgit.walker.filter.resource.ResourceFilter;
 import gr.uom.se.vcs.walker.ChangeVisitor;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.HeaderCommitVisitor;
+import gr.uom.se.vcs.walker.MembershipVisitor;
 import gr.uom.se.vcs.walker.ResourceVisitor;
 import gr.uom.se.vcs.walker.filter.VCSFilter;
 import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
+import gr.uom.se.vcs.walker.filter.resource.AbstractPathFilter;
+import gr.uom.se.vcs.walker.filter.resource.PathFilter;
+import gr.uom.se.vcs.walker.filter.resource.PathPrefixFilter;
 import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
@@ -48,15 +67,18 @@ import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 /**
  * Implementation of {@link VCSCommit} based on JGit library.
@@ -72,19 +94,19 @@ import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 public class VCSCommitImp implements VCSCommit {
 
    /**
-    * JGit commit that is linked to this commit.
+    * The id of this commit.
     * <p>
     */
-   protected RevCommit commit;   
+   protected final ObjectId id;
 
    /**
-    * A class to hold a person ident in case we need synchronization on cached
-    * fields (author and committer).
+    * JGit commit that is linked to this commit.
+    * <p>
+    * It is parsed the first time it is required (see {@link #getRevCommit()}),
+    * unless it is kept from a walk that retained its body (see
+    * {@link #setHeaders(RevCommit, boolean)}).
     */
-   private class CachedObjectHolder<T> {
-
-      protected T cache;
-   }
+   private volatile RevCommit commit;
 
    /**
     * The author that originated the commit.
@@ -92,14 +114,39 @@ public class VCSCommitImp implements VCSCommit {
     *
     * This field is for caching purposes
     */
-   protected CachedObjectHolder<PersonIdent> author = new CachedObjectHolder<PersonIdent>();
+   private volatile PersonIdent author;
 
    /**
     * The committer that committed this revision.
     * <p>
     * This filed is for caching purposes.
     */
-   protected CachedObjectHolder<PersonIdent> committer = new CachedObjectHolder<PersonIdent>();
+   private volatile PersonIdent committer;
+
+   /**
+    * The commit time of this commit, in milliseconds.
+    * <p>
+    * It is kept from the header of the commit when it is walked (see
+    * {@link #setHeaders(RevCommit, boolean)}), so the commit date can be
+    * returned without parsing the committer identity. If it is
+    * {@link #UNKNOWN_TIME} it is not known yet.
+    */
+   private volatile long commitTime = UNKNOWN_TIME;
+
+   /**
+    * The ids of the parents of this commit.
+    * <p>
+    * They are kept from the header of the commit when it is walked, so the
+    * parents can be returned without parsing the commit again. If null they
+    * are not known yet.
+    */
+   private volatile ObjectId[] parents;
+
+   /**
+    * The value of {@link #commitTime} when the time is not known.
+    * <p>
+    */
+   private static final long UNKNOWN_TIME = Long.MIN_VALUE;
 
    /**
     * JGit repository from where this commit comes from.
@@ -107,6 +154,15 @@ public class VCSCommitImp implements VCSCommit {
     */
    protected Repository repo;
 
+   /**
+    * The repository this commit comes from, or null if this commit was created
+    * directly from a JGit repository.
+    * <p>
+    * Its indexes and caches are used, if it is not null, to answer the queries
+    * of this commit.
+    */
+   protected final VCSRepositoryImp owner;
+
    /**
     * Keep cached the next commits of this one.
     * <p>
@@ -117,37 +173,183 @@ public class VCSCommitImp implements VCSCommit {
     * collection is null that means they are not calculated, if it is not, they
     * are calculated so don't calculate them.
     */
-   protected CachedObjectHolder<List<VCSCommit>> children = new CachedObjectHolder<List<VCSCommit>>();
+   private volatile List<VCSCommit> children;
 
    /**
     * Creates a commit that is linked to a JGit commit and repository.
     * <p>
+    * The commit will be parsed the first time its headers or body are
+    * required.
     *
     * @param commit
     *           must not be null
     * @param repository
     *           must not be null
     */
-   public VCSCommitImp(final RevCommit commit, final Repository repository) {
+   public VCSCommitImp(final AnyObjectId commit, final Repository repository) {
 
       ArgsCheck.notNull("commit", commit);
       ArgsCheck.notNull("repository", repository);
 
-      // We need to parse again this commit so we can ensure all his parents
-      // and children will be ok
-      RevWalk walk = null;
-      try {
-         walk = new RevWalk(repository);
-         this.commit = walk.parseCommit(commit);
-      } catch (final IOException e) {
-         throw new IllegalStateException("revision " + commit.getName()
-               + " can not be parsed");
-      } finally {
-         if (walk != null) {
+      this.id = commit.copy();
+      this.repo = repository;
+      this.owner = null;
+   }
+
+   /**
+    * Creates a commit of the given repository.
+    * <p>
+    * The commit will be parsed the first time its headers or body are
+    * required. Prefer {@link #of(AnyObjectId, VCSRepositoryImp)}, which will
+    * return the same instance for the same commit.
+    *
+    * @param commit
+    *           must not be null
+    * @param owner
+    *           the repository this commit comes from, must not be null
+    */
+   public VCSCommitImp(final AnyObjectId commit, final VCSRepositoryImp owner) {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("owner", owner);
+
+      this.id = commit.copy();
+      this.repo = owner.repo;
+      this.owner = owner;
+   }
+
+   /**
+    * Get the commit of the given repository with the given id.
+    * <p>
+    * The commit is interned (see {@link VCSRepositoryImp#getCommitInterner()}
+    * ), so all callers will share the same instance and its caches.
+    *
+    * @param commit
+    *           the id of the commit, must not be null
+    * @param owner
+    *           the repository of the commit, must not be null
+    * @return a commit for the given id
+    */
+   public static VCSCommitImp of(final AnyObjectId commit,
+         final VCSRepositoryImp owner) {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("owner", owner);
+
+      return owner.getCommitInterner().intern(commit);
+   }
+
+   /**
+    * Get the commit of the given JGit repository with the given id.
+    * <p>
+    * A JGit repository has no indexes or caches, so a new commit will be
+    * created.
+    *
+    * @param commit
+    *           the id of the commit, must not be null
+    * @param repository
+    *           the repository of the commit, must not be null
+    * @return a commit for the given id
+    */
+   public static VCSCommitImp of(final AnyObjectId commit,
+         final Repository repository) {
+      return new VCSCommitImp(commit, repository);
+   }
+
+   /**
+    * Get the commit with the given id, of the given repository if there is
+    * one, otherwise of the given JGit repository.
+    * <p>
+    */
+   static VCSCommitImp of(final AnyObjectId commit,
+         final Repository repository, final VCSRepositoryImp owner) {
+      return owner != null ? of(commit, owner) : of(commit, repository);
+   }
+
+   /**
+    * @return the reader pool of the repository this commit comes from, or
+    *         null if there is not any
+    */
+   ReaderPool pool() {
+      return this.owner == null ? null : this.owner.getReaderPool();
+   }
+
+   /**
+    * @return the reader of the calling thread from the pool of the repository
+    *         this commit comes from, or null if there is not any
+    */
+   private ObjectReader reader() {
+      return this.owner == null ? null : this.owner.getReaderPool()
+            .getReader();
+   }
+
+   /**
+    * @return the manifests of the trees of the repository this commit comes
+    *         from, or null if there is not any
+    */
+   TreeManifestCache manifests() {
+      return this.owner == null ? null : this.owner.getTreeManifestCache();
+   }
+
+   /**
+    * Get the JGit commit of this commit.
+    * <p>
+    * The commit is parsed from a new walk, so its parents are the real
+    * parents of the commit. Parsing is not synchronized, two threads may parse
+    * the same commit but they will get the same result.
+    *
+    * @return the parsed JGit commit
+    */
+   RevCommit getRevCommit() {
+
+      RevCommit rc = this.commit;
+      if (rc == null) {
+         final RevWalk walk = ReaderPool.revWalk(this.pool(), this.repo);
+         try {
+            rc = walk.parseCommit(this.id);
+         } catch (final IOException e) {
+            throw new IllegalStateException("revision " + this.id.getName()
+                  + " can not be parsed", new VCSRepositoryException(e));
+         } finally {
             walk.release();
          }
+         this.commit = rc;
+      }
+      return rc;
+   }
+
+   /**
+    * Keep the headers of the given JGit commit, that is its commit time and
+    * its parents.
+    * <p>
+    * This is called for each commit a walk produces, so the commit date and
+    * the parents of this commit will be available without parsing it again,
+    * even if the walk did not retain the commit body. The parents are kept
+    * only if they are the real parents of the commit, a walk with a tree
+    * filter rewrites them. If the walk retained the commit body, and the
+    * parents are the real ones, the JGit commit itself is kept, so the
+    * message and the identities of this commit will not be parsed again.
+    *
+    * @param rc
+    *           the JGit commit of this commit, with its headers parsed
+    * @param realParents
+    *           true if the parents of the JGit commit are its real parents
+    */
+   void setHeaders(final RevCommit rc, final boolean realParents) {
+
+      if (this.commitTime == UNKNOWN_TIME) {
+         this.commitTime = rc.getCommitTime() * 1000L;
+      }
+      if (realParents && this.parents == null) {
+         final ObjectId[] ids = new ObjectId[rc.getParentCount()];
+         for (int i = 0; i < ids.length; i++) {
+            ids[i] = rc.getParent(i).copy();
+         }
+         this.parents = ids;
+      }
+      if (realParents && this.commit == null && rc.getRawBuffer() != null) {
+         this.commit = rc;
       }
-      this.repo = repository;
    }
 
    /**
@@ -159,7 +361,7 @@ public class VCSCommitImp implements VCSCommit {
     */
    @Override
    public String getID() {
-      return this.commit.getName();
+      return this.id.getName();
    }
 
    /**
@@ -174,7 +376,7 @@ public class VCSCommitImp implements VCSCommit {
    }
 
    /**
-    * Synchronized method to init properly the cached field {@link #author}.
+    * Init the cached field {@link #author}.
     * <p>
     *
     * @return author ident
@@ -183,12 +385,12 @@ public class VCSCommitImp implements VCSCommit {
       // getAuthorIdent() is a very resource expensive method
       // thus we keep author cached so next time it will be needed
       // it will remain within this commit
-      synchronized (author) {
-         if (this.author.cache == null) {
-            this.author.cache = this.commit.getAuthorIdent();
-         }
+      PersonIdent ident = this.author;
+      if (ident == null) {
+         ident = this.getRevCommit().getAuthorIdent();
+         this.author = ident;
       }
-      return this.author.cache;
+      return ident;
    }
 
    /**
@@ -199,7 +401,7 @@ public class VCSCommitImp implements VCSCommit {
     */
    @Override
    public String getMessage() {
-      return this.commit.getFullMessage();
+      return this.getRevCommit().getFullMessage();
    }
 
    /**
@@ -214,7 +416,7 @@ public class VCSCommitImp implements VCSCommit {
    }
 
    /**
-    * Synchronized method to init properly the cached field {@link #committer}.
+    * Init the cached field {@link #committer}.
     * <p>
     *
     * @return author ident
@@ -223,12 +425,12 @@ public class VCSCommitImp implements VCSCommit {
       // getCommitterIdent() is a very resource expensive method
       // thus we keep author cached so next time it will be needed
       // it will remain within this commit
-      synchronized (committer) {
-         if (this.committer.cache == null) {
-            this.committer.cache = this.commit.getCommitterIdent();
-         }
+      PersonIdent ident = this.committer;
+      if (ident == null) {
+         ident = this.getRevCommit().getCommitterIdent();
+         this.committer = ident;
       }
-      return this.committer.cache;
+      return ident;
    }
 
    /**
@@ -236,6 +438,10 @@ public class VCSCommitImp implements VCSCommit {
     */
    @Override
    public Date getCommitDate() {
+      final long time = this.commitTime;
+      if (time != UNKNOWN_TIME) {
+         return new Date(time);
+      }
       return this.getCommiterIdent().getWhen();
    }
 
@@ -366,20 +572,27 @@ public class VCSCommitImp implements VCSCommit {
 
       final VCSChange.Type chType = RevUtils.changeType(entry.getChangeType());
 
+      // Carry the blob ids of the entry, so the files and the edits will not
+      // need to resolve them again
+      final ObjectId oldId = chType.isAdd() ? null : entry.getOldId()
+            .toObjectId();
+      final ObjectId newId = chType.isDelete() ? null : entry.getNewId()
+            .toObjectId();
+
       // if added then there is no need for the old resource
       // so create the old resource only if this is not an addition
       if (!chType.isAdd()) {
-         oldR = new VCSFileImp(oldC, entry.getOldPath());
+         oldR = new VCSFileImp(oldC, entry.getOldPath(), oldId);
       }
 
       // if removed then there is no need for the new resource
       // so creates the new resource only if this is not a deletion
       if (!chType.isDelete()) {
-         newR = new VCSFileImp(newC, entry.getNewPath());
+         newR = new VCSFileImp(newC, entry.getNewPath(), newId);
       }
 
       return new VCSFileDiffImp<VCSFileImp>((VCSFileImp) newR,
-            (VCSFileImp) oldR, chType);
+            (VCSFileImp) oldR, chType, oldId, newId);
    }
 
    /**
@@ -422,11 +635,41 @@ public class VCSCommitImp implements VCSCommit {
 
    /**
     * {@inheritDoc}
+    * <p>
+    * Renames and copies are not detected, they are reported as deletions and
+    * additions. Use
+    * {@link #walkChanges(VCSCommit, ChangeVisitor, RenameDetection)} to detect
+    * them.
     */
    @Override
    public void walkChanges(final VCSCommit commit,
          final ChangeVisitor<VCSChange<?>> visitor)
          throws VCSRepositoryException {
+      this.walkChanges(commit, visitor, null);
+   }
+
+   /**
+    * Walk the changes between this commit and the given one, detecting
+    * renames and copies with the given configuration.
+    * <p>
+    * This is the same as {@link #walkChanges(VCSCommit, ChangeVisitor)}, but
+    * the detection applies only to this walk, so walks with different
+    * configurations may run concurrently on the same repository.
+    *
+    * @param commit
+    *           the commit to compare with this commit, must not be null
+    * @param visitor
+    *           the visitor of the changes, must not be null
+    * @param renames
+    *           the configuration of rename detection, if null renames will
+    *           not be detected
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    * @see RenameDetection
+    */
+   public void walkChanges(final VCSCommit commit,
+         final ChangeVisitor<VCSChange<?>> visitor,
+         final RenameDetection renames) throws VCSRepositoryException {
 
       // The new commit is at position 0 and the old one at position 1
       // if commits is null that means the old and the new are equal so no
@@ -436,7 +679,7 @@ public class VCSCommitImp implements VCSCommit {
       // If commits are equals return nothing
       VCSCommitImp c1 = this;
       VCSCommitImp c2 = (VCSCommitImp) commit;
-      if (AnyObjectId.equals(c1.commit, c2.commit)) {
+      if (AnyObjectId.equals(c1.id, c2.id)) {
          return;
       }
 
@@ -446,7 +689,10 @@ public class VCSCommitImp implements VCSCommit {
       // Use Diff collector to collect diffs
       // Limit the diff only to the specified paths if any
       final DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
-            this.repo, c1.commit, c2.commit);
+            this.repo, c1.getRevCommit(), c2.getRevCommit(), this.reader());
+
+      // Detect renames only if they are requested for this walk
+      diffs.setRenameDetection(renames);
 
       if (resourceFilter != null) {
          OptimizedResourceFilter<VCSResource> of = ResourceFilter.parse(
@@ -467,65 +713,71 @@ public class VCSCommitImp implements VCSCommit {
       // walker)
       VCSFilter<VCSChange<?>> changeFilter = visitor.getFilter();
 
-      if (resourceFilter == null && changeFilter == null) {
-         for (final DiffEntry entry : diffs) {
+      // Entries are produced lazily, so release the walk if the visitor
+      // stops early
+      try {
+         if (resourceFilter == null && changeFilter == null) {
+            for (final DiffEntry entry : diffs) {
 
-            final VCSChange<?> change = createChange(entry, c1, c2);
+               final VCSChange<?> change = createChange(entry, c1, c2);
 
-            if (change != null) {
-               // if the visitor returns false then we must stop the
-               // iteration
-               if (!visitor.visit(change)) {
-                  break;
+               if (change != null) {
+                  // if the visitor returns false then we must stop the
+                  // iteration
+                  if (!visitor.visit(change)) {
+                     break;
+                  }
                }
             }
-         }
-         // This code will run if filter is not null. That means
-         // the provided filter could not be parsed so we should
-         // try to filter results manually
-      } else {
-         for (final DiffEntry entry : diffs) {
-
-            final VCSChange<?> change = createChange(entry, c1, c2);
-
-            if (change != null) {
-
-               boolean include = true;
-               // We must check first the resource filter, if it allows the
-               // current
-               // change's resource
-               if (resourceFilter != null) {
-                  if (change.getType().isAdd()) {
-                     include = resourceFilter.include(change.getNewResource());
-                  } else if (change.getType().isDelete()) {
-                     include = resourceFilter.include(change.getOldResource());
-                  } else {
-                     // WARNING: in case we have a RENAME, or COPY probably the
-                     // filter may allow the old but not new (or otherwise),
-                     // however this code include the resource if the new or old
-                     // are allowed, that means that possibly the visitor could
-                     // get 'wrong' results. Actually we allow this because if
-                     // a filter allows the old but not the new, that means that
-                     // the visitor may need info for the old resource (even
-                     // in cases it is coppied/renamed).
-                     include = resourceFilter.include(change.getNewResource())
-                           || resourceFilter.include(change.getOldResource());
+            // This code will run if filter is not null. That means
+            // the provided filter could not be parsed so we should
+            // try to filter results manually
+         } else {
+            for (final DiffEntry entry : diffs) {
+
+               final VCSChange<?> change = createChange(entry, c1, c2);
+
+               if (change != null) {
+
+                  boolean include = true;
+                  // We must check first the resource filter, if it allows the
+                  // current
+                  // change's resource
+                  if (resourceFilter != null) {
+                     if (change.getType().isAdd()) {
+                        include = resourceFilter.include(change.getNewResource());
+                     } else if (change.getType().isDelete()) {
+                        include = resourceFilter.include(change.getOldResource());
+                     } else {
+                        // WARNING: in case we have a RENAME, or COPY probably the
+                        // filter may allow the old but not new (or otherwise),
+                        // however this code include the resource if the new or old
+                        // are allowed, that means that possibly the visitor could
+                        // get 'wrong' results. Actually we allow this because if
+                        // a filter allows the old but not the new, that means that
+                        // the visitor may need info for the old resource (even
+                        // in cases it is coppied/renamed).
+                        include = resourceFilter.include(change.getNewResource())
+                              || resourceFilter.include(change.getOldResource());
+                     }
                   }
-               }
 
-               if (include && (changeFilter != null)) {
-                  include = changeFilter.include(change);
-               }
+                  if (include && (changeFilter != null)) {
+                     include = changeFilter.include(change);
+                  }
 
-               // if the visitor returns false then we must stop the
-               // iteration
-               if (include) {
-                  if (!visitor.visit(change)) {
-                     break;
+                  // if the visitor returns false then we must stop the
+                  // iteration
+                  if (include) {
+                     if (!visitor.visit(change)) {
+                        break;
+                     }
                   }
                }
             }
          }
+      } finally {
+         diffs.release();
       }
    }
 
@@ -610,9 +862,33 @@ public class VCSCommitImp implements VCSCommit {
    public void walkFileChanges(final VCSCommit commit,
          final ChangeVisitor<VCSFileDiff<?>> visitor)
          throws VCSRepositoryException {
+      this.walkFileChanges(commit, visitor, (RenameDetection) null);
+   }
+
+   /**
+    * Walk the file changes between this commit and the given one, detecting
+    * renames and copies with the given configuration.
+    * <p>
+    * This is the same as {@link #walkFileChanges(VCSCommit, ChangeVisitor)},
+    * but the detection applies only to this walk.
+    *
+    * @param commit
+    *           the commit to compare with this commit, must not be null
+    * @param visitor
+    *           the visitor of the file changes, must not be null
+    * @param renames
+    *           the configuration of rename detection, if null renames will
+    *           not be detected
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    * @see #walkChanges(VCSCommit, ChangeVisitor, RenameDetection)
+    */
+   public void walkFileChanges(final VCSCommit commit,
+         final ChangeVisitor<VCSFileDiff<?>> visitor,
+         final RenameDetection renames) throws VCSRepositoryException {
 
       ArgsCheck.notNull("commit", commit);
-      ArgsCheck.notNull("visitor", commit);
+      ArgsCheck.notNull("visitor", visitor);
       /*
        * We will use walkChanges to collect all changes. This will add an
        * additional computation for each change (visit() will be use for each
@@ -669,7 +945,64 @@ public class VCSCommitImp implements VCSCommit {
       };
 
       // Run walkChanges to collect changes
-      this.walkChanges(commit, walkVisitor);
+      this.walkChanges(commit, walkVisitor, renames);
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @see ParallelDiffVisitor
+    */
+   @Override
+   public void walkFileChanges(final VCSCommit commit,
+         final ExecutorService executor,
+         final ChangeVisitor<VCSFileDiff<?>> visitor)
+         throws VCSRepositoryException {
+      this.walkFileChanges(commit, executor, visitor, null);
+   }
+
+   /**
+    * Walk the file changes between this commit and the given one in parallel,
+    * detecting renames and copies with the given configuration.
+    * <p>
+    * This is the same as
+    * {@link #walkFileChanges(VCSCommit, ExecutorService, ChangeVisitor)}, but
+    * the detection applies only to this walk.
+    *
+    * @param commit
+    *           the commit to compare with this commit, must not be null
+    * @param executor
+    *           the executor to compute the diffs with, must not be null
+    * @param visitor
+    *           the visitor of the file changes, must not be null
+    * @param renames
+    *           the configuration of rename detection, if null renames will
+    *           not be detected
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    * @see ParallelDiffVisitor
+    */
+   public void walkFileChanges(final VCSCommit commit,
+         final ExecutorService executor,
+         final ChangeVisitor<VCSFileDiff<?>> visitor,
+         final RenameDetection renames) throws VCSRepositoryException {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("visitor", visitor);
+      ArgsCheck.notNull("executor", executor);
+
+      final ParallelDiffVisitor parallel = new ParallelDiffVisitor(visitor,
+            executor);
+      boolean walked = false;
+      try {
+         this.walkFileChanges(commit, parallel, renames);
+         walked = true;
+      } finally {
+         if (!walked) {
+            parallel.cancel();
+         }
+      }
+      parallel.finish();
    }
 
    /**
@@ -682,6 +1015,30 @@ public class VCSCommitImp implements VCSCommit {
       return this.getFileChanges(commit, true, (String[]) null);
    }
 
+   /**
+    * {@inheritDoc}
+    * <p>
+    * <b>WARNING:</b>: this method will never consider <code>recursive</code>
+    * argument because Git doesn't keep track of directories.
+    */
+   @Override
+   public List<VCSFileDiff<?>> getFileChanges(final VCSCommit commit,
+         final ExecutorService executor, final boolean recursive,
+         final String... paths) throws VCSRepositoryException {
+
+      ArgsCheck.notNull("commit", commit);
+
+      // The list where we collect all changes
+      final List<VCSFileDiff<?>> changes = new ArrayList<VCSFileDiff<?>>();
+
+      // Run walkFileChanges to collect changes
+      final ChangeVisitor<VCSFileDiff<?>> visitor = fileChangeCollector(
+            changes, paths);
+      this.walkFileChanges(commit, executor, visitor);
+
+      return changes;
+   }
+
    /**
     * {@inheritDoc}
     * <p>
@@ -707,31 +1064,49 @@ public class VCSCommitImp implements VCSCommit {
       // The list where we collect all changes
       final List<VCSFileDiff<?>> changes = new ArrayList<VCSFileDiff<?>>();
 
-      // The visitor to use to collect changes
-      final ChangeVisitor<VCSChange<?>> visitor = new ChangeVisitor<VCSChange<?>>() {
+      // Run walkChanges to collect changes
+      final ChangeVisitor<VCSChange<?>> visitor = fileChangeCollector(changes,
+            paths);
+      this.walkChanges(commit, visitor);
+
+      return changes;
+   }
+
+   /**
+    * Create a visitor that adds each file change it visits to the given list.
+    * <p>
+    * The visitor is used by both {@code getFileChanges} methods, so the
+    * changes are collected and limited to the given paths the same way,
+    * whether they are walked in parallel or not.
+    *
+    * @param changes
+    *           the list to add the file changes to
+    * @param paths
+    *           the paths to limit the changes to, if null or empty all
+    *           changes are collected
+    * @return a visitor that collects file changes
+    */
+   private static <T extends VCSChange<?>> ChangeVisitor<T> fileChangeCollector(
+         final List<VCSFileDiff<?>> changes, final String... paths) {
+
+      return new ChangeVisitor<T>() {
 
-         /**
-          * Get each change and add it to changes list
-          *
-          * @param entity
-          * @return
-          */
          @Override
-         public boolean visit(final VCSChange<?> entity) {
-            if (VCSFileDiffImp.class.isAssignableFrom(entity.getClass())) {
+         public boolean visit(final T entity) {
+            if (entity instanceof VCSFileDiffImp) {
                changes.add((VCSFileDiff<?>) entity);
             }
             return true;
          }
 
          @Override
-         public <F extends VCSFilter<VCSChange<?>>> F getFilter() {
+         public <F extends VCSFilter<T>> F getFilter() {
             return null;
          }
 
          @Override
          public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
-            if (paths == null) {
+            if (paths == null || paths.length == 0) {
                return null;
             }
             ArgsCheck.containsNoNull("paths", (Object[]) paths);
@@ -739,11 +1114,6 @@ public class VCSCommitImp implements VCSCommit {
                   PathFilterGroup.createFromStrings(paths));
          }
       };
-
-      // Run walkChanges to collect changes
-      this.walkChanges(commit, visitor);
-
-      return changes;
    }
 
    /**
@@ -751,77 +1121,126 @@ public class VCSCommitImp implements VCSCommit {
     */
    @Override
    public boolean isMergeCommit() {
-      return this.commit.getParentCount() > 1;
+      final ObjectId[] ids = this.parents;
+      if (ids != null) {
+         return ids.length > 1;
+      }
+      return this.getRevCommit().getParentCount() > 1;
    }
 
    /**
     * {@inheritDoc}
+    * <p>
+    * If this commit comes from a {@link VCSRepositoryImp} the children will be
+    * looked up at repository's children index (see
+    * {@link VCSRepositoryImp#getChildrenIndex()}), otherwise they will be
+    * calculated by walking all the heads this commit is merged into.
     */
    @Override
    public Collection<VCSCommit> getNext() throws VCSRepositoryException {
 
-      synchronized (this.children) {
-         // Check first if children are previously calculated
-         // if so return them, otherwise calculate them
-         if (this.children.cache != null) {
-            return this.children.cache;
+      // Check first if children are previously calculated
+      // if so return them, otherwise calculate them. Two threads
+      // may calculate them at the same time, but the result will be the same
+      List<VCSCommit> next = this.children;
+      if (next == null) {
+         if (this.owner != null) {
+            next = this.getNextFromIndex(this.owner.getChildrenIndex());
+         } else {
+            next = this.getNextByWalking();
          }
+         this.children = next;
+      }
 
-         this.children.cache = new ArrayList<VCSCommit>();
-         RevWalk revWalk = null;
+      // We must ensure no one can modify our cache
+      return new ArrayList<VCSCommit>(next);
+   }
 
-         try {
+   /**
+    * Resolve the children of this commit using the given index.
+    * <p>
+    *
+    * @param index
+    *           the children index of the repository
+    * @return the children of this commit
+    * @throws VCSRepositoryException
+    *            if a child commit can not be parsed
+    */
+   private List<VCSCommit> getNextFromIndex(final CommitChildrenIndex index)
+         throws VCSRepositoryException {
 
-            // Check first if this commit is a head that has no children, if
-            // true then
-            // getMergingHeads will return an empty list
-            final List<RevCommit> heads = this.getMergingHeads();
-            if (heads.isEmpty()) {
-               return new ArrayList<VCSCommit>(this.children.cache);
-            }
+      final List<ObjectId> ids = index.getChildren(this.id);
+      final List<VCSCommit> next = new ArrayList<VCSCommit>(ids.size());
+      for (final ObjectId child : ids) {
+         next.add(of(child, this.repo, this.owner));
+      }
+      return next;
+   }
 
-            // Walker to walk the commits until we find this one
-            revWalk = new RevWalk(this.repo);
-
-            // The current commit that we need to know its children
-            final RevCommit required = revWalk.parseCommit(this.commit);
-
-            // The walking will start from each head we found
-            revWalk.markStart(heads);
-
-            // The sorting here is important
-            // We set sorting topology so the children will be parsed first
-            // And the commit walking descending so the newest first
-            revWalk.sort(RevSort.TOPO, true);
-            revWalk.sort(RevSort.COMMIT_TIME_DESC, true);
-
-            // Start from the current commit, the first one probably will be a
-            // head
-            // until the current commit is equal to this commit.
-            // For each commit that we parse check if it has parent this commit
-            RevCommit current = null;
-            while (((current = revWalk.next()) != null)
-                  && !AnyObjectId.equals(current, required)) {
-
-               // If required (this commit) is parent of current
-               // we found a child
-               if (RevUtils.isParent(required, current)) {
-                  this.children.cache.add(new VCSCommitImp(current, this.repo));
-               }
-            }
+   /**
+    * Find the children of this commit by walking all the heads this commit is
+    * merged into, until this commit is reached.
+    * <p>
+    *
+    * @return the children of this commit
+    * @throws VCSRepositoryException
+    *            if a problem occurs while walking the repository
+    */
+   private List<VCSCommit> getNextByWalking() throws VCSRepositoryException {
 
-            // We must ensure no one can modify our cache
-            return new ArrayList<VCSCommit>(this.children.cache);
+      final List<VCSCommit> next = new ArrayList<VCSCommit>();
+      RevWalk revWalk = null;
 
-         } catch (final IOException e) {
-            throw new VCSRepositoryException(e);
-         } catch (final GitAPIException e) {
-            throw new VCSRepositoryException(e);
-         } finally {
-            if (revWalk != null) {
-               revWalk.release();
+      try {
+
+         // Check first if this commit is a head that has no children, if
+         // true then
+         // getMergingHeads will return an empty list
+         final List<RevCommit> heads = this.getMergingHeads();
+         if (heads.isEmpty()) {
+            return next;
+         }
+
+         // Walker to walk the commits until we find this one
+         revWalk = ReaderPool.revWalk(this.pool(), this.repo);
+
+         // The current commit that we need to know its children
+         final RevCommit required = revWalk.parseCommit(this.id);
+
+         // The walking will start from each head we found
+         revWalk.markStart(heads);
+
+         // The sorting here is important
+         // We set sorting topology so the children will be parsed first
+         // And the commit walking descending so the newest first
+         revWalk.sort(RevSort.TOPO, true);
+         revWalk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+         // Start from the current commit, the first one probably will be a
+         // head
+         // until the current commit is equal to this commit.
+         // For each commit that we parse check if it has parent this commit
+         RevCommit current = null;
+         while (((current = revWalk.next()) != null)
+               && !AnyObjectId.equals(current, required)) {
+
+            // If required (this commit) is parent of current
+            // we found a child
+            if (RevUtils.isParent(required, current)) {
+               next.add(of(current, this.repo, this.owner));
             }
          }
+
+         return next;
+
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } catch (final GitAPIException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         if (revWalk != null) {
+            revWalk.release();
+         }
       }
    }
 
@@ -838,17 +1257,16 @@ public class VCSCommitImp implements VCSCommit {
    private List<RevCommit> getMergingHeads() throws GitAPIException,
          IOException, VCSRepositoryException {
 
-      final List<Ref> refs = new Git(this.repo).branchList()
-            .setListMode(ListMode.ALL).call();
-      final RevWalk walk = new RevWalk(this.repo);
+      final List<ObjectId> ids = this.getBranchHeads();
+      final RevWalk walk = ReaderPool.revWalk(this.pool(), this.repo);
 
       try {
-         final RevCommit base = walk.parseCommit(this.commit);
+         final RevCommit base = walk.parseCommit(this.id);
          final List<RevCommit> heads = new ArrayList<RevCommit>();
 
-         for (final Ref ref : refs) {
+         for (final ObjectId id : ids) {
 
-            final RevCommit head = walk.parseCommit(ref.getObjectId());
+            final RevCommit head = walk.parseCommit(id);
 
             // Case when this commit is head
             if (AnyObjectId.equals(head, base)) {
@@ -857,7 +1275,8 @@ public class VCSCommitImp implements VCSCommit {
 
             // If this commit is newer then the current head
             // do nothing else if is ancestor of head add it to list
-            if (RevUtils.isAncestor(base, head, this.repo)) {
+            if (this.owner != null ? this.owner.isAncestor(base, head)
+                  : RevUtils.isAncestor(base, head, this.repo)) {
                heads.add(head);
             }
          }
@@ -870,22 +1289,54 @@ public class VCSCommitImp implements VCSCommit {
    }
 
    /**
-    * {@inheritDoc}
+    * Get the head commit ids of all branches of the repository.
+    * <p>
+    * The heads are taken from the reference snapshot of the repository if it
+    * is opened by {@link VCSRepositoryImp}, otherwise the branches are listed.
     */
-   @Override
-   public Collection<VCSCommit> getPrevious() throws VCSRepositoryException {
+   private List<ObjectId> getBranchHeads() throws GitAPIException,
+         VCSRepositoryException {
 
-      final List<VCSCommit> parents = new ArrayList<VCSCommit>();
+      final List<ObjectId> ids = new ArrayList<ObjectId>();
+
+      if (this.owner != null) {
+         final RefSnapshot snapshot = this.owner.getRefSnapshot();
+         for (final Ref ref : snapshot.getBranches()) {
+            final ObjectId id = snapshot.getCommitId(ref.getName());
+            if (id != null) {
+               ids.add(id);
+            }
+         }
+      } else {
+         for (final Ref ref : new Git(this.repo).branchList()
+               .setListMode(ListMode.ALL).call()) {
+            ids.add(ref.getObjectId());
+         }
+      }
+      return ids;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Collection<VCSCommit> getPrevious() throws VCSRepositoryException {
+
+      final List<VCSCommit> parents = new ArrayList<VCSCommit>();
+
+      final ObjectId[] ids = this.parents;
+      if (ids != null) {
+         for (final ObjectId p : ids) {
+            parents.add(of(p, this.repo, this.owner));
+         }
+         return parents;
+      }
 
       try {
-         for (final RevCommit p : RevUtils.parentOf(this.commit, this.repo)) {
-            parents.add(new VCSCommitImp(p, this.repo));
+         for (final RevCommit p : this.getRevCommit().getParents()) {
+            parents.add(of(p, this.repo, this.owner));
          }
-      } catch (final MissingObjectException e) {
-         throw new VCSRepositoryException(e);
-      } catch (final IncorrectObjectTypeException e) {
-         throw new VCSRepositoryException(e);
-      } catch (final IOException e) {
+      } catch (final IllegalStateException e) {
          throw new VCSRepositoryException(e);
       }
       return parents;
@@ -898,34 +1349,34 @@ public class VCSCommitImp implements VCSCommit {
    public VCSResource getResource(final String path)
          throws VCSRepositoryException, VCSResourceNotFoundException {
 
-      // The walk will be returned only if the path is available and is a
-      // known
-      // path (file or dir) otherwise an exception will be thrown. If
+      // The resource will be returned only if the path is available and is
+      // a known path (file or dir) otherwise an exception will be thrown. If
       // path is not correct an IllegalArgumentException will be thrown,
-      // if its not available or is unknown a VCSResourceNotFoundException will
-      // be
-      // thrown
-      // and if there is a problem with the repository a
+      // if its not available or is unknown a VCSResourceNotFoundException
+      // will be thrown and if there is a problem with the repository a
       // VCSRepositoryException
       ArgsCheck.notNull("path", path);
 
-      final TreeWalk walk = TreeUtils.getTreeWalkForPath(this.commit,
-            this.repo, path);
+      final TreeManifestCache.Entry entry;
       try {
-         // Construct the path accordingly
-         final VCSResource.Type type = RevUtils.resourceType(walk
-               .getFileMode(0));
+         entry = TreeUtils.findEntry(this.getRevCommit(), this.repo,
+               TreeUtils.correctPath(path), this.manifests());
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      }
+
+      if (entry != null) {
+         final VCSResource.Type type = RevUtils.resourceType(entry
+               .getFileMode());
 
          if (type.equals(VCSResource.Type.FILE)) {
 
-            return new VCSFileImp(this, path);
+            return new VCSFileImp(this, path, entry.getObjectId());
 
          } else if (type.equals(VCSResource.Type.DIR)) {
 
             return new VCSDirectoryImp(this, path);
          }
-      } finally {
-         walk.release();
       }
       throw new VCSResourceNotFoundException("uknown path " + path);
    }
@@ -935,22 +1386,12 @@ public class VCSCommitImp implements VCSCommit {
     */
    @Override
    public boolean isResourceAvailable(final String path) {
-      TreeWalk walk = null;
       try {
-         // We just need to create a walker, with recursive true and check if
-         // the walker gives as
-         // any entry, because each entry will be a file then we are sure our
-         // path is a prefix of
-         // given entry
-         walk = TreeUtils.createTreeWalk(this.repo, this.commit, true, path);
-
-         return walk.next();
-
+         // Each entry of a tree is a file, or a non empty directory,
+         // so if the path has an entry the resource is available
+         return TreeUtils.existPath(this.getRevCommit(), this.repo, path,
+               this.manifests());
       } catch (final IOException e) {
-      } finally {
-         if (walk != null) {
-            walk.release();
-         }
       }
       return false;
    }
@@ -970,8 +1411,8 @@ public class VCSCommitImp implements VCSCommit {
 
       TreeWalk walker = null;
       try {
-         walker = TreeUtils.createTreeWalk(this.repo, this.commit,
-               !visitor.includeDirs(), (String[]) null);
+         walker = TreeUtils.createTreeWalk(this.pool(), this.repo,
+               this.getRevCommit(), !visitor.includeDirs(), (String[]) null);
 
          if (filter != null) {
             OptimizedResourceFilter<VCSResource> of = ResourceFilter.parse(
@@ -1124,14 +1565,48 @@ public class VCSCommitImp implements VCSCommit {
 
    /**
     * {@inheritDoc}
+    * <p>
+    * The checkout is not recorded, nothing is written to the repository.
     */
    @Override
    public void checkout(final String path, final String... paths)
          throws VCSRepositoryException {
+      this.checkout(path, false, null, paths);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The previous checkout of the directory is found in the
+    * {@link CheckoutIndex} of the repository, together with the size and
+    * modification time of each file it wrote. Files that were changed since
+    * are written again, and files that were added by others are deleted, so
+    * the directory contains only the files of this commit. If the checkout
+    * fails the files of the directory are left as they are, and the next
+    * checkout of the directory will write all files.
+    */
+   @Override
+   public void checkout(final String path, final ExecutorService executor,
+         final String... paths) throws VCSRepositoryException {
+      this.checkout(path, true, executor, paths);
+   }
+
+   /**
+    * Check out the files of this commit into the given directory.
+    * <p>
+    *
+    * @param incremental
+    *           if true and the directory contains the checkout of another
+    *           commit, only the files that differ will be written
+    * @param executor
+    *           to write the files, may be null
+    */
+   private void checkout(final String path, final boolean incremental,
+         final ExecutorService executor, final String... paths)
+         throws VCSRepositoryException {
 
       ArgsCheck.notNull("path", path);
 
-      TreeWalk walker = null;
       final File dir = new File(path);
 
       // Check if the current path exists and is not directory
@@ -1140,80 +1615,233 @@ public class VCSCommitImp implements VCSCommit {
                + dir.getAbsolutePath());
       }
 
-      // If the directory exists try to clean it,
-      // if not try to create it
+      // Only incremental checkouts are recorded
+      final CheckoutIndex index = incremental && this.owner != null ? this
+            .owner.getCheckoutIndex() : null;
+
       try {
-         if (dir.exists()) {
-            FileUtils.cleanDirectory(dir);
+         // The commit that is checked out into the directory
+         CheckoutIndex.Checkout recorded = null;
+         RevCommit previous = null;
+         if (index != null && dir.isDirectory()) {
+            recorded = index.get(dir, paths);
+            if (recorded != null) {
+               previous = this.resolveCheckout(recorded.getCommit());
+            }
+         }
+
+         // Until the checkout is finished the directory is in an unknown
+         // state
+         if (index != null) {
+            index.remove(dir);
+         }
+
+         // The blob to write to each file
+         final Map<File, ObjectId> blobs = new LinkedHashMap<File, ObjectId>();
+         if (previous != null) {
+            this.collectCheckoutChanges(previous, dir, blobs, paths);
+            this.repairCheckout(recorded, dir, blobs);
          } else {
-            FileUtils.forceMkdir(dir);
+            // If the directory exists try to clean it,
+            // if not try to create it
+            if (dir.exists()) {
+               FileUtils.cleanDirectory(dir);
+            } else {
+               FileUtils.forceMkdir(dir);
+            }
+            this.collectCheckoutFiles(dir, blobs, paths);
+         }
+
+         BlobWriter.writeAll(this.repo, this.pool(), blobs, executor);
+
+         if (index != null) {
+            index.put(dir, this.id, paths);
+         }
+
+      } catch (final Exception e) {
+         // The record of an incremental checkout is already removed, so the
+         // next checkout will write all files, and the files are left as
+         // they are
+         if (index == null && dir.isDirectory()) {
+            try {
+               FileUtils.cleanDirectory(dir);
+            } catch (final IOException e1) {
+            }
+         }
+         if (e instanceof VCSRepositoryException) {
+            throw (VCSRepositoryException) e;
          }
-      } catch (final IOException e) {
          throw new VCSRepositoryException(e);
       }
+   }
 
-      /*
-       * Here will walk the tree for the given commit. The tree walking will be
-       * recursive that is only the files will be written to disk, all empty
-       * directories will be ignored.
-       */
+   /**
+    * Parse the commit that was checked out into a directory.
+    * <p>
+    *
+    * @return the commit, or null if there is not any, or it is not in
+    *         repository
+    */
+   private RevCommit resolveCheckout(final ObjectId previous)
+         throws IOException {
+
+      if (previous == null) {
+         return null;
+      }
+      final RevWalk walk = ReaderPool.revWalk(this.pool(), this.repo);
       try {
-         walker = TreeUtils.createTreeWalk(this.repo, this.commit, true, paths);
+         return walk.parseCommit(previous);
+      } catch (final MissingObjectException e) {
+         return null;
+      } catch (final IncorrectObjectTypeException e) {
+         return null;
+      } finally {
+         walk.release();
+      }
+   }
 
+   /**
+    * Collect the files of this commit, under the given paths, that must be
+    * written to the directory.
+    * <p>
+    * The tree walk is recursive that is only the files will be written to
+    * disk, all empty directories will be ignored.
+    */
+   private void collectCheckoutFiles(final File dir,
+         final Map<File, ObjectId> blobs, final String... paths)
+         throws IOException {
+
+      final TreeWalk walker = TreeUtils.createTreeWalk(this.pool(),
+            this.repo, this.getRevCommit(), true, paths);
+      try {
          while (walker.next()) {
 
             // A check to be sure that the current entry is a regular file
             final FileMode mode = walker.getFileMode(0);
             if (RevUtils.isFileMode(mode)) {
 
-               // Get the path for the current entry
-               final String filePath = walker.getPathString();
+               final ObjectId objectId = walker.getObjectId(0);
 
-               // Create the file object for the current entry
-               final File file = new File(dir, filePath);
-
-               // We have to check if the containing directory of the
-               // current entry
-               // doesn't exists then create it
-               if (!file.getParentFile().exists()) {
-                  FileUtils.forceMkdir(file.getParentFile());
+               // If this is a zero id (usually denotes null object id)
+               // then do nothing
+               if (objectId.equals(ObjectId.zeroId())) {
+                  continue;
                }
+               blobs.put(new File(dir, walker.getPathString()), objectId);
+            }
+         }
+      } finally {
+         walker.release();
+      }
+   }
 
-               // Open the stream to write contents to
-               final FileOutputStream target = new FileOutputStream(file);
+   /**
+    * Delete the files of the directory that were deleted since the previous
+    * checkout, and collect the files that were added or modified.
+    * <p>
+    */
+   private void collectCheckoutChanges(final RevCommit previous,
+         final File dir, final Map<File, ObjectId> blobs,
+         final String... paths) throws IOException {
 
-               try {
-                  // get the first object of this walker within tree
-                  final ObjectId objectId = walker.getObjectId(0);
+      if (AnyObjectId.equals(previous, this.id)) {
+         return;
+      }
 
-                  // If this is a zero id (usually denotes null object id)
-                  // then do nothing
-                  if (objectId.equals(ObjectId.zeroId())) {
-                     continue;
-                  }
+      final DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
+            this.repo, previous, this.getRevCommit(), this.reader());
+      if (paths != null && paths.length > 0) {
+         ArgsCheck.containsNoNull("paths", (Object[]) paths);
+         diffs.setPathFilters(PathFilterGroup.createFromStrings(paths));
+      }
 
-                  // Get the loader
-                  final ObjectLoader loader = this.repo.open(objectId);
+      // Delete the files first, a deleted file may be the directory of an
+      // added one
+      try {
+         for (final DiffEntry entry : diffs) {
 
-                  // use the loader to copy the contents to the stream
-                  loader.copyTo(target);
-               } finally {
-                  target.flush();
-                  target.close();
+            final ChangeType type = entry.getChangeType();
+            if (type != ChangeType.ADD
+                  && RevUtils.isFileMode(entry.getOldMode())) {
+               final File file = new File(dir, entry.getOldPath());
+               if (type == ChangeType.DELETE
+                     || !RevUtils.isFileMode(entry.getNewMode())) {
+                  deleteCheckoutFile(dir, file);
                }
             }
-         }
 
-      } catch (final Exception e) {
-         try {
-            FileUtils.cleanDirectory(dir);
-         } catch (final IOException e1) {
+            if (type != ChangeType.DELETE
+                  && RevUtils.isFileMode(entry.getNewMode())) {
+               blobs.put(new File(dir, entry.getNewPath()), entry.getNewId()
+                     .toObjectId());
+            }
          }
-         throw new VCSRepositoryException(e);
+      } catch (final IllegalStateException e) {
+         if (e.getCause() instanceof VCSRepositoryException
+               && e.getCause().getCause() instanceof IOException) {
+            throw (IOException) e.getCause().getCause();
+         }
+         throw e;
       } finally {
-         if (walker != null) {
-            walker.release();
+         diffs.release();
+      }
+   }
+
+   /**
+    * Find the files of the directory that were changed or added by others
+    * since it was recorded. The changed files that this commit tracks are
+    * collected to be written again, all others are deleted.
+    * <p>
+    */
+   private void repairCheckout(final CheckoutIndex.Checkout recorded,
+         final File dir, final Map<File, ObjectId> blobs) throws IOException {
+
+      final List<String> changed = new ArrayList<String>();
+      final List<String> untracked = new ArrayList<String>();
+      recorded.compare(dir, changed, untracked);
+
+      for (final String path : untracked) {
+         final File file = new File(dir, path);
+         if (!blobs.containsKey(file)) {
+            deleteCheckoutFile(dir, file);
+         }
+      }
+
+      final RevCommit commit = this.getRevCommit();
+      for (final String path : changed) {
+         final File file = new File(dir, path);
+         if (blobs.containsKey(file)) {
+            continue;
+         }
+         final TreeManifestCache.Entry entry = TreeUtils.findEntry(commit,
+               this.repo, path, this.manifests());
+         if (entry != null && RevUtils.isFileMode(entry.getFileMode())) {
+            blobs.put(file, entry.getObjectId());
+         } else {
+            deleteCheckoutFile(dir, file);
+         }
+      }
+   }
+
+   /**
+    * Delete the given file of the checkout directory, and its parent
+    * directories that are left empty.
+    * <p>
+    */
+   private static void deleteCheckoutFile(final File dir, final File file)
+         throws IOException {
+
+      if (file.exists() && !file.delete()) {
+         throw new IOException("can not delete " + file.getAbsolutePath());
+      }
+
+      File parent = file.getParentFile();
+      while (parent != null && !parent.equals(dir)) {
+         final String[] children = parent.list();
+         if (children == null || children.length > 0 || !parent.delete()) {
+            break;
          }
+         parent = parent.getParentFile();
       }
    }
 
@@ -1225,19 +1853,47 @@ public class VCSCommitImp implements VCSCommit {
     * filter will be discarded because it requires a lot of resource computation
     * to check for each commit its tree. Usually users should use simple path
     * filters to check if the given paths are modified in the specified commit.
+    * For a path filter (or a path prefix filter) the changed-path filters of
+    * the repository will be used, so most commits that did not change the
+    * paths will be skipped without comparing their trees.
     *
     */
    @Override
    public void walkCommits(final CommitVisitor visitor, boolean descending)
          throws VCSRepositoryException {
 
-      walkAll(repo, new HashSet<VCSCommit>(Arrays.asList(this)), visitor,
-            descending);
+      walkAll(repo, this.owner, new HashSet<VCSCommit>(Arrays.asList(this)),
+            visitor, descending);
    }
 
    public static void walkAll(Repository repo, Set<VCSCommit> commits,
          CommitVisitor visitor, boolean descending)
          throws VCSRepositoryException {
+      walkAll(repo, null, commits, visitor, descending);
+   }
+
+   /**
+    * Walk the given commits and all their ancestors, using the indexes and
+    * caches of the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the JGit repository of the commits, must not be null
+    * @param owner
+    *           the repository of the commits, may be null
+    * @param commits
+    *           the commits to start from, must not be null
+    * @param visitor
+    *           to visit each commit, must not be null
+    * @param descending
+    *           if true the commits will be visited from new to old
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    * @see #walkAll(Repository, Set, CommitVisitor, boolean)
+    */
+   public static void walkAll(Repository repo, VCSRepositoryImp owner,
+         Set<VCSCommit> commits, CommitVisitor visitor, boolean descending)
+         throws VCSRepositoryException {
 
       ArgsCheck.notNull("visitor", visitor);
       ArgsCheck.notNull("repo", repo);
@@ -1247,27 +1903,13 @@ public class VCSCommitImp implements VCSCommit {
       // For each commit we have to determine if it is reachable from
       // this commit
       // Start with a RevWalk
-      final RevWalk walk = new RevWalk(repo);
+      final RevWalk walk = ReaderPool.revWalk(owner == null ? null : owner
+            .getReaderPool(), repo);
 
       try {
 
-         Set<RevCommit> revs = new LinkedHashSet<RevCommit>();
-         for (VCSCommit c : commits) {
-
-            if (!(c instanceof VCSCommit)) {
-               throw new IllegalArgumentException(
-                     "provided commit is uknown, required type is "
-                           + VCSCommitImp.class);
-            }
-            RevCommit rc = ((VCSCommitImp) c).commit;
-            // Resolve this commit
-            final ObjectId oid = rc.getId();
-            RevCommit bHEAD = walk.parseCommit(oid);
-            revs.add(bHEAD);
-         }
-
          // Start the walk from the heads
-         walk.markStart(revs);
+         markStart(walk, commits);
 
          // Trying to set tree filters if possible
          // First we must check if we can parse this filter and
@@ -1276,7 +1918,18 @@ public class VCSCommitImp implements VCSCommit {
          // but applied directly to walker
          VCSResourceFilter<VCSResource> resourceFilter = visitor
                .getResourceFilter();
-         if (resourceFilter != null) {
+         RevFilter pathFilter = null;
+         if (owner != null
+               && (resourceFilter instanceof PathFilter
+                     || resourceFilter instanceof PathPrefixFilter)) {
+            // A plain path filter, so the changed-path filters of the
+            // repository can skip most commits without comparing their trees
+            Collection<String> paths = ((AbstractPathFilter<?>) resourceFilter)
+                  .getPaths();
+            pathFilter = new ChangedPathRevFilter(walk,
+                  owner.getChangedPathIndex(),
+                  paths.toArray(new String[paths.size()]));
+         } else if (resourceFilter != null) {
             OptimizedResourceFilter<VCSResource> of = ResourceFilter.parse(
                   resourceFilter, null);
             if (of != null) {
@@ -1288,36 +1941,30 @@ public class VCSCommitImp implements VCSCommit {
             }
          }
 
-         // We check if we can parse and convert the provided commit filter
-         // to a JGit commit filter, if so we apply this filter directly to
-         // walker, and set the provided filter to null so it will not be used,
-         // otherwise use manually the provided filter.
-         VCSCommitFilter commitFilter = visitor.getFilter();
-         if (commitFilter != null) {
-            OptimizedCommitFilter of = CommitFilter.parse(commitFilter, null);
-            if (of != null) {
-               walk.setRevFilter(of.getCurrent());
-               commitFilter = null;
-            }
+         VCSCommitFilter commitFilter = setFilter(walk, visitor.getFilter());
+         if (pathFilter != null) {
+            // The paths are checked first, the same as a tree filter
+            walk.setRevFilter(AndRevFilter.create(pathFilter,
+                  walk.getRevFilter()));
          }
-
-         // Set the order of commits
-         if (descending) {
-            walk.sort(RevSort.COMMIT_TIME_DESC, true);
-            walk.sort(RevSort.TOPO, true);
-            walk.sort(RevSort.REVERSE, false);
-         } else {
-            walk.sort(RevSort.REVERSE, true);
-            walk.sort(RevSort.TOPO, false);
-            walk.sort(RevSort.COMMIT_TIME_DESC, false);
+         sort(walk, descending);
+
+         // A visitor that needs only the headers of commits doesn't need
+         // the walk to keep their bodies. The body is still required if the
+         // filter of the walk reads it (i.e. a message filter)
+         if (visitor instanceof HeaderCommitVisitor
+               && !walk.getRevFilter().requiresCommitBody()) {
+            walk.setRetainBody(false);
          }
+         final boolean realParents = walk.getTreeFilter() == TreeFilter.ALL;
 
          // All commits that are ancestors of the current HEAD
          // will be accessible with walk.next(), so collect the commits until
          // there is no other commit to walk
          RevCommit current = null;
          while ((current = walk.next()) != null) {
-            VCSCommit commit = new VCSCommitImp(current, repo);
+            VCSCommitImp commit = of(current, repo, owner);
+            commit.setHeaders(current, realParents);
             if (commitFilter != null) {
                if (commitFilter.include(commit)) {
                   if (!visitor.visit(commit)) {
@@ -1336,20 +1983,349 @@ public class VCSCommitImp implements VCSCommit {
       }
    }
 
+   /**
+    * Walk all commits reachable from the given heads once, and pass each one
+    * to the visitor together with the heads it is reachable from.
+    * <p>
+    * The commits are walked in topological order, so all children of a commit
+    * are visited before it. This allows the membership to be propagated
+    * through the walk: the heads of a commit are the union of the heads of its
+    * children, so when a commit is visited its heads are added to its parents.
+    * Each commit keeps its bit set only until it is visited, and the walk
+    * doesn't keep the commit bodies.
+    *
+    * @param repo
+    *           the JGit repository of the commits, must not be null
+    * @param owner
+    *           the repository of the commits, may be null
+    * @param heads
+    *           the commits to start from, must not be null
+    * @param visitor
+    *           to visit each commit, must not be null
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    * @see gr.uom.se.vcs.VCSRepository#walkAll(List, MembershipVisitor)
+    */
+   public static void walkAll(Repository repo, VCSRepositoryImp owner,
+         List<? extends VCSCommit> heads, MembershipVisitor visitor)
+         throws VCSRepositoryException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.containsNoNull("heads", heads);
+      ArgsCheck.notNull("visitor", visitor);
+
+      final ReaderPool pool = owner == null ? null : owner.getReaderPool();
+      final ObjectReader reader = ReaderPool.reader(pool, repo);
+      final MembershipWalk walk = new MembershipWalk(reader);
+      walk.setRetainBody(false);
+      walk.sort(RevSort.TOPO, true);
+      walk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+      try {
+         for (int i = 0; i < heads.size(); i++) {
+            final VCSCommit c = heads.get(i);
+            if (!(c instanceof VCSCommitImp)) {
+               throw new IllegalArgumentException(
+                     "provided commit is uknown, required type is "
+                           + VCSCommitImp.class);
+            }
+            final MembershipCommit head = (MembershipCommit) walk
+                  .parseCommit(((VCSCommitImp) c).id);
+            if (head.heads == null) {
+               head.heads = new BitSet(heads.size());
+            }
+            head.heads.set(i);
+            walk.markStart(head);
+         }
+
+         RevCommit current = null;
+         while ((current = walk.next()) != null) {
+
+            final MembershipCommit mc = (MembershipCommit) current;
+            final BitSet bits = mc.heads;
+            // The bit set is passed to the visitor, so this commit
+            // must not refer to it anymore
+            mc.heads = null;
+
+            for (final RevCommit p : mc.getParents()) {
+               final MembershipCommit parent = (MembershipCommit) p;
+               if (parent.heads == null) {
+                  parent.heads = (BitSet) bits.clone();
+               } else {
+                  parent.heads.or(bits);
+               }
+            }
+
+            final VCSCommitImp commit = of(current, repo, owner);
+            commit.setHeaders(current, true);
+            if (!visitor.visit(commit, bits)) {
+               return;
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.dispose();
+         ReaderPool.release(pool, reader);
+      }
+   }
+
+   /**
+    * A JGit commit that keeps the heads it is reachable from, while it is
+    * walked by a {@link MembershipWalk}.
+    * <p>
+    */
+   private static class MembershipCommit extends RevCommit {
+
+      /**
+       * The heads this commit is reachable from, null if no child of this
+       * commit was visited yet.
+       * <p>
+       */
+      BitSet heads;
+
+      MembershipCommit(final AnyObjectId id) {
+         super(id);
+      }
+   }
+
+   /**
+    * A revision walk that creates {@link MembershipCommit}s.
+    * <p>
+    */
+   private static class MembershipWalk extends RevWalk {
+
+      MembershipWalk(final ObjectReader reader) {
+         super(reader);
+      }
+
+      @Override
+      protected RevCommit createCommit(final AnyObjectId id) {
+         return new MembershipCommit(id);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public CommitIterator iterateCommits(VCSCommitFilter filter,
+         boolean descending) throws VCSRepositoryException {
+      return iterateAll(repo, this.owner,
+            new HashSet<VCSCommit>(Arrays.asList(this)), filter, descending);
+   }
+
+   /**
+    * Get a lazy iterator of the given commits and all their ancestors.
+    * <p>
+    * The iterator returns the commits in the same order as
+    * {@link #walkAll(Repository, VCSRepositoryImp, Set, CommitVisitor, boolean)}
+    * visits them.
+    * The iterator walks with its own reader, not the pooled reader of the
+    * calling thread, so it can be consumed by any thread. The reader is
+    * released when the iterator is exhausted or closed.
+    *
+    * @param repo
+    *           the JGit repository of the commits, must not be null
+    * @param owner
+    *           the repository of the commits, may be null
+    * @param commits
+    *           the commits to start from, must not be null
+    * @param filter
+    *           only the commits allowed by this filter will be returned, may
+    *           be null
+    * @param descending
+    *           if true the commits will be returned from new to old
+    * @return an iterator of the commits
+    * @throws VCSRepositoryException
+    *            if the commits can not be parsed
+    */
+   public static CommitIterator iterateAll(Repository repo,
+         VCSRepositoryImp owner, Set<VCSCommit> commits,
+         VCSCommitFilter filter, boolean descending)
+         throws VCSRepositoryException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.containsNoNull("commits", commits);
+
+      final RevWalk walk = new RevWalk(repo);
+      boolean created = false;
+      try {
+         markStart(walk, commits);
+         final VCSCommitFilter commitFilter = setFilter(walk, filter);
+         sort(walk, descending);
+         final CommitIterator iterator = new RevWalkCommitIterator(repo,
+               owner, walk, commitFilter);
+         created = true;
+         return iterator;
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         if (!created) {
+            walk.release();
+         }
+      }
+   }
+
+   /**
+    * Resolve the given commits and mark them as the starting points of the
+    * walk.
+    * <p>
+    */
+   private static void markStart(RevWalk walk, Set<VCSCommit> commits)
+         throws IOException {
+
+      Set<RevCommit> revs = new LinkedHashSet<RevCommit>();
+      for (VCSCommit c : commits) {
+
+         if (!(c instanceof VCSCommitImp)) {
+            throw new IllegalArgumentException(
+                  "provided commit is uknown, required type is "
+                        + VCSCommitImp.class);
+         }
+         // Resolve this commit
+         final ObjectId oid = ((VCSCommitImp) c).id;
+         RevCommit bHEAD = walk.parseCommit(oid);
+         revs.add(bHEAD);
+      }
+      walk.markStart(revs);
+   }
+
+   /**
+    * Set the given commit filter to the walk if it can be parsed.
+    * <p>
+    * We check if we can parse and convert the provided commit filter to a
+    * JGit commit filter, if so we apply this filter directly to walker, and
+    * return null so it will not be used, otherwise the provided filter is
+    * returned and it should be used manually.
+    */
+   private static VCSCommitFilter setFilter(RevWalk walk,
+         VCSCommitFilter commitFilter) {
+      if (commitFilter != null) {
+         OptimizedCommitFilter of = CommitFilter.parse(commitFilter, null);
+         if (of != null) {
+            walk.setRevFilter(of.getCurrent());
+            return null;
+         }
+      }
+      return commitFilter;
+   }
+
+   /**
+    * Set the order of commits.
+    * <p>
+    */
+   private static void sort(RevWalk walk, boolean descending) {
+      if (descending) {
+         walk.sort(RevSort.COMMIT_TIME_DESC, true);
+         walk.sort(RevSort.TOPO, true);
+         walk.sort(RevSort.REVERSE, false);
+      } else {
+         walk.sort(RevSort.REVERSE, true);
+         walk.sort(RevSort.TOPO, false);
+         walk.sort(RevSort.COMMIT_TIME_DESC, false);
+      }
+   }
+
+   /**
+    * A commit iterator that pulls the commits from a revision walk.
+    * <p>
+    * The walk is released when there are no more commits, or when the
+    * iterator is closed.
+    */
+   private static class RevWalkCommitIterator implements CommitIterator {
+
+      private final Repository repo;
+
+      private final VCSRepositoryImp owner;
+
+      private final VCSCommitFilter filter;
+
+      private RevWalk walk;
+
+      private VCSCommit next;
+
+      RevWalkCommitIterator(Repository repo, VCSRepositoryImp owner,
+            RevWalk walk, VCSCommitFilter filter) {
+         this.repo = repo;
+         this.owner = owner;
+         this.walk = walk;
+         this.filter = filter;
+      }
+
+      @Override
+      public boolean hasNext() {
+         if (next != null) {
+            return true;
+         }
+         if (walk == null) {
+            return false;
+         }
+         try {
+            RevCommit current;
+            while ((current = walk.next()) != null) {
+               VCSCommitImp commit = of(current, repo, owner);
+               commit.setHeaders(current, true);
+               if (filter == null || filter.include(commit)) {
+                  next = commit;
+                  return true;
+               }
+            }
+         } catch (final IOException e) {
+            close();
+            throw new IllegalStateException(new VCSRepositoryException(e));
+         }
+         close();
+         return false;
+      }
+
+      @Override
+      public VCSCommit next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         VCSCommit commit = next;
+         next = null;
+         return commit;
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void close() {
+         if (walk != null) {
+            walk.release();
+            walk = null;
+         }
+      }
+   }
+
    @Override
    public String toString() {
-      return this.commit.getName();
+      return this.id.getName();
    }
 
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The hash code is computed only from the id of this commit.
+    */
    @Override
    public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((commit == null) ? 0 : commit.hashCode());
-      result = prime * result + ((repo == null) ? 0 : repo.hashCode());
-      return result;
+      return this.id.hashCode();
    }
 
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Two commits are equal if they have the same id and they come from the
+    * same repository. Commits obtained by
+    * {@link #of(AnyObjectId, VCSRepositoryImp)} are interned, so they are
+    * usually the same instance.
+    */
    @Override
    public boolean equals(Object obj) {
       if (this == obj) {
@@ -1362,20 +2338,10 @@ public class VCSCommitImp implements VCSCommit {
          return false;
       }
       VCSCommitImp other = (VCSCommitImp) obj;
-      if (commit == null) {
-         if (other.commit != null) {
-            return false;
-         }
-      } else if (!commit.equals(other.commit)) {
-         return false;
-      }
-      if (repo == null) {
-         if (other.repo != null) {
-            return false;
-         }
-      } else if (!repo.getDirectory().equals(other.repo.getDirectory())) {
+      if (!AnyObjectId.equals(this.id, other.id)) {
          return false;
       }
-      return true;
+      return this.repo == other.repo
+            || this.repo.getDirectory().equals(other.repo.getDirectory());
    }
 }
@@ -216,7 +216,7 @@ public class VCSDirectoryImp extends VCSResourceImp implements VCSDirectory {
       try {
          // Create the tree walk with recursive false so we can have TREE
          // entries from walk
-         walk = TreeUtils.getTreeWalkForPath(this.commit.commit,
+         walk = TreeUtils.getTreeWalkForPath(this.commit.getRevCommit(),
                this.commit.repo, this.path);
 
          if (filter != null) {
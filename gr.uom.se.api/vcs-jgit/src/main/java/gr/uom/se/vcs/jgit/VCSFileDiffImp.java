@@ -3,8 +3,10 @@ package gr.uom.se.vcs.jgit;
 import gr.uom.se.vcs.Edit;
 import gr.uom.se.vcs.VCSChange;
 import gr.uom.se.vcs.VCSFileDiff;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.utils.DiffEngine;
 
-import java.util.Collection;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -17,7 +19,11 @@ import org.gitective.core.BlobUtils;
  * Implementation of {@link VCSFileDiff} based on JGit library.
  * <p>
  * 
- * This is an immutable object and is considered thread safe.
+ * This is an immutable object and is considered thread safe. The edits are
+ * computed the first time they are required, and are cached afterwards. They
+ * are computed by the diff engine of the repository (see
+ * {@link VCSRepositoryImp#getDiffEngine()}), and the policy the engine applied
+ * is kept too (see {@link #getPolicy()}).
  * 
  * @author Elvis Ligu
  * @since 0.0.1
@@ -27,6 +33,33 @@ import org.gitective.core.BlobUtils;
 public class VCSFileDiffImp<T extends VCSFileImp> extends VCSChangeImp<T>
       implements VCSFileDiff<T> {
 
+   /**
+    * The blob id of the old resource.
+    * <p>
+    * If null it will be resolved from the old resource's commit.
+    */
+   private final ObjectId oldId;
+
+   /**
+    * The blob id of the new resource.
+    * <p>
+    * If null it will be resolved from the new resource's commit.
+    */
+   private final ObjectId newId;
+
+   /**
+    * The cached edits of this diff.
+    * <p>
+    */
+   private volatile Set<Edit> edits;
+
+   /**
+    * The policy that was applied to compute the edits.
+    * <p>
+    * It is null until the edits are computed.
+    */
+   private volatile DiffEngine.Policy policy;
+
    /**
     * Creates a new instance based on the given arguments.
     * <p>
@@ -39,19 +72,41 @@ public class VCSFileDiffImp<T extends VCSFileImp> extends VCSChangeImp<T>
     *           the type of change
     */
    public VCSFileDiffImp(final T newR, final T oldR, final VCSChange.Type type) {
+      this(newR, oldR, type, null, null);
+   }
+
+   /**
+    * Creates a new instance based on the given arguments, with the blob ids of
+    * the two resources already known (i.e. from a diff entry).
+    * <p>
+    * 
+    * @param newR
+    *           the new resource
+    * @param oldR
+    *           the old resource
+    * @param type
+    *           the type of change
+    * @param oldId
+    *           the blob id of the old resource, if null it will be resolved
+    *           when required
+    * @param newId
+    *           the blob id of the new resource, if null it will be resolved
+    *           when required
+    */
+   public VCSFileDiffImp(final T newR, final T oldR, final VCSChange.Type type,
+         final ObjectId oldId, final ObjectId newId) {
       super(newR, oldR, type);
+      this.oldId = oldId;
+      this.newId = newId;
    }
 
    /**
     * {@inheritDoc}
     * <p>
-    * <b>WARNING: Use this method wisely, because it may cause memory
-    * problems.</b> The implementation doesn't make any distinct for the kind of
-    * type, so it may produce wrong results (diffing byte files) or may diff a
-    * very large byte file which can cause memory problems.
-    * <p>
-    * Diffing two files is a very expensive process, thus you should cache this
-    * result if you intend to use it in the future.
+    * The edits are computed by the diff engine of the repository, which will
+    * not diff binary files and will report large files as whole-file changes
+    * (see {@link DiffEngine}). The edits are computed only once, and the
+    * returned set is not modifiable.
     */
    @Override
    public Set<Edit> getEdits() {
@@ -62,31 +117,77 @@ public class VCSFileDiffImp<T extends VCSFileImp> extends VCSChangeImp<T>
          return Collections.emptySet();
       }
 
-      // The new file object id
-      final ObjectId newF = BlobUtils.getId(this.newResource.commit.repo,
-            this.newResource.commit.commit, this.newResource.path);
+      Set<Edit> result = this.edits;
+      if (result == null) {
+         result = this.computeEdits();
+      }
+      return result;
+   }
+
+   /**
+    * Get the policy that was applied to compute the edits of this diff.
+    * <p>
+    * If the edits are not yet computed they will be computed by calling this
+    * method.
+    * 
+    * @return the policy of the edits, or null if this is an addition or a
+    *         deletion, which have no edits
+    */
+   public DiffEngine.Policy getPolicy() {
+
+      if (this.type.isDelete() || this.type.isAdd()) {
+         return null;
+      }
+
+      if (this.policy == null) {
+         this.getEdits();
+      }
+      return this.policy;
+   }
+
+   /**
+    * Diff the old and the new blob of this diff, and cache the edits and the
+    * policy.
+    * <p>
+    */
+   private synchronized Set<Edit> computeEdits() {
+
+      // Another thread may have computed them
+      if (this.edits != null) {
+         return this.edits;
+      }
+
+      // The new file object id, resolve it only if it was not given
+      final ObjectId newF = this.newId != null ? this.newId : BlobUtils.getId(
+            this.newResource.commit.repo, this.newResource.commit.getRevCommit(),
+            this.newResource.path);
       // The old file object id
-      final ObjectId oldF = BlobUtils.getId(this.oldResource.commit.repo,
-            this.oldResource.commit.commit, this.oldResource.path);
-
-      // Produce the diffs
-      // WARNING: looking at the implementation of this method we realized
-      // that the data are stored in memory
-      // for each diff that will be produced. JGit implementation of
-      // determining if this file is a byte file
-      // or not is a heuristic one, that is it might produce a false positive
-      // in whether this resource is a text
-      // data or not. On the other hand, if the file is to big it may have
-      // memory problems.
-      final Collection<org.eclipse.jgit.diff.Edit> edits = BlobUtils.diff(
-            this.newResource.commit.repo, oldF, newF);
-      final Set<Edit> result = new HashSet<Edit>();
+      final ObjectId oldF = this.oldId != null ? this.oldId : BlobUtils.getId(
+            this.oldResource.commit.repo, this.oldResource.commit.getRevCommit(),
+            this.oldResource.path);
+
+      final VCSCommitImp commit = this.newResource.commit;
+      final VCSRepositoryImp owner = commit.owner;
+      final DiffEngine.Result diff;
+      try {
+         if (owner != null) {
+            diff = owner.getDiffEngine().diff(commit.repo, commit.pool(),
+                  owner.getLineCounter(), oldF, newF);
+         } else {
+            diff = DiffEngine.DEFAULT.diff(commit.repo, oldF, newF);
+         }
+      } catch (final IOException e) {
+         throw new IllegalStateException(new VCSRepositoryException(e));
+      }
 
-      for (final org.eclipse.jgit.diff.Edit e : edits) {
+      final Set<Edit> result = new HashSet<Edit>();
+      for (final org.eclipse.jgit.diff.Edit e : diff.getEdits()) {
          result.add(new Edit(e.getBeginA(), e.getEndA(), e.getBeginB(), e
                .getEndB()));
       }
 
-      return result;
+      this.policy = diff.getPolicy();
+      this.edits = Collections.unmodifiableSet(result);
+      return this.edits;
    }
 }
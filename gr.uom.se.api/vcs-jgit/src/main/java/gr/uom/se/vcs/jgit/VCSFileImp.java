@@ -3,22 +3,32 @@ package gr.uom.se.vcs.jgit;
 import gr.uom.se.vcs.VCSFile;
 import gr.uom.se.vcs.VCSFileDiff;
 import gr.uom.se.vcs.VCSResource;
+import gr.uom.se.vcs.jgit.index.LineCounter;
+import gr.uom.se.vcs.jgit.index.TreeManifestCache;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 import gr.uom.se.vcs.jgit.utils.TreeUtils;
+import gr.uom.se.vcs.walker.Visitor;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.lib.ObjectReader;
 
 /**
  * Implementation of {@link VCSFileDiff} based on JGit library.
  * <p>
  *
  * This is an immutable object and is considered thread safe.
+ * <p>
+ * The contents of small blobs are kept in memory by JGit (see
+ * {@link ObjectLoader#isLarge()}), so they are returned as views of the cached
+ * bytes without copying them. Large blobs are streamed through a buffer that
+ * each thread reuses.
  *
  * @author Elvis Ligu
  * @since 0.0.1
@@ -27,6 +37,27 @@ import org.eclipse.jgit.treewalk.TreeWalk;
  */
 public class VCSFileImp extends VCSResourceImp implements VCSFile {
 
+   /**
+    * The blob id of this file.
+    * <p>
+    * If null it will be resolved the first time is required.
+    */
+   private volatile ObjectId blobId;
+
+   /**
+    * The size of the buffer used when streaming large blobs.
+    * <p>
+    */
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   /**
+    * The buffer of each thread used when streaming large blobs.
+    * <p>
+    * A buffer is removed while it is in use, so a visitor that walks the
+    * contents of another file will use a new buffer.
+    */
+   private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>();
+
    /**
     * Creates a new instance based on the given arguments.
     * <p>
@@ -36,17 +67,86 @@ public class VCSFileImp extends VCSResourceImp implements VCSFile {
     * @param repo from where this path comes from
     */
    public VCSFileImp(final VCSCommitImp commit, final String path) {
+      this(commit, path, null);
+   }
+
+   /**
+    * Creates a new instance with an already known blob id (i.e. from a diff
+    * entry).
+    * <p>
+    *
+    * @param commit
+    *           where this file is at
+    * @param path
+    *           the path of this file
+    * @param blobId
+    *           the id of the blob of this file at the given commit, if null it
+    *           will be resolved when required
+    */
+   public VCSFileImp(final VCSCommitImp commit, final String path,
+         final ObjectId blobId) {
       super(commit, path, VCSResource.Type.FILE);
+      this.blobId = blobId;
+   }
+
+   /**
+    * Get the id of the blob of this file.
+    * <p>
+    *
+    * @return the blob id of this file
+    * @throws IOException
+    *            if the id can not be resolved
+    */
+   public ObjectId getObjectId() throws IOException {
+
+      ObjectId id = this.blobId;
+      if (id == null) {
+         final TreeManifestCache.Entry entry = TreeUtils.findEntry(
+               this.commit.getRevCommit(), this.commit.repo, this.path,
+               this.commit.manifests());
+         if (entry == null) {
+            throw new IllegalStateException("Did not find expected path: "
+                  + this.path);
+         }
+         id = entry.getObjectId();
+
+         // In case object id is zero id that means, it is missing
+         if (id.equals(ObjectId.zeroId())) {
+            throw new IllegalStateException("problem loading file contents");
+         }
+         this.blobId = id;
+      }
+      return id;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * If this file comes from a {@link VCSRepositoryImp} the line counter of
+    * the repository will be used, so the count of the same contents will be
+    * cached.
+    *
+    * @see LineCounter
+    */
+   @Override
+   public int countLines() throws IOException {
+
+      final VCSRepositoryImp owner = this.commit.owner;
+      if (owner != null) {
+         return owner.getLineCounter().count(this.commit.repo,
+               this.getObjectId());
+      }
+      return LineCounter.countLines(getObjectLoader(this));
    }
 
    /**
     * {@inheritDoc}
+    * <p>
+    * The returned array is allocated once, with the size of the contents.
     */
    @Override
    public byte[] getContents() throws IOException {
-      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-      this.getContents(stream);
-      return stream.toByteArray();
+      return getObjectLoader(this).getBytes(Integer.MAX_VALUE);
    }
 
    /**
@@ -70,24 +170,89 @@ public class VCSFileImp extends VCSResourceImp implements VCSFile {
       return loader.openStream();
    }
 
-   static ObjectLoader getObjectLoader(VCSFileImp file) throws IOException {
-      // create a tree walker and set path filter to this path only
-      final TreeWalk treeWalk = TreeUtils.createTreeWalkForPathAndCheckIfExist(
-              file.commit.commit, file.commit.repo, true, file.path);
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Only the header of the blob will be read.
+    */
+   @Override
+   public long getSize() throws IOException {
+      final ReaderPool pool = this.commit.pool();
+      final ObjectReader reader = ReaderPool.reader(pool, this.commit.repo);
       try {
-         // get the first object of this walker within tree
-         final ObjectId objectId = treeWalk.getObjectId(0);
+         return reader.getObjectSize(this.getObjectId(), Constants.OBJ_BLOB);
+      } finally {
+         ReaderPool.release(pool, reader);
+      }
+   }
 
-         // In case object id is zero id that means, it is missing
-         if (objectId.equals(ObjectId.zeroId())) {
-            throw new IllegalStateException("problem loading file contents");
+   /**
+    * {@inheritDoc}
+    * <p>
+    * If the blob is small the returned buffer is a view of its cached bytes,
+    * otherwise the contents are read in a new buffer of their size.
+    */
+   @Override
+   public ByteBuffer getContentBuffer() throws IOException {
+      final ObjectLoader loader = getObjectLoader(this);
+      if (!loader.isLarge()) {
+         return ByteBuffer.wrap(loader.getCachedBytes()).asReadOnlyBuffer();
+      }
+      return ByteBuffer.wrap(loader.getCachedBytes(Integer.MAX_VALUE))
+            .asReadOnlyBuffer();
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * If the blob is small it will be passed in one chunk, which is a view of
+    * its cached bytes, otherwise it will be streamed through the buffer of
+    * the calling thread.
+    */
+   @Override
+   public void walkContents(final Visitor<ByteBuffer> visitor)
+         throws IOException {
+
+      final ObjectLoader loader = getObjectLoader(this);
+      if (!loader.isLarge()) {
+         visitor.visit(ByteBuffer.wrap(loader.getCachedBytes())
+               .asReadOnlyBuffer());
+         return;
+      }
+
+      ByteBuffer buffer = BUFFERS.get();
+      if (buffer == null) {
+         buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      } else {
+         BUFFERS.set(null);
+      }
+
+      final InputStream in = loader.openStream();
+      try {
+         final byte[] bytes = buffer.array();
+         int n;
+         while ((n = in.read(bytes)) > 0) {
+            buffer.clear();
+            buffer.limit(n);
+            if (!visitor.visit(buffer.asReadOnlyBuffer())) {
+               break;
+            }
          }
+      } finally {
+         in.close();
+         buffer.clear();
+         BUFFERS.set(buffer);
+      }
+   }
 
-         // Open an object loader to read file contents
-         final ObjectLoader loader = file.commit.repo.open(objectId);
-         return loader;
+   static ObjectLoader getObjectLoader(VCSFileImp file) throws IOException {
+      // Open an object loader to read file contents
+      final ReaderPool pool = file.commit.pool();
+      final ObjectReader reader = ReaderPool.reader(pool, file.commit.repo);
+      try {
+         return reader.open(file.getObjectId());
       } finally {
-         treeWalk.release();
+         ReaderPool.release(pool, reader);
       }
    }
 }
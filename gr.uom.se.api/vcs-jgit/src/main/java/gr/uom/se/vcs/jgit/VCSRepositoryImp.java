@@ -7,21 +7,38 @@ import gr.uom.se.util.validation.ArgsCheck;
 import gr.uom.se.vcs.VCSBranch;
 import gr.uom.se.vcs.VCSCommit;
 import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.VCSTag;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.index.ChangeSummaryCache;
+import gr.uom.se.vcs.jgit.index.ChangedPathIndex;
+import gr.uom.se.vcs.jgit.index.CheckoutIndex;
+import gr.uom.se.vcs.jgit.index.CommitChildrenIndex;
+import gr.uom.se.vcs.jgit.index.CommitGraph;
+import gr.uom.se.vcs.jgit.index.LineCounter;
+import gr.uom.se.vcs.jgit.index.PathHistoryIndex;
+import gr.uom.se.vcs.jgit.index.ReachabilityIndex;
+import gr.uom.se.vcs.jgit.index.RefSnapshot;
+import gr.uom.se.vcs.jgit.index.TreeManifestCache;
+import gr.uom.se.vcs.jgit.utils.DiffEngine;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
+import gr.uom.se.vcs.jgit.utils.RevUtils;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.MembershipVisitor;
+import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.ListBranchCommand.ListMode;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.TransportException;
@@ -103,6 +120,129 @@ public class VCSRepositoryImp implements VCSRepository {
     */
    protected VCSBranchImp selectedBranch;
 
+   /**
+    * The children index of this repository's commits.
+    * <p>
+    * It is created the first time is required (see
+    * {@link #getChildrenIndex()}) and is refreshed each time this repository is
+    * updated.
+    */
+   protected CommitChildrenIndex childrenIndex;
+
+   /**
+    * The persistent commit graph of this repository.
+    * <p>
+    * It is loaded the first time is required (see {@link #getCommitGraph()}
+    * and {@link #getStoredCommitGraph()}) and is extended with the new
+    * commits each time this repository is updated.
+    */
+   protected CommitGraph commitGraph;
+
+   /**
+    * True if the graph file was checked by {@link #getStoredCommitGraph()}.
+    * <p>
+    */
+   private boolean commitGraphChecked;
+
+   /**
+    * True if {@link #commitGraph} contains all commits of the references,
+    * and not only those of its file.
+    * <p>
+    */
+   private boolean commitGraphUpdated;
+
+   /**
+    * The changed-path filters of this repository's commits.
+    * <p>
+    * They are loaded the first time are required (see
+    * {@link #getChangedPathIndex()}) and the filters of the new commits are
+    * computed each time this repository is updated.
+    */
+   protected ChangedPathIndex changedPathIndex;
+
+   /**
+    * The history index of this repository's paths.
+    * <p>
+    * It is built the first time is required (see
+    * {@link #getPathHistoryIndex()}) and the new commits are indexed each
+    * time this repository is updated.
+    */
+   protected PathHistoryIndex pathHistoryIndex;
+
+   /**
+    * The reachability index of this repository's branches and tags.
+    * <p>
+    * It is built the first time is required (see
+    * {@link #getReachabilityIndex()}) and is updated each time this
+    * repository is updated.
+    */
+   protected ReachabilityIndex reachabilityIndex;
+
+   /**
+    * The line counter of this repository's blobs.
+    * <p>
+    * It is created the first time is required (see {@link #getLineCounter()}
+    * ).
+    */
+   protected LineCounter lineCounter;
+
+   /**
+    * The manifests of this repository's trees.
+    * <p>
+    * It is created the first time is required (see
+    * {@link #getTreeManifestCache()}).
+    */
+   protected TreeManifestCache treeManifestCache;
+
+   /**
+    * The change summaries of this repository's commits.
+    * <p>
+    * It is created the first time is required (see
+    * {@link #getChangeSummaryCache()}).
+    */
+   protected ChangeSummaryCache changeSummaryCache;
+
+   /**
+    * The index of the commits checked out into directories.
+    * <p>
+    * It is created the first time is required (see {@link #getCheckoutIndex()}
+    * ).
+    */
+   protected CheckoutIndex checkoutIndex;
+
+   /**
+    * The snapshot of this repository's branches and tags.
+    * <p>
+    * It is loaded the first time is required (see {@link #getRefSnapshot()})
+    * and is discarded each time the references may have changed, that is when
+    * this repository is updated or cloned, or when {@link #refreshRefs()} is
+    * called.
+    */
+   protected RefSnapshot refSnapshot;
+
+   /**
+    * The pool of readers of this repository.
+    * <p>
+    * It is created the first time is required (see {@link #getReaderPool()}).
+    */
+   private volatile ReaderPool readerPool;
+
+   /**
+    * The commit interner of this repository.
+    * <p>
+    * It is created the first time is required (see
+    * {@link #getCommitInterner()}) and is cleared each time this repository is
+    * updated, because the commits keep their children cached.
+    */
+   private volatile CommitInterner commitInterner;
+
+   /**
+    * The engine that computes the edits of file diffs.
+    * <p>
+    * By default it is {@link DiffEngine#DEFAULT}.
+    */
+   private volatile DiffEngine diffEngine = DiffEngine.DEFAULT;
+
    /**
     * Creates a new instance given local and remote paths.
     * <p>
@@ -170,6 +310,375 @@ public class VCSRepositoryImp implements VCSRepository {
       this.remotePath = remotePath;
    }
 
+   /**
+    * Get the children index of this repository's commits.
+    * <p>
+    * The index will be built the first time this method is called, by walking
+    * all branches of this repository, and is refreshed each time
+    * {@link #update()} is called.
+    *
+    * @return the children index of this repository
+    * @throws VCSRepositoryException
+    *            if the index can not be built
+    */
+   public synchronized CommitChildrenIndex getChildrenIndex()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.childrenIndex == null) {
+         final CommitChildrenIndex index = new CommitChildrenIndex(this.repo);
+         index.build();
+         this.childrenIndex = index;
+      }
+      return this.childrenIndex;
+   }
+
+   /**
+    * Get the commit graph of this repository.
+    * <p>
+    * The first time this method is called the graph will be loaded from its
+    * file (if there is one) and will be extended with the commits that are not
+    * yet in graph. Each time {@link #update()} is called the graph will be
+    * extended with the new commits.
+    * <p>
+    * The graph is built in memory only, call {@link CommitGraph#store()} to
+    * persist it so it can be loaded the next time the repository is opened.
+    * Once the graph is stored, it is stored again each time it is extended by
+    * {@link #update()}.
+    *
+    * @return the commit graph of this repository
+    * @throws VCSRepositoryException
+    *            if the graph can not be loaded
+    */
+   public synchronized CommitGraph getCommitGraph()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.commitGraph == null) {
+         final CommitGraph graph = new CommitGraph(this.repo);
+         graph.load();
+         this.commitGraph = graph;
+      }
+      if (!this.commitGraphUpdated) {
+         this.commitGraph.update();
+         this.commitGraphUpdated = true;
+      }
+      return this.commitGraph;
+   }
+
+   /**
+    * Get the commit graph of this repository, if it was stored.
+    * <p>
+    * The first time this method is called the graph will be loaded from its
+    * file, if there is one. No commit is parsed and nothing is written to the
+    * repository, so the graph may not contain the commits that arrived after
+    * it was stored, until this repository is updated (see {@link #update()}).
+    *
+    * @return the commit graph of this repository, or null if it was never
+    *         stored and {@link #getCommitGraph()} was never called
+    * @throws VCSRepositoryException
+    *            if the graph file can not be read
+    */
+   public synchronized CommitGraph getStoredCommitGraph()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.commitGraph == null && !this.commitGraphChecked) {
+         this.commitGraphChecked = true;
+         final CommitGraph graph = new CommitGraph(this.repo);
+         graph.load();
+         if (graph.isStored()) {
+            this.commitGraph = graph;
+         }
+      }
+      return this.commitGraph;
+   }
+
+   /**
+    * Get the changed-path filters of this repository's commits.
+    * <p>
+    * The filters are loaded from their file (if there is one) and the
+    * filters of commits that are not yet indexed are computed. They are used
+    * by path-limited history walks (i.e. {@link VCSResource#getAllCommits()}
+    * ) to skip the tree diffs of commits that did not change the path.
+    *
+    * @return the changed-path filters of this repository
+    * @throws VCSRepositoryException
+    *            if the filters can not be loaded or computed
+    */
+   public synchronized ChangedPathIndex getChangedPathIndex()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.changedPathIndex == null) {
+         final ChangedPathIndex index = new ChangedPathIndex(this.repo);
+         index.load();
+         index.update();
+         this.changedPathIndex = index;
+      }
+      return this.changedPathIndex;
+   }
+
+   /**
+    * Get the history index of this repository's paths.
+    * <p>
+    * The index will be built the first time this method is called, and the
+    * new commits will be indexed each time {@link #update()} is called. It is
+    * used to answer the lifecycle queries of resources (i.e.
+    * {@link VCSResource#getCreationCommits()}) without walking any tree.
+    *
+    * @return the path history index of this repository
+    * @throws VCSRepositoryException
+    *            if the index can not be built
+    */
+   public synchronized PathHistoryIndex getPathHistoryIndex()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.pathHistoryIndex == null) {
+         final PathHistoryIndex index = new PathHistoryIndex(this.repo);
+         index.update();
+         this.pathHistoryIndex = index;
+      }
+      return this.pathHistoryIndex;
+   }
+
+   /**
+    * Get the reachability index of this repository's branches and tags.
+    * <p>
+    * The index will be built the first time this method is called, and will
+    * be updated with the new commits each time {@link #update()} is called.
+    *
+    * @return the reachability index of this repository
+    * @throws VCSRepositoryException
+    *            if the index can not be built
+    */
+   public synchronized ReachabilityIndex getReachabilityIndex()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.reachabilityIndex == null) {
+         final ReachabilityIndex index = new ReachabilityIndex(this.repo);
+         index.build();
+         this.reachabilityIndex = index;
+      }
+      return this.reachabilityIndex;
+   }
+
+   /**
+    * Get the snapshot of this repository's branches and tags.
+    * <p>
+    * The snapshot will be loaded the first time this method is called, and
+    * will be loaded again after {@link #update()} or {@link #refreshRefs()}
+    * is called. Branches and tags of this repository are created from this
+    * snapshot, so they know their commits without reading the references.
+    *
+    * @return the snapshot of the references of this repository
+    * @throws VCSRepositoryException
+    *            if the references can not be read
+    */
+   public synchronized RefSnapshot getRefSnapshot()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.refSnapshot == null) {
+         this.refSnapshot = RefSnapshot.load(this.repo);
+      }
+      return this.refSnapshot;
+   }
+
+   /**
+    * Discard the snapshot of this repository's branches and tags, so it will
+    * be loaded again the next time it is required.
+    * <p>
+    * This should be called when the references of this repository were
+    * changed by other means than {@link #update()} (i.e. by another process).
+    */
+   public synchronized void refreshRefs() {
+      this.refSnapshot = null;
+   }
+
+   /**
+    * Check if the first commit is an ancestor of the second one.
+    * <p>
+    * The commit graph of this repository is used if it was stored or built
+    * (see {@link #getStoredCommitGraph()}) and it knows both commits,
+    * otherwise the history of the second commit is walked. This method never
+    * builds the graph, neither writes to the repository.
+    *
+    * @param ancestor
+    *           the ancestor to check
+    * @param head
+    *           the descendant to check
+    * @return true if <code>ancestor</code> is reachable from <code>head</code>
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   boolean isAncestor(final RevCommit ancestor, final RevCommit head)
+         throws VCSRepositoryException {
+
+      final CommitGraph graph = this.getStoredCommitGraph();
+      if (graph != null) {
+         final Boolean reachable = graph.isAncestor(ancestor, head);
+         if (reachable != null) {
+            return reachable.booleanValue();
+         }
+      }
+      return RevUtils.isAncestor(ancestor, head, this.repo,
+            this.getReaderPool());
+   }
+
+   /**
+    * Get the pool of object readers of this repository.
+    * <p>
+    * Walks and readers of this implementation are obtained from this pool, so
+    * each thread reuses its reader and its caches.
+    *
+    * @return the reader pool of this repository
+    */
+   public ReaderPool getReaderPool() {
+
+      ReaderPool pool = this.readerPool;
+      if (pool == null) {
+         synchronized (this) {
+            pool = this.readerPool;
+            if (pool == null) {
+               pool = new ReaderPool(this.repo);
+               this.readerPool = pool;
+            }
+         }
+      }
+      return pool;
+   }
+
+   /**
+    * Get the commit interner of this repository.
+    * <p>
+    * All commits this implementation creates for this repository are obtained
+    * from this interner, so there is only one instance for each commit and
+    * its caches are shared.
+    *
+    * @return the commit interner of this repository
+    */
+   public CommitInterner getCommitInterner() {
+
+      CommitInterner interner = this.commitInterner;
+      if (interner == null) {
+         synchronized (this) {
+            interner = this.commitInterner;
+            if (interner == null) {
+               interner = new CommitInterner(this);
+               this.commitInterner = interner;
+            }
+         }
+      }
+      return interner;
+   }
+
+   /**
+    * Get the line counter of this repository's blobs.
+    * <p>
+    * The counter caches the line counts by blob id, so the contents of a file
+    * that are the same in many commits will be counted only once.
+    *
+    * @return the line counter of this repository
+    */
+   public synchronized LineCounter getLineCounter() {
+      if (this.lineCounter == null) {
+         this.lineCounter = new LineCounter(LineCounter.DEFAULT_CAPACITY,
+               this.getReaderPool());
+      }
+      return this.lineCounter;
+   }
+
+   /**
+    * Get the engine that computes the edits of this repository's file diffs
+    * (see {@link VCSFileDiffImp#getEdits()}).
+    * <p>
+    *
+    * @return the diff engine of this repository
+    */
+   public DiffEngine getDiffEngine() {
+      return this.diffEngine;
+   }
+
+   /**
+    * Set the engine that computes the edits of this repository's file diffs.
+    * <p>
+    * The engine defines the diff algorithm, how binary files are detected and
+    * the maximum size of a file that will be diffed. Diffs that have already
+    * computed their edits will not be affected.
+    *
+    * @param engine
+    *           the diff engine to use, must not be null
+    */
+   public void setDiffEngine(final DiffEngine engine) {
+      ArgsCheck.notNull("engine", engine);
+      this.diffEngine = engine;
+   }
+
+   /**
+    * Get the manifests of this repository's trees.
+    * <p>
+    * The manifests are cached by tree id, so the paths of a tree that is the
+    * same in many commits will be read only once.
+    *
+    * @return the tree manifests of this repository
+    */
+   public synchronized TreeManifestCache getTreeManifestCache() {
+      if (this.treeManifestCache == null) {
+         this.treeManifestCache = new TreeManifestCache(
+               TreeManifestCache.DEFAULT_CAPACITY, this.getReaderPool());
+      }
+      return this.treeManifestCache;
+   }
+
+   /**
+    * Get the change summaries of this repository's commits.
+    * <p>
+    * A commit is diffed to its parents once, and its summary is used to find
+    * the change type of all its resources (see
+    * {@link VCSResourceImp#checkChangeType(gr.uom.se.vcs.VCSChange.Type, VCSResourceImp)}
+    * ).
+    *
+    * @return the change summaries of this repository
+    */
+   public synchronized ChangeSummaryCache getChangeSummaryCache() {
+      if (this.changeSummaryCache == null) {
+         this.changeSummaryCache = new ChangeSummaryCache();
+      }
+      return this.changeSummaryCache;
+   }
+
+   /**
+    * Get the index of the commits that were checked out into directories.
+    * <p>
+    * It is used by incremental checkouts (see
+    * {@link VCSCommit#checkout(String, java.util.concurrent.ExecutorService, String...)}
+    * ) to write only the files that differ from the previous checkout.
+    *
+    * @return the checkout index of this repository
+    * @throws VCSRepositoryException
+    *            if this repository is not opened
+    */
+   public synchronized CheckoutIndex getCheckoutIndex()
+         throws VCSRepositoryException {
+
+      checkRepo(this.repo);
+
+      if (this.checkoutIndex == null) {
+         this.checkoutIndex = new CheckoutIndex(this.repo);
+      }
+      return this.checkoutIndex;
+   }
+
    /**
     * Open a repository from the path <code>local</code>.
     * <p>
@@ -274,6 +783,7 @@ public class VCSRepositoryImp implements VCSRepository {
          this.repo = Git.cloneRepository().setURI(this.remotePath)
                .setDirectory(gitDir).setCloneAllBranches(true)
                .setNoCheckout(true).call().getRepository();
+         this.refSnapshot = null;
 
          // We must ensure that a default branch will be always selected
          // each time a repository is created.
@@ -295,6 +805,9 @@ public class VCSRepositoryImp implements VCSRepository {
     */
    @Override
    public void close() {
+      if (this.readerPool != null) {
+         this.readerPool.release();
+      }
       if (this.repo != null) {
          this.repo.close();
       }
@@ -347,22 +860,17 @@ public class VCSRepositoryImp implements VCSRepository {
       // Always check repository for null
       checkRepo(this.repo);
 
-      try {
-
-         // Create a list branch command and return all branches
-         // Actually the repository will have only the remote branches (if this
-         // was cloned)
-         // because we don't need to create a local branch.
-         final List<VCSBranch> branches = new ArrayList<VCSBranch>();
-         final List<Ref> refs = new Git(this.repo).branchList()
-               .setListMode(ListMode.ALL).call();
-         for (final Ref r : refs) {
-            branches.add(new VCSBranchImp(r.getLeaf(), this.repo));
-         }
-         return branches;
-      } catch (final GitAPIException e) {
-         throw new VCSRepositoryException(e);
+      // The branches are read from the snapshot of references
+      // Actually the repository will have only the remote branches (if this
+      // was cloned)
+      // because we don't need to create a local branch.
+      final RefSnapshot snapshot = this.getRefSnapshot();
+      final List<VCSBranch> branches = new ArrayList<VCSBranch>();
+      for (final Ref r : snapshot.getBranches()) {
+         branches.add(new VCSBranchImp(r, this, snapshot.getCommitId(r
+               .getName())));
       }
+      return branches;
    }
 
    /**
@@ -374,21 +882,63 @@ public class VCSRepositoryImp implements VCSRepository {
       // Always check for repository if null
       checkRepo(this.repo);
 
-      try {
+      // The tags are read from the snapshot of references, and are
+      // already peeled to their commits
+      final RefSnapshot snapshot = this.getRefSnapshot();
+      final List<VCSTag> tags = new ArrayList<VCSTag>();
+      for (final Ref r : snapshot.getTags()) {
+         tags.add(new VCSTagImp(r, this, snapshot.getCommitId(r
+               .getName())));
+      }
+      return tags;
+   }
 
-         // Create a list tag command and execute it
-         final List<VCSTag> tags = new ArrayList<VCSTag>();
-         final List<Ref> refs = new Git(this.repo).tagList().call();
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Given commit must be of type {@link VCSCommitImp}. The answer is computed
+    * from the reachability index of this repository.
+    */
+   @Override
+   public Collection<VCSBranch> getBranchesContaining(final VCSCommit commit)
+         throws VCSRepositoryException {
+
+      ArgsCheck.isSubtype("commit", VCSCommitImp.class, commit);
 
-         for (final Ref r : refs) {
-            tags.add(new VCSTagImp(r.getLeaf(), this.repo));
+      final Set<String> names = new HashSet<String>(this
+            .getReachabilityIndex().getRefsContaining(
+                  ((VCSCommitImp) commit).id));
+      final List<VCSBranch> branches = new ArrayList<VCSBranch>();
+      for (final VCSBranch branch : this.getBranches()) {
+         if (names.contains(branch.getID())) {
+            branches.add(branch);
          }
+      }
+      return branches;
+   }
 
-         return tags;
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Given commit must be of type {@link VCSCommitImp}. The answer is computed
+    * from the reachability index of this repository.
+    */
+   @Override
+   public Collection<VCSTag> getTagsContaining(final VCSCommit commit)
+         throws VCSRepositoryException {
 
-      } catch (final GitAPIException e) {
-         throw new VCSRepositoryException(e);
+      ArgsCheck.isSubtype("commit", VCSCommitImp.class, commit);
+
+      final Set<String> names = new HashSet<String>(this
+            .getReachabilityIndex().getRefsContaining(
+                  ((VCSCommitImp) commit).id));
+      final List<VCSTag> tags = new ArrayList<VCSTag>();
+      for (final VCSTag tag : this.getTags()) {
+         if (names.contains(tag.getID())) {
+            tags.add(tag);
+         }
       }
+      return tags;
    }
 
    /**
@@ -422,6 +972,33 @@ public class VCSRepositoryImp implements VCSRepository {
          git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME)
                .setTagOpt(TagOpt.FETCH_TAGS).setRefSpecs(wcrs).call();
 
+         // The references may have changed
+         this.refSnapshot = null;
+
+         // Bring the indexes up to date with the new commits (if any)
+         if (this.childrenIndex != null) {
+            this.childrenIndex.refresh();
+         }
+         final CommitGraph graph = this.getStoredCommitGraph();
+         if (graph != null) {
+            graph.update();
+            if (graph.isStored()) {
+               graph.store();
+            }
+         }
+         if (this.changedPathIndex != null) {
+            this.changedPathIndex.update();
+         }
+         if (this.pathHistoryIndex != null) {
+            this.pathHistoryIndex.update();
+         }
+         if (this.reachabilityIndex != null) {
+            this.reachabilityIndex.update();
+         }
+         if (this.commitInterner != null) {
+            this.commitInterner.clear();
+         }
+
       } catch (final URISyntaxException e) {
          throw new VCSRepositoryException(e);
       } catch (final InvalidRemoteException e) {
@@ -443,7 +1020,7 @@ public class VCSRepositoryImp implements VCSRepository {
       // Always check repo for null
       checkRepo(this.repo);
 
-      final RevWalk walker = new RevWalk(this.repo);
+      final RevWalk walker = this.getReaderPool().newRevWalk();
 
       try {
          final ObjectId oid = this.repo.resolve(cid);
@@ -451,7 +1028,7 @@ public class VCSRepositoryImp implements VCSRepository {
             throw new VCSRepositoryException(cid
                   + " can not be resolved to a commit");
          }
-         return new VCSCommitImp(walker.parseCommit(oid), this.repo);
+         return VCSCommitImp.of(walker.parseCommit(oid), this);
 
       } catch (final RevisionSyntaxException e) {
          throw new VCSRepositoryException(e);
@@ -484,7 +1061,7 @@ public class VCSRepositoryImp implements VCSRepository {
             throw new VCSRepositoryException(bid
                   + " can not be resolved to e reference");
          }
-         return new VCSBranchImp(ref, this.repo);
+         return new VCSBranchImp(ref, this, null);
 
       } catch (final IOException e) {
          throw new VCSRepositoryException(e);
@@ -506,7 +1083,7 @@ public class VCSRepositoryImp implements VCSRepository {
             throw new VCSRepositoryException(tag
                   + " can not be resolved to e reference");
          }
-         return new VCSTagImp(ref, this.repo);
+         return new VCSTagImp(ref, this, null);
 
       } catch (final IOException e) {
          throw new VCSRepositoryException(e);
@@ -538,7 +1115,7 @@ public class VCSRepositoryImp implements VCSRepository {
          throw new VCSRepositoryException("There is not any selected branch");
       }
 
-      final RevWalk walker = new RevWalk(this.repo);
+      final RevWalk walker = this.getReaderPool().newRevWalk();
       try {
 
          final RevCommit root = walker.parseCommit(this.selectedBranch.ref
@@ -546,7 +1123,7 @@ public class VCSRepositoryImp implements VCSRepository {
          walker.sort(RevSort.REVERSE);
          walker.markStart(root);
 
-         return new VCSCommitImp(walker.next(), this.repo);
+         return VCSCommitImp.of(walker.next(), this);
 
       } catch (final RevisionSyntaxException e) {
          throw new VCSRepositoryException(e);
@@ -584,6 +1161,71 @@ public class VCSRepositoryImp implements VCSRepository {
 
    public void walkAll(Set<VCSCommit> commits, CommitVisitor visitor,
          boolean descending) throws VCSRepositoryException {
-      VCSCommitImp.walkAll(repo, commits, visitor, descending);
+      VCSCommitImp.walkAll(repo, this, commits, visitor, descending);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void walkAll(List<? extends VCSCommit> heads,
+         MembershipVisitor visitor) throws VCSRepositoryException {
+      VCSCommitImp.walkAll(repo, this, heads, visitor);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The commits are numbered by the reachability index of this repository
+    * (see {@link #getReachabilityIndex()}).
+    */
+   @Override
+   public int getCommitNumber(final VCSCommit commit)
+         throws VCSRepositoryException {
+      ArgsCheck.isSubtype("commit", VCSCommitImp.class, commit);
+      return this.getReachabilityIndex().getNumber(((VCSCommitImp) commit).id);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public VCSCommit getCommit(final int number) throws VCSRepositoryException {
+      final ObjectId id = this.getReachabilityIndex().getCommit(number);
+      return id == null ? null : VCSCommitImp.of(id, this);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getCommitCount() throws VCSRepositoryException {
+      return this.getReachabilityIndex().size();
+   }
+
+   /**
+    * Get a lazy iterator of the given commits and all their ancestors.
+    * <p>
+    * The commits are returned in the same order as
+    * {@link #walkAll(Set, CommitVisitor, boolean)} visits them. The iterator
+    * can be consumed by a thread other than the caller, and should be closed
+    * if it is not exhausted (see {@link CommitIterator}).
+    *
+    * @param commits
+    *           the commits to start from, must not be null
+    * @param filter
+    *           only the commits allowed by this filter will be returned, may be
+    *           null
+    * @param descending
+    *           if true the commits will be returned from new to old
+    * @return an iterator of the commits
+    * @throws VCSRepositoryException
+    *            if the commits can not be parsed
+    */
+   public CommitIterator iterateAll(Set<VCSCommit> commits,
+         VCSCommitFilter filter, boolean descending)
+         throws VCSRepositoryException {
+      return VCSCommitImp.iterateAll(repo, this, commits, filter,
+            descending);
    }
 }
@@ -5,8 +5,11 @@ import gr.uom.se.vcs.VCSChange;
 import gr.uom.se.vcs.VCSCommit;
 import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.index.ChangeSummaryCache;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 import gr.uom.se.vcs.jgit.utils.RevUtils;
 import gr.uom.se.vcs.jgit.utils.TreeUtils;
+import gr.uom.se.vcs.jgit.walker.ChangedPathRevFilter;
 import gr.uom.se.vcs.jgit.walker.DiffCollector;
 import gr.uom.se.vcs.walker.Visitor;
 
@@ -15,18 +18,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.errors.AmbiguousObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 
 /**
@@ -154,13 +160,15 @@ public class VCSResourceImp implements VCSResource {
    public void walkAllCommits(final Visitor<VCSCommit> visitor)
          throws VCSRepositoryException {
 
-      final Git git = new Git(this.commit.repo);
+      RevWalk walk = null;
 
       try {
-         final LogCommand logCommand = git.log().all().addPath(this.path);
+         walk = this.createPathWalk();
 
-         for (final RevCommit rc : logCommand.call()) {
-            if(!visitor.visit(new VCSCommitImp(rc, this.commit.repo))) {
+         RevCommit rc = null;
+         while ((rc = walk.next()) != null) {
+            if(!visitor.visit(VCSCommitImp.of(rc, this.commit.repo,
+                  this.commit.owner))) {
                return;
             }
          }
@@ -175,10 +183,10 @@ public class VCSResourceImp implements VCSResource {
          throw new VCSRepositoryException(e);
       } catch (final IOException e) {
          throw new VCSRepositoryException(e);
-      } catch (final NoHeadException e) {
-         throw new VCSRepositoryException(e);
-      } catch (final GitAPIException e) {
-         throw new VCSRepositoryException(e);
+      } finally {
+         if (walk != null) {
+            walk.release();
+         }
       }
    }
 
@@ -188,13 +196,15 @@ public class VCSResourceImp implements VCSResource {
    @Override
    public Collection<VCSCommit> getAllCommits() throws VCSRepositoryException {
 
-      final Git git = new Git(this.commit.repo);
+      RevWalk walk = null;
       final List<VCSCommit> commits = new ArrayList<VCSCommit>();
       try {
-         final LogCommand logCommand = git.log().all().addPath(this.path);
+         walk = this.createPathWalk();
 
-         for (final RevCommit rc : logCommand.call()) {
-            commits.add(new VCSCommitImp(rc, this.commit.repo));
+         RevCommit rc = null;
+         while ((rc = walk.next()) != null) {
+            commits.add(VCSCommitImp.of(rc, this.commit.repo,
+                  this.commit.owner));
          }
 
       } catch (final RevisionSyntaxException e) {
@@ -207,10 +217,10 @@ public class VCSResourceImp implements VCSResource {
          throw new VCSRepositoryException(e);
       } catch (final IOException e) {
          throw new VCSRepositoryException(e);
-      } catch (final NoHeadException e) {
-         throw new VCSRepositoryException(e);
-      } catch (final GitAPIException e) {
-         throw new VCSRepositoryException(e);
+      } finally {
+         if (walk != null) {
+            walk.release();
+         }
       }
 
       return commits;
@@ -229,19 +239,29 @@ public class VCSResourceImp implements VCSResource {
             return new ArrayList<VCSCommit>(this.additions.object);
          }
 
+         // Look up the history index of repository, if there is one
+         final VCSRepositoryImp owner = this.commit.owner;
+         if (owner != null) {
+            final List<VCSCommit> creations = toCommits(owner
+                  .getPathHistoryIndex().getAdditions(this.path), owner);
+            this.additions.object = new ArrayList<VCSCommit>(creations);
+            return creations;
+         }
+
          // Walk all commits that change this resource
          // and check if one of them add this
-         final Git git = new Git(this.commit.repo);
+         RevWalk walk = null;
 
          try {
 
             final List<VCSCommit> creations = new ArrayList<VCSCommit>();
 
-            final LogCommand logCommand = git.log().all().addPath(this.path);
+            walk = this.createPathWalk();
 
-            for (final RevCommit rc : logCommand.call()) {
+            RevCommit rc = null;
+            while ((rc = walk.next()) != null) {
                if (isAddition(rc, this.commit.repo, this.path)) {
-                  creations.add(new VCSCommitImp(rc, this.commit.repo));
+                  creations.add(VCSCommitImp.of(rc, this.commit.repo));
                }
             }
 
@@ -258,10 +278,10 @@ public class VCSResourceImp implements VCSResource {
             throw new VCSRepositoryException(e);
          } catch (final IOException e) {
             throw new VCSRepositoryException(e);
-         } catch (final NoHeadException e) {
-            throw new VCSRepositoryException(e);
-         } catch (final GitAPIException e) {
-            throw new VCSRepositoryException(e);
+         } finally {
+            if (walk != null) {
+               walk.release();
+            }
          }
       }
    }
@@ -279,19 +299,29 @@ public class VCSResourceImp implements VCSResource {
             return new ArrayList<VCSCommit>(this.deletions.object);
          }
 
+         // Look up the history index of repository, if there is one
+         final VCSRepositoryImp owner = this.commit.owner;
+         if (owner != null) {
+            final List<VCSCommit> deletions = toCommits(owner
+                  .getPathHistoryIndex().getDeletions(this.path), owner);
+            this.deletions.object = deletions;
+            return new ArrayList<VCSCommit>(deletions);
+         }
+
          // walk all commits that change this resource
          // and check if one of them add this
-         final Git git = new Git(this.commit.repo);
+         RevWalk walk = null;
 
          try {
 
             final List<VCSCommit> deletions = new ArrayList<VCSCommit>();
 
-            final LogCommand logCommand = git.log().all().addPath(this.path);
+            walk = this.createPathWalk();
 
-            for (final RevCommit rc : logCommand.call()) {
+            RevCommit rc = null;
+            while ((rc = walk.next()) != null) {
                if (isDeletion(rc, this.commit.repo, this.path)) {
-                  deletions.add(new VCSCommitImp(rc, this.commit.repo));
+                  deletions.add(VCSCommitImp.of(rc, this.commit.repo));
                }
             }
 
@@ -308,10 +338,67 @@ public class VCSResourceImp implements VCSResource {
             throw new VCSRepositoryException(e);
          } catch (final IOException e) {
             throw new VCSRepositoryException(e);
-         } catch (final NoHeadException e) {
-            throw new VCSRepositoryException(e);
-         } catch (final GitAPIException e) {
-            throw new VCSRepositoryException(e);
+         } finally {
+            if (walk != null) {
+               walk.release();
+            }
+         }
+      }
+   }
+
+   /**
+    * Create a walk of all commits that change the path of this resource,
+    * starting from all references of repository (the same as git log --all --
+    * path).
+    * <p>
+    * If the repository comes from a {@link VCSRepositoryImp} its changed-path
+    * filters will be used (see {@link VCSRepositoryImp#getChangedPathIndex()}
+    * ), so most commits that did not change the path will be skipped without
+    * comparing their trees.
+    *
+    * @return a walk of the commits that change this resource, the caller must
+    *         release it
+    * @throws IOException
+    *            if the references can not be parsed
+    * @throws VCSRepositoryException
+    *            if the changed-path filters can not be computed
+    */
+   private RevWalk createPathWalk() throws IOException, VCSRepositoryException {
+
+      final Repository repo = this.commit.repo;
+      final RevWalk walk = ReaderPool.revWalk(this.commit.pool(), repo);
+      boolean created = false;
+      try {
+         // Start from all references that point to a commit
+         for (final Ref ref : repo.getAllRefs().values()) {
+            final ObjectId id = ref.getObjectId();
+            if (id == null) {
+               continue;
+            }
+            try {
+               final RevObject obj = walk.peel(walk.parseAny(id));
+               if (obj instanceof RevCommit) {
+                  walk.markStart((RevCommit) obj);
+               }
+            } catch (final MissingObjectException e) {
+               // Ignore references to missing objects
+            }
+         }
+
+         final VCSRepositoryImp owner = this.commit.owner;
+         if (owner != null) {
+            walk.setRevFilter(new ChangedPathRevFilter(walk, owner
+                  .getChangedPathIndex(), this.path));
+         } else {
+            walk.setTreeFilter(AndTreeFilter.create(
+                  PathFilterGroup.createFromStrings(this.path),
+                  TreeFilter.ANY_DIFF));
+         }
+         created = true;
+         return walk;
+      } finally {
+         if (!created) {
+            walk.release();
          }
       }
    }
@@ -353,12 +440,14 @@ public class VCSResourceImp implements VCSResource {
             return resource.changeType.object.equals(type);
          }
 
+         final VCSRepositoryImp owner = resource.commit.owner;
+
          // We must get all parent commits
          // and do a diff to each parent,
          // if we find a DiffEntry that this
          // resource was added/modified then return true,
          // otherwise false
-         final RevCommit thisCommit = resource.commit.commit;
+         final RevCommit thisCommit = resource.commit.getRevCommit();
          final RevCommit[] parents = thisCommit.getParents();
 
          // The first commit will have no parents, but all files are added
@@ -366,6 +455,23 @@ public class VCSResourceImp implements VCSResource {
             return type.isAdd();
          }
 
+         // The summary of the commit answers the queries of all its
+         // resources, so the commit is diffed only once
+         if (owner != null) {
+            final ChangeSummaryCache.Summary summary = owner
+                  .getChangeSummaryCache().get(resource.commit.repo,
+                        thisCommit);
+            final boolean changed = resource.type
+                  .equals(VCSResource.Type.FILE) ? summary.hasChange(
+                  resource.path, type) : hasDirectoryChange(summary,
+                  parents, type, resource);
+            if (changed) {
+               resource.changeType.object = type;
+               return true;
+            }
+            return false;
+         }
+
          // Check for each parent by diffing with this commit
          for (final RevCommit parentCommit : parents) {
 
@@ -403,6 +509,68 @@ public class VCSResourceImp implements VCSResource {
       return false;
    }
 
+   /**
+    * Check if the given directory has the given type of change, compared to
+    * any of the parents of its commit.
+    * <p>
+    * A directory is changed compared to a parent if a path under it is
+    * changed. It is added if it doesn't exist at the parent, otherwise it is
+    * modified.
+    *
+    * @param summary
+    *           the change summary of the commit of directory
+    * @param parents
+    *           the parents of the commit
+    * @param type
+    *           of change to check
+    * @param resource
+    *           the directory
+    * @return true if the directory has the given type of change
+    * @throws VCSRepositoryException
+    *            if the tree of a parent can not be read
+    */
+   private static boolean hasDirectoryChange(
+         final ChangeSummaryCache.Summary summary, final RevCommit[] parents,
+         final VCSChange.Type type, final VCSResourceImp resource)
+         throws VCSRepositoryException {
+
+      if (!type.isAdd() && !type.isModify()) {
+         return false;
+      }
+
+      for (int i = 0; i < parents.length; i++) {
+
+         if (!summary.hasChangeUnder(i, resource.path)) {
+            continue;
+         }
+         final boolean existed;
+         try {
+            existed = TreeUtils.existPath(parents[i], resource.commit.repo,
+                  resource.path, resource.commit.manifests());
+         } catch (final IOException e) {
+            throw new VCSRepositoryException(e);
+         }
+         if (existed ? type.isModify() : type.isAdd()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Create the commits of the given ids.
+    * <p>
+    */
+   private static List<VCSCommit> toCommits(final List<ObjectId> ids,
+         final VCSRepositoryImp owner) {
+
+      final List<VCSCommit> commits = new ArrayList<VCSCommit>(ids.size());
+      for (final ObjectId id : ids) {
+         commits.add(VCSCommitImp.of(id, owner));
+      }
+      return commits;
+   }
+
    /**
     * Check if the specified path was added at the given commit. It will check
     * all parents, if this path is present at the given commit but not present
@@ -6,6 +6,7 @@ package gr.uom.se.vcs.jgit;
 import gr.uom.se.vcs.VCSCommit;
 import gr.uom.se.vcs.VCSTag;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
 
 import java.io.IOException;
 
@@ -42,21 +43,43 @@ public class VCSTagImp extends GitReference implements VCSTag {
       super(ref, repo);
    }
 
+   /**
+    * Creates a new instance of a tag that points to the given commit.
+    * <p>
+    * 
+    * @param ref
+    *           must not be null
+    * @param owner
+    *           the repository this tag comes from, must not be null
+    * @param commit
+    *           the peeled commit id of the tag, or null if it is not known
+    * @see GitReference#GitReference(Ref, VCSRepositoryImp, ObjectId)
+    */
+   public VCSTagImp(final Ref ref, final VCSRepositoryImp owner,
+         final ObjectId commit) {
+      super(ref, owner, commit);
+   }
+
    /**
     * {@inheritDoc}
     */
    @Override
    public VCSCommit getCommit() throws VCSRepositoryException {
 
-      final RevWalk walk = new RevWalk(this.repo);
+      // The tag is already peeled
+      if (this.commit != null) {
+         return VCSCommitImp.of(this.commit, this.repo, this.owner);
+      }
+
+      final RevWalk walk = ReaderPool.revWalk(this.pool(), this.repo);
       ObjectId id = this.ref.getPeeledObjectId();
       if (id == null) {
          id = this.ref.getObjectId();
       }
       try {
 
-         return id != null ? new VCSCommitImp(walk.parseCommit(id), this.repo)
-               : null;
+         return id != null ? VCSCommitImp.of(walk.parseCommit(id), this.repo,
+               this.owner) : null;
 
       } catch (final MissingObjectException e) {
          throw new VCSRepositoryException(e);
@@ -0,0 +1,258 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.VCSChange;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+import gr.uom.se.vcs.jgit.utils.RevUtils;
+import gr.uom.se.vcs.jgit.walker.DiffCollector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Caches the change summary of commits, that is the type of change of each
+ * path of a commit, compared to each of its parents.
+ * <p>
+ *
+ * When the change type of many resources of the same commit is required (i.e.
+ * checking if each file of a commit is added or modified), the commit is
+ * diffed to its parents only once, and the summary answers the queries of all
+ * its resources. The summary contains only the paths of the files that were
+ * changed, and it doesn't detect renames, the same as diffing each resource
+ * separately. The changed paths are sorted, so the changes under a directory
+ * can be found without scanning all of them (see
+ * {@link Summary#hasChangeUnder(int, String)}).
+ * <p>
+ * The cache is bounded, when it is full the summary of the least recently used
+ * commit is removed.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ChangeSummaryCache {
+
+   /**
+    * The default number of commit summaries to keep in cache.
+    * <p>
+    */
+   public static final int DEFAULT_CAPACITY = 128;
+
+   /**
+    * Commit id to summary.
+    * <p>
+    */
+   private final Map<ObjectId, Summary> cache;
+
+   /**
+    * Creates a new cache of {@link #DEFAULT_CAPACITY}.
+    * <p>
+    */
+   public ChangeSummaryCache() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a new cache of the given capacity.
+    * <p>
+    *
+    * @param capacity
+    *           the maximum number of summaries to keep in cache, must be
+    *           greater than zero
+    */
+   public ChangeSummaryCache(final int capacity) {
+
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("capacity must be greater than 0");
+      }
+
+      this.cache = new LinkedHashMap<ObjectId, Summary>(16, 0.75f, true) {
+
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(
+               final Map.Entry<ObjectId, Summary> eldest) {
+            return this.size() > capacity;
+         }
+      };
+   }
+
+   /**
+    * Get the change summary of the given commit.
+    * <p>
+    * If the summary is not in cache the commit will be diffed to each of its
+    * parents.
+    *
+    * @param repo
+    *           the repository of the commit, must not be null
+    * @param commit
+    *           the commit, with its parents parsed, must not be null
+    * @return the summary of the commit
+    * @throws VCSRepositoryException
+    *            if the commit can not be diffed
+    */
+   public Summary get(final Repository repo, final RevCommit commit)
+         throws VCSRepositoryException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("commit", commit);
+
+      synchronized (this.cache) {
+         final Summary summary = this.cache.get(commit);
+         if (summary != null) {
+            return summary;
+         }
+      }
+
+      // Diff the commit out of lock, two threads may diff the
+      // same commit but the result will be the same
+      final Summary summary = Summary.compute(repo, commit);
+
+      synchronized (this.cache) {
+         this.cache.put(commit.copy(), summary);
+      }
+      return summary;
+   }
+
+   /**
+    * The change summary of a commit.
+    * <p>
+    * For each parent it keeps the changed paths, and the types of change of
+    * each one. A path may have more than one type of change compared to the
+    * same parent, if its type changed (i.e. a file replaced by a link is a
+    * deletion and an addition).
+    * <p>
+    * This class is immutable.
+    */
+   public static class Summary {
+
+      /**
+       * For each parent, the path to the bits (by ordinal) of its change
+       * types, sorted by path.
+       * <p>
+       */
+      private final List<SortedMap<String, Integer>> parents;
+
+      private Summary(final List<SortedMap<String, Integer>> parents) {
+         this.parents = parents;
+      }
+
+      /**
+       * Diff the given commit to each of its parents.
+       * <p>
+       */
+      static Summary compute(final Repository repo, final RevCommit commit)
+            throws VCSRepositoryException {
+
+         final RevCommit[] revs = commit.getParents();
+         final List<SortedMap<String, Integer>> parents = new ArrayList<SortedMap<String, Integer>>(
+               revs.length);
+
+         for (final RevCommit parent : revs) {
+
+            final SortedMap<String, Integer> changes = new TreeMap<String, Integer>();
+            final DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
+                  repo, parent, commit);
+
+            for (final DiffEntry e : diffs.collect()) {
+               final VCSChange.Type t = RevUtils.changeType(e.getChangeType());
+               final String path = t.isDelete() ? e.getOldPath() : e
+                     .getNewPath();
+               final Integer bits = changes.get(path);
+               final int bit = 1 << t.ordinal();
+               changes.put(path, bits == null ? bit : bits | bit);
+            }
+            parents.add(changes);
+         }
+         return new Summary(Collections.unmodifiableList(parents));
+      }
+
+      /**
+       * @return the number of parents of the commit
+       */
+      public int getParentCount() {
+         return this.parents.size();
+      }
+
+      /**
+       * Check if the given path has the given type of change, compared to the
+       * given parent.
+       * <p>
+       *
+       * @param parent
+       *           the index of the parent
+       * @param path
+       *           the path of a file, must not be null
+       * @param type
+       *           the type of change, must not be null
+       * @return true if the path has the given type of change
+       */
+      public boolean hasChange(final int parent, final String path,
+            final VCSChange.Type type) {
+
+         ArgsCheck.notNull("path", path);
+         ArgsCheck.notNull("type", type);
+
+         final Integer bits = this.parents.get(parent).get(path);
+         return bits != null && (bits & (1 << type.ordinal())) != 0;
+      }
+
+      /**
+       * Check if there is a changed path under the given directory, compared
+       * to the given parent.
+       * <p>
+       *
+       * @param parent
+       *           the index of the parent
+       * @param dir
+       *           the path of a directory, must not be null
+       * @return true if a path under the directory is changed
+       */
+      public boolean hasChangeUnder(final int parent, final String dir) {
+
+         ArgsCheck.notNull("dir", dir);
+
+         // The paths under dir are those from dir/ up to dir0, as '0' is the
+         // character after '/'
+         return !this.parents.get(parent).subMap(dir + '/', dir + '0')
+               .isEmpty();
+      }
+
+      /**
+       * Check if the given path has the given type of change, compared to any
+       * of the parents.
+       * <p>
+       *
+       * @param path
+       *           the path of a file, must not be null
+       * @param type
+       *           the type of change, must not be null
+       * @return true if the path has the given type of change
+       */
+      public boolean hasChange(final String path, final VCSChange.Type type) {
+
+         for (int i = 0; i < this.parents.size(); i++) {
+            if (this.hasChange(i, path, type)) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+}
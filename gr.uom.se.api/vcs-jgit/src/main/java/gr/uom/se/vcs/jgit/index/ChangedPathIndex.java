@@ -0,0 +1,572 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Keeps for each commit a Bloom filter of the paths it changed, the same as
+ * git's changed-path filters.
+ * <p>
+ *
+ * The filter of a commit contains all paths that differ between the commit
+ * and its first parent (or all paths of a root commit), together with their
+ * parent directories. A filter may answer that a path is maybe changed when
+ * it is not, but never that a path is not changed when it is. A path-limited
+ * history walk uses the filters to skip the tree diffs of most commits that
+ * did not change the path (see
+ * {@link gr.uom.se.vcs.jgit.walker.ChangedPathRevFilter}).
+ * <p>
+ * Commits that change too many paths (more than {@link #MAX_PATHS}) are not
+ * filtered, they are always considered to maybe change a path.
+ * <p>
+ * The filters are stored in a file ({@link #FILE_NAME}) under .git directory.
+ * The file has a header, and an entry for each commit with its id and its
+ * filter bits. Call {@link #update()} each time new commits arrive (i.e.
+ * after a fetch), the filters of the new commits will be added and the file
+ * will be replaced by a temporary file with all filters, so it never contains
+ * a partially written entry. If the file can not be written the filters are
+ * kept in memory.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ChangedPathIndex {
+
+   /**
+    * The name of the file, under .git directory, the filters are stored.
+    * <p>
+    */
+   public static final String FILE_NAME = "uom-changed-paths";
+
+   /**
+    * The maximum number of changed paths of a commit that will be filtered.
+    * <p>
+    */
+   public static final int MAX_PATHS = 512;
+
+   /**
+    * The signature of the file ('UCPF').
+    * <p>
+    */
+   private static final int MAGIC = 0x55435046;
+
+   /**
+    * The version of the file format.
+    * <p>
+    */
+   private static final int VERSION = 1;
+
+   /**
+    * Magic, version and number of entries.
+    * <p>
+    */
+   private static final int HEADER_SIZE = 12;
+
+   /**
+    * The number of filter bits for each path.
+    * <p>
+    */
+   private static final int BITS_PER_PATH = 10;
+
+   /**
+    * The number of hash functions.
+    * <p>
+    */
+   private static final int HASHES = 7;
+
+   /**
+    * The length of the bits of a commit that is not filtered.
+    * <p>
+    */
+   private static final int NOT_FILTERED = -1;
+
+   /**
+    * The seeds of the two hashes used to derive all hashes.
+    * <p>
+    */
+   private static final int SEED1 = 0x293ae76f;
+   private static final int SEED2 = 0x7e646e2c;
+
+   /**
+    * The filter of a commit.
+    * <p>
+    */
+   private static class Filter extends ObjectId {
+
+      /**
+       * The bits of the filter, or null if the commit is not filtered.
+       */
+      final long[] bits;
+
+      Filter(final AnyObjectId id, final long[] bits) {
+         super(id);
+         this.bits = bits;
+      }
+
+      boolean mightContain(final byte[] path) {
+
+         if (this.bits == null) {
+            return true;
+         }
+         if (this.bits.length == 0) {
+            return false;
+         }
+
+         final long m = this.bits.length * 64L;
+         final int h1 = murmur3(path, SEED1);
+         final int h2 = murmur3(path, SEED2);
+         for (int i = 0; i < HASHES; i++) {
+            final int bit = (int) (((h1 + (i * h2)) & 0xffffffffL) % m);
+            if ((this.bits[bit >>> 6] & (1L << (bit & 63))) == 0) {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
+   /**
+    * The repository of this index.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * The file where the filters are stored.
+    * <p>
+    */
+   private final File file;
+
+   /**
+    * The filters of all indexed commits.
+    * <p>
+    * This map is never modified after it is published, a new one is created
+    * at each update.
+    */
+   private volatile ObjectIdSubclassMap<Filter> filters = new ObjectIdSubclassMap<Filter>();
+
+   /**
+    * Creates a new, empty index for the given repository.
+    * <p>
+    * Call {@link #load()} to read previously stored filters, and
+    * {@link #update()} to compute the filters of commits that are not
+    * indexed.
+    *
+    * @param repo
+    *           the repository of this index, must not be null
+    */
+   public ChangedPathIndex(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+      this.file = new File(repo.getDirectory(), FILE_NAME);
+   }
+
+   /**
+    * @return the file where the filters are stored
+    */
+   public File getFile() {
+      return this.file;
+   }
+
+   /**
+    * Load the filters from their file, if there is one.
+    * <p>
+    * If the file doesn't exist or is not a valid file, this index will be
+    * empty.
+    *
+    * @throws VCSRepositoryException
+    *            if the file can not be read
+    */
+   public synchronized void load() throws VCSRepositoryException {
+
+      final ObjectIdSubclassMap<Filter> loaded = new ObjectIdSubclassMap<Filter>();
+      if (this.file.isFile()) {
+         try {
+            if (!read(this.file, loaded)) {
+               loaded.clear();
+            }
+         } catch (final IOException e) {
+            throw new VCSRepositoryException(e);
+         }
+      }
+      this.filters = loaded;
+   }
+
+   /**
+    * Read all entries of the given file.
+    * <p>
+    *
+    * @return false if the file is not a valid filters file
+    */
+   private static boolean read(final File file,
+         final ObjectIdSubclassMap<Filter> map) throws IOException {
+
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file)));
+      try {
+         if (file.length() < HEADER_SIZE || in.readInt() != MAGIC
+               || in.readInt() != VERSION) {
+            return false;
+         }
+         final int count = in.readInt();
+         if (count < 0) {
+            return false;
+         }
+
+         final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+         for (int i = 0; i < count; i++) {
+            in.readFully(raw);
+            final int length = in.readInt();
+            long[] bits = null;
+            if (length != NOT_FILTERED) {
+               if (length < 0) {
+                  return false;
+               }
+               bits = new long[length];
+               for (int j = 0; j < length; j++) {
+                  bits[j] = in.readLong();
+               }
+            }
+            map.add(new Filter(ObjectId.fromRaw(raw), bits));
+         }
+         return true;
+      } catch (final EOFException e) {
+         // The file was not completely written
+         return false;
+      } finally {
+         in.close();
+      }
+   }
+
+   /**
+    * Compute the filters of all commits that are reachable from the
+    * references of repository, but they are not yet indexed.
+    * <p>
+    * If there are new commits their filters will be added to the index, and
+    * the file will be rewritten with all filters, through a temporary file.
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void update() throws VCSRepositoryException {
+
+      final ObjectIdSubclassMap<Filter> old = this.filters;
+      final List<Filter> added = new ArrayList<Filter>();
+      final ObjectIdSubclassMap<Filter> seen = new ObjectIdSubclassMap<Filter>();
+
+      final ObjectReader reader = this.repo.newObjectReader();
+      final RevWalk walk = new RevWalk(reader);
+      walk.setRetainBody(false);
+      final TreeWalk tw = new TreeWalk(reader);
+      tw.setRecursive(true);
+      tw.setFilter(TreeFilter.ANY_DIFF);
+
+      try {
+         final List<RevCommit> stack = new ArrayList<RevCommit>();
+         for (final Ref ref : this.repo.getAllRefs().values()) {
+            final ObjectId id = ref.getObjectId();
+            if (id == null) {
+               continue;
+            }
+            final RevObject obj = walk.peel(walk.parseAny(id));
+            if (obj instanceof RevCommit && !old.contains(obj)) {
+               stack.add((RevCommit) obj);
+            }
+         }
+
+         while (!stack.isEmpty()) {
+
+            final RevCommit c = stack.remove(stack.size() - 1);
+            if (seen.contains(c)) {
+               continue;
+            }
+            walk.parseHeaders(c);
+
+            final Filter f = new Filter(c, this.compute(walk, tw, c));
+            seen.add(f);
+            added.add(f);
+
+            for (final RevCommit p : c.getParents()) {
+               if (!seen.contains(p) && !old.contains(p)) {
+                  stack.add(p);
+               }
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         reader.release();
+      }
+
+      if (added.isEmpty()) {
+         return;
+      }
+
+      final ObjectIdSubclassMap<Filter> all = new ObjectIdSubclassMap<Filter>();
+      for (final Filter f : old) {
+         all.add(f);
+      }
+      for (final Filter f : added) {
+         all.add(f);
+      }
+      this.store(all);
+      this.filters = all;
+   }
+
+   /**
+    * Compute the filter bits of the given commit.
+    * <p>
+    *
+    * @return the filter bits or null if the commit changes too many paths
+    */
+   private long[] compute(final RevWalk walk, final TreeWalk tw,
+         final RevCommit c) throws IOException {
+
+      tw.reset();
+      if (c.getParentCount() > 0) {
+         tw.addTree(walk.parseCommit(c.getParent(0)).getTree());
+      } else {
+         tw.addTree(new EmptyTreeIterator());
+      }
+      tw.addTree(c.getTree());
+
+      final Set<String> paths = new HashSet<String>();
+      while (tw.next()) {
+         String path = tw.getPathString();
+         // Add the path and all its parent directories
+         while (paths.add(path)) {
+            final int slash = path.lastIndexOf('/');
+            if (slash < 0) {
+               break;
+            }
+            path = path.substring(0, slash);
+         }
+         if (paths.size() > MAX_PATHS) {
+            return null;
+         }
+      }
+
+      if (paths.isEmpty()) {
+         return new long[0];
+      }
+
+      final int words = ((paths.size() * BITS_PER_PATH) + 63) / 64;
+      final long[] bits = new long[words];
+      final long m = words * 64L;
+      for (final String path : paths) {
+         final byte[] raw = Constants.encode(path);
+         final int h1 = murmur3(raw, SEED1);
+         final int h2 = murmur3(raw, SEED2);
+         for (int i = 0; i < HASHES; i++) {
+            final int bit = (int) (((h1 + (i * h2)) & 0xffffffffL) % m);
+            bits[bit >>> 6] |= 1L << (bit & 63);
+         }
+      }
+      return bits;
+   }
+
+   /**
+    * Write all filters to a temporary file, and replace the file with it.
+    * <p>
+    * If the file can not be written the old file is kept, so it will never
+    * contain a partially written entry, and the new filters are kept only in
+    * memory.
+    */
+   private void store(final ObjectIdSubclassMap<Filter> all) {
+
+      final File tmp = new File(this.file.getParentFile(), FILE_NAME + ".tmp");
+      try {
+         final DataOutputStream out = new DataOutputStream(
+               new BufferedOutputStream(new FileOutputStream(tmp)));
+         try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(all.size());
+            final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            for (final Filter f : all) {
+               f.copyRawTo(raw, 0);
+               out.write(raw);
+               if (f.bits == null) {
+                  out.writeInt(NOT_FILTERED);
+               } else {
+                  out.writeInt(f.bits.length);
+                  for (final long w : f.bits) {
+                     out.writeLong(w);
+                  }
+               }
+            }
+         } finally {
+            out.close();
+         }
+
+         if (!tmp.renameTo(this.file)) {
+            if (!this.file.delete() || !tmp.renameTo(this.file)) {
+               tmp.delete();
+            }
+         }
+      } catch (final IOException e) {
+         tmp.delete();
+      }
+   }
+
+   /**
+    * @return the number of indexed commits
+    */
+   public int size() {
+      return this.filters.size();
+   }
+
+   /**
+    * Check if the given commit is indexed.
+    * <p>
+    *
+    * @param commit
+    *           to check
+    * @return true if the commit has a filter
+    */
+   public boolean contains(final AnyObjectId commit) {
+      ArgsCheck.notNull("commit", commit);
+      return this.filters.contains(commit);
+   }
+
+   /**
+    * Check if the given path may be changed by the given commit, with respect
+    * to its first parent.
+    * <p>
+    *
+    * @param commit
+    *           the commit to check
+    * @param path
+    *           a path relative to the root of repository, without a trailing
+    *           slash
+    * @return {@link Boolean#FALSE} if the path was definitely not changed,
+    *         {@link Boolean#TRUE} if it may be changed, or null if the commit
+    *         is not indexed
+    */
+   public Boolean mightChange(final AnyObjectId commit, final String path) {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("path", path);
+
+      final Filter f = this.filters.get(commit);
+      if (f == null) {
+         return null;
+      }
+      return f.mightContain(Constants.encode(path));
+   }
+
+   /**
+    * Check if any of the given paths may be changed by the given commit, with
+    * respect to its first parent.
+    * <p>
+    * The paths must be encoded with {@link Constants#encode(String)}.
+    *
+    * @param commit
+    *           the commit to check
+    * @param paths
+    *           the encoded paths
+    * @return {@link Boolean#FALSE} if none of the paths was changed,
+    *         {@link Boolean#TRUE} if one of them may be changed, or null if
+    *         the commit is not indexed
+    */
+   public Boolean mightChange(final AnyObjectId commit, final byte[][] paths) {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("paths", paths);
+
+      final Filter f = this.filters.get(commit);
+      if (f == null) {
+         return null;
+      }
+      for (final byte[] path : paths) {
+         if (f.mightContain(path)) {
+            return Boolean.TRUE;
+         }
+      }
+      return Boolean.FALSE;
+   }
+
+   /**
+    * The 32 bit murmur3 hash of the given bytes.
+    * <p>
+    */
+   private static int murmur3(final byte[] data, final int seed) {
+
+      final int c1 = 0xcc9e2d51;
+      final int c2 = 0x1b873593;
+      final int len = data.length;
+      int h = seed;
+      final int blocks = len / 4;
+
+      for (int i = 0; i < blocks; i++) {
+         final int off = i * 4;
+         int k = (data[off] & 0xff) | ((data[off + 1] & 0xff) << 8)
+               | ((data[off + 2] & 0xff) << 16) | ((data[off + 3] & 0xff) << 24);
+         k *= c1;
+         k = Integer.rotateLeft(k, 15);
+         k *= c2;
+         h ^= k;
+         h = Integer.rotateLeft(h, 13);
+         h = (h * 5) + 0xe6546b64;
+      }
+
+      int k = 0;
+      final int tail = blocks * 4;
+      switch (len & 3) {
+      case 3:
+         k ^= (data[tail + 2] & 0xff) << 16;
+      case 2:
+         k ^= (data[tail + 1] & 0xff) << 8;
+      case 1:
+         k ^= data[tail] & 0xff;
+         k *= c1;
+         k = Integer.rotateLeft(k, 15);
+         k *= c2;
+         h ^= k;
+      default:
+         break;
+      }
+
+      h ^= len;
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h;
+   }
+}
@@ -0,0 +1,413 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Keeps the commit that was last checked out into each directory.
+ * <p>
+ *
+ * An incremental checkout (see
+ * {@link gr.uom.se.vcs.VCSCommit#checkout(String, java.util.concurrent.ExecutorService, String...)}
+ * ) uses this index to find the commit whose files are in the directory, so it
+ * can write only the files that differ. A directory is recorded together with
+ * the paths the checkout was limited to, and it is found only if the same
+ * paths are given.
+ * <p>
+ * The index is stored in a file ({@link #FILE_NAME}) under .git directory, so
+ * it is kept between sessions. The file is read each time a directory is
+ * looked up, and written each time a directory is recorded or removed, so
+ * all instances of the same repository see the same records.
+ * <p>
+ * Together with the commit, the size and the modification time of each file
+ * of the directory are recorded, in a separate file for each directory. Before
+ * an incremental checkout the files of the directory are compared with the
+ * recorded ones (see {@link Checkout#compare(File, Collection, Collection)}),
+ * so files that were changed or added by others after the checkout are found.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class CheckoutIndex {
+
+   /**
+    * The name of the file, under .git directory, the index is stored.
+    * <p>
+    */
+   public static final String FILE_NAME = "uom-checkouts";
+
+   /**
+    * The separator of the commit id and the paths of a record.
+    * <p>
+    */
+   private static final char SEPARATOR = '\n';
+
+   /**
+    * A directory as it was recorded by this index.
+    * <p>
+    * This class is immutable.
+    */
+   public static class Checkout {
+
+      /**
+       * The commit that was checked out.
+       * <p>
+       */
+      private final ObjectId commit;
+
+      /**
+       * The path of each file relative to the directory, to its size and its
+       * modification time.
+       * <p>
+       */
+      private final Map<String, long[]> files;
+
+      Checkout(final ObjectId commit, final Map<String, long[]> files) {
+         this.commit = commit;
+         this.files = files;
+      }
+
+      /**
+       * @return the commit that was checked out into the directory
+       */
+      public ObjectId getCommit() {
+         return this.commit;
+      }
+
+      /**
+       * Compare the recorded files with the current files of the given
+       * directory.
+       * <p>
+       *
+       * @param dir
+       *           the directory of the checkout, must not be null
+       * @param changed
+       *           where to add the paths of the recorded files that were
+       *           changed or deleted since they were recorded
+       * @param untracked
+       *           where to add the paths of the files that were not recorded
+       */
+      public void compare(final File dir, final Collection<String> changed,
+            final Collection<String> untracked) {
+
+         ArgsCheck.notNull("dir", dir);
+
+         final Map<String, long[]> current = scan(dir);
+         for (final Map.Entry<String, long[]> e : this.files.entrySet()) {
+            final long[] stamp = current.get(e.getKey());
+            if (stamp == null || !Arrays.equals(stamp, e.getValue())) {
+               changed.add(e.getKey());
+            }
+         }
+         for (final String path : current.keySet()) {
+            if (!this.files.containsKey(path)) {
+               untracked.add(path);
+            }
+         }
+      }
+   }
+
+   /**
+    * The file where the index is stored.
+    * <p>
+    */
+   private final File file;
+
+   /**
+    * Creates a new index for the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository of this index, must not be null
+    */
+   public CheckoutIndex(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.file = new File(repo.getDirectory(), FILE_NAME);
+   }
+
+   /**
+    * @return the file where the index is stored
+    */
+   public File getFile() {
+      return this.file;
+   }
+
+   /**
+    * Get the checkout that was last recorded for the given directory, limited
+    * to the given paths.
+    * <p>
+    *
+    * @param dir
+    *           the directory of the checkout, must not be null
+    * @param paths
+    *           the paths the checkout was limited to, may be null
+    * @return the checkout of the directory, or null if the directory is not
+    *         recorded, or it was recorded with different paths
+    * @throws IOException
+    *            if the index can not be read
+    */
+   public synchronized Checkout get(final File dir, final String... paths)
+         throws IOException {
+
+      ArgsCheck.notNull("dir", dir);
+
+      final String key = key(dir);
+      final String record = this.read().getProperty(key);
+      if (record == null) {
+         return null;
+      }
+
+      final int i = record.indexOf(SEPARATOR);
+      final String id = i < 0 ? record : record.substring(0, i);
+      final String recorded = i < 0 ? "" : record.substring(i + 1);
+      if (!recorded.equals(join(paths)) || !ObjectId.isId(id)) {
+         return null;
+      }
+
+      final Map<String, long[]> files = readFiles(this.filesOf(key));
+      if (files == null) {
+         return null;
+      }
+      return new Checkout(ObjectId.fromString(id), files);
+   }
+
+   /**
+    * Record the commit that was checked out into the given directory, and the
+    * files the directory contains.
+    * <p>
+    *
+    * @param dir
+    *           the directory of the checkout, must not be null
+    * @param commit
+    *           the commit that was checked out, must not be null
+    * @param paths
+    *           the paths the checkout was limited to, may be null
+    * @throws IOException
+    *            if the index can not be written
+    */
+   public synchronized void put(final File dir, final AnyObjectId commit,
+         final String... paths) throws IOException {
+
+      ArgsCheck.notNull("dir", dir);
+      ArgsCheck.notNull("commit", commit);
+
+      final String key = key(dir);
+      writeFiles(this.filesOf(key), scan(dir));
+
+      final Properties records = this.read();
+      records.setProperty(key, commit.name() + SEPARATOR + join(paths));
+      this.write(records);
+   }
+
+   /**
+    * Remove the given directory from this index.
+    * <p>
+    * The next incremental checkout into this directory will write all files.
+    *
+    * @param dir
+    *           the directory to remove, must not be null
+    * @throws IOException
+    *            if the index can not be written
+    */
+   public synchronized void remove(final File dir) throws IOException {
+
+      ArgsCheck.notNull("dir", dir);
+
+      final String key = key(dir);
+      final Properties records = this.read();
+      if (records.remove(key) != null) {
+         this.write(records);
+      }
+      this.filesOf(key).delete();
+   }
+
+   private Properties read() throws IOException {
+      final Properties records = new Properties();
+      if (this.file.isFile()) {
+         final InputStream in = new FileInputStream(this.file);
+         try {
+            records.load(in);
+         } finally {
+            in.close();
+         }
+      }
+      return records;
+   }
+
+   /**
+    * Write the records to a temporary file, and replace the index file with
+    * it.
+    * <p>
+    */
+   private void write(final Properties records) throws IOException {
+
+      final File tmp = new File(this.file.getParentFile(), FILE_NAME + ".tmp");
+      final OutputStream out = new FileOutputStream(tmp);
+      try {
+         records.store(out, null);
+      } finally {
+         out.close();
+      }
+
+      if (!tmp.renameTo(this.file)) {
+         if (!this.file.delete() || !tmp.renameTo(this.file)) {
+            tmp.delete();
+            throw new IOException("can not write " + this.file);
+         }
+      }
+   }
+
+   private static String key(final File dir) throws IOException {
+      return dir.getCanonicalPath();
+   }
+
+   /**
+    * Get the file where the files of the given directory are recorded.
+    * <p>
+    */
+   private File filesOf(final String key) {
+      final ObjectId hash = ObjectId.fromRaw(Constants.newMessageDigest()
+            .digest(Constants.encode(key)));
+      return new File(this.file.getParentFile(), FILE_NAME + "-"
+            + hash.name());
+   }
+
+   /**
+    * Get the size and the modification time of all files under the given
+    * directory, by their paths relative to the directory.
+    * <p>
+    */
+   private static Map<String, long[]> scan(final File dir) {
+      final Map<String, long[]> files = new HashMap<String, long[]>();
+      scan(dir, "", files);
+      return files;
+   }
+
+   private static void scan(final File dir, final String prefix,
+         final Map<String, long[]> files) {
+
+      final File[] children = dir.listFiles();
+      if (children == null) {
+         return;
+      }
+      for (final File child : children) {
+         final String path = prefix + child.getName();
+         if (child.isDirectory()) {
+            scan(child, path + '/', files);
+         } else {
+            files.put(path,
+                  new long[] { child.length(), child.lastModified() });
+         }
+      }
+   }
+
+   /**
+    * Read the recorded files of a directory.
+    * <p>
+    *
+    * @return the recorded files, or null if there is not a valid record
+    */
+   private static Map<String, long[]> readFiles(final File from)
+         throws IOException {
+
+      if (!from.isFile()) {
+         return null;
+      }
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(from)));
+      try {
+         final int count = in.readInt();
+         if (count < 0) {
+            return null;
+         }
+         final Map<String, long[]> files = new HashMap<String, long[]>();
+         for (int i = 0; i < count; i++) {
+            final String path = in.readUTF();
+            files.put(path, new long[] { in.readLong(), in.readLong() });
+         }
+         return files;
+      } catch (final EOFException e) {
+         return null;
+      } finally {
+         in.close();
+      }
+   }
+
+   /**
+    * Write the files of a directory to a temporary file, and replace the
+    * given file with it.
+    * <p>
+    */
+   private static void writeFiles(final File to,
+         final Map<String, long[]> files) throws IOException {
+
+      final File tmp = new File(to.getParentFile(), to.getName() + ".tmp");
+      final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmp)));
+      try {
+         out.writeInt(files.size());
+         for (final Map.Entry<String, long[]> e : files.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue()[0]);
+            out.writeLong(e.getValue()[1]);
+         }
+      } finally {
+         out.close();
+      }
+
+      if (!tmp.renameTo(to)) {
+         if (!to.delete() || !tmp.renameTo(to)) {
+            tmp.delete();
+            throw new IOException("can not write " + to);
+         }
+      }
+   }
+
+   /**
+    * Join the given paths in a string that doesn't depend on their order.
+    * <p>
+    */
+   private static String join(final String... paths) {
+
+      if (paths == null || paths.length == 0) {
+         return "";
+      }
+      final String[] sorted = paths.clone();
+      Arrays.sort(sorted);
+      final StringBuilder sb = new StringBuilder();
+      for (final String p : sorted) {
+         if (sb.length() > 0) {
+            sb.append(SEPARATOR);
+         }
+         sb.append(p);
+      }
+      return sb.toString();
+   }
+}
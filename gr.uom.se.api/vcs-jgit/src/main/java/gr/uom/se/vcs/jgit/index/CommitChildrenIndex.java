@@ -0,0 +1,337 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * A reverse parent (children) index of all commits reachable from the branches
+ * of a repository.
+ * <p>
+ *
+ * Git commits know only their parents, so finding the children of a commit
+ * requires to walk all the history from the heads that contain the commit. This
+ * index walks once all branch heads (local and remote ones) and for each commit
+ * it meets, registers the commit as a child of its parents. After that, the
+ * children of a commit are just a lookup.
+ * <p>
+ * The index is built by calling {@link #build()} and should be refreshed by
+ * calling {@link #refresh()} each time the references of the repository are
+ * changed (i.e. after a fetch). Refreshing will walk only the new commits,
+ * unless a branch was deleted or rewritten, in which case the index is rebuilt.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class CommitChildrenIndex {
+
+   /**
+    * The prefixes of references that are considered as branches.
+    * <p>
+    * These are the same references a list branch command in mode ALL returns.
+    */
+   private static final String[] BRANCH_PREFIXES = { Constants.R_HEADS,
+         Constants.R_REMOTES };
+
+   /**
+    * An entry of this index, that is a commit id and its children.
+    * <p>
+    */
+   private static class Node extends ObjectId {
+
+      private static final ObjectId[] NO_CHILDREN = {};
+
+      ObjectId[] children = NO_CHILDREN;
+
+      Node(final AnyObjectId id) {
+         super(id);
+      }
+
+      void addChild(final ObjectId child) {
+         final int len = this.children.length;
+         this.children = Arrays.copyOf(this.children, len + 1);
+         this.children[len] = child;
+      }
+   }
+
+   /**
+    * The repository this index is built for.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * All indexed commits.
+    * <p>
+    * If null the index is not built yet.
+    */
+   private ObjectIdSubclassMap<Node> nodes;
+
+   /**
+    * The branch tips (reference name to commit id) this index was built from.
+    * <p>
+    */
+   private Map<String, ObjectId> tips;
+
+   /**
+    * Creates a new, empty index for the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository to index, must not be null
+    */
+   public CommitChildrenIndex(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+   }
+
+   /**
+    * Build this index from scratch, by walking all branches at once.
+    * <p>
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void build() throws VCSRepositoryException {
+
+      final Map<String, ObjectId> current = this.readTips();
+      final ObjectIdSubclassMap<Node> map = new ObjectIdSubclassMap<Node>();
+
+      this.index(map, current.values(), Collections.<ObjectId> emptyList());
+
+      this.nodes = map;
+      this.tips = current;
+   }
+
+   /**
+    * Bring this index up to date with the current branches of repository.
+    * <p>
+    * If branches were only created or moved forward, only the new commits will
+    * be walked. If a branch was deleted or rewritten (non fast forward update)
+    * the index will be built again. If the index was never built this will
+    * build it.
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void refresh() throws VCSRepositoryException {
+
+      if (this.nodes == null) {
+         this.build();
+         return;
+      }
+
+      final Map<String, ObjectId> current = this.readTips();
+      final List<ObjectId> starts = new ArrayList<ObjectId>();
+
+      try {
+         final RevWalk walk = new RevWalk(this.repo);
+         walk.setRetainBody(false);
+         try {
+            for (final Map.Entry<String, ObjectId> e : this.tips.entrySet()) {
+
+               final ObjectId newTip = current.get(e.getKey());
+
+               // A branch was deleted, its commits may be no more reachable
+               if (newTip == null) {
+                  this.build();
+                  return;
+               }
+
+               // A branch was rewritten, some commits may be no more
+               // reachable
+               if (!AnyObjectId.equals(newTip, e.getValue())) {
+                  final RevCommit oldC = walk.parseCommit(e.getValue());
+                  final RevCommit newC = walk.parseCommit(newTip);
+                  if (!walk.isMergedInto(oldC, newC)) {
+                     this.build();
+                     return;
+                  }
+                  walk.reset();
+               }
+            }
+         } finally {
+            walk.release();
+         }
+      } catch (final MissingObjectException e) {
+         // An old tip is no longer in repository
+         this.build();
+         return;
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      }
+
+      for (final ObjectId tip : current.values()) {
+         if (!this.nodes.contains(tip)) {
+            starts.add(tip);
+         }
+      }
+
+      if (!starts.isEmpty()) {
+         this.index(this.nodes, starts, this.tips.values());
+      }
+      this.tips = current;
+   }
+
+   /**
+    * Walk all commits reachable from <code>starts</code> but not from
+    * <code>stops</code>, and register them as children of their parents.
+    * <p>
+    *
+    * @param map
+    *           the map to put the nodes
+    * @param starts
+    *           the tips to start walking
+    * @param stops
+    *           the tips that are already indexed
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   private void index(final ObjectIdSubclassMap<Node> map,
+         final Collection<ObjectId> starts, final Collection<ObjectId> stops)
+         throws VCSRepositoryException {
+
+      final RevWalk walk = new RevWalk(this.repo);
+      // We need only the parents of each commit
+      walk.setRetainBody(false);
+
+      try {
+         for (final ObjectId id : starts) {
+            walk.markStart(walk.parseCommit(id));
+         }
+         for (final ObjectId id : stops) {
+            walk.markUninteresting(walk.parseCommit(id));
+         }
+
+         RevCommit current = null;
+         while ((current = walk.next()) != null) {
+
+            // Each commit must have a node, even if it has no children
+            final ObjectId child = this.nodeOf(map, current);
+
+            for (final RevCommit parent : current.getParents()) {
+               this.nodeOf(map, parent).addChild(child);
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+   }
+
+   /**
+    * Get the node of the given id, or create a new one if it doesn't exist.
+    * <p>
+    */
+   private Node nodeOf(final ObjectIdSubclassMap<Node> map,
+         final AnyObjectId id) {
+      Node node = map.get(id);
+      if (node == null) {
+         node = new Node(id);
+         map.add(node);
+      }
+      return node;
+   }
+
+   /**
+    * Read all branch references and resolve them to commit ids.
+    * <p>
+    * References that do not point to a commit will be ignored.
+    */
+   private Map<String, ObjectId> readTips() throws VCSRepositoryException {
+
+      final Map<String, ObjectId> current = new HashMap<String, ObjectId>();
+      final RevWalk walk = new RevWalk(this.repo);
+      try {
+         for (final String prefix : BRANCH_PREFIXES) {
+            for (final Ref ref : this.repo.getRefDatabase().getRefs(prefix)
+                  .values()) {
+
+               final ObjectId id = ref.getLeaf().getObjectId();
+               if (id == null) {
+                  continue;
+               }
+               final RevObject obj = walk.peel(walk.parseAny(id));
+               if (obj instanceof RevCommit) {
+                  current.put(ref.getName(), obj.copy());
+               }
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+      return current;
+   }
+
+   /**
+    * Check if the given commit is known to this index.
+    * <p>
+    * A commit is known only if it is reachable from a branch at the time the
+    * index was built or refreshed.
+    *
+    * @param commit
+    *           to check
+    * @return true if the given commit is indexed
+    */
+   public synchronized boolean contains(final AnyObjectId commit) {
+      return this.nodes != null && this.nodes.contains(commit);
+   }
+
+   /**
+    * Get the ids of the children of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get the children
+    * @return the children of the given commit, or an empty list if it has no
+    *         children or it is not indexed
+    */
+   public synchronized List<ObjectId> getChildren(final AnyObjectId commit) {
+
+      ArgsCheck.notNull("commit", commit);
+
+      if (this.nodes == null) {
+         return Collections.emptyList();
+      }
+      final Node node = this.nodes.get(commit);
+      if (node == null) {
+         return Collections.emptyList();
+      }
+      return Collections.unmodifiableList(Arrays.asList(node.children));
+   }
+
+   /**
+    * @return the number of indexed commits
+    */
+   public synchronized int size() {
+      return this.nodes == null ? 0 : this.nodes.size();
+   }
+}
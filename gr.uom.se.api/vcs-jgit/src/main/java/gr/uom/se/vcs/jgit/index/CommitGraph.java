@@ -0,0 +1,910 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * A persistent commit graph, stored under the .git directory of a repository.
+ * <p>
+ *
+ * The graph keeps for each commit reachable from any reference of repository,
+ * its parents, its commit time and its generation number. The generation
+ * number of a root commit is 1, and the generation of any other commit is one
+ * more than the maximum generation of its parents. So if commit A is an
+ * ancestor of commit B, then the generation of A is less than the generation
+ * of B. Ancestry checks use this property to prune the walk, and are answered
+ * without parsing any commit object.
+ * <p>
+ * The graph is stored in a compact binary file ({@link #FILE_NAME}) that is
+ * memory mapped when loaded. The file is a sequence of layers, each one with a
+ * header, a table of commit ids sorted so they can be found with binary
+ * search, a table with the parents, commit time and generation of each
+ * commit, and a table of extra parents for octopus merges. The commits of all
+ * layers are numbered in the order of the layers, and parents are referred by
+ * this number, so a parent is always in the same or in a previous layer.
+ * <p>
+ * Call {@link #update()} each time new commits arrive (i.e. after a fetch).
+ * Only the new commits will be parsed, and they will be added to the graph as
+ * a new layer, without rewriting the commits that are already in graph. The
+ * graph is written to its file only when {@link #store()} is called, so
+ * building or updating a graph never writes into the repository. The new
+ * layers are appended to the file, and only when there are too many layers
+ * they are merged into one and the file is rewritten.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class CommitGraph {
+
+   /**
+    * The name of the file, under .git directory, the graph is stored.
+    * <p>
+    */
+   public static final String FILE_NAME = "uom-commit-graph";
+
+   /**
+    * The signature of the file ('UCGR').
+    * <p>
+    */
+   private static final int MAGIC = 0x55434752;
+
+   /**
+    * The version of the file format.
+    * <p>
+    */
+   private static final int VERSION = 1;
+
+   /**
+    * Magic, version, number of commits and number of extra parents.
+    * <p>
+    */
+   private static final int HEADER_SIZE = 16;
+
+   /**
+    * The size of a commit id.
+    * <p>
+    */
+   private static final int ID_SIZE = 20;
+
+   /**
+    * First parent, second parent, commit time and generation.
+    * <p>
+    */
+   private static final int DATA_SIZE = 16;
+
+   /**
+    * Used as a parent position when there is not a parent.
+    * <p>
+    */
+   private static final int NO_PARENT = -1;
+
+   /**
+    * Set at second parent when the commit has more than two parents, the
+    * remaining bits are the index of its parents in extra parents table. Also
+    * set at the last parent of a commit within extra parents table.
+    * <p>
+    */
+   private static final int EXTRA_PARENTS = 0x80000000;
+
+   /**
+    * The maximum number of layers, when an update exceeds it all layers are
+    * merged into one.
+    * <p>
+    */
+   private static final int MAX_LAYERS = 16;
+
+   /**
+    * An immutable view of a layer of the graph file.
+    * <p>
+    */
+   private static class Layer {
+
+      final ByteBuffer buf;
+      final int base;
+      final int count;
+      final int ids;
+      final int data;
+      final int extra;
+
+      Layer(final ByteBuffer buf, final int base, final int count) {
+         this.buf = buf;
+         this.base = base;
+         this.count = count;
+         this.ids = HEADER_SIZE;
+         this.data = this.ids + (count * ID_SIZE);
+         this.extra = this.data + (count * DATA_SIZE);
+      }
+
+      /**
+       * Binary search for the given id, return its position within this
+       * layer or -1.
+       */
+      int find(final byte[] raw) {
+
+         int low = 0;
+         int high = this.count - 1;
+         while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = this.compare(mid, raw);
+            if (cmp < 0) {
+               low = mid + 1;
+            } else if (cmp > 0) {
+               high = mid - 1;
+            } else {
+               return mid;
+            }
+         }
+         return -1;
+      }
+
+      private int compare(final int pos, final byte[] raw) {
+         final int offset = this.ids + (pos * ID_SIZE);
+         for (int i = 0; i < ID_SIZE; i++) {
+            final int a = this.buf.get(offset + i) & 0xff;
+            final int b = raw[i] & 0xff;
+            if (a != b) {
+               return a < b ? -1 : 1;
+            }
+         }
+         return 0;
+      }
+   }
+
+   /**
+    * An immutable view of the graph contents, the commits of its layers are
+    * numbered in the order of the layers.
+    * <p>
+    */
+   private static class Snapshot {
+
+      static final Snapshot EMPTY = new Snapshot(new Layer[0]);
+
+      final Layer[] layers;
+      final int count;
+
+      Snapshot(final Layer[] layers) {
+         this.layers = layers;
+         this.count = layers.length == 0 ? 0
+               : layers[layers.length - 1].base
+                     + layers[layers.length - 1].count;
+      }
+
+      /**
+       * Search each layer for the given id, return its position or -1.
+       */
+      int find(final AnyObjectId id) {
+
+         final byte[] raw = new byte[ID_SIZE];
+         id.copyRawTo(raw, 0);
+
+         for (int i = this.layers.length - 1; i >= 0; i--) {
+            final int pos = this.layers[i].find(raw);
+            if (pos >= 0) {
+               return this.layers[i].base + pos;
+            }
+         }
+         return -1;
+      }
+
+      /**
+       * The layer of the given position.
+       */
+      private Layer layer(final int pos) {
+         int i = this.layers.length - 1;
+         while (this.layers[i].base > pos) {
+            i--;
+         }
+         return this.layers[i];
+      }
+
+      ObjectId id(final int pos) {
+         final Layer l = this.layer(pos);
+         final byte[] raw = new byte[ID_SIZE];
+         final int offset = l.ids + ((pos - l.base) * ID_SIZE);
+         for (int i = 0; i < ID_SIZE; i++) {
+            raw[i] = l.buf.get(offset + i);
+         }
+         return ObjectId.fromRaw(raw);
+      }
+
+      int commitTime(final int pos) {
+         final Layer l = this.layer(pos);
+         return l.buf.getInt(l.data + ((pos - l.base) * DATA_SIZE) + 8);
+      }
+
+      int generation(final int pos) {
+         final Layer l = this.layer(pos);
+         return l.buf.getInt(l.data + ((pos - l.base) * DATA_SIZE) + 12);
+      }
+
+      int[] parents(final int pos) {
+
+         final Layer l = this.layer(pos);
+         final int offset = l.data + ((pos - l.base) * DATA_SIZE);
+         final int p1 = l.buf.getInt(offset);
+         final int p2 = l.buf.getInt(offset + 4);
+
+         if (p1 == NO_PARENT) {
+            return new int[0];
+         }
+         if (p2 == NO_PARENT) {
+            return new int[] { p1 };
+         }
+         if ((p2 & EXTRA_PARENTS) == 0) {
+            return new int[] { p1, p2 };
+         }
+
+         // Octopus merge, read the remaining parents from extra table
+         int index = p2 & ~EXTRA_PARENTS;
+         int[] parents = new int[] { p1 };
+         int p;
+         do {
+            p = l.buf.getInt(l.extra + (index++ * 4));
+            parents = Arrays.copyOf(parents, parents.length + 1);
+            parents[parents.length - 1] = p & ~EXTRA_PARENTS;
+         } while ((p & EXTRA_PARENTS) == 0);
+         return parents;
+      }
+   }
+
+   /**
+    * A commit to be written to graph file.
+    * <p>
+    */
+   private static class Entry extends ObjectId {
+
+      ObjectId[] parents;
+      int time;
+      int generation;
+      int position;
+
+      Entry(final AnyObjectId id) {
+         super(id);
+      }
+   }
+
+   /**
+    * The repository this graph is for.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * The file where this graph is stored.
+    * <p>
+    */
+   private final File file;
+
+   /**
+    * The current contents of this graph.
+    * <p>
+    */
+   private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+   /**
+    * True if this graph has commits that are not yet stored to its file.
+    * <p>
+    */
+   private boolean dirty;
+
+   /**
+    * The number of layers of this graph that are in its file.
+    * <p>
+    */
+   private int stored;
+
+   /**
+    * The length of the file when it contains only the stored layers.
+    * <p>
+    */
+   private long storedLength;
+
+   /**
+    * Creates a new, empty graph for the given repository.
+    * <p>
+    * Call {@link #load()} to read a previously stored graph, and
+    * {@link #update()} to add the commits that are not in graph.
+    *
+    * @param repo
+    *           the repository of this graph, must not be null
+    */
+   public CommitGraph(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+      this.file = new File(repo.getDirectory(), FILE_NAME);
+   }
+
+   /**
+    * @return the file where this graph is stored
+    */
+   public File getFile() {
+      return this.file;
+   }
+
+   /**
+    * Load the graph from its file, if there is one.
+    * <p>
+    * If the file doesn't exist or is not a valid graph file, this graph will be
+    * empty. A layer at the end of the file that is not complete (i.e. its
+    * append was interrupted) is ignored.
+    *
+    * @throws VCSRepositoryException
+    *            if the file can not be read
+    */
+   public synchronized void load() throws VCSRepositoryException {
+
+      this.snapshot = Snapshot.EMPTY;
+      this.stored = 0;
+      this.storedLength = 0;
+      this.dirty = false;
+      if (!this.file.isFile()) {
+         return;
+      }
+
+      try {
+         final RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+         try {
+            final long length = raf.length();
+            if (length < HEADER_SIZE) {
+               return;
+            }
+            final ByteBuffer buf = raf.getChannel().map(
+                  FileChannel.MapMode.READ_ONLY, 0, length);
+            this.read(buf, length);
+         } finally {
+            raf.close();
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      }
+   }
+
+   /**
+    * Read the layers of the given buffer, until the first one that is not
+    * valid, and set them as the stored layers of this graph.
+    * <p>
+    */
+   private void read(final ByteBuffer buf, final long length) {
+
+      final List<Layer> layers = new ArrayList<Layer>();
+      int base = 0;
+      long offset = 0;
+      while (offset + HEADER_SIZE <= length) {
+
+         final int start = (int) offset;
+         if (buf.getInt(start) != MAGIC || buf.getInt(start + 4) != VERSION) {
+            break;
+         }
+         final int count = buf.getInt(start + 8);
+         final int extra = buf.getInt(start + 12);
+         if (count < 0 || extra < 0) {
+            break;
+         }
+         final long size = HEADER_SIZE + ((long) count * ID_SIZE)
+               + ((long) count * DATA_SIZE) + ((long) extra * 4);
+         if (offset + size > length) {
+            break;
+         }
+
+         final ByteBuffer slice = buf.duplicate();
+         slice.position(start);
+         slice.limit((int) (offset + size));
+         layers.add(new Layer(slice.slice(), base, count));
+         base += count;
+         offset += size;
+      }
+
+      this.snapshot = new Snapshot(layers.toArray(new Layer[layers.size()]));
+      this.stored = layers.size();
+      this.storedLength = offset;
+   }
+
+   /**
+    * Check if this graph was loaded from or stored to its file.
+    * <p>
+    * A graph that is stored should be stored again after it is updated, so
+    * its file contains the new commits.
+    *
+    * @return true if the file of this graph contains some of its commits
+    */
+   public synchronized boolean isStored() {
+      return this.stored > 0;
+   }
+
+   /**
+    * Add to this graph all commits that are reachable from the references of
+    * repository, but they are not yet in graph.
+    * <p>
+    * Only the headers of the new commits will be parsed, and they are added
+    * as a new layer. The file of this graph is not written, call
+    * {@link #store()} to persist the new commits.
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void update() throws VCSRepositoryException {
+
+      final Snapshot old = this.snapshot;
+      final ObjectIdSubclassMap<Entry> added = new ObjectIdSubclassMap<Entry>();
+      final List<Entry> order = new ArrayList<Entry>();
+
+      final RevWalk walk = new RevWalk(this.repo);
+      walk.setRetainBody(false);
+      try {
+
+         // Start from all references that point to a commit
+         // which is not in graph
+         final List<RevCommit> stack = new ArrayList<RevCommit>();
+         for (final Ref ref : this.repo.getAllRefs().values()) {
+            final ObjectId id = ref.getObjectId();
+            if (id == null) {
+               continue;
+            }
+            final RevObject obj = walk.peel(walk.parseAny(id));
+            if (obj instanceof RevCommit && old.find(obj) < 0) {
+               stack.add((RevCommit) obj);
+            }
+         }
+
+         // Parse all new commits, stopping at those known to graph
+         while (!stack.isEmpty()) {
+
+            final RevCommit c = stack.remove(stack.size() - 1);
+            if (added.contains(c)) {
+               continue;
+            }
+            walk.parseHeaders(c);
+
+            final Entry e = new Entry(c);
+            e.time = c.getCommitTime();
+            e.parents = new ObjectId[c.getParentCount()];
+            for (int i = 0; i < e.parents.length; i++) {
+               final RevCommit p = c.getParent(i);
+               e.parents[i] = p;
+               if (!added.contains(p) && old.find(p) < 0) {
+                  stack.add(p);
+               }
+            }
+            added.add(e);
+            order.add(e);
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+
+      if (order.isEmpty()) {
+         return;
+      }
+
+      computeGenerations(order, added, old);
+      final Layer[] layers = Arrays.copyOf(old.layers, old.layers.length + 1);
+      layers[old.layers.length] = layer(old, order);
+      Snapshot s = new Snapshot(layers);
+      if (layers.length > MAX_LAYERS) {
+         // Merge all layers, the file must be rewritten
+         s = compact(s);
+         this.stored = 0;
+      }
+      this.snapshot = s;
+      this.dirty = true;
+   }
+
+   /**
+    * Write this graph to its file, if it has commits that are not yet
+    * stored.
+    * <p>
+    * If the file contains the layers of this graph that were loaded or
+    * stored before, the new layers are appended to it. Otherwise the graph is
+    * written to a temporary file which then replaces the graph file, so a
+    * reader of the file will never see a partially written graph.
+    *
+    * @throws VCSRepositoryException
+    *            if the file can not be written
+    */
+   public synchronized void store() throws VCSRepositoryException {
+
+      if (!this.dirty) {
+         return;
+      }
+
+      final Snapshot s = this.snapshot;
+      final long length;
+      if (this.stored > 0 && this.file.length() == this.storedLength) {
+         length = this.append(s);
+      } else {
+         length = this.replace(s);
+      }
+      this.stored = s.layers.length;
+      this.storedLength = length;
+      this.dirty = false;
+   }
+
+   /**
+    * Append the layers of the given snapshot that are not stored to the file.
+    * <p>
+    * If the append fails the file is truncated to its previous length.
+    *
+    * @return the new length of the file
+    */
+   private long append(final Snapshot s) throws VCSRepositoryException {
+
+      long length = this.storedLength;
+      try {
+         final FileOutputStream out = new FileOutputStream(this.file, true);
+         try {
+            for (int i = this.stored; i < s.layers.length; i++) {
+               length += write(s.layers[i], out);
+            }
+         } finally {
+            out.close();
+         }
+      } catch (final IOException e) {
+         try {
+            final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            try {
+               raf.setLength(this.storedLength);
+            } finally {
+               raf.close();
+            }
+         } catch (final IOException te) {
+            // The incomplete layer is ignored when loading
+         }
+         throw new VCSRepositoryException(e);
+      }
+      return length;
+   }
+
+   /**
+    * Write all layers of the given snapshot to a temporary file and replace
+    * the file with it.
+    * <p>
+    *
+    * @return the new length of the file
+    */
+   private long replace(final Snapshot s) throws VCSRepositoryException {
+
+      long length = 0;
+      final File tmp = new File(this.file.getParentFile(), FILE_NAME + ".tmp");
+      try {
+         final FileOutputStream out = new FileOutputStream(tmp);
+         try {
+            for (final Layer layer : s.layers) {
+               length += write(layer, out);
+            }
+         } finally {
+            out.close();
+         }
+
+         if (!tmp.renameTo(this.file)) {
+            if (!this.file.delete() || !tmp.renameTo(this.file)) {
+               throw new IOException("can not replace "
+                     + this.file.getAbsolutePath());
+            }
+         }
+      } catch (final IOException e) {
+         tmp.delete();
+         throw new VCSRepositoryException(e);
+      }
+      return length;
+   }
+
+   /**
+    * Write the contents of the given layer to the given stream.
+    * <p>
+    *
+    * @return the number of bytes written
+    */
+   private static int write(final Layer layer, final FileOutputStream out)
+         throws IOException {
+      final ByteBuffer contents = layer.buf.duplicate();
+      contents.clear();
+      final int size = contents.remaining();
+      while (contents.hasRemaining()) {
+         out.getChannel().write(contents);
+      }
+      return size;
+   }
+
+   /**
+    * Compute the generation of each new commit.
+    * <p>
+    * The parents of a new commit are either in the old graph or new commits.
+    */
+   private static void computeGenerations(final List<Entry> entries,
+         final ObjectIdSubclassMap<Entry> added, final Snapshot old) {
+
+      final List<Entry> stack = new ArrayList<Entry>();
+      for (final Entry start : entries) {
+
+         if (start.generation > 0) {
+            continue;
+         }
+         stack.add(start);
+
+         while (!stack.isEmpty()) {
+
+            final Entry e = stack.get(stack.size() - 1);
+            int max = 0;
+            boolean resolved = true;
+
+            for (final ObjectId p : e.parents) {
+               final Entry pe = added.get(p);
+               if (pe == null) {
+                  max = Math.max(max, old.generation(old.find(p)));
+               } else if (pe.generation > 0) {
+                  max = Math.max(max, pe.generation);
+               } else {
+                  // Resolve first the parent
+                  resolved = false;
+                  stack.add(pe);
+               }
+            }
+
+            if (resolved) {
+               e.generation = max + 1;
+               stack.remove(stack.size() - 1);
+            }
+         }
+      }
+   }
+
+   /**
+    * Merge all layers of the given snapshot into one.
+    * <p>
+    *
+    * @return a snapshot with a single layer
+    */
+   private static Snapshot compact(final Snapshot old) {
+
+      final List<Entry> all = new ArrayList<Entry>(old.count);
+      for (int pos = 0; pos < old.count; pos++) {
+         final Entry e = new Entry(old.id(pos));
+         final int[] parents = old.parents(pos);
+         e.parents = new ObjectId[parents.length];
+         for (int i = 0; i < parents.length; i++) {
+            e.parents[i] = old.id(parents[i]);
+         }
+         e.time = old.commitTime(pos);
+         e.generation = old.generation(pos);
+         all.add(e);
+      }
+      return new Snapshot(new Layer[] { layer(Snapshot.EMPTY, all) });
+   }
+
+   /**
+    * Create the layer of the given new commits, which follows the layers of
+    * the given snapshot.
+    * <p>
+    * The parents of a new commit are either in the snapshot or new commits.
+    *
+    * @return the new layer
+    */
+   private static Layer layer(final Snapshot old, final List<Entry> added) {
+
+      final List<Entry> entries = new ArrayList<Entry>(added);
+      Collections.sort(entries);
+
+      final ObjectIdSubclassMap<Entry> positions = new ObjectIdSubclassMap<Entry>();
+      int extra = 0;
+      for (int pos = 0; pos < entries.size(); pos++) {
+         final Entry e = entries.get(pos);
+         e.position = old.count + pos;
+         positions.add(e);
+         if (e.parents.length > 2) {
+            extra += e.parents.length - 1;
+         }
+      }
+
+      final int count = entries.size();
+      final ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE
+            + (count * (ID_SIZE + DATA_SIZE)) + (extra * 4));
+      buf.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(extra);
+
+      final byte[] raw = new byte[ID_SIZE];
+      for (final Entry e : entries) {
+         e.copyRawTo(raw, 0);
+         buf.put(raw);
+      }
+
+      int extraIndex = 0;
+      final ByteBuffer extraBuf = ByteBuffer.allocate(extra * 4);
+      for (final Entry e : entries) {
+
+         final int n = e.parents.length;
+         buf.putInt(n > 0 ? position(old, positions, e.parents[0])
+               : NO_PARENT);
+
+         if (n < 2) {
+            buf.putInt(NO_PARENT);
+         } else if (n == 2) {
+            buf.putInt(position(old, positions, e.parents[1]));
+         } else {
+            buf.putInt(EXTRA_PARENTS | extraIndex);
+            for (int i = 1; i < n; i++) {
+               int p = position(old, positions, e.parents[i]);
+               if (i == n - 1) {
+                  p |= EXTRA_PARENTS;
+               }
+               extraBuf.putInt(p);
+               extraIndex++;
+            }
+         }
+         buf.putInt(e.time);
+         buf.putInt(e.generation);
+      }
+      extraBuf.flip();
+      buf.put(extraBuf);
+      buf.flip();
+
+      return new Layer(buf, old.count, count);
+   }
+
+   /**
+    * The position of the given commit, which is either a new commit or in
+    * the given snapshot.
+    */
+   private static int position(final Snapshot old,
+         final ObjectIdSubclassMap<Entry> positions, final ObjectId id) {
+      final Entry e = positions.get(id);
+      return e != null ? e.position : old.find(id);
+   }
+
+   /**
+    * @return the number of commits in this graph
+    */
+   public int size() {
+      return this.snapshot.count;
+   }
+
+   /**
+    * Check if the given commit is in this graph.
+    * <p>
+    *
+    * @param commit
+    *           to check
+    * @return true if the commit is in graph
+    */
+   public boolean contains(final AnyObjectId commit) {
+      return this.snapshot.find(commit) >= 0;
+   }
+
+   /**
+    * Get the generation number of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get the generation
+    * @return the generation of the commit or 0 if it is not in graph
+    */
+   public int getGeneration(final AnyObjectId commit) {
+      final Snapshot s = this.snapshot;
+      final int pos = s.find(commit);
+      return pos < 0 ? 0 : s.generation(pos);
+   }
+
+   /**
+    * Get the commit time (in seconds) of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get the commit time
+    * @return the commit time or -1 if the commit is not in graph
+    */
+   public int getCommitTime(final AnyObjectId commit) {
+      final Snapshot s = this.snapshot;
+      final int pos = s.find(commit);
+      return pos < 0 ? -1 : s.commitTime(pos);
+   }
+
+   /**
+    * Get the parents of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get the parents
+    * @return the parents of commit, or null if commit is not in graph
+    */
+   public ObjectId[] getParents(final AnyObjectId commit) {
+      final Snapshot s = this.snapshot;
+      final int pos = s.find(commit);
+      if (pos < 0) {
+         return null;
+      }
+      final int[] parents = s.parents(pos);
+      final ObjectId[] ids = new ObjectId[parents.length];
+      for (int i = 0; i < parents.length; i++) {
+         ids[i] = s.id(parents[i]);
+      }
+      return ids;
+   }
+
+   /**
+    * Check if <code>ancestor</code> is an ancestor of <code>descendant</code>.
+    * <p>
+    * A commit is considered ancestor of itself. The walk will not visit any
+    * commit with a generation lower than the generation of ancestor.
+    *
+    * @param ancestor
+    *           the ancestor to check
+    * @param descendant
+    *           the descendant to check
+    * @return true if ancestor is reachable from descendant, false if not, or
+    *         null if one of the commits is not in graph so the answer is
+    *         unknown
+    */
+   public Boolean isAncestor(final AnyObjectId ancestor,
+         final AnyObjectId descendant) {
+
+      ArgsCheck.notNull("ancestor", ancestor);
+      ArgsCheck.notNull("descendant", descendant);
+
+      final Snapshot s = this.snapshot;
+      final int target = s.find(ancestor);
+      final int start = s.find(descendant);
+      if (target < 0 || start < 0) {
+         return null;
+      }
+      if (target == start) {
+         return Boolean.TRUE;
+      }
+
+      final int min = s.generation(target);
+      if (s.generation(start) <= min) {
+         return Boolean.FALSE;
+      }
+
+      final BitSet seen = new BitSet(s.count);
+      int[] stack = new int[64];
+      int top = 0;
+      stack[top++] = start;
+      seen.set(start);
+
+      while (top > 0) {
+         final int pos = stack[--top];
+         for (final int p : s.parents(pos)) {
+            if (p == target) {
+               return Boolean.TRUE;
+            }
+            // Parents with a generation not greater than ancestor's
+            // can not reach it
+            if (!seen.get(p) && s.generation(p) > min) {
+               seen.set(p);
+               if (top == stack.length) {
+                  stack = Arrays.copyOf(stack, top * 2);
+               }
+               stack[top++] = p;
+            }
+         }
+      }
+      return Boolean.FALSE;
+   }
+}
@@ -0,0 +1,275 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Counts the lines of blobs, and caches the results by blob id.
+ * <p>
+ *
+ * A blob id is the hash of its contents, so the same file contents have always
+ * the same id, and their line count never changes. Files that are not changed
+ * between commits or versions will be counted only once.
+ * <p>
+ * Lines are counted by scanning the bytes of the blob for line terminators,
+ * without decoding them to strings. A line is terminated by a line feed
+ * ('\n'), a carriage return ('\r') or a carriage return followed by a line
+ * feed. The last line may not be terminated. Thus the count is the same as the
+ * number of lines a {@link java.io.BufferedReader} would return. Small blobs
+ * are scanned from their cached bytes, larger ones are streamed through a
+ * buffer.
+ * <p>
+ * The cache is bounded, when it is full the least recently used count is
+ * removed.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class LineCounter {
+
+   /**
+    * The default number of counts to keep in cache.
+    * <p>
+    */
+   public static final int DEFAULT_CAPACITY = 10000;
+
+   /**
+    * The size of the buffer used when streaming large blobs.
+    * <p>
+    */
+   private static final int BUFFER_SIZE = 8192;
+
+   /**
+    * Blob id to line count.
+    * <p>
+    */
+   private final Map<ObjectId, Integer> cache;
+
+   /**
+    * The pool to read the blobs with, may be null.
+    * <p>
+    */
+   private final ReaderPool pool;
+
+   /**
+    * Creates a new counter with a cache of {@link #DEFAULT_CAPACITY}.
+    * <p>
+    */
+   public LineCounter() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a new counter with a cache of the given capacity.
+    * <p>
+    *
+    * @param capacity
+    *           the maximum number of counts to keep in cache, must be greater
+    *           than zero
+    */
+   public LineCounter(final int capacity) {
+      this(capacity, null);
+   }
+
+   /**
+    * Creates a new counter with a cache of the given capacity, that reads
+    * the blobs with the readers of the given pool.
+    * <p>
+    *
+    * @param capacity
+    *           the maximum number of counts to keep in cache, must be greater
+    *           than zero
+    * @param pool
+    *           the reader pool of the repository, if null a new reader will be
+    *           used for each blob that is not in cache
+    */
+   public LineCounter(final int capacity, final ReaderPool pool) {
+
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("capacity must be greater than 0");
+      }
+
+      this.cache = new LinkedHashMap<ObjectId, Integer>(16, 0.75f, true) {
+
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(
+               final Map.Entry<ObjectId, Integer> eldest) {
+            return this.size() > capacity;
+         }
+      };
+      this.pool = pool;
+   }
+
+   /**
+    * Get the number of lines of the given blob.
+    * <p>
+    * If the count is not in cache the blob will be read from the repository.
+    *
+    * @param repo
+    *           the repository of the blob, must not be null
+    * @param blob
+    *           the id of the blob, must not be null
+    * @return the number of lines of the blob
+    * @throws IOException
+    *            if the blob can not be read
+    */
+   public int count(final Repository repo, final AnyObjectId blob)
+         throws IOException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("blob", blob);
+
+      synchronized (this.cache) {
+         final Integer lines = this.cache.get(blob);
+         if (lines != null) {
+            return lines.intValue();
+         }
+      }
+
+      // Read the blob out of lock, two threads may count the
+      // same blob but the result will be the same
+      final int lines;
+      final ObjectReader reader = ReaderPool.reader(this.pool, repo);
+      try {
+         lines = countLines(reader.open(blob, Constants.OBJ_BLOB));
+      } finally {
+         ReaderPool.release(this.pool, reader);
+      }
+
+      synchronized (this.cache) {
+         this.cache.put(blob.copy(), Integer.valueOf(lines));
+      }
+      return lines;
+   }
+
+   /**
+    * @return the number of counts in cache
+    */
+   public int size() {
+      synchronized (this.cache) {
+         return this.cache.size();
+      }
+   }
+
+   /**
+    * Remove all counts from cache.
+    * <p>
+    */
+   public void clear() {
+      synchronized (this.cache) {
+         this.cache.clear();
+      }
+   }
+
+   /**
+    * Count the lines of the object the given loader is for.
+    * <p>
+    * This will not cache the result.
+    *
+    * @param loader
+    *           the loader of a blob, must not be null
+    * @return the number of lines
+    * @throws IOException
+    *            if the object can not be read
+    */
+   public static int countLines(final ObjectLoader loader) throws IOException {
+
+      ArgsCheck.notNull("loader", loader);
+
+      final Scanner scanner = new Scanner();
+      if (!loader.isLarge()) {
+         final byte[] bytes = loader.getCachedBytes();
+         scanner.scan(bytes, 0, bytes.length);
+         return scanner.lines();
+      }
+
+      final InputStream in = loader.openStream();
+      try {
+         final byte[] buffer = new byte[BUFFER_SIZE];
+         int n;
+         while ((n = in.read(buffer)) > 0) {
+            scanner.scan(buffer, 0, n);
+         }
+      } finally {
+         in.close();
+      }
+      return scanner.lines();
+   }
+
+   /**
+    * Counts line terminators of a sequence of bytes that may be given in many
+    * chunks.
+    * <p>
+    */
+   private static class Scanner {
+
+      /**
+       * Terminated lines so far.
+       */
+      private int count;
+
+      /**
+       * True if there are bytes after the last terminator.
+       */
+      private boolean open;
+
+      /**
+       * True if the last byte was a carriage return, so a line feed must be
+       * skipped.
+       */
+      private boolean skipLF;
+
+      void scan(final byte[] buf, final int off, final int len) {
+
+         int c = this.count;
+         boolean o = this.open;
+         boolean s = this.skipLF;
+
+         for (int i = off; i < off + len; i++) {
+            final byte b = buf[i];
+            if (b == '\n') {
+               if (!s) {
+                  c++;
+               }
+               s = false;
+               o = false;
+            } else if (b == '\r') {
+               c++;
+               s = true;
+               o = false;
+            } else {
+               s = false;
+               o = true;
+            }
+         }
+
+         this.count = c;
+         this.open = o;
+         this.skipLF = s;
+      }
+
+      int lines() {
+         return this.open ? this.count + 1 : this.count;
+      }
+   }
+}
@@ -0,0 +1,468 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * An index of the history of each path of a repository.
+ * <p>
+ *
+ * Each commit reachable from any reference of the repository is compared
+ * once with each of its parents (a root commit is compared with an empty
+ * tree), and for each path that differs, file or directory, an event is
+ * recorded: the commit, the parent and the kind of change ({@link #ADD},
+ * {@link #DELETE} or {@link #MODIFY}). A path that changes its type (i.e. a
+ * file that becomes a directory) is recorded as both deleted and added.
+ * <p>
+ * Questions such as 'which commits created this path' or 'was this path
+ * modified at this commit' are answered from the events of the path, without
+ * walking any tree. A commit is considered to change a path only if the path
+ * differs from all parents of the commit, the same as a path limited walk
+ * does, however the history is not simplified (all commits are considered).
+ * <p>
+ * The index is built by calling {@link #update()}, which will index only the
+ * commits that are not yet indexed, so it should be called each time new
+ * commits arrive (i.e. after a fetch).
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class PathHistoryIndex {
+
+   /**
+    * The path was added, compared to a parent.
+    * <p>
+    */
+   public static final int ADD = 1;
+
+   /**
+    * The path was deleted, compared to a parent.
+    * <p>
+    */
+   public static final int DELETE = 2;
+
+   /**
+    * The path was modified, compared to a parent.
+    * <p>
+    */
+   public static final int MODIFY = 4;
+
+   /**
+    * A commit id and its number.
+    * <p>
+    */
+   private static class Numbered extends ObjectId {
+
+      final int number;
+
+      Numbered(final AnyObjectId id, final int number) {
+         super(id);
+         this.number = number;
+      }
+   }
+
+   /**
+    * The events of a path, ordered by commit number.
+    * <p>
+    * Each event is encoded as a long, the commit number at the high 32 bits,
+    * the parent at the next 24 bits and the kind of change at the low 8 bits.
+    * There is only one event for each commit and parent.
+    */
+   private static class Events {
+
+      long[] data = new long[4];
+      int size;
+
+      void add(final int commit, final int parent, final int kind) {
+         // A path that changes its type is reported twice by a tree walk, as
+         // a file and as a directory, so the kinds of the same commit and
+         // parent are merged. The events of a commit and a parent are always
+         // the last ones when they are added.
+         final long key = ((long) commit << 32) | (parent << 8);
+         if (this.size > 0 && (this.data[this.size - 1] & ~0xffL) == key) {
+            this.data[this.size - 1] |= kind;
+            return;
+         }
+         if (this.size == this.data.length) {
+            this.data = Arrays.copyOf(this.data, this.size * 2);
+         }
+         this.data[this.size++] = key | kind;
+      }
+
+      /**
+       * The position of the first event of the given commit, or -1.
+       */
+      int first(final int commit) {
+         int lo = 0;
+         int hi = this.size;
+         while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (commit(this.data[mid]) < commit) {
+               lo = mid + 1;
+            } else {
+               hi = mid;
+            }
+         }
+         return lo < this.size && commit(this.data[lo]) == commit ? lo : -1;
+      }
+
+      static int commit(final long event) {
+         return (int) (event >>> 32);
+      }
+
+      static int kind(final long event) {
+         return (int) (event & 0xff);
+      }
+   }
+
+   /**
+    * The repository of this index.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * Commit id to number.
+    * <p>
+    */
+   private final ObjectIdSubclassMap<Numbered> numbers = new ObjectIdSubclassMap<Numbered>();
+
+   /**
+    * Number to commit id.
+    * <p>
+    */
+   private final List<ObjectId> commits = new ArrayList<ObjectId>();
+
+   /**
+    * Number to parent count.
+    * <p>
+    */
+   private int[] parentCounts = new int[64];
+
+   /**
+    * Number to commit time.
+    * <p>
+    */
+   private int[] times = new int[64];
+
+   /**
+    * Path to its events.
+    * <p>
+    */
+   private final Map<String, Events> paths = new HashMap<String, Events>();
+
+   /**
+    * Creates a new, empty index for the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository to index, must not be null
+    */
+   public PathHistoryIndex(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+   }
+
+   /**
+    * Index all commits that are reachable from the references of repository,
+    * but they are not yet indexed.
+    * <p>
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void update() throws VCSRepositoryException {
+
+      final ObjectReader reader = this.repo.newObjectReader();
+      final RevWalk walk = new RevWalk(reader);
+      walk.setRetainBody(false);
+      final TreeWalk tw = new TreeWalk(reader);
+      tw.setFilter(TreeFilter.ANY_DIFF);
+
+      try {
+         final List<RevCommit> stack = new ArrayList<RevCommit>();
+         for (final Ref ref : this.repo.getAllRefs().values()) {
+            final ObjectId id = ref.getObjectId();
+            if (id == null) {
+               continue;
+            }
+            final RevObject obj = walk.peel(walk.parseAny(id));
+            if (obj instanceof RevCommit && !this.numbers.contains(obj)) {
+               stack.add((RevCommit) obj);
+            }
+         }
+
+         while (!stack.isEmpty()) {
+
+            final RevCommit c = stack.remove(stack.size() - 1);
+            if (this.numbers.contains(c)) {
+               continue;
+            }
+            walk.parseHeaders(c);
+            this.index(walk, tw, c);
+
+            for (final RevCommit p : c.getParents()) {
+               if (!this.numbers.contains(p)) {
+                  stack.add(p);
+               }
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         reader.release();
+      }
+   }
+
+   /**
+    * Number the given commit and record the events of its paths.
+    * <p>
+    */
+   private void index(final RevWalk walk, final TreeWalk tw, final RevCommit c)
+         throws IOException {
+
+      final int number = this.commits.size();
+      this.numbers.add(new Numbered(c, number));
+      this.commits.add(c.copy());
+      if (number == this.times.length) {
+         this.times = Arrays.copyOf(this.times, number * 2);
+         this.parentCounts = Arrays.copyOf(this.parentCounts, number * 2);
+      }
+      this.times[number] = c.getCommitTime();
+      this.parentCounts[number] = c.getParentCount();
+
+      final int n = Math.max(1, c.getParentCount());
+      for (int parent = 0; parent < n; parent++) {
+
+         tw.reset();
+         if (c.getParentCount() > 0) {
+            tw.addTree(walk.parseCommit(c.getParent(parent)).getTree());
+         } else {
+            tw.addTree(new EmptyTreeIterator());
+         }
+         tw.addTree(c.getTree());
+
+         while (tw.next()) {
+
+            final int oldMode = tw.getRawMode(0);
+            final int newMode = tw.getRawMode(1);
+            final int kind;
+            if (oldMode == 0) {
+               kind = ADD;
+            } else if (newMode == 0) {
+               kind = DELETE;
+            } else if ((oldMode & FileMode.TYPE_MASK) == (newMode & FileMode.TYPE_MASK)) {
+               kind = MODIFY;
+            } else {
+               kind = ADD | DELETE;
+            }
+            this.events(tw.getPathString()).add(number, parent, kind);
+
+            if (tw.isSubtree()) {
+               tw.enterSubtree();
+            }
+         }
+      }
+   }
+
+   private Events events(final String path) {
+      Events events = this.paths.get(path);
+      if (events == null) {
+         events = new Events();
+         this.paths.put(path, events);
+      }
+      return events;
+   }
+
+   /**
+    * @return the number of indexed commits
+    */
+   public synchronized int size() {
+      return this.commits.size();
+   }
+
+   /**
+    * Check if the given commit is indexed.
+    * <p>
+    *
+    * @param commit
+    *           to check
+    * @return true if the commit is indexed
+    */
+   public synchronized boolean contains(final AnyObjectId commit) {
+      ArgsCheck.notNull("commit", commit);
+      return this.numbers.contains(commit);
+   }
+
+   /**
+    * Get the kinds of changes of the given path at the given commit, compared
+    * to each parent of the commit.
+    * <p>
+    * The returned array has an element for each parent (one element for a
+    * root commit), which is a combination of {@link #ADD}, {@link #DELETE}
+    * and {@link #MODIFY}, or 0 if the path doesn't differ from the parent.
+    *
+    * @param commit
+    *           the commit of the path
+    * @param path
+    *           a path relative to the root of repository, without a trailing
+    *           slash
+    * @return the changes compared to each parent, or null if the commit is not
+    *         indexed
+    */
+   public synchronized int[] getChanges(final AnyObjectId commit,
+         final String path) {
+
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("path", path);
+
+      final Numbered n = this.numbers.get(commit);
+      if (n == null) {
+         return null;
+      }
+      final int[] changes = new int[Math.max(1, this.parentCounts[n.number])];
+      final Events events = this.paths.get(path);
+      if (events != null) {
+         int i = events.first(n.number);
+         if (i >= 0) {
+            for (; i < events.size
+                  && Events.commit(events.data[i]) == n.number; i++) {
+               final long e = events.data[i];
+               changes[(int) ((e >>> 8) & 0xffffff)] = Events.kind(e);
+            }
+         }
+      }
+      return changes;
+   }
+
+   /**
+    * Get the commits that changed the given path, compared to all of their
+    * parents.
+    * <p>
+    * The commits are returned from newer to older (by commit time).
+    *
+    * @param path
+    *           a path relative to the root of repository, without a trailing
+    *           slash
+    * @return the commits that changed the path
+    */
+   public List<ObjectId> getCommits(final String path) {
+      return this.find(path, ADD | DELETE | MODIFY);
+   }
+
+   /**
+    * Get the commits that created the given path.
+    * <p>
+    * A commit creates a path if the path exists at the commit, but it doesn't
+    * exist at any of its parents. The commits are returned from newer to older
+    * (by commit time).
+    *
+    * @param path
+    *           a path relative to the root of repository, without a trailing
+    *           slash
+    * @return the commits that created the path
+    */
+   public List<ObjectId> getAdditions(final String path) {
+      return this.find(path, ADD);
+   }
+
+   /**
+    * Get the commits that deleted the given path.
+    * <p>
+    * A commit deletes a path if the path doesn't exist at the commit, but it
+    * exists at all of its parents. The commits are returned from newer to
+    * older (by commit time).
+    *
+    * @param path
+    *           a path relative to the root of repository, without a trailing
+    *           slash
+    * @return the commits that deleted the path
+    */
+   public List<ObjectId> getDeletions(final String path) {
+      return this.find(path, DELETE);
+   }
+
+   /**
+    * Find the commits whose events of the given path, compared to each parent,
+    * are within the given kinds.
+    * <p>
+    * If kinds are all kinds, any change to each parent is accepted, otherwise
+    * the change must be exactly the given kind.
+    */
+   private synchronized List<ObjectId> find(final String path, final int kinds) {
+
+      ArgsCheck.notNull("path", path);
+
+      final List<Integer> found = new ArrayList<Integer>();
+      final Events events = this.paths.get(path);
+      if (events == null) {
+         return Collections.emptyList();
+      }
+
+      final boolean any = kinds == (ADD | DELETE | MODIFY);
+      int i = 0;
+      while (i < events.size) {
+
+         final int commit = Events.commit(events.data[i]);
+         int matched = 0;
+         for (; i < events.size && Events.commit(events.data[i]) == commit; i++) {
+            final int kind = Events.kind(events.data[i]);
+            if (any || kind == kinds) {
+               matched++;
+            }
+         }
+         if (matched == Math.max(1, this.parentCounts[commit])) {
+            found.add(commit);
+         }
+      }
+
+      // Newer first
+      final int[] t = this.times;
+      Collections.sort(found, new Comparator<Integer>() {
+         @Override
+         public int compare(final Integer o1, final Integer o2) {
+            final int t1 = t[o1];
+            final int t2 = t[o2];
+            if (t1 != t2) {
+               return t1 > t2 ? -1 : 1;
+            }
+            return o1.compareTo(o2);
+         }
+      });
+
+      final List<ObjectId> result = new ArrayList<ObjectId>(found.size());
+      for (final Integer n : found) {
+         result.add(this.commits.get(n));
+      }
+      return result;
+   }
+}
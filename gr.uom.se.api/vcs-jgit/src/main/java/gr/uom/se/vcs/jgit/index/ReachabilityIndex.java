@@ -0,0 +1,494 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.googlecode.javaewah.EWAHCompressedBitmap;
+import com.googlecode.javaewah.IntIterator;
+
+/**
+ * A reachability index of the branches and tags of a repository.
+ * <p>
+ *
+ * All commits reachable from a branch or a tag are given a dense number, such
+ * that a parent has always a lower number than its children. For each branch
+ * and tag a compressed bitmap is kept, with the numbers of all commits that
+ * are reachable from it. Questions such as 'which refs contain commit X' or
+ * 'which commits are in A but not in B' are answered with bitmap operations
+ * instead of walks.
+ * <p>
+ * The index is built by calling {@link #build()}, and should be updated by
+ * calling {@link #update()} each time the references of the repository are
+ * changed (i.e. after a fetch), so only the new commits are walked. Queries
+ * may be executed concurrently with a build or an update, they will see the
+ * index as it was before.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ReachabilityIndex {
+
+   /**
+    * The prefixes of references that are indexed.
+    * <p>
+    */
+   private static final String[] REF_PREFIXES = { Constants.R_HEADS,
+         Constants.R_REMOTES, Constants.R_TAGS };
+
+   /**
+    * A commit id and its number.
+    * <p>
+    */
+   private static class Numbered extends ObjectId {
+
+      final int number;
+
+      Numbered(final AnyObjectId id, final int number) {
+         super(id);
+         this.number = number;
+      }
+   }
+
+   /**
+    * An immutable state of this index.
+    * <p>
+    */
+   private static class State {
+
+      static final State EMPTY = new State(
+            new ObjectIdSubclassMap<Numbered>(), new ObjectId[0],
+            new int[0][], Collections.<String, EWAHCompressedBitmap> emptyMap());
+
+      /**
+       * Commit id to number.
+       */
+      final ObjectIdSubclassMap<Numbered> numbers;
+
+      /**
+       * Number to commit id.
+       */
+      final ObjectId[] commits;
+
+      /**
+       * Number to parent numbers.
+       */
+      final int[][] parents;
+
+      /**
+       * Reference name to bitmap of reachable commits.
+       */
+      final Map<String, EWAHCompressedBitmap> bitmaps;
+
+      /**
+       * Tip number to bitmap of reachable commits.
+       */
+      final Map<Integer, EWAHCompressedBitmap> tips;
+
+      State(final ObjectIdSubclassMap<Numbered> numbers,
+            final ObjectId[] commits, final int[][] parents,
+            final Map<String, EWAHCompressedBitmap> bitmaps) {
+         this.numbers = numbers;
+         this.commits = commits;
+         this.parents = parents;
+         this.bitmaps = bitmaps;
+         this.tips = new HashMap<Integer, EWAHCompressedBitmap>();
+      }
+
+      int number(final AnyObjectId id) {
+         final Numbered n = this.numbers.get(id);
+         return n == null ? -1 : n.number;
+      }
+   }
+
+   /**
+    * The repository this index is built for.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * The current state of this index.
+    * <p>
+    */
+   private volatile State state = State.EMPTY;
+
+   /**
+    * Creates a new, empty index for the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository to index, must not be null
+    */
+   public ReachabilityIndex(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+   }
+
+   /**
+    * Build this index from scratch.
+    * <p>
+    * All branches and tags will be walked once, in order to number their
+    * commits, and then a bitmap will be computed for each one of them.
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void build() throws VCSRepositoryException {
+      this.state = index(State.EMPTY, this.readRefs());
+   }
+
+   /**
+    * Bring this index up to date with the references of repository.
+    * <p>
+    * Only the commits that are not yet indexed will be walked and numbered,
+    * and only the bitmaps of new or moved references will be computed. The
+    * bitmaps of references that still point to the same commit are reused.
+    * If this index was not built, it will be built.
+    *
+    * @throws VCSRepositoryException
+    *            if a problem occurs while reading the repository
+    */
+   public synchronized void update() throws VCSRepositoryException {
+      this.state = index(this.state, this.readRefs());
+   }
+
+   /**
+    * Extend the given state with the commits reachable from the given
+    * references, and compute the bitmaps of references.
+    * <p>
+    * The given state is not changed.
+    *
+    * @return the new state
+    */
+   private State index(final State old, final Map<String, ObjectId> refs)
+         throws VCSRepositoryException {
+
+      // Old numbers are kept, the new commits are numbered after them
+      final ObjectIdSubclassMap<Numbered> numbers = new ObjectIdSubclassMap<Numbered>();
+      for (final Numbered n : old.numbers) {
+         numbers.add(n);
+      }
+      final List<ObjectId> commits = new ArrayList<ObjectId>(
+            Arrays.asList(old.commits));
+      final List<int[]> parents = new ArrayList<int[]>(
+            Arrays.asList(old.parents));
+
+      final RevWalk walk = new RevWalk(this.repo);
+      walk.setRetainBody(false);
+      // Parents first, so a commit has a greater number than its parents
+      walk.sort(RevSort.TOPO);
+      walk.sort(RevSort.REVERSE, true);
+
+      try {
+         boolean started = false;
+         for (final ObjectId tip : refs.values()) {
+            if (numbers.get(tip) == null) {
+               walk.markStart(walk.parseCommit(tip));
+               started = true;
+            }
+         }
+
+         // Do not walk the commits that are already indexed, all of them are
+         // reachable from the tips of the old state
+         if (started) {
+            for (final Integer tip : old.tips.keySet()) {
+               final ObjectId id = old.commits[tip];
+               if (this.repo.getObjectDatabase().has(id)) {
+                  walk.markUninteresting(walk.parseCommit(id));
+               }
+            }
+         }
+
+         RevCommit current = null;
+         while (started && (current = walk.next()) != null) {
+
+            if (numbers.get(current) != null) {
+               continue;
+            }
+            final int number = commits.size();
+            numbers.add(new Numbered(current, number));
+            commits.add(current.copy());
+
+            final int[] pnumbers = new int[current.getParentCount()];
+            for (int i = 0; i < pnumbers.length; i++) {
+               pnumbers[i] = numbers.get(current.getParent(i)).number;
+            }
+            parents.add(pnumbers);
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+
+      final Map<String, EWAHCompressedBitmap> bitmaps = new HashMap<String, EWAHCompressedBitmap>();
+      final State s = new State(numbers, commits.toArray(new ObjectId[commits
+            .size()]), parents.toArray(new int[parents.size()][]), bitmaps);
+      s.tips.putAll(old.tips);
+
+      // Compute the bitmaps of older tips first, so they can be
+      // reused by the newer ones
+      final List<Map.Entry<String, ObjectId>> entries = new ArrayList<Map.Entry<String, ObjectId>>(
+            refs.entrySet());
+      Collections.sort(entries,
+            new Comparator<Map.Entry<String, ObjectId>>() {
+               @Override
+               public int compare(final Map.Entry<String, ObjectId> o1,
+                     final Map.Entry<String, ObjectId> o2) {
+                  final int n1 = s.number(o1.getValue());
+                  final int n2 = s.number(o2.getValue());
+                  return n1 < n2 ? -1 : (n1 == n2 ? 0 : 1);
+               }
+            });
+      final Set<Integer> current = new HashSet<Integer>();
+      for (final Map.Entry<String, ObjectId> e : entries) {
+         final int tip = s.number(e.getValue());
+         EWAHCompressedBitmap bitmap = s.tips.get(tip);
+         if (bitmap == null) {
+            bitmap = reachable(s, tip);
+            s.tips.put(tip, bitmap);
+         }
+         bitmaps.put(e.getKey(), bitmap);
+         current.add(tip);
+      }
+
+      // Keep only the bitmaps of current tips
+      s.tips.keySet().retainAll(current);
+      return s;
+   }
+
+   /**
+    * Compute the bitmap of all commits reachable from the given commit.
+    * <p>
+    * The walk will not descend to commits that are tips of an already computed
+    * bitmap, it will reuse their bitmaps.
+    */
+   private static EWAHCompressedBitmap reachable(final State s, final int start) {
+
+      final BitSet bits = new BitSet(start + 1);
+      int[] stack = new int[64];
+      int top = 0;
+      stack[top++] = start;
+      bits.set(start);
+
+      while (top > 0) {
+         final int current = stack[--top];
+
+         final EWAHCompressedBitmap known = current != start ? s.tips
+               .get(current) : null;
+         if (known != null) {
+            final IntIterator it = known.intIterator();
+            while (it.hasNext()) {
+               bits.set(it.next());
+            }
+            continue;
+         }
+
+         for (final int p : s.parents[current]) {
+            if (!bits.get(p)) {
+               bits.set(p);
+               if (top == stack.length) {
+                  stack = Arrays.copyOf(stack, top * 2);
+               }
+               stack[top++] = p;
+            }
+         }
+      }
+
+      // Bits must be set in increasing order
+      final EWAHCompressedBitmap bitmap = new EWAHCompressedBitmap();
+      for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+         bitmap.set(i);
+      }
+      return bitmap;
+   }
+
+   /**
+    * Read all indexed references and resolve them to commit ids.
+    * <p>
+    * References that do not point to a commit will be ignored.
+    */
+   private Map<String, ObjectId> readRefs() throws VCSRepositoryException {
+
+      final Map<String, ObjectId> refs = new HashMap<String, ObjectId>();
+      final RevWalk walk = new RevWalk(this.repo);
+      try {
+         for (final String prefix : REF_PREFIXES) {
+            for (final Ref ref : this.repo.getRefDatabase().getRefs(prefix)
+                  .values()) {
+
+               final ObjectId id = ref.getLeaf().getObjectId();
+               if (id == null) {
+                  continue;
+               }
+               final RevObject obj = walk.peel(walk.parseAny(id));
+               if (obj instanceof RevCommit) {
+                  refs.put(ref.getName(), obj.copy());
+               }
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+      return refs;
+   }
+
+   /**
+    * @return the number of indexed commits
+    */
+   public int size() {
+      return this.state.commits.length;
+   }
+
+   /**
+    * Get the number of the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to get its number
+    * @return the number of the given commit, or -1 if it is not indexed
+    */
+   public int getNumber(final AnyObjectId commit) {
+      ArgsCheck.notNull("commit", commit);
+      return this.state.number(commit);
+   }
+
+   /**
+    * Get the commit of the given number.
+    * <p>
+    *
+    * @param number
+    *           the number of the commit
+    * @return the id of the commit, or null if there is not a commit with the
+    *         given number
+    */
+   public ObjectId getCommit(final int number) {
+      final ObjectId[] commits = this.state.commits;
+      return number < 0 || number >= commits.length ? null : commits[number];
+   }
+
+   /**
+    * Get the bitmap of all commits reachable from the given reference.
+    * <p>
+    *
+    * @param refName
+    *           the full name of a branch or a tag (i.e. refs/heads/master)
+    * @return the bitmap of the reference, or null if the reference is not
+    *         indexed
+    */
+   public EWAHCompressedBitmap getBitmap(final String refName) {
+      ArgsCheck.notNull("refName", refName);
+      return this.state.bitmaps.get(refName);
+   }
+
+   /**
+    * Get the names of all references that contain the given commit.
+    * <p>
+    *
+    * @param commit
+    *           to check
+    * @return the full names of branches and tags from which the given commit
+    *         is reachable, an empty list if there is not any or the commit is
+    *         not indexed
+    */
+   public List<String> getRefsContaining(final AnyObjectId commit) {
+
+      ArgsCheck.notNull("commit", commit);
+
+      final State s = this.state;
+      final int number = s.number(commit);
+      if (number < 0) {
+         return Collections.emptyList();
+      }
+
+      // A bitmap contains the commit if it intersects with the single bit
+      // bitmap of the commit. Refs with the same tip share their bitmap, so
+      // each bitmap is checked once.
+      final EWAHCompressedBitmap single = EWAHCompressedBitmap
+            .bitmapOf(number);
+      final Map<EWAHCompressedBitmap, Boolean> checked = new IdentityHashMap<EWAHCompressedBitmap, Boolean>();
+      final List<String> names = new ArrayList<String>();
+      for (final Map.Entry<String, EWAHCompressedBitmap> e : s.bitmaps
+            .entrySet()) {
+
+         final EWAHCompressedBitmap bitmap = e.getValue();
+         Boolean contains = checked.get(bitmap);
+         if (contains == null) {
+            // The tip has the greatest number of its bitmap, so a bitmap
+            // that ends before the commit can not contain it
+            contains = bitmap.sizeInBits() > number
+                  && bitmap.intersects(single);
+            checked.put(bitmap, contains);
+         }
+         if (contains.booleanValue()) {
+            names.add(e.getKey());
+         }
+      }
+      return names;
+   }
+
+   /**
+    * Get the commits that are reachable from reference <code>a</code> but not
+    * from reference <code>b</code>.
+    * <p>
+    * The commits are returned from newer to older, that is a commit is always
+    * before its parents.
+    *
+    * @param a
+    *           the full name of the first reference
+    * @param b
+    *           the full name of the second reference
+    * @return the commits of a that are not in b, or null if one of the
+    *         references is not indexed
+    */
+   public List<ObjectId> getCommitsNotIn(final String a, final String b) {
+
+      ArgsCheck.notNull("a", a);
+      ArgsCheck.notNull("b", b);
+
+      final State s = this.state;
+      final EWAHCompressedBitmap ba = s.bitmaps.get(a);
+      final EWAHCompressedBitmap bb = s.bitmaps.get(b);
+      if (ba == null || bb == null) {
+         return null;
+      }
+      final int[] numbers = ba.andNot(bb).toArray();
+      final List<ObjectId> commits = new ArrayList<ObjectId>(numbers.length);
+      for (int i = numbers.length - 1; i >= 0; i--) {
+         commits.add(s.commits[numbers[i]]);
+      }
+      return commits;
+   }
+}
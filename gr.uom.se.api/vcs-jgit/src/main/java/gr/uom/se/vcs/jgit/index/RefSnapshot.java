@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.exceptions.VCSRepositoryException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefComparator;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * An immutable snapshot of the branches and tags of a repository, with the
+ * commit each one of them points to.
+ * <p>
+ *
+ * The snapshot is loaded with a single read of the reference database, and
+ * all references are peeled to their commits with a single walk, so listing
+ * the branches or the tags of a repository, or resolving the commit of a tag,
+ * doesn't read the references or the tag objects again. Annotated tags that
+ * are packed with their peeled id are not parsed.
+ * <p>
+ * The branches are the local and remote branches, and the HEAD if it is
+ * detached, the same as a branch list command of all branches. The branches
+ * and the tags are sorted by their names.
+ * <p>
+ * A snapshot is not updated when the references of the repository are
+ * changed, a new one should be loaded instead.
+ * <p>
+ * This class is immutable.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class RefSnapshot {
+
+   /**
+    * The branches, sorted by name.
+    * <p>
+    */
+   private final List<Ref> branches;
+
+   /**
+    * The tags, sorted by name.
+    * <p>
+    */
+   private final List<Ref> tags;
+
+   /**
+    * Reference name to the id of the commit it points to.
+    * <p>
+    */
+   private final Map<String, ObjectId> commits;
+
+   private RefSnapshot(final List<Ref> branches, final List<Ref> tags,
+         final Map<String, ObjectId> commits) {
+      this.branches = branches;
+      this.tags = tags;
+      this.commits = commits;
+   }
+
+   /**
+    * Load a snapshot of the references of the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository, must not be null
+    * @return the snapshot of the references of the repository
+    * @throws VCSRepositoryException
+    *            if the references can not be read
+    */
+   public static RefSnapshot load(final Repository repo)
+         throws VCSRepositoryException {
+
+      ArgsCheck.notNull("repo", repo);
+
+      final List<Ref> branches = new ArrayList<Ref>();
+      final List<Ref> tags = new ArrayList<Ref>();
+      final Map<String, ObjectId> commits = new HashMap<String, ObjectId>();
+
+      final RevWalk walk = new RevWalk(repo);
+      try {
+
+         final List<Ref> refs = new ArrayList<Ref>(repo.getRefDatabase()
+               .getRefs(RefDatabase.ALL).values());
+         RefComparator.sort(refs);
+
+         for (final Ref ref : refs) {
+
+            final String name = ref.getName();
+            final Ref leaf = ref.getLeaf();
+            if (name.startsWith(Constants.R_HEADS)
+                  || name.startsWith(Constants.R_REMOTES)) {
+               branches.add(leaf);
+            } else if (name.startsWith(Constants.R_TAGS)) {
+               tags.add(leaf);
+            } else if (name.equals(Constants.HEAD) && !ref.isSymbolic()) {
+               branches.add(leaf);
+            } else {
+               continue;
+            }
+
+            // Peel the reference to its commit, the walk keeps the parsed
+            // objects so references to the same object are parsed once
+            ObjectId id = leaf.getPeeledObjectId();
+            if (id == null) {
+               id = leaf.getObjectId();
+            }
+            if (id == null) {
+               continue;
+            }
+            final RevObject obj = walk.peel(walk.parseAny(id));
+            if (obj instanceof RevCommit) {
+               commits.put(leaf.getName(), obj.copy());
+            }
+         }
+      } catch (final IOException e) {
+         throw new VCSRepositoryException(e);
+      } finally {
+         walk.release();
+      }
+
+      return new RefSnapshot(Collections.unmodifiableList(branches),
+            Collections.unmodifiableList(tags), commits);
+   }
+
+   /**
+    * @return the branches of this snapshot, sorted by name
+    */
+   public List<Ref> getBranches() {
+      return this.branches;
+   }
+
+   /**
+    * @return the tags of this snapshot, sorted by name
+    */
+   public List<Ref> getTags() {
+      return this.tags;
+   }
+
+   /**
+    * Get the id of the commit the given reference points to.
+    * <p>
+    *
+    * @param refName
+    *           the full name of a branch or a tag (i.e. refs/tags/v1.0)
+    * @return the peeled commit id of the reference, or null if the reference
+    *         is not in this snapshot or it doesn't point to a commit
+    */
+   public ObjectId getCommitId(final String refName) {
+      ArgsCheck.notNull("refName", refName);
+      return this.commits.get(refName);
+   }
+}
@@ -0,0 +1,454 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.jgit.utils.ReaderPool;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Caches the entries of trees by tree id, so a path can be looked up without
+ * walking the trees of a commit.
+ * <p>
+ *
+ * Each tree is parsed once into a manifest, a compact table of its entries
+ * (names, modes and object ids) sorted by name. A path is looked up by a
+ * binary search of each of its segments, starting from the manifest of the
+ * root tree and following the ids of the subtrees. A tree id is the hash of
+ * its contents, so the manifest of a tree never changes, and a subtree that
+ * is the same in many commits has only one manifest, which is shared by the
+ * lookups of all these commits.
+ * <p>
+ * The cache is bounded, when it is full the least recently used manifest is
+ * removed.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class TreeManifestCache {
+
+   /**
+    * The default number of manifests to keep in cache.
+    * <p>
+    */
+   public static final int DEFAULT_CAPACITY = 4096;
+
+   /**
+    * Unsigned byte order of encoded names.
+    * <p>
+    */
+   private static final Comparator<byte[]> NAME_ORDER = new Comparator<byte[]>() {
+
+      @Override
+      public int compare(final byte[] a, final byte[] b) {
+         final int n = Math.min(a.length, b.length);
+         for (int i = 0; i < n; i++) {
+            final int c = (a[i] & 0xff) - (b[i] & 0xff);
+            if (c != 0) {
+               return c;
+            }
+         }
+         return a.length - b.length;
+      }
+   };
+
+   /**
+    * Tree id to manifest.
+    * <p>
+    */
+   private final Map<ObjectId, Manifest> cache;
+
+   /**
+    * The pool to read the trees with, may be null.
+    * <p>
+    */
+   private final ReaderPool pool;
+
+   /**
+    * Creates a new cache of {@link #DEFAULT_CAPACITY}.
+    * <p>
+    */
+   public TreeManifestCache() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a new cache of the given capacity.
+    * <p>
+    *
+    * @param capacity
+    *           the maximum number of manifests to keep in cache, must be
+    *           greater than zero
+    */
+   public TreeManifestCache(final int capacity) {
+      this(capacity, null);
+   }
+
+   /**
+    * Creates a new cache of the given capacity, that reads the trees with the
+    * readers of the given pool.
+    * <p>
+    *
+    * @param capacity
+    *           the maximum number of manifests to keep in cache, must be
+    *           greater than zero
+    * @param pool
+    *           the reader pool of the repository, if null a new reader will be
+    *           used for each tree that is not in cache
+    */
+   public TreeManifestCache(final int capacity, final ReaderPool pool) {
+
+      if (capacity <= 0) {
+         throw new IllegalArgumentException("capacity must be greater than 0");
+      }
+
+      this.cache = new LinkedHashMap<ObjectId, Manifest>(16, 0.75f, true) {
+
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(
+               final Map.Entry<ObjectId, Manifest> eldest) {
+            return this.size() > capacity;
+         }
+      };
+      this.pool = pool;
+   }
+
+   /**
+    * Get the manifest of the given tree.
+    * <p>
+    * If the manifest is not in cache the tree will be read from the
+    * repository.
+    *
+    * @param repo
+    *           the repository of the tree, must not be null
+    * @param tree
+    *           the id of the tree, must not be null
+    * @return the manifest of the tree
+    * @throws IOException
+    *            if the tree can not be read
+    */
+   public Manifest get(final Repository repo, final AnyObjectId tree)
+         throws IOException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("tree", tree);
+
+      synchronized (this.cache) {
+         final Manifest manifest = this.cache.get(tree);
+         if (manifest != null) {
+            return manifest;
+         }
+      }
+
+      // Read the tree out of lock, two threads may read the
+      // same tree but the result will be the same
+      final Manifest manifest;
+      final ObjectReader reader = ReaderPool.reader(this.pool, repo);
+      try {
+         manifest = Manifest.read(reader, tree);
+      } finally {
+         ReaderPool.release(this.pool, reader);
+      }
+
+      synchronized (this.cache) {
+         this.cache.put(tree.copy(), manifest);
+      }
+      return manifest;
+   }
+
+   /**
+    * Find the entry of the given path under the given tree.
+    * <p>
+    *
+    * @param repo
+    *           the repository of the tree, must not be null
+    * @param tree
+    *           the id of the root tree, must not be null
+    * @param path
+    *           the path relative to the given tree, segments separated by a
+    *           slash, without a leading or trailing slash. Must not be null or
+    *           empty.
+    * @return the entry of the path, or null if there is not such path
+    * @throws IOException
+    *            if a tree can not be read
+    */
+   public Entry find(final Repository repo, final AnyObjectId tree,
+         final String path) throws IOException {
+
+      ArgsCheck.notNull("path", path);
+      if (path.isEmpty()) {
+         throw new IllegalArgumentException("path must not be empty");
+      }
+
+      Manifest manifest = this.get(repo, tree);
+      int start = 0;
+      while (true) {
+         final int end = path.indexOf('/', start);
+         final String segment = end < 0 ? path.substring(start) : path
+               .substring(start, end);
+
+         final int i = manifest.indexOf(Constants.encode(segment));
+         if (i < 0) {
+            return null;
+         }
+
+         final int mode = manifest.modes[i];
+         if (end < 0) {
+            return new Entry(mode, manifest.ids[i]);
+         }
+         if (!FileMode.TREE.equals(mode)) {
+            return null;
+         }
+         manifest = this.get(repo, manifest.ids[i]);
+         start = end + 1;
+      }
+   }
+
+   /**
+    * @return the number of manifests in cache
+    */
+   public int size() {
+      synchronized (this.cache) {
+         return this.cache.size();
+      }
+   }
+
+   /**
+    * Remove all manifests from cache.
+    * <p>
+    */
+   public void clear() {
+      synchronized (this.cache) {
+         this.cache.clear();
+      }
+   }
+
+   /**
+    * An entry of a tree.
+    * <p>
+    *
+    * @author Elvis Ligu
+    * @version 0.0.1
+    * @since 0.0.1
+    */
+   public static class Entry {
+
+      /**
+       * The raw mode of this entry.
+       * <p>
+       */
+      private final int mode;
+
+      /**
+       * The id of the object of this entry.
+       * <p>
+       */
+      private final ObjectId id;
+
+      /**
+       * Creates a new entry.
+       * <p>
+       *
+       * @param mode
+       *           the raw mode of the entry
+       * @param id
+       *           the id of the object of the entry
+       */
+      public Entry(final int mode, final ObjectId id) {
+         this.mode = mode;
+         this.id = id;
+      }
+
+      /**
+       * @return the mode of this entry
+       */
+      public FileMode getFileMode() {
+         return FileMode.fromBits(this.mode);
+      }
+
+      /**
+       * @return the raw bits of the mode of this entry
+       */
+      public int getRawMode() {
+         return this.mode;
+      }
+
+      /**
+       * @return the id of the blob, tree or commit (submodule) of this entry
+       */
+      public ObjectId getObjectId() {
+         return this.id;
+      }
+   }
+
+   /**
+    * The entries of a tree, sorted by name.
+    * <p>
+    * A manifest contains only the entries of its tree, the entries of a
+    * subtree are in the manifest of the subtree.
+    *
+    * @author Elvis Ligu
+    * @version 0.0.1
+    * @since 0.0.1
+    */
+   public static class Manifest {
+
+      /**
+       * The names of the entries, encoded, sorted by unsigned byte order.
+       * <p>
+       */
+      private final byte[][] names;
+
+      /**
+       * The raw modes of the entries.
+       * <p>
+       */
+      private final int[] modes;
+
+      /**
+       * The object ids of the entries.
+       * <p>
+       */
+      private final ObjectId[] ids;
+
+      private Manifest(final byte[][] names, final int[] modes,
+            final ObjectId[] ids) {
+         this.names = names;
+         this.modes = modes;
+         this.ids = ids;
+      }
+
+      /**
+       * @return the number of entries of this manifest
+       */
+      public int size() {
+         return this.names.length;
+      }
+
+      /**
+       * Get the name of the entry at the given position.
+       * <p>
+       *
+       * @param i
+       *           the position of the entry
+       * @return the name of the entry
+       */
+      public String getName(final int i) {
+         return RawParseUtils.decode(this.names[i]);
+      }
+
+      /**
+       * Get the mode of the entry at the given position.
+       * <p>
+       *
+       * @param i
+       *           the position of the entry
+       * @return the mode of the entry
+       */
+      public FileMode getFileMode(final int i) {
+         return FileMode.fromBits(this.modes[i]);
+      }
+
+      /**
+       * Get the object id of the entry at the given position.
+       * <p>
+       *
+       * @param i
+       *           the position of the entry
+       * @return the object id of the entry
+       */
+      public ObjectId getObjectId(final int i) {
+         return this.ids[i];
+      }
+
+      /**
+       * Find the position of the entry with the given name.
+       * <p>
+       *
+       * @param name
+       *           the encoded name of the entry
+       * @return the position of the entry, or a negative number if there is
+       *         not such entry
+       */
+      public int indexOf(final byte[] name) {
+         return Arrays.binarySearch(this.names, name, NAME_ORDER);
+      }
+
+      /**
+       * Read the manifest of the given tree.
+       * <p>
+       */
+      static Manifest read(final ObjectReader reader, final AnyObjectId tree)
+            throws IOException {
+
+         final CanonicalTreeParser parser = new CanonicalTreeParser(null,
+               reader, tree);
+         int count = 0;
+         byte[][] names = new byte[16][];
+         int[] modes = new int[16];
+         ObjectId[] ids = new ObjectId[16];
+
+         while (!parser.eof()) {
+            if (count == names.length) {
+               names = Arrays.copyOf(names, count * 2);
+               modes = Arrays.copyOf(modes, count * 2);
+               ids = Arrays.copyOf(ids, count * 2);
+            }
+            final byte[] name = new byte[parser.getNameLength()];
+            parser.getName(name, 0);
+            names[count] = name;
+            modes[count] = parser.getEntryRawMode();
+            ids[count] = parser.getEntryObjectId();
+            count++;
+            parser.next(1);
+         }
+
+         // A tree sorts the names of subtrees as if they ended with a slash,
+         // so the order is not always the byte order of the names
+         final Integer[] order = new Integer[count];
+         for (int i = 0; i < count; i++) {
+            order[i] = Integer.valueOf(i);
+         }
+         final byte[][] unsorted = names;
+         Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer a, final Integer b) {
+               return NAME_ORDER.compare(unsorted[a.intValue()],
+                     unsorted[b.intValue()]);
+            }
+         });
+
+         final byte[][] sortedNames = new byte[count][];
+         final int[] sortedModes = new int[count];
+         final ObjectId[] sortedIds = new ObjectId[count];
+         for (int i = 0; i < count; i++) {
+            final int j = order[i].intValue();
+            sortedNames[i] = names[j];
+            sortedModes[i] = modes[j];
+            sortedIds[i] = ids[j];
+         }
+         return new Manifest(sortedNames, sortedModes, sortedIds);
+      }
+   }
+}
@@ -0,0 +1,251 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.utils;
+
+import gr.uom.se.util.validation.ArgsCheck;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Writes blobs of a repository to files.
+ * <p>
+ *
+ * The contents are written through a {@link FileChannel}. Small blobs are
+ * written from the bytes JGit keeps in memory, without copying them, large
+ * blobs are transferred from their stream. If a {@link ReaderPool} is given,
+ * each thread reads the blobs with its own reader, so many files can be
+ * written in parallel.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class BlobWriter {
+
+   /**
+    * The maximum number of bytes transferred at once from a large blob.
+    * <p>
+    */
+   private static final long TRANSFER_SIZE = 1024 * 1024;
+
+   /**
+    * Write the contents of the given blob to the given file.
+    * <p>
+    * The parent directories of the file will be created if they do not exist,
+    * and the file will be replaced if it exists.
+    *
+    * @param repo
+    *           the repository of the blob, must not be null
+    * @param blob
+    *           the id of the blob, must not be null
+    * @param file
+    *           the file to write to, must not be null
+    * @throws IOException
+    *            if the blob can not be read or the file can not be written
+    */
+   public static void write(final Repository repo, final AnyObjectId blob,
+         final File file) throws IOException {
+      write(repo, null, blob, file);
+   }
+
+   /**
+    * Write the contents of the given blob to the given file, reading the blob
+    * with the reader of the calling thread from the given pool.
+    * <p>
+    *
+    * @param repo
+    *           the repository of the blob, must not be null
+    * @param pool
+    *           the reader pool of the repository, if null a new reader will be
+    *           used
+    * @param blob
+    *           the id of the blob, must not be null
+    * @param file
+    *           the file to write to, must not be null
+    * @throws IOException
+    *            if the blob can not be read or the file can not be written
+    * @see #write(Repository, AnyObjectId, File)
+    */
+   public static void write(final Repository repo, final ReaderPool pool,
+         final AnyObjectId blob, final File file) throws IOException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("blob", blob);
+      ArgsCheck.notNull("file", file);
+
+      final Path target = file.toPath();
+      final Path parent = target.getParent();
+      if (parent != null) {
+         Files.createDirectories(parent);
+      }
+
+      final ObjectReader reader = ReaderPool.reader(pool, repo);
+      try {
+         final ObjectLoader loader = reader.open(blob, Constants.OBJ_BLOB);
+         final FileChannel channel = FileChannel.open(target,
+               StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+               StandardOpenOption.TRUNCATE_EXISTING);
+         try {
+            if (!loader.isLarge()) {
+               final ByteBuffer buffer = ByteBuffer.wrap(loader
+                     .getCachedBytes());
+               while (buffer.hasRemaining()) {
+                  channel.write(buffer);
+               }
+            } else {
+               final InputStream in = loader.openStream();
+               try {
+                  final ReadableByteChannel source = Channels.newChannel(in);
+                  final long size = loader.getSize();
+                  long position = 0;
+                  while (position < size) {
+                     final long n = channel.transferFrom(source, position,
+                           Math.min(TRANSFER_SIZE, size - position));
+                     if (n <= 0) {
+                        break;
+                     }
+                     position += n;
+                  }
+               } finally {
+                  in.close();
+               }
+            }
+         } finally {
+            channel.close();
+         }
+      } finally {
+         ReaderPool.release(pool, reader);
+      }
+   }
+
+   /**
+    * Write the contents of the given blobs to their files.
+    * <p>
+    * If an executor is given, each file will be written by a task of the
+    * executor, and this method will wait until all files are written. If a
+    * file can not be written, the tasks that did not start will not write
+    * their files, and this method will wait for the running ones to finish.
+    *
+    * @param repo
+    *           the repository of the blobs, must not be null
+    * @param pool
+    *           the reader pool of the repository, if null each blob will be
+    *           read with a new reader
+    * @param blobs
+    *           the file to write each blob to, must not be null
+    * @param executor
+    *           to write the files, if null the files will be written by the
+    *           calling thread
+    * @throws IOException
+    *            if a blob can not be read or a file can not be written
+    */
+   public static void writeAll(final Repository repo, final ReaderPool pool,
+         final Map<File, ? extends AnyObjectId> blobs,
+         final ExecutorService executor) throws IOException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("blobs", blobs);
+
+      if (executor == null || blobs.size() < 2) {
+         for (final Map.Entry<File, ? extends AnyObjectId> e : blobs.entrySet()) {
+            write(repo, pool, e.getValue(), e.getKey());
+         }
+         return;
+      }
+
+      // Set if a file can not be written, so the remaining tasks will not
+      // write their files
+      final AtomicBoolean failed = new AtomicBoolean();
+      final List<Future<Void>> tasks = new ArrayList<Future<Void>>(
+            blobs.size());
+      boolean written = false;
+      try {
+         for (final Map.Entry<File, ? extends AnyObjectId> e : blobs.entrySet()) {
+            final File file = e.getKey();
+            final AnyObjectId blob = e.getValue();
+            tasks.add(executor.submit(new Callable<Void>() {
+
+               @Override
+               public Void call() throws Exception {
+                  if (!failed.get()) {
+                     write(repo, pool, blob, file);
+                  }
+                  return null;
+               }
+            }));
+         }
+
+         for (final Future<Void> task : tasks) {
+            task.get();
+         }
+         written = true;
+      } catch (final InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("interrupted while writing blobs");
+      } catch (final ExecutionException e) {
+         final Throwable cause = e.getCause();
+         if (cause instanceof IOException) {
+            throw (IOException) cause;
+         }
+         throw new IOException(cause);
+      } finally {
+         if (!written) {
+            failed.set(true);
+            await(tasks);
+         }
+      }
+   }
+
+   /**
+    * Wait for the given tasks to finish, so no file will be written after
+    * this method returns.
+    * <p>
+    */
+   private static void await(final List<Future<Void>> tasks) {
+
+      boolean interrupted = false;
+      for (final Future<Void> task : tasks) {
+         while (true) {
+            try {
+               task.get();
+               break;
+            } catch (final InterruptedException e) {
+               interrupted = true;
+            } catch (final ExecutionException e) {
+               break;
+            } catch (final CancellationException e) {
+               break;
+            }
+         }
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
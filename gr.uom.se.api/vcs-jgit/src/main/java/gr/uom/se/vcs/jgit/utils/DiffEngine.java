@@ -0,0 +1,405 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.utils;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.jgit.index.LineCounter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Computes the edits between two blobs.
+ * <p>
+ *
+ * The engine is configured with the diff algorithm to use (Myers or
+ * Histogram), the number of the first bytes of a blob that are checked in
+ * order to decide if it is binary, and the maximum size of a blob that will be
+ * diffed. Given two blobs the engine will apply the first of the following
+ * policies that matches (see {@link Policy}):
+ * <ul>
+ * <li>{@link Policy#BINARY}: if any of the blobs contains a NUL byte in its
+ * first bytes (the same heuristic git uses), the blobs are not diffed and no
+ * edits are reported, whatever their size.</li>
+ * <li>{@link Policy#OVERSIZED}: if any of the text blobs is larger than the
+ * maximum size, the contents are not diffed, but the whole old file is
+ * reported as replaced by the whole new file. Only the lines of the blobs are
+ * counted, which is done by streaming them, without loading them in
+ * memory.</li>
+ * <li>{@link Policy#TEXT}: the blobs are diffed with the algorithm of this
+ * engine.</li>
+ * </ul>
+ * <p>
+ * Only the first bytes of a large blob are read to check if it is binary,
+ * and its size is read from its header, so an oversized blob is never
+ * loaded. By default there is not a maximum size, so all text blobs are
+ * diffed, as they were before the engine was introduced.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see gr.uom.se.vcs.jgit.VCSRepositoryImp#setDiffEngine(DiffEngine)
+ */
+public class DiffEngine {
+
+   /**
+    * The default number of bytes that are checked to decide if a blob is
+    * binary.
+    * <p>
+    * This is the same number git uses.
+    */
+   public static final int DEFAULT_BINARY_CHECK = 8000;
+
+   /**
+    * The default maximum size of a blob that will be diffed, that is no
+    * limit.
+    * <p>
+    */
+   public static final long DEFAULT_MAX_SIZE = Long.MAX_VALUE;
+
+   /**
+    * The engine that will be used if one is not specified.
+    * <p>
+    * It uses the Histogram algorithm, as the previous implementation did.
+    */
+   public static final DiffEngine DEFAULT = new DiffEngine();
+
+   /**
+    * The policy that was applied when diffing two blobs.
+    * <p>
+    */
+   public static enum Policy {
+
+      /**
+       * The blobs were diffed as text.
+       * <p>
+       */
+      TEXT,
+
+      /**
+       * One of the blobs was binary, so there are no edits.
+       * <p>
+       */
+      BINARY,
+
+      /**
+       * One of the blobs was larger than the maximum size, so the edits are a
+       * single replacement of the whole old file by the whole new file.
+       * <p>
+       */
+      OVERSIZED;
+   }
+
+   /**
+    * The algorithm of this engine.
+    * <p>
+    */
+   private final SupportedAlgorithm algorithm;
+
+   /**
+    * The diff algorithm instance.
+    * <p>
+    */
+   private final DiffAlgorithm diff;
+
+   /**
+    * The number of bytes to check if a blob is binary.
+    * <p>
+    */
+   private final int binaryCheck;
+
+   /**
+    * The maximum size of a blob that will be diffed.
+    * <p>
+    */
+   private final long maxSize;
+
+   /**
+    * Creates an engine with the Histogram algorithm, and the default binary
+    * check and maximum size.
+    * <p>
+    */
+   public DiffEngine() {
+      this(SupportedAlgorithm.HISTOGRAM, DEFAULT_BINARY_CHECK, DEFAULT_MAX_SIZE);
+   }
+
+   /**
+    * Creates a new engine.
+    * <p>
+    *
+    * @param algorithm
+    *           the diff algorithm to use, must not be null
+    * @param binaryCheck
+    *           the number of the first bytes of a blob to check if it is
+    *           binary, if zero no blob will be considered binary, must not be
+    *           negative
+    * @param maxSize
+    *           the maximum size (in bytes) of a blob that will be diffed, must
+    *           not be negative
+    */
+   public DiffEngine(final SupportedAlgorithm algorithm, final int binaryCheck,
+         final long maxSize) {
+
+      ArgsCheck.notNull("algorithm", algorithm);
+      if (binaryCheck < 0) {
+         throw new IllegalArgumentException("binaryCheck must not be negative");
+      }
+      if (maxSize < 0) {
+         throw new IllegalArgumentException("maxSize must not be negative");
+      }
+      this.algorithm = algorithm;
+      this.diff = DiffAlgorithm.getAlgorithm(algorithm);
+      this.binaryCheck = binaryCheck;
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * @return the diff algorithm of this engine
+    */
+   public SupportedAlgorithm getAlgorithm() {
+      return this.algorithm;
+   }
+
+   /**
+    * @return the number of bytes that are checked to decide if a blob is
+    *         binary
+    */
+   public int getBinaryCheck() {
+      return this.binaryCheck;
+   }
+
+   /**
+    * @return the maximum size of a blob that will be diffed
+    */
+   public long getMaxSize() {
+      return this.maxSize;
+   }
+
+   /**
+    * Diff the given blobs of the repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository of the blobs, must not be null
+    * @param oldBlob
+    *           the id of the old blob, must not be null
+    * @param newBlob
+    *           the id of the new blob, must not be null
+    * @return the result of the diff
+    * @throws IOException
+    *            if the blobs can not be read
+    */
+   public Result diff(final Repository repo, final AnyObjectId oldBlob,
+         final AnyObjectId newBlob) throws IOException {
+      return this.diff(repo, null, null, oldBlob, newBlob);
+   }
+
+   /**
+    * Diff the given blobs of the repository, reading them with the reader of
+    * the calling thread from the given pool.
+    * <p>
+    * If a line counter is given the lines of oversized blobs will be counted
+    * by it, so they are cached.
+    *
+    * @param repo
+    *           the repository of the blobs, must not be null
+    * @param pool
+    *           the reader pool of the repository, may be null
+    * @param counter
+    *           the line counter of the repository, may be null
+    * @param oldBlob
+    *           the id of the old blob, must not be null
+    * @param newBlob
+    *           the id of the new blob, must not be null
+    * @return the result of the diff
+    * @throws IOException
+    *            if the blobs can not be read
+    */
+   public Result diff(final Repository repo, final ReaderPool pool,
+         final LineCounter counter, final AnyObjectId oldBlob,
+         final AnyObjectId newBlob) throws IOException {
+
+      ArgsCheck.notNull("repo", repo);
+      ArgsCheck.notNull("oldBlob", oldBlob);
+      ArgsCheck.notNull("newBlob", newBlob);
+
+      // The same contents have no edits
+      if (AnyObjectId.equals(oldBlob, newBlob)) {
+         return new Result(Policy.TEXT, new EditList());
+      }
+
+      final ObjectReader reader = ReaderPool.reader(pool, repo);
+      try {
+         // Opening a large blob doesn't load it, only its header is read
+         final ObjectLoader oldLoader = reader.open(oldBlob,
+               Constants.OBJ_BLOB);
+         final ObjectLoader newLoader = reader.open(newBlob,
+               Constants.OBJ_BLOB);
+         if (this.isBinary(oldLoader) || this.isBinary(newLoader)) {
+            return binary();
+         }
+
+         if (oldLoader.getSize() > this.maxSize
+               || newLoader.getSize() > this.maxSize) {
+            if (counter != null) {
+               return oversized(counter.count(repo, oldBlob),
+                     counter.count(repo, newBlob));
+            }
+            return oversized(LineCounter.countLines(oldLoader),
+                  LineCounter.countLines(newLoader));
+         }
+
+         return this.text(oldLoader, newLoader);
+      } finally {
+         ReaderPool.release(pool, reader);
+      }
+   }
+
+   /**
+    * Diff the blobs of the given loaders.
+    * <p>
+    *
+    * @param oldBlob
+    *           the loader of the old blob, must not be null
+    * @param newBlob
+    *           the loader of the new blob, must not be null
+    * @return the result of the diff
+    * @throws IOException
+    *            if the blobs can not be read
+    */
+   public Result diff(final ObjectLoader oldBlob, final ObjectLoader newBlob)
+         throws IOException {
+
+      ArgsCheck.notNull("oldBlob", oldBlob);
+      ArgsCheck.notNull("newBlob", newBlob);
+
+      if (this.isBinary(oldBlob) || this.isBinary(newBlob)) {
+         return binary();
+      }
+
+      if (oldBlob.getSize() > this.maxSize || newBlob.getSize() > this.maxSize) {
+         return oversized(LineCounter.countLines(oldBlob),
+               LineCounter.countLines(newBlob));
+      }
+
+      return this.text(oldBlob, newBlob);
+   }
+
+   /**
+    * Diff the given text blobs with the algorithm of this engine.
+    * <p>
+    */
+   private Result text(final ObjectLoader oldBlob, final ObjectLoader newBlob)
+         throws IOException {
+      final RawText a = new RawText(oldBlob.getCachedBytes(Integer.MAX_VALUE));
+      final RawText b = new RawText(newBlob.getCachedBytes(Integer.MAX_VALUE));
+      return new Result(Policy.TEXT, this.diff.diff(RawTextComparator.DEFAULT,
+            a, b));
+   }
+
+   /**
+    * Check the first bytes of the given blob for a NUL byte.
+    * <p>
+    */
+   private boolean isBinary(final ObjectLoader blob) throws IOException {
+
+      if (this.binaryCheck == 0) {
+         return false;
+      }
+
+      if (!blob.isLarge()) {
+         final byte[] bytes = blob.getCachedBytes();
+         return containsNul(bytes, Math.min(bytes.length, this.binaryCheck));
+      }
+
+      // Read only the first bytes of a large blob
+      final byte[] bytes = new byte[this.binaryCheck];
+      final InputStream in = blob.openStream();
+      try {
+         int length = 0;
+         int n;
+         while (length < bytes.length
+               && (n = in.read(bytes, length, bytes.length - length)) > 0) {
+            length += n;
+         }
+         return containsNul(bytes, length);
+      } finally {
+         in.close();
+      }
+   }
+
+   private static boolean containsNul(final byte[] bytes, final int length) {
+      for (int i = 0; i < length; i++) {
+         if (bytes[i] == '\0') {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Create the result of binary blobs.
+    * <p>
+    */
+   private static Result binary() {
+      return new Result(Policy.BINARY, new EditList());
+   }
+
+   /**
+    * Create the result of oversized blobs, given their lines.
+    * <p>
+    */
+   private static Result oversized(final int oldLines, final int newLines) {
+      final EditList edits = new EditList();
+      if (oldLines > 0 || newLines > 0) {
+         edits.add(new Edit(0, oldLines, 0, newLines));
+      }
+      return new Result(Policy.OVERSIZED, edits);
+   }
+
+   /**
+    * The result of a diff, that is the edits and the policy that was applied
+    * to compute them.
+    * <p>
+    */
+   public static class Result {
+
+      private final Policy policy;
+
+      private final EditList edits;
+
+      Result(final Policy policy, final EditList edits) {
+         this.policy = policy;
+         this.edits = edits;
+      }
+
+      /**
+       * @return the policy that was applied
+       */
+      public Policy getPolicy() {
+         return this.policy;
+      }
+
+      /**
+       * @return the edits of the diff
+       */
+      public EditList getEdits() {
+         return this.edits;
+      }
+   }
+}
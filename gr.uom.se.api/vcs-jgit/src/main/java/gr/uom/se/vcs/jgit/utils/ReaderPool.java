@@ -0,0 +1,284 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.utils;
+
+import gr.uom.se.util.validation.ArgsCheck;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * A pool of object readers of a repository, one reader per thread.
+ * <p>
+ *
+ * An {@link ObjectReader} keeps an inflater, the last pack window it used and
+ * other caches. Creating a new reader (or a walk with its own reader) for each
+ * operation and releasing it right away, throws these caches away. This pool
+ * gives each thread its own reader, which is kept for all the operations of
+ * the thread, so the caches stay warm. Walks created by this pool use the
+ * reader of the calling thread, and calling release on them will not release
+ * the reader.
+ * <p>
+ * A reader of the pool must be used only by the thread that obtained it, so a
+ * walk created by this pool must not be passed to other threads. The pool
+ * keeps only a weak reference to the thread of each reader, and the readers
+ * of threads that are no longer alive are released when a new thread obtains
+ * its reader, so a pool used by short lived threads doesn't keep their
+ * readers.
+ * <p>
+ * The static methods of this class are the entry points for the code of this
+ * implementation. They will use the given pool (usually the pool of the
+ * repository that owns the caller), or they will create a new walk or reader
+ * as before if there is not any.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ReaderPool {
+
+   /**
+    * The repository of this pool.
+    * <p>
+    */
+   private final Repository repo;
+
+   /**
+    * A reader of this pool and a weak reference to the thread it belongs to.
+    * <p>
+    */
+   private static class Slot extends WeakReference<Thread> {
+
+      final ObjectReader reader;
+
+      Slot(final Thread thread, final ObjectReader reader) {
+         super(thread);
+         this.reader = reader;
+      }
+
+      boolean isAlive() {
+         final Thread thread = this.get();
+         return thread != null && thread.isAlive();
+      }
+   }
+
+   /**
+    * The readers of threads this pool has created, so they can be released.
+    * <p>
+    */
+   private final List<Slot> slots = new ArrayList<Slot>();
+
+   /**
+    * The reader of each thread.
+    * <p>
+    */
+   private final ThreadLocal<ObjectReader> local = new ThreadLocal<ObjectReader>() {
+
+      @Override
+      protected ObjectReader initialValue() {
+         final ObjectReader reader = ReaderPool.this.repo.newObjectReader();
+         synchronized (ReaderPool.this.slots) {
+            ReaderPool.this.expunge();
+            ReaderPool.this.slots.add(new Slot(Thread.currentThread(), reader));
+         }
+         return reader;
+      }
+   };
+
+   /**
+    * Creates a new pool for the given repository.
+    * <p>
+    *
+    * @param repo
+    *           the repository to create readers for, must not be null
+    */
+   public ReaderPool(final Repository repo) {
+      ArgsCheck.notNull("repo", repo);
+      this.repo = repo;
+   }
+
+   /**
+    * Get the reader of the calling thread.
+    * <p>
+    * The returned reader must not be released by the caller.
+    *
+    * @return the reader of the calling thread
+    */
+   public ObjectReader getReader() {
+      return this.local.get();
+   }
+
+   /**
+    * Check if the given reader is the reader of the calling thread.
+    * <p>
+    *
+    * @param reader
+    *           to check
+    * @return true if the reader is the reader this pool gives to the calling
+    *         thread
+    */
+   public boolean isPooled(final ObjectReader reader) {
+      return reader == this.local.get();
+   }
+
+   /**
+    * Release and remove the readers of threads that are no longer alive.
+    * <p>
+    * Must be called while holding the lock of {@link #slots}.
+    */
+   private void expunge() {
+      final Iterator<Slot> it = this.slots.iterator();
+      while (it.hasNext()) {
+         final Slot slot = it.next();
+         if (!slot.isAlive()) {
+            slot.reader.release();
+            it.remove();
+         }
+      }
+   }
+
+   /**
+    * Create a new revision walk that uses the reader of the calling thread.
+    * <p>
+    *
+    * @return a new revision walk
+    */
+   public RevWalk newRevWalk() {
+      return new PooledRevWalk(this.getReader());
+   }
+
+   /**
+    * Create a new tree walk that uses the reader of the calling thread.
+    * <p>
+    *
+    * @return a new tree walk
+    */
+   public TreeWalk newTreeWalk() {
+      return new PooledTreeWalk(this.getReader());
+   }
+
+   /**
+    * Release the caches of all readers of this pool.
+    * <p>
+    * The readers can still be used after this call, however they will start
+    * with empty caches. This should be called only when no thread is using
+    * the pool (i.e. when the repository is closed).
+    */
+   public void release() {
+      synchronized (this.slots) {
+         for (final Slot slot : this.slots) {
+            slot.reader.release();
+         }
+         this.expunge();
+      }
+   }
+
+   /**
+    * Create a revision walk for the given repository.
+    * <p>
+    * If a pool is given, the walk will use the reader of the calling thread.
+    * In any case the caller should release the walk when it is done.
+    *
+    * @param pool
+    *           the pool of the repository, may be null
+    * @param repo
+    *           the repository to walk
+    * @return a new revision walk
+    */
+   public static RevWalk revWalk(final ReaderPool pool, final Repository repo) {
+      return pool != null ? pool.newRevWalk() : new RevWalk(repo);
+   }
+
+   /**
+    * Create a tree walk for the given repository.
+    * <p>
+    * If a pool is given, the walk will use the reader of the calling thread.
+    * In any case the caller should release the walk when it is done.
+    *
+    * @param pool
+    *           the pool of the repository, may be null
+    * @param repo
+    *           the repository to walk
+    * @return a new tree walk
+    */
+   public static TreeWalk treeWalk(final ReaderPool pool,
+         final Repository repo) {
+      return pool != null ? pool.newTreeWalk() : new TreeWalk(repo);
+   }
+
+   /**
+    * Get a reader for the given repository.
+    * <p>
+    * If a pool is given, the reader of the calling thread will be returned. In
+    * any case the caller should give the reader back by calling
+    * {@link #release(ReaderPool, ObjectReader)}.
+    *
+    * @param pool
+    *           the pool of the repository, may be null
+    * @param repo
+    *           the repository to read
+    * @return a reader
+    */
+   public static ObjectReader reader(final ReaderPool pool,
+         final Repository repo) {
+      return pool != null ? pool.getReader() : repo.newObjectReader();
+   }
+
+   /**
+    * Release the given reader, if it is not a reader of the given pool.
+    * <p>
+    *
+    * @param pool
+    *           the pool the reader was obtained from, may be null
+    * @param reader
+    *           the reader to release
+    */
+   public static void release(final ReaderPool pool,
+         final ObjectReader reader) {
+      if (pool == null || !pool.isPooled(reader)) {
+         reader.release();
+      }
+   }
+
+   /**
+    * A revision walk that doesn't release the reader of the pool.
+    * <p>
+    */
+   private static class PooledRevWalk extends RevWalk {
+
+      PooledRevWalk(final ObjectReader reader) {
+         super(reader);
+      }
+
+      @Override
+      public void release() {
+         // The reader belongs to the pool
+      }
+   }
+
+   /**
+    * A tree walk that doesn't release the reader of the pool.
+    * <p>
+    */
+   private static class PooledTreeWalk extends TreeWalk {
+
+      PooledTreeWalk(final ObjectReader reader) {
+         super(reader);
+      }
+
+      @Override
+      public void release() {
+         // The reader belongs to the pool
+      }
+   }
+}
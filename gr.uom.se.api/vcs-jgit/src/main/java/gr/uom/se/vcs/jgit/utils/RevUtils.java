@@ -65,10 +65,32 @@ public class RevUtils {
    public static boolean isAncestor(final RevCommit commit1,
          final RevCommit commit2, final Repository repo)
          throws VCSRepositoryException {
+      return isAncestor(commit1, commit2, repo, null);
+   }
+
+   /**
+    * Check commit1 is ancestor of commit2, walking the history of commit2 with
+    * the reader of the calling thread from the given pool.
+    * <p>
+    * 
+    * @param commit1
+    *           the ancestor to check
+    * @param commit2
+    *           the descendant of commit2
+    * @param repo
+    *           from where these commits comes from
+    * @param pool
+    *           the reader pool of the repository, may be null
+    * @return true if commit1 is ancestor of commit2
+    * @throws VCSRepositoryException
+    */
+   public static boolean isAncestor(final RevCommit commit1,
+         final RevCommit commit2, final Repository repo, final ReaderPool pool)
+         throws VCSRepositoryException {
 
       // Create a revision walk and check if commit1
       // is reachable from commit2
-      final RevWalk walk = new RevWalk(repo);
+      final RevWalk walk = ReaderPool.revWalk(pool, repo);
 
       try {
 
@@ -3,6 +3,7 @@ package gr.uom.se.vcs.jgit.utils;
 import gr.uom.se.util.validation.ArgsCheck;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
 import gr.uom.se.vcs.exceptions.VCSResourceNotFoundException;
+import gr.uom.se.vcs.jgit.index.TreeManifestCache;
 
 import java.io.IOException;
 
@@ -239,6 +240,34 @@ public class TreeUtils {
    public static TreeWalk createTreeWalk(final Repository repository,
          final RevCommit commit, final boolean recursive, final String... paths)
          throws IOException {
+      return createTreeWalk(null, repository, commit, recursive, paths);
+   }
+
+   /**
+    * Creates a tree walk with the given commit, and limit only to the given
+    * paths. The walk will use the reader of the calling thread from the given
+    * pool.
+    * <p>
+    * 
+    * @param pool
+    *           the reader pool of the repository, may be null
+    * @param repository
+    *           for the {@link RevWalk} which will be used to prepare the tree
+    * @param commit
+    *           which contains the tree
+    * @param recursive
+    *           if false the directory entries will be returned too
+    * @param paths
+    *           to limit the tree walk (if null all entries will be included,
+    *           must not be empty not or contain any null path)
+    * 
+    * @return a tree walk
+    * @throws IOException
+    *            thrown from JGit API
+    */
+   public static TreeWalk createTreeWalk(final ReaderPool pool,
+         final Repository repository, final RevCommit commit,
+         final boolean recursive, final String... paths) throws IOException {
 
       ArgsCheck.notNull("repository", repository);
       ArgsCheck.notNull("commit", commit);
@@ -247,8 +276,8 @@ public class TreeUtils {
       TreeWalk treeWalk = null;
       RevWalk revWalk = null;
       try {
-         treeWalk = new TreeWalk(repository);
-         revWalk = new RevWalk(repository);
+         treeWalk = ReaderPool.treeWalk(pool, repository);
+         revWalk = ReaderPool.revWalk(pool, repository);
          treeWalk.addTree(revWalk.parseCommit(commit).getTree());
          treeWalk.setRecursive(recursive);
 
@@ -446,14 +475,102 @@ public class TreeUtils {
    public static boolean existPath(final RevCommit commit,
          final Repository repository, final String path) throws IOException {
 
-      // create a tree walker and set path filter to this path only
-      final TreeWalk treeWalk = createTreeWalk(repository, commit, true);
-      treeWalk.setFilter(PathFilter.create(path));
+      return findEntry(commit, repository, path) != null;
+   }
+
+   /**
+    * Check if path exists, looking it up in the given manifests.
+    * <p>
+    * 
+    * @param commit
+    *           to check the path at
+    * @param repository
+    *           the repository of the commit
+    * @param path
+    *           to check for existence
+    * @param manifests
+    *           the manifests of the repository's trees, may be null
+    * @return true if the given path exists at the given commit
+    * @throws IOException
+    *            thrown from JGit API
+    * @see #findEntry(RevCommit, Repository, String, TreeManifestCache)
+    */
+   public static boolean existPath(final RevCommit commit,
+         final Repository repository, final String path,
+         final TreeManifestCache manifests) throws IOException {
+
+      return findEntry(commit, repository, path, manifests) != null;
+   }
 
+   /**
+    * Find the entry of the given path at the given commit.
+    * <p>
+    * 
+    * @param commit
+    *           to find the path at
+    * @param repository
+    *           the repository of the commit
+    * @param path
+    *           to find, relative to the root of the repository
+    * @return the entry of the path, or null if the path doesn't exist
+    * @throws IOException
+    *            thrown from JGit API
+    */
+   public static TreeManifestCache.Entry findEntry(final RevCommit commit,
+         final Repository repository, final String path) throws IOException {
+      return findEntry(commit, repository, path, null);
+   }
+
+   /**
+    * Find the entry of the given path at the given commit.
+    * <p>
+    * 
+    * If manifests are given the path will be looked up in the manifests of
+    * the repository's trees, otherwise a tree walk will be used.
+    * 
+    * @param commit
+    *           to find the path at
+    * @param repository
+    *           the repository of the commit
+    * @param path
+    *           to find, relative to the root of the repository
+    * @param manifests
+    *           the manifests of the repository's trees, may be null
+    * @return the entry of the path, or null if the path doesn't exist
+    * @throws IOException
+    *            thrown from JGit API
+    */
+   public static TreeManifestCache.Entry findEntry(final RevCommit commit,
+         final Repository repository, final String path,
+         final TreeManifestCache manifests) throws IOException {
+
+      ArgsCheck.notNull("repository", repository);
+      ArgsCheck.notNull("commit", commit);
+      ArgsCheck.notNull("path", path);
+
+      RevTree tree = commit.getTree();
+      if (tree == null) {
+         final RevWalk revWalk = new RevWalk(repository);
+         try {
+            tree = revWalk.parseCommit(commit).getTree();
+         } finally {
+            revWalk.release();
+         }
+      }
+
+      if (manifests != null) {
+         return manifests.find(repository, tree, path);
+      }
+
+      final TreeWalk walk = TreeWalk.forPath(repository, path, tree);
+      if (walk == null) {
+         return null;
+      }
       try {
-         return treeWalk.next();
+         return new TreeManifestCache.Entry(walk.getRawMode(0),
+               walk.getObjectId(0));
       } finally {
-         treeWalk.release();
+         walk.release();
       }
    }
 }
@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.walker;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.jgit.index.ChangedPathIndex;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * A revision filter that includes the commits that change a set of paths,
+ * the same as setting a path filter to a {@link RevWalk} (i.e. git log --
+ * path).
+ * <p>
+ *
+ * Before the trees of a commit are compared, its changed-path filter is
+ * checked (see {@link ChangedPathIndex}). If the commit has at most one
+ * parent, and its filter says that none of the paths was changed, the commit
+ * is excluded without comparing any tree. Otherwise, and for merge commits,
+ * the decision is made by a {@link TreeRevFilter}, so the commits of the walk
+ * will be the same as the commits of a walk with a tree filter.
+ * <p>
+ * Use this filter as the only revision filter of a walk, without setting a
+ * tree filter. The parents of the produced commits are not rewritten.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ChangedPathRevFilter extends RevFilter {
+
+   /**
+    * The filters of the commits.
+    * <p>
+    */
+   private final ChangedPathIndex index;
+
+   /**
+    * The paths, encoded.
+    * <p>
+    */
+   private final byte[][] paths;
+
+   /**
+    * The filter that compares the trees.
+    * <p>
+    */
+   private final TreeRevFilter treeFilter;
+
+   /**
+    * Creates a new filter for the given walk and paths.
+    * <p>
+    *
+    * @param walk
+    *           the walk this filter will be used with, must not be null
+    * @param index
+    *           the changed-path filters of the repository, must not be null
+    * @param paths
+    *           the paths relative to the root of repository, without a
+    *           trailing slash, must not be null or empty
+    */
+   public ChangedPathRevFilter(final RevWalk walk,
+         final ChangedPathIndex index, final String... paths) {
+
+      ArgsCheck.notNull("walk", walk);
+      ArgsCheck.notNull("index", index);
+      ArgsCheck.notEmpty("paths", (Object[]) paths);
+      ArgsCheck.containsNoNull("paths", (Object[]) paths);
+
+      this.index = index;
+      this.paths = new byte[paths.length][];
+      for (int i = 0; i < paths.length; i++) {
+         this.paths[i] = Constants.encode(paths[i]);
+      }
+      this.treeFilter = new TreeRevFilter(walk, AndTreeFilter.create(
+            PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean include(final RevWalk walker, final RevCommit cmit)
+         throws StopWalkException, MissingObjectException,
+         IncorrectObjectTypeException, IOException {
+
+      if (cmit.getParentCount() <= 1
+            && Boolean.FALSE.equals(this.index.mightChange(cmit, this.paths))) {
+         return false;
+      }
+      return this.treeFilter.include(walker, cmit);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean requiresCommitBody() {
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public RevFilter clone() {
+      return this;
+   }
+}
@@ -1,33 +1,62 @@
 package gr.uom.se.vcs.jgit.walker;
 
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
-import gr.uom.se.vcs.jgit.utils.TreeUtils;
 import gr.uom.se.vcs.walker.Collector;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
-import org.eclipse.jgit.api.DiffCommand;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 /**
  * A helper class used to collect diffs between two commits.
  * <p>
- * 
- * This class uses JGit {@link DiffCommand} to produce diffs between two
- * commits. The diffs are produced from first to second commit.
- * 
+ *
+ * This class drives a single recursive {@link TreeWalk} over the trees of the
+ * two commits, and produces a diff entry each time the walk stops at a path
+ * that differs. The diffs are produced from first to second commit.
+ * <p>
+ * The entries are produced lazily when iterating this collector, so a caller
+ * that stops the iteration early will stop the comparison of the trees, and
+ * the whole list of entries is never allocated. Such a caller should call
+ * {@link #release()} in order to release the resources of the walk.
+ * {@link #collect()} will produce all entries at once.
+ * <p>
+ * An {@link ObjectReader} may be given to this collector, so the same reader
+ * can be shared among many collectors. A shared reader is never released by
+ * this collector.
+ * <p>
+ * Rename and copy detection is disabled by default, and can be enabled by
+ * {@link #setRenameDetection(RenameDetection)}. Renames can be detected only
+ * when all entries are known, so when it is enabled the trees are compared
+ * completely the first time an entry is required. The entries are still
+ * produced in the order of the walk, a rename or a copy takes the place of
+ * its addition.
+ *
  * @author Elvis Ligu
  * @since 0.0.1
  * @version 0.0.1
@@ -36,6 +65,13 @@ import org.eclipse.jgit.treewalk.filter.TreeFilter;
  */
 public class DiffCollector<T extends DiffEntry> implements Collector<T> {
 
+   /**
+    * The id of a missing side of an entry.
+    * <p>
+    */
+   private static final AbbreviatedObjectId ZERO_ID = AbbreviatedObjectId
+         .fromObjectId(ObjectId.zeroId());
+
    /**
     * The repository from which the two commits comes from.
     * <p>
@@ -55,19 +91,39 @@ public class DiffCollector<T extends DiffEntry> implements Collector<T> {
    private RevCommit newC;
 
    /**
-    * The {@link DiffCommand} to be used when producing diffs.
+    * The reader to be used when walking trees, shared by the caller.
     * <p>
+    * If null each iteration will use its own reader.
     */
-   private final DiffCommand command;
+   private final ObjectReader reader;
+
+   /**
+    * The path filter to limit the diffs.
+    * <p>
+    */
+   private TreeFilter filter = TreeFilter.ALL;
+
+   /**
+    * The configuration of rename detection.
+    * <p>
+    * If null renames will not be detected.
+    */
+   private RenameDetection renames;
+
+   /**
+    * The last iterator created by {@link #iterator()}.
+    * <p>
+    */
+   private DiffIterator current;
 
    /**
     * Creates a new {@link DiffCollector}.
     * <p>
-    * 
+    *
     * <b>NOTE: the two commits must not be equal.</b>
-    * 
+    *
     * @param repo
-    *           the repository to create the diff command (null not allowed)
+    *           the repository to read the trees from (null not allowed)
     * @param commit1
     *           the first commit (null not allowed)
     * @param commit2
@@ -75,6 +131,28 @@ public class DiffCollector<T extends DiffEntry> implements Collector<T> {
     */
    public DiffCollector(final Repository repo, final RevCommit commit1,
          final RevCommit commit2) {
+      this(repo, commit1, commit2, null);
+   }
+
+   /**
+    * Creates a new {@link DiffCollector} that will use the given reader.
+    * <p>
+    *
+    * <b>NOTE: the two commits must not be equal.</b>
+    *
+    * @param repo
+    *           the repository to read the trees from (null not allowed)
+    * @param commit1
+    *           the first commit (null not allowed)
+    * @param commit2
+    *           the second commit (null not allowed)
+    * @param reader
+    *           the reader to read the trees with, if null each iteration will
+    *           create its own reader. The given reader will not be released by
+    *           this collector.
+    */
+   public DiffCollector(final Repository repo, final RevCommit commit1,
+         final RevCommit commit2, final ObjectReader reader) {
 
       if ((commit1 == null) || (commit2 == null) || (repo == null)) {
          throw new IllegalArgumentException("check args for null");
@@ -87,10 +165,8 @@ public class DiffCollector<T extends DiffEntry> implements Collector<T> {
 
       this.oldC = commit1;
       this.newC = commit2;
-
-      // Create a diff command
-      this.command = new Git(repo).diff();
       this.repo = repo;
+      this.reader = reader;
    }
 
    /**
@@ -110,57 +186,83 @@ public class DiffCollector<T extends DiffEntry> implements Collector<T> {
    /**
     * Limit diffs only to this paths.
     * <p>
-    * 
-    * 
-    * @param paths
-    *           to include results from (must not be null, not or empty)
+    *
+    *
+    * @param filter
+    *           to include results from (must not be null)
     * @return this collector
     */
    public DiffCollector<T> setPathFilters(final TreeFilter filter) {
-      this.command.setPathFilter(filter);
+      if (filter == null) {
+         throw new IllegalArgumentException("filter must not be null");
+      }
+      this.filter = filter;
+      return this;
+   }
+
+   /**
+    * Enable rename and copy detection.
+    * <p>
+    * 
+    * @param renames
+    *           the configuration of the detection, if null renames will not be
+    *           detected
+    * @return this collector
+    */
+   public DiffCollector<T> setRenameDetection(final RenameDetection renames) {
+      this.renames = renames;
       return this;
    }
 
    /**
-    * <b>NOTE:</b> This implementation will first call in {@link #collect()}
-    * method and creates an iterator from the returned collection.
+    * Entries are produced lazily while iterating.
     * <p>
+    * Only one iterator is active at a time, calling this method will release
+    * the previous iterator. Call {@link #release()} if the returned iterator
+    * will not be exhausted.
     */
    @Override
+   @SuppressWarnings("unchecked")
    public Iterator<T> iterator() {
 
+      this.release();
       try {
-         final Collection<T> list = this.collect();
-         return list.iterator();
+         this.current = new DiffIterator();
+         return (Iterator<T>) this.current;
+      } catch (final IOException e) {
+         throw new IllegalStateException(new VCSRepositoryException(e));
+      }
+   }
 
-      } catch (final VCSRepositoryException e) {
-         throw new IllegalStateException(e);
+   /**
+    * Release the resources of the last iterator of this collector.
+    * <p>
+    * A shared reader will not be released.
+    */
+   public void release() {
+      if (this.current != null) {
+         this.current.release();
+         this.current = null;
       }
    }
 
    /**
-    * {@inheritDoc} Prepares two tree iterators from old and new commit and
-    * calculates the difference of the trees.
-    * 
+    * {@inheritDoc} Walks the trees of old and new commit and collects all
+    * entries that differ.
+    *
     */
    @Override
    @SuppressWarnings("unchecked")
    public Collection<T> collect() throws VCSRepositoryException {
 
-      // The diff works on TreeIterators, we prepare two for the two commits
+      final List<T> diffs = new ArrayList<T>();
+      DiffIterator it = null;
       try {
-
-         // Create tree iterators
-         final AbstractTreeIterator oldTreeParser = TreeUtils
-               .prepareTreeParserForWalk(this.repo, this.oldC, null);
-         final AbstractTreeIterator newTreeParser = TreeUtils
-               .prepareTreeParserForWalk(this.repo, this.newC, null);
-
-         // then the porcelain diff-command returns a list of diff entries
-         final List<DiffEntry> diff = this.command.setOldTree(oldTreeParser)
-               .setNewTree(newTreeParser).call();
-         
-         return (Collection<T>) diff;
+         it = new DiffIterator();
+         while (it.advance()) {
+            diffs.add((T) it.pending.removeFirst());
+         }
+         return diffs;
 
       } catch (final MissingObjectException e) {
          throw new VCSRepositoryException(e);
@@ -168,9 +270,336 @@ public class DiffCollector<T extends DiffEntry> implements Collector<T> {
          throw new VCSRepositoryException(e);
       } catch (final IOException e) {
          throw new VCSRepositoryException(e);
-      } catch (final GitAPIException e) {
-         throw new VCSRepositoryException(e);
+      } finally {
+         if (it != null) {
+            it.release();
+         }
+      }
+   }
+
+   /**
+    * A lazy iterator of diff entries, that advances the tree walk only when
+    * the next entry is required.
+    * <p>
+    */
+   private class DiffIterator implements Iterator<DiffEntry> {
+
+      /**
+       * The reader of the walk.
+       */
+      private ObjectReader walkReader;
+
+      /**
+       * The walk of the two trees.
+       */
+      private TreeWalk walk;
+
+      /**
+       * Entries produced by the walk but not yet returned. A walk position may
+       * produce two entries, if the type of a path changes.
+       */
+      private final LinkedList<DiffEntry> pending = new LinkedList<DiffEntry>();
+
+      /**
+       * True if the renames of the entries are detected.
+       */
+      private boolean detected;
+
+      DiffIterator() throws IOException {
+
+         this.walkReader = DiffCollector.this.reader != null ? DiffCollector.this.reader
+               : DiffCollector.this.repo.newObjectReader();
+         try {
+            // Do not release this walk, it would release the reader
+            final RevWalk rw = new RevWalk(this.walkReader);
+            final RevTree oldTree = rw.parseCommit(DiffCollector.this.oldC)
+                  .getTree();
+            final RevTree newTree = rw.parseCommit(DiffCollector.this.newC)
+                  .getTree();
+
+            this.walk = new TreeWalk(this.walkReader);
+            this.walk.setRecursive(true);
+            final TreeFilter f = DiffCollector.this.filter;
+            this.walk.setFilter(f == TreeFilter.ALL ? TreeFilter.ANY_DIFF
+                  : AndTreeFilter.create(f, TreeFilter.ANY_DIFF));
+            this.walk.addTree(oldTree);
+            this.walk.addTree(newTree);
+         } catch (final IOException e) {
+            this.release();
+            throw e;
+         }
+      }
+
+      /**
+       * Move the walk until there is a pending entry, or the walk is finished.
+       *
+       * @return true if there is a pending entry
+       */
+      boolean advance() throws IOException {
+
+         // Renames need all entries, so walk the trees completely
+         final RenameDetection detection = DiffCollector.this.renames;
+         if (detection != null && !this.detected) {
+            this.detected = true;
+            if (this.walk != null) {
+               while (this.walk.next()) {
+                  this.scan();
+               }
+               final List<DiffEntry> entries = detectRenames(detection,
+                     this.pending, this.walkReader);
+               this.pending.clear();
+               this.pending.addAll(entries);
+               this.release();
+            }
+         }
+
+         while (this.pending.isEmpty()) {
+            if (this.walk == null || !this.walk.next()) {
+               this.release();
+               return false;
+            }
+            this.scan();
+         }
+         return true;
+      }
+
+      /**
+       * Create the entries of the current walk position.
+       */
+      private void scan() {
+
+         final FileMode oldMode = this.walk.getFileMode(0);
+         final FileMode newMode = this.walk.getFileMode(1);
+         final AbbreviatedObjectId oldId = AbbreviatedObjectId
+               .fromObjectId(this.walk.getObjectId(0));
+         final AbbreviatedObjectId newId = AbbreviatedObjectId
+               .fromObjectId(this.walk.getObjectId(1));
+         final String path = this.walk.getPathString();
+
+         if (oldMode == FileMode.MISSING) {
+            this.pending.add(new TreeDiffEntry(ChangeType.ADD, path, path,
+                  oldMode, newMode, oldId, newId));
+
+         } else if (newMode == FileMode.MISSING) {
+            this.pending.add(new TreeDiffEntry(ChangeType.DELETE, path, path,
+                  oldMode, newMode, oldId, newId));
+
+         } else if (sameType(oldMode, newMode)) {
+            this.pending.add(new TreeDiffEntry(ChangeType.MODIFY, path, path,
+                  oldMode, newMode, oldId, newId));
+
+         } else {
+            // The type of path was changed (i.e. a file become a symbolic
+            // link), so this is a deletion followed by an addition
+            this.pending.add(new TreeDiffEntry(ChangeType.DELETE, path, path,
+                  oldMode, FileMode.MISSING, oldId, ZERO_ID));
+            this.pending.add(new TreeDiffEntry(ChangeType.ADD, path, path,
+                  FileMode.MISSING, newMode, ZERO_ID, newId));
+         }
+      }
+
+      /**
+       * Release the reader of this iterator, unless it is shared.
+       */
+      void release() {
+         if (this.walkReader != null
+               && this.walkReader != DiffCollector.this.reader) {
+            this.walkReader.release();
+         }
+         this.walkReader = null;
+         this.walk = null;
+      }
+
+      @Override
+      public boolean hasNext() {
+         try {
+            return this.advance();
+         } catch (final IOException e) {
+            this.release();
+            throw new IllegalStateException(new VCSRepositoryException(e));
+         }
+      }
+
+      @Override
+      public DiffEntry next() {
+         if (!this.hasNext()) {
+            throw new NoSuchElementException();
+         }
+         return this.pending.removeFirst();
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
       }
    }
 
+   /**
+    * Pair the additions and deletions of the given entries into renames and
+    * copies, as defined by <code>detection</code>, and record the statistics
+    * of the detection.
+    * <p>
+    * The returned entries are in the same order as the given ones, a rename or
+    * a copy takes the place of its addition.
+    */
+   private List<DiffEntry> detectRenames(final RenameDetection detection,
+         final List<DiffEntry> entries, final ObjectReader walkReader)
+         throws IOException {
+
+      final long start = System.nanoTime();
+
+      // The position of each entry, so the order of the walk can be kept.
+      // Renames and copies take the place of their additions
+      final DiffEntry[] slots = new DiffEntry[entries.size()];
+      final Map<String, Integer> addPos = new HashMap<String, Integer>();
+      final Map<String, Integer> deletePos = new HashMap<String, Integer>();
+
+      // Exact pass, deleted files by their blob id
+      final Map<AbbreviatedObjectId, LinkedList<DiffEntry>> deleted = new HashMap<AbbreviatedObjectId, LinkedList<DiffEntry>>();
+      final List<DiffEntry> adds = new ArrayList<DiffEntry>();
+      int i = 0;
+      for (final DiffEntry e : entries) {
+         final ChangeType type = e.getChangeType();
+         if (type == ChangeType.ADD && isFile(e.getNewMode())) {
+            addPos.put(e.getNewPath(), i);
+            adds.add(e);
+         } else if (type == ChangeType.DELETE && isFile(e.getOldMode())) {
+            deletePos.put(e.getOldPath(), i);
+            slots[i] = e;
+            LinkedList<DiffEntry> list = deleted.get(e.getOldId());
+            if (list == null) {
+               list = new LinkedList<DiffEntry>();
+               deleted.put(e.getOldId(), list);
+            }
+            list.add(e);
+         } else {
+            slots[i] = e;
+         }
+         i++;
+      }
+
+      int exact = 0;
+      final List<DiffEntry> unpaired = new ArrayList<DiffEntry>();
+      final Map<AbbreviatedObjectId, DiffEntry> used = new HashMap<AbbreviatedObjectId, DiffEntry>();
+      for (final DiffEntry add : adds) {
+         final int pos = addPos.get(add.getNewPath());
+         final LinkedList<DiffEntry> sources = deleted.get(add.getNewId());
+         if (sources != null && !sources.isEmpty()) {
+            final DiffEntry source = sources.removeFirst();
+            slots[deletePos.get(source.getOldPath())] = null;
+            slots[pos] = pair(ChangeType.RENAME, source, add, 100);
+            used.put(add.getNewId(), source);
+            exact++;
+         } else if (detection.isCopies() && used.containsKey(add.getNewId())) {
+            slots[pos] = pair(ChangeType.COPY, used.get(add.getNewId()), add,
+                  100);
+            exact++;
+         } else {
+            slots[pos] = add;
+            unpaired.add(add);
+         }
+      }
+
+      // Content pass, only if there are additions and deletions left
+      int content = 0;
+      boolean over = false;
+      if (detection.isContent() && !unpaired.isEmpty()) {
+         final int unpairedAdds = unpaired.size();
+         for (final LinkedList<DiffEntry> list : deleted.values()) {
+            unpaired.addAll(list);
+         }
+         if (unpaired.size() > unpairedAdds) {
+
+            final RenameDetector detector = new RenameDetector(this.repo);
+            detector.setRenameScore(detection.getScore());
+            detector.setRenameLimit(detection.getLimit());
+            detector.addAll(unpaired);
+
+            for (final DiffEntry e : detector.compute(walkReader,
+                  NullProgressMonitor.INSTANCE)) {
+
+               final ChangeType type = e.getChangeType();
+               if (type == ChangeType.DELETE) {
+                  slots[deletePos.get(e.getOldPath())] = e;
+                  continue;
+               }
+               final int pos = addPos.get(e.getNewPath());
+               if (type == ChangeType.RENAME) {
+                  slots[deletePos.get(e.getOldPath())] = null;
+                  slots[pos] = e;
+                  content++;
+               } else if (type == ChangeType.COPY && detection.isCopies()) {
+                  slots[pos] = e;
+                  content++;
+               }
+            }
+            over = detector.isOverRenameLimit();
+         }
+      }
+
+      final List<DiffEntry> result = new ArrayList<DiffEntry>(slots.length);
+      for (final DiffEntry e : slots) {
+         if (e != null) {
+            result.add(e);
+         }
+      }
+
+      detection.record(exact, content, over, System.nanoTime() - start);
+      return result;
+   }
+
+   /**
+    * Create a rename or a copy from the given deletion and addition.
+    * <p>
+    */
+   private static DiffEntry pair(final ChangeType type, final DiffEntry delete,
+         final DiffEntry add, final int score) {
+      return new TreeDiffEntry(type, delete.getOldPath(), add.getNewPath(),
+            delete.getOldMode(), add.getNewMode(), delete.getOldId(),
+            add.getNewId(), score);
+   }
+
+   /**
+    * Check if the given mode is of a file (regular or executable).
+    * <p>
+    */
+   private static boolean isFile(final FileMode mode) {
+      return (mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+   }
+
+   /**
+    * Check if the two modes are of the same object type.
+    * <p>
+    */
+   private static boolean sameType(final FileMode a, final FileMode b) {
+      return (a.getBits() & FileMode.TYPE_MASK) == (b.getBits() & FileMode.TYPE_MASK);
+   }
+
+   /**
+    * A diff entry created from a tree walk position.
+    * <p>
+    */
+   private static class TreeDiffEntry extends DiffEntry {
+
+      TreeDiffEntry(final ChangeType type, final String oldPath,
+            final String newPath, final FileMode oldMode,
+            final FileMode newMode, final AbbreviatedObjectId oldId,
+            final AbbreviatedObjectId newId) {
+         this(type, oldPath, newPath, oldMode, newMode, oldId, newId, 0);
+      }
+
+      TreeDiffEntry(final ChangeType type, final String oldPath,
+            final String newPath, final FileMode oldMode,
+            final FileMode newMode, final AbbreviatedObjectId oldId,
+            final AbbreviatedObjectId newId, final int score) {
+         this.changeType = type;
+         this.oldPath = type == ChangeType.ADD ? DEV_NULL : oldPath;
+         this.newPath = type == ChangeType.DELETE ? DEV_NULL : newPath;
+         this.oldMode = oldMode;
+         this.newMode = newMode;
+         this.oldId = oldId;
+         this.newId = newId;
+         this.score = score;
+      }
+   }
 }
@@ -0,0 +1,278 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.walker;
+
+import gr.uom.se.util.validation.ArgsCheck;
+import gr.uom.se.vcs.VCSFileDiff;
+import gr.uom.se.vcs.VCSResource;
+import gr.uom.se.vcs.walker.ChangeVisitor;
+import gr.uom.se.vcs.walker.filter.VCSFilter;
+import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
+
+import java.util.LinkedList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A change visitor that computes the edits of the file diffs it visits in
+ * parallel, and passes the diffs to another visitor in the order they were
+ * visited.
+ * <p>
+ *
+ * Each file diff this visitor visits (other than an addition or a deletion)
+ * is submitted to an executor, that will compute its edits (see
+ * {@link VCSFileDiff#getEdits()}, the edits are computed once and kept by the
+ * diff). The diff is kept in a queue, and
+ * when the queue is full, the first diff of the queue is passed to the target
+ * visitor, after its edits are computed. Thus the target visitor will visit
+ * the diffs in the same order, and always from the thread that drives the
+ * walk. The caller must call {@link #finish()} after the walk in order to pass
+ * the diffs that remain in queue.
+ * <p>
+ * If the edits of a diff can not be computed by the executor, the diff is
+ * passed to the target as is, so the target will get the same exception when
+ * it asks for the edits.
+ * <p>
+ * The filters of this visitor are the filters of the target visitor.
+ * <p>
+ * This class is not thread safe, it should be used by the thread that walks
+ * the changes.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ */
+public class ParallelDiffVisitor implements ChangeVisitor<VCSFileDiff<?>> {
+
+   /**
+    * The default number of diffs that can wait in queue.
+    * <p>
+    */
+   public static final int DEFAULT_WINDOW = 64;
+
+   /**
+    * The visitor to pass the diffs to.
+    * <p>
+    */
+   private final ChangeVisitor<VCSFileDiff<?>> target;
+
+   /**
+    * The executor that computes the edits.
+    * <p>
+    */
+   private final ExecutorService executor;
+
+   /**
+    * The maximum number of diffs that can wait in queue.
+    * <p>
+    */
+   private final int window;
+
+   /**
+    * The diffs that are not yet passed to target, and the computations of
+    * their edits.
+    * <p>
+    */
+   private final LinkedList<Pending> pending = new LinkedList<Pending>();
+
+   /**
+    * True if the target visitor stopped the walk.
+    * <p>
+    */
+   private boolean stopped;
+
+   /**
+    * Creates a new visitor with a window of {@link #DEFAULT_WINDOW}.
+    * <p>
+    *
+    * @param target
+    *           the visitor to pass the diffs to, must not be null
+    * @param executor
+    *           to compute the edits, must not be null
+    */
+   public ParallelDiffVisitor(final ChangeVisitor<VCSFileDiff<?>> target,
+         final ExecutorService executor) {
+      this(target, executor, DEFAULT_WINDOW);
+   }
+
+   /**
+    * Creates a new visitor.
+    * <p>
+    *
+    * @param target
+    *           the visitor to pass the diffs to, must not be null
+    * @param executor
+    *           to compute the edits, must not be null
+    * @param window
+    *           the maximum number of diffs that can wait in queue, must be
+    *           greater than zero
+    */
+   public ParallelDiffVisitor(final ChangeVisitor<VCSFileDiff<?>> target,
+         final ExecutorService executor, final int window) {
+
+      ArgsCheck.notNull("target", target);
+      ArgsCheck.notNull("executor", executor);
+      if (window <= 0) {
+         throw new IllegalArgumentException("window must be greater than 0");
+      }
+      this.target = target;
+      this.executor = executor;
+      this.window = window;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The diff will be passed to the target later, when the queue is full or
+    * when {@link #finish()} is called.
+    */
+   @Override
+   public boolean visit(final VCSFileDiff<?> entity) {
+
+      if (this.stopped) {
+         return false;
+      }
+
+      this.pending.add(new Pending(entity, this.submit(entity)));
+      while (this.pending.size() > this.window) {
+         if (!this.deliver()) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Pass all the diffs in queue to the target, unless the target stops the
+    * walk.
+    * <p>
+    */
+   public void finish() {
+      while (!this.stopped && !this.pending.isEmpty()) {
+         this.deliver();
+      }
+   }
+
+   /**
+    * Cancel the computations of all the diffs in queue, and clear the queue.
+    * <p>
+    * Call this if the walk fails, so the executor will not compute edits that
+    * nobody will ask for.
+    */
+   public void cancel() {
+      for (final Pending p : this.pending) {
+         if (p.edits != null) {
+            p.edits.cancel(false);
+         }
+      }
+      this.pending.clear();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public <F extends VCSFilter<VCSFileDiff<?>>> F getFilter() {
+      return this.target.getFilter();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+      return this.target.getResourceFilter();
+   }
+
+   /**
+    * Pass the first diff of the queue to the target, when its edits are
+    * computed.
+    * <p>
+    *
+    * @return false if the target stopped the walk
+    */
+   private boolean deliver() {
+
+      final Pending p = this.pending.removeFirst();
+      await(p.edits);
+      if (!this.target.visit(p.diff)) {
+         this.stopped = true;
+         this.cancel();
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * Submit the computation of the edits of the given diff.
+    * <p>
+    *
+    * @return the computation, or null if the diff has no edits or the
+    *         executor rejected the computation
+    */
+   private Future<?> submit(final VCSFileDiff<?> diff) {
+
+      // Additions and deletions have no edits
+      if (diff.getType().isAdd() || diff.getType().isDelete()) {
+         return null;
+      }
+      try {
+         return this.executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+               try {
+                  diff.getEdits();
+               } catch (final RuntimeException e) {
+                  // The target will get the exception when it asks for the
+                  // edits
+               }
+            }
+         });
+      } catch (final RejectedExecutionException e) {
+         // The edits will be computed when the target asks for them
+         return null;
+      }
+   }
+
+   /**
+    * Wait until the given computation is finished.
+    * <p>
+    */
+   private static void await(final Future<?> edits) {
+      if (edits == null) {
+         return;
+      }
+      try {
+         edits.get();
+      } catch (final InterruptedException e) {
+         // Keep the interrupt, the edits will be computed when the target
+         // asks for them
+         Thread.currentThread().interrupt();
+      } catch (final ExecutionException e) {
+         // The computation doesn't throw any exception
+      } catch (final CancellationException e) {
+         // The edits will be computed when the target asks for them
+      }
+   }
+
+   /**
+    * A diff and the computation of its edits.
+    * <p>
+    */
+   private static class Pending {
+
+      final VCSFileDiff<?> diff;
+
+      final Future<?> edits;
+
+      Pending(final VCSFileDiff<?> diff, final Future<?> edits) {
+         this.diff = diff;
+         this.edits = edits;
+      }
+   }
+}
@@ -0,0 +1,249 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.walker;
+
+import gr.uom.se.vcs.jgit.VCSCommitImp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The configuration of rename and copy detection of a {@link DiffCollector},
+ * and the statistics of the detections that were done with it.
+ * <p>
+ *
+ * When rename detection is enabled, the additions and deletions of a diff are
+ * paired in two passes:
+ * <ol>
+ * <li>Exact: an addition and a deletion of files with the same blob id are a
+ * rename (with a score of 100). This pass is linear to the number of entries,
+ * and it is always done.</li>
+ * <li>Content: the additions and deletions that were not paired are compared
+ * by content similarity (see {@link org.eclipse.jgit.diff.RenameDetector}),
+ * and those with a score of at least {@link #getScore()} are renames. This
+ * pass is quadratic, so it is skipped if it is disabled, or if the number of
+ * additions or the number of deletions exceeds {@link #getLimit()}.</li>
+ * </ol>
+ * If copy detection is enabled, an addition that matches a deletion which is
+ * already paired is a copy, otherwise it stays an addition.
+ * <p>
+ * The statistics of all detections done with an instance (i.e. the time they
+ * took) are kept, so the cost of detection can be monitored and bounded by
+ * adjusting the limit.
+ * <p>
+ * The configuration is immutable, and the statistics are thread safe.
+ *
+ * @author Elvis Ligu
+ * @version 0.0.1
+ * @since 0.0.1
+ * @see VCSCommitImp#walkChanges(gr.uom.se.vcs.VCSCommit,
+ *      gr.uom.se.vcs.walker.ChangeVisitor, RenameDetection)
+ */
+public class RenameDetection {
+
+   /**
+    * The default minimum similarity score of a content rename.
+    * <p>
+    * This is the same as git's default.
+    */
+   public static final int DEFAULT_SCORE = 60;
+
+   /**
+    * The default maximum number of additions or deletions that will be
+    * compared by content.
+    * <p>
+    */
+   public static final int DEFAULT_LIMIT = 400;
+
+   /**
+    * The minimum similarity score of a content rename.
+    * <p>
+    */
+   private final int score;
+
+   /**
+    * The maximum number of additions or deletions that will be compared by
+    * content.
+    * <p>
+    */
+   private final int limit;
+
+   /**
+    * True if additions and deletions will be compared by content.
+    * <p>
+    */
+   private final boolean content;
+
+   /**
+    * True if copies will be detected.
+    * <p>
+    */
+   private final boolean copies;
+
+   /**
+    * The number of detections.
+    * <p>
+    */
+   private final AtomicLong detections = new AtomicLong();
+
+   /**
+    * The number of renames and copies found by the exact pass.
+    * <p>
+    */
+   private final AtomicLong exact = new AtomicLong();
+
+   /**
+    * The number of renames and copies found by the content pass.
+    * <p>
+    */
+   private final AtomicLong similar = new AtomicLong();
+
+   /**
+    * The number of detections that skipped the content pass because of the
+    * limit.
+    * <p>
+    */
+   private final AtomicLong overLimit = new AtomicLong();
+
+   /**
+    * The time of all detections, in nanoseconds.
+    * <p>
+    */
+   private final AtomicLong nanos = new AtomicLong();
+
+   /**
+    * Creates a configuration that detects renames by content with the default
+    * score and limit, and no copies.
+    * <p>
+    */
+   public RenameDetection() {
+      this(DEFAULT_SCORE, DEFAULT_LIMIT, true, false);
+   }
+
+   /**
+    * Creates a new configuration.
+    * <p>
+    *
+    * @param score
+    *           the minimum similarity score of a content rename, from 0 to 100
+    * @param limit
+    *           the maximum number of additions or deletions that will be
+    *           compared by content, if zero there is no limit, must not be
+    *           negative
+    * @param content
+    *           true if additions and deletions will be compared by content,
+    *           if false only exact renames will be detected
+    * @param copies
+    *           true if copies will be detected
+    */
+   public RenameDetection(final int score, final int limit,
+         final boolean content, final boolean copies) {
+
+      if (score < 0 || score > 100) {
+         throw new IllegalArgumentException("score must be from 0 to 100");
+      }
+      if (limit < 0) {
+         throw new IllegalArgumentException("limit must not be negative");
+      }
+      this.score = score;
+      this.limit = limit;
+      this.content = content;
+      this.copies = copies;
+   }
+
+   /**
+    * @return the minimum similarity score of a content rename
+    */
+   public int getScore() {
+      return this.score;
+   }
+
+   /**
+    * @return the maximum number of additions or deletions that will be
+    *         compared by content, zero if there is no limit
+    */
+   public int getLimit() {
+      return this.limit;
+   }
+
+   /**
+    * @return true if additions and deletions will be compared by content
+    */
+   public boolean isContent() {
+      return this.content;
+   }
+
+   /**
+    * @return true if copies will be detected
+    */
+   public boolean isCopies() {
+      return this.copies;
+   }
+
+   /**
+    * @return the number of detections done with this configuration
+    */
+   public long getDetections() {
+      return this.detections.get();
+   }
+
+   /**
+    * @return the number of renames and copies found by their blob id
+    */
+   public long getExactCount() {
+      return this.exact.get();
+   }
+
+   /**
+    * @return the number of renames and copies found by content similarity
+    */
+   public long getContentCount() {
+      return this.similar.get();
+   }
+
+   /**
+    * @return the number of detections that skipped the content pass because
+    *         of the limit
+    */
+   public long getOverLimitCount() {
+      return this.overLimit.get();
+   }
+
+   /**
+    * Get the time of all detections done with this configuration.
+    * <p>
+    *
+    * @param unit
+    *           the unit of the returned time, must not be null
+    * @return the time of all detections
+    */
+   public long getTime(final TimeUnit unit) {
+      return unit.convert(this.nanos.get(), TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * Record the statistics of a detection.
+    * <p>
+    */
+   void record(final int exactCount, final int contentCount,
+         final boolean over, final long time) {
+      this.detections.incrementAndGet();
+      this.exact.addAndGet(exactCount);
+      this.similar.addAndGet(contentCount);
+      if (over) {
+         this.overLimit.incrementAndGet();
+      }
+      this.nanos.addAndGet(time);
+   }
+
+   @Override
+   public String toString() {
+      return "RenameDetection [score=" + this.score + ", limit=" + this.limit
+            + ", content=" + this.content + ", copies=" + this.copies
+            + ", detections=" + this.detections + ", exact=" + this.exact
+            + ", content renames=" + this.similar + ", over limit="
+            + this.overLimit + ", time (ms)="
+            + this.getTime(TimeUnit.MILLISECONDS) + "]";
+   }
+}
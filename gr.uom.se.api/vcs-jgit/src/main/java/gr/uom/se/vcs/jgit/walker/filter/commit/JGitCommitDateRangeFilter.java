@@ -79,7 +79,9 @@ public class JGitCommitDateRangeFilter extends RevFilter {
          IncorrectObjectTypeException, IOException {
 
       boolean include = false;
-      Date cDate = cmit.getCommitterIdent().getWhen();
+      // The commit time is parsed from the header of the commit, which is the
+      // same as the time of the committer, so the body is not required
+      Date cDate = new Date(cmit.getCommitTime() * 1000L);
 
       if (start != null) {
          include = cDate.after(start) || cDate.equals(start);
@@ -91,4 +93,12 @@ public class JGitCommitDateRangeFilter extends RevFilter {
       return include;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean requiresCommitBody() {
+      return false;
+   }
+
 }
@@ -58,6 +58,14 @@ public class JGitIterationFilter extends RevFilter {
       return (counter.getAndAdd(1) % block) == 0;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean requiresCommitBody() {
+      return false;
+   }
+
    /* {@inheritDoc)
     * @see org.eclipse.jgit.revwalk.filter.RevFilter#clone()
     */
@@ -39,6 +39,14 @@ public class JGitMergeFilter extends RevFilter {
       return cmit.getParentCount() > 1;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean requiresCommitBody() {
+      return false;
+   }
+
 /** 
      * {@inheritDoc)
      * @see org.eclipse.jgit.revwalk.filter.RevFilter#clone()
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CommitInterner}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class CommitInternerTest extends VCSTest {
+
+   /**
+    * Test method for {@link CommitInterner#intern(AnyObjectId)}.
+    * <p>
+    * Resolving a commit, or reaching it from its children or parents, must
+    * return the same instance.
+    */
+   @Test
+   public void testIntern() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+
+      for (CommitMock mock : CommitMock.COMMITS) {
+
+         VCSCommit commit = repo.resolveCommit(mock.id);
+         assertSame(commit, repo.resolveCommit(mock.id));
+         assertSame(commit,
+               repo.getCommitInterner().intern(ObjectId.fromString(mock.id)));
+
+         for (VCSCommit parent : commit.getPrevious()) {
+            assertTrue(containsSame(parent.getNext(), commit));
+         }
+         for (VCSCommit child : commit.getNext()) {
+            assertTrue(containsSame(child.getPrevious(), commit));
+         }
+      }
+   }
+
+   /**
+    * Test method for {@link CommitInterner#clear()} and
+    * {@link VCSCommitImp#equals(Object)}.
+    * <p>
+    * A commit created after clear must be another instance, but equal to the
+    * previous one.
+    */
+   @Test
+   public void testClear() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      String id = CommitMock.COMMITS[CommitMock.INDEX_FIRST_COMMIT].id;
+
+      VCSCommit commit = repo.resolveCommit(id);
+      repo.getCommitInterner().clear();
+      VCSCommit other = repo.resolveCommit(id);
+
+      assertNotSame(commit, other);
+      assertEquals(commit, other);
+      assertEquals(commit.hashCode(), other.hashCode());
+      assertEquals(commit.getCommitDate(), other.getCommitDate());
+
+      Set<VCSCommit> set = new HashSet<VCSCommit>();
+      set.add(commit);
+      assertTrue(set.contains(other));
+   }
+
+   private static boolean containsSame(Iterable<VCSCommit> commits,
+         VCSCommit commit) {
+      for (VCSCommit c : commits) {
+         if (c == commit) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -14,6 +14,7 @@ import gr.uom.se.vcs.jgit.VCSBranchImp;
 import gr.uom.se.vcs.jgit.mocks.BranchMock;
 import gr.uom.se.vcs.jgit.mocks.CommitMock;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -119,4 +120,35 @@ public class VCSBranchImpTest extends VCSTest {
       }
 
    }
+
+   /**
+    * Test method for {@link VCSBranchImp#getCommitsNotIn(VCSBranch)}.
+    * <p>
+    * 
+    * For each pair of branches in {@link BranchMock#BRANCHES} the returned
+    * commits must be those of the first branch that are not in the second.
+    */
+   @Test
+   public void testGetCommitsNotIn() throws Exception {
+
+      VCSRepository repo = UTILS.smallRepo();
+
+      for (BranchMock aMock : BranchMock.BRANCHES) {
+         for (BranchMock bMock : BranchMock.BRANCHES) {
+
+            VCSBranch a = repo.resolveBranch(aMock.id);
+            VCSBranch b = repo.resolveBranch(bMock.id);
+
+            List<String> expectedCids = new ArrayList<String>(
+                  aMock.commitIds());
+            expectedCids.removeAll(bMock.commitIds());
+
+            Collection<VCSCommit> commits = a.getCommitsNotIn(b);
+            assertEquals(expectedCids.size(), commits.size());
+            for (VCSCommit c : commits) {
+               assertTrue(expectedCids.contains(c.getID()));
+            }
+         }
+      }
+   }
 }
@@ -4,7 +4,9 @@
 package gr.uom.se.vcs.jgit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import gr.uom.se.vcs.VCSChange;
 import gr.uom.se.vcs.VCSCommit;
@@ -14,12 +16,16 @@ import gr.uom.se.vcs.VCSResource;
 import gr.uom.se.vcs.exceptions.VCSRepositoryException;
 import gr.uom.se.vcs.jgit.VCSCommitImp;
 import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.index.CheckoutIndex;
 import gr.uom.se.vcs.jgit.mocks.ChangeMock;
 import gr.uom.se.vcs.jgit.mocks.CommitMock;
 import gr.uom.se.vcs.jgit.mocks.RepoMock;
 import gr.uom.se.vcs.jgit.mocks.ResourceMock;
+import gr.uom.se.vcs.jgit.walker.ParallelDiffVisitor;
 import gr.uom.se.vcs.walker.ChangeVisitor;
+import gr.uom.se.vcs.walker.CommitIterator;
 import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.HeaderCommitVisitor;
 import gr.uom.se.vcs.walker.ResourceVisitor;
 import gr.uom.se.vcs.walker.Visitor;
 import gr.uom.se.vcs.walker.filter.VCSFilter;
@@ -31,8 +37,12 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
@@ -290,6 +300,142 @@ public class VCSCommitImpTest extends VCSTest {
       this.checkChangeResults(mocks, fileChanges);
    }
 
+   /**
+    * Test method for {@link VCSFileDiffImp#getEdits()}.
+    * <p>
+    * For each commit in {@link CommitMock#COMMITS} and each of its parents,
+    * the edits of a file diff must be the same as the edits of a diff that
+    * resolves the blobs from the resources, and must be computed only once.
+    */
+   @Test
+   @SuppressWarnings("unchecked")
+   public void testGetEdits() throws Exception {
+
+      // Get repo
+      final VCSRepository repo = this.UTILS.smallRepo();
+
+      for (final CommitMock mock : CommitMock.COMMITS) {
+
+         final VCSCommit commit = repo.resolveCommit(mock.id);
+         for (final VCSCommit parent : commit.getPrevious()) {
+
+            for (final VCSFileDiff<?> diff : parent.getFileChanges(commit)) {
+
+               final VCSFileDiffImp<VCSFileImp> imp = (VCSFileDiffImp<VCSFileImp>) diff;
+               final VCSFileDiffImp<VCSFileImp> resolved = new VCSFileDiffImp<VCSFileImp>(
+                     imp.getNewResource(), imp.getOldResource(), imp.getType());
+
+               assertEquals(resolved.getEdits(), imp.getEdits());
+               assertTrue(imp.getEdits() == imp.getEdits());
+            }
+         }
+      }
+   }
+
+   /**
+    * Test method for
+    * {@link VCSCommitImp#getFileChanges(VCSCommit, ExecutorService, boolean, String...)}
+    * and
+    * {@link VCSCommitImp#walkFileChanges(VCSCommit, ExecutorService, ChangeVisitor)}
+    * .
+    * <p>
+    * The file diffs of a parallel walk must be the same, and in the same order,
+    * as the ones of a sequential walk, and their edits must be computed.
+    */
+   @Test
+   public void testParallelFileChanges() throws Exception {
+
+      // Get repo
+      final VCSRepository repo = this.UTILS.smallRepo();
+      final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+      try {
+         final VCSCommit first = repo.resolveCommit(CommitMock.COMMITS[0].id);
+         for (final CommitMock mock : CommitMock.COMMITS) {
+
+            final VCSCommit commit = repo.resolveCommit(mock.id);
+            final List<VCSCommit> olds = new ArrayList<VCSCommit>(
+                  commit.getPrevious());
+            olds.add(first);
+
+            for (final VCSCommit old : olds) {
+
+               final List<VCSFileDiff<?>> expected = old.getFileChanges(commit);
+               final List<VCSFileDiff<?>> actual = old.getFileChanges(commit,
+                     executor, true);
+               assertDiffs(expected, actual);
+
+               // The smallest window, so each diff is passed to the target
+               // before the next one is walked
+               final List<VCSFileDiff<?>> collected = new ArrayList<VCSFileDiff<?>>();
+               final ParallelDiffVisitor visitor = new ParallelDiffVisitor(
+                     new ChangeVisitor<VCSFileDiff<?>>() {
+
+                        @Override
+                        public boolean visit(final VCSFileDiff<?> entity) {
+                           collected.add(entity);
+                           return true;
+                        }
+
+                        @Override
+                        public <F extends VCSFilter<VCSFileDiff<?>>> F getFilter() {
+                           return null;
+                        }
+
+                        @Override
+                        public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+                           return null;
+                        }
+                     }, executor, 1);
+               old.walkFileChanges(commit, visitor);
+               visitor.finish();
+               assertDiffs(expected, collected);
+
+               // Stop after the first diff
+               if (!expected.isEmpty()) {
+                  final List<VCSFileDiff<?>> one = new ArrayList<VCSFileDiff<?>>();
+                  old.walkFileChanges(commit, executor,
+                        new ChangeVisitor<VCSFileDiff<?>>() {
+
+                           @Override
+                           public boolean visit(final VCSFileDiff<?> entity) {
+                              one.add(entity);
+                              return false;
+                           }
+
+                           @Override
+                           public <F extends VCSFilter<VCSFileDiff<?>>> F getFilter() {
+                              return null;
+                           }
+
+                           @Override
+                           public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+                              return null;
+                           }
+                        });
+                  assertDiffs(expected.subList(0, 1), one);
+               }
+            }
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private static void assertDiffs(final List<VCSFileDiff<?>> expected,
+         final List<VCSFileDiff<?>> actual) {
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         final VCSFileDiff<?> e = expected.get(i);
+         final VCSFileDiff<?> a = actual.get(i);
+         assertEquals(e.getType(), a.getType());
+         assertEquals(e.getNewResource(), a.getNewResource());
+         assertEquals(e.getOldResource(), a.getOldResource());
+         assertEquals(e.getEdits(), a.getEdits());
+      }
+   }
+
    /**
     * Test method for {@link VCSCommitImp#getNext()}.
     * <p>
@@ -483,6 +629,111 @@ public class VCSCommitImpTest extends VCSTest {
       }
    }
 
+   /**
+    * Test method for
+    * {@link VCSCommitImp#checkout(String, ExecutorService, String...)}.
+    * <p>
+    * Checking out all commits incrementally into the same directory, must
+    * produce the same files as a full checkout of each commit.
+    */
+   @Test
+   public void testIncrementalCheckout() throws Exception {
+
+      final VCSRepository repo = this.UTILS.smallRepo();
+      final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+      final String dir = RepoMock.RESOURCES + "/c_incremental";
+      final String full = RepoMock.RESOURCES + "/c_full";
+      final File incrementalDir = new File(dir);
+      final File fullDir = new File(full);
+
+      try {
+         for (final CommitMock commitMock : CommitMock.COMMITS) {
+
+            final VCSCommit commit = repo.resolveCommit(commitMock.id);
+            commit.checkout(dir, executor, (String[]) null);
+            commit.checkout(full, (String[]) null);
+
+            final List<String> expected = new ArrayList<String>();
+            collectFiles(full, fullDir, expected);
+            Collections.sort(expected);
+            final List<String> actual = new ArrayList<String>();
+            collectFiles(dir, incrementalDir, actual);
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+
+            for (final String file : expected) {
+               assertTrue(file, FileUtils.contentEquals(new File(full, file),
+                     new File(dir, file)));
+            }
+         }
+      } finally {
+         executor.shutdownNow();
+         final CheckoutIndex index = ((VCSRepositoryImp) repo)
+               .getCheckoutIndex();
+         index.remove(incrementalDir);
+         index.remove(fullDir);
+         FileUtils.deleteQuietly(incrementalDir);
+         FileUtils.deleteQuietly(fullDir);
+      }
+   }
+
+   /**
+    * Test method for
+    * {@link VCSCommitImp#checkout(String, ExecutorService, String...)}.
+    * <p>
+    * Files that were changed or added into the directory after a checkout
+    * must be found by the next incremental checkout, and a full checkout must
+    * not be recorded.
+    */
+   @Test
+   public void testIncrementalCheckoutChangedFiles() throws Exception {
+
+      final VCSRepository repo = this.UTILS.smallRepo();
+      final CheckoutIndex index = ((VCSRepositoryImp) repo)
+            .getCheckoutIndex();
+
+      final String dir = RepoMock.RESOURCES + "/c_changed";
+      final String full = RepoMock.RESOURCES + "/c_changed_full";
+      final File incrementalDir = new File(dir);
+      final File fullDir = new File(full);
+
+      try {
+         final VCSCommit commit = repo.resolveCommit(CommitMock.COMMITS[0].id);
+         commit.checkout(full, (String[]) null);
+         assertNull(index.get(fullDir));
+
+         commit.checkout(dir, (ExecutorService) null, (String[]) null);
+         assertNotNull(index.get(incrementalDir));
+
+         final List<String> expected = new ArrayList<String>();
+         collectFiles(full, fullDir, expected);
+         Collections.sort(expected);
+         assertFalse(expected.isEmpty());
+
+         // Change a file and add another one, as other tools would do
+         FileUtils.writeStringToFile(new File(dir, expected.get(0)),
+               "changed by others");
+         FileUtils.writeStringToFile(new File(dir, "untracked.txt"),
+               "added by others");
+
+         commit.checkout(dir, (ExecutorService) null, (String[]) null);
+
+         final List<String> actual = new ArrayList<String>();
+         collectFiles(dir, incrementalDir, actual);
+         Collections.sort(actual);
+         assertEquals(expected, actual);
+         for (final String file : expected) {
+            assertTrue(file, FileUtils.contentEquals(new File(full, file),
+                  new File(dir, file)));
+         }
+      } finally {
+         index.remove(incrementalDir);
+         FileUtils.deleteQuietly(incrementalDir);
+         FileUtils.deleteQuietly(fullDir);
+      }
+   }
+
    /**
     * Will collect all file path recursively. Each collected will be removed the
     * prefix <code>prefixRemove</code>.
@@ -643,6 +894,121 @@ public class VCSCommitImpTest extends VCSTest {
       }
    }
 
+   /**
+    * Test method for {@link VCSCommitImp#iterateCommits(VCSCommitFilter, boolean)}.
+    * <p>
+    * The iterator must return the same commits, in the same order, as
+    * {@link VCSCommitImp#walkCommits(CommitVisitor, boolean)}.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testIterateCommits() throws Exception {
+
+      final VCSRepository repo = this.UTILS.smallRepo();
+
+      for (final CommitMock mock : CommitMock.COMMITS) {
+
+         final VCSCommit commit = repo.resolveCommit(mock.id);
+
+         for (final boolean descending : new boolean[] { true, false }) {
+            final List<VCSCommit> walked = new ArrayList<VCSCommit>();
+            commit.walkCommits(new CommitVisitor() {
+
+               @Override
+               public boolean visit(final VCSCommit entity) {
+                  walked.add(entity);
+                  return true;
+               }
+
+               @Override
+               public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+                  return null;
+               }
+
+               @SuppressWarnings("unchecked")
+               @Override
+               public VCSCommitFilter getFilter() {
+                  return null;
+               }
+            }, descending);
+
+            final List<VCSCommit> iterated = new ArrayList<VCSCommit>();
+            final CommitIterator it = commit.iterateCommits(null, descending);
+            while (it.hasNext()) {
+               iterated.add(it.next());
+            }
+            assertEquals(walked, iterated);
+            assertFalse(it.hasNext());
+         }
+
+         // Stop early, the iterator must have no more commits when it is
+         // closed
+         final CommitIterator it = commit.iterateCommits(null, true);
+         assertTrue(it.hasNext());
+         assertEquals(commit, it.next());
+         it.close();
+         assertFalse(it.hasNext());
+         it.close();
+      }
+   }
+
+   /**
+    * Test method for {@link VCSCommitImp#walkCommits(CommitVisitor, boolean)}
+    * with a {@link HeaderCommitVisitor}.
+    * <p>
+    * The parents and the commit dates of the walked commits must be the same
+    * as those of commits that are parsed, and the message must be loaded on
+    * demand.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testWalkHeaders() throws Exception {
+
+      final VCSRepository repo = this.UTILS.smallRepo();
+
+      for (final CommitMock mock : CommitMock.COMMITS) {
+
+         final VCSCommit commit = repo.resolveCommit(mock.id);
+         final List<VCSCommit> commits = new ArrayList<VCSCommit>();
+         commit.walkCommits(new HeaderCommitVisitor() {
+
+            @Override
+            public boolean visit(final VCSCommit entity) {
+               commits.add(entity);
+               return true;
+            }
+
+            @Override
+            public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+               return null;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public VCSCommitFilter getFilter() {
+               return null;
+            }
+         }, true);
+
+         final List<CommitMock> mocks = new ArrayList<CommitMock>();
+         mocks.add(mock);
+         collectPreviousCommits(mock, mocks);
+         assertEquals(new HashSet<CommitMock>(mocks).size(), commits.size());
+
+         for (final VCSCommit c : commits) {
+            final VCSCommitImp parsed = new VCSCommitImp(
+                  ((VCSCommitImp) c).id, ((VCSCommitImp) c).repo);
+            assertEquals(parsed.getCommitDate(), c.getCommitDate());
+            assertEquals(parsed.getPrevious(), c.getPrevious());
+            assertEquals(parsed.isMergeCommit(), c.isMergeCommit());
+            assertEquals(parsed.getMessage(), c.getMessage());
+            assertEquals(parsed.getAuthor(), c.getAuthor());
+         }
+      }
+   }
+
    private static void collectPreviousCommits(final CommitMock mock,
          final List<CommitMock> previous) {
 
@@ -14,13 +14,17 @@ import gr.uom.se.vcs.jgit.mocks.BranchMock;
 import gr.uom.se.vcs.jgit.mocks.CommitMock;
 import gr.uom.se.vcs.jgit.mocks.RepoMock;
 import gr.uom.se.vcs.jgit.mocks.TagMock;
+import gr.uom.se.vcs.walker.MembershipVisitor;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
@@ -189,6 +193,125 @@ public class VCSRepositoryImpTest extends VCSTest {
       assertTrue(TestUtils.equals(names, expectedNames, null));
    }
 
+   /**
+    * Test method for {@link VCSRepository#getBranchesContaining(VCSCommit)}
+    * and {@link VCSRepository#getTagsContaining(VCSCommit)}.
+    * <p>
+    * 
+    * For each commit in {@link CommitMock#COMMITS} check that the branches in
+    * {@link BranchMock#BRANCHES} and the tags in {@link TagMock#TAGS} that
+    * contain it, are those returned.
+    */
+   @Test
+   public void testGetRefsContaining() throws Exception {
+
+      // Get local small repository
+      VCSRepository repo = UTILS.smallRepo();
+
+      for (CommitMock mock : CommitMock.COMMITS) {
+
+         VCSCommit commit = repo.resolveCommit(mock.id);
+         assertNotNull(commit);
+
+         List<String> branches = new ArrayList<String>();
+         for (VCSBranch branch : repo.getBranchesContaining(commit)) {
+            branches.add(branch.getID());
+         }
+         for (BranchMock b : BranchMock.BRANCHES) {
+            assertEquals(b.commitIds().contains(mock.id),
+                  branches.contains(b.id));
+         }
+
+         List<String> tags = new ArrayList<String>();
+         for (VCSTag tag : repo.getTagsContaining(commit)) {
+            tags.add(tag.getID());
+         }
+         for (TagMock t : TagMock.TAGS) {
+            assertEquals(ancestors(t.commit).contains(mock.id),
+                  tags.contains(t.id));
+         }
+      }
+   }
+
+   /**
+    * Test method for {@link VCSRepositoryImp#walkAll(List, MembershipVisitor)}.
+    * <p>
+    *
+    * Walk the commits of all tags and branches at once, and check that each
+    * commit is visited once, after its children, and with the heads that are
+    * its descendants.
+    */
+   @Test
+   public void testWalkAllMembership() throws Exception {
+
+      // Get local small repository
+      VCSRepository repo = UTILS.smallRepo();
+
+      final List<VCSCommit> heads = new ArrayList<VCSCommit>();
+      final List<List<String>> reachable = new ArrayList<List<String>>();
+      for (TagMock t : TagMock.TAGS) {
+         heads.add(repo.resolveCommit(t.commit));
+         reachable.add(ancestors(t.commit));
+      }
+      for (VCSBranch branch : repo.getBranches()) {
+         VCSCommit head = branch.getHead();
+         heads.add(head);
+         reachable.add(ancestors(head.getID()));
+      }
+
+      final List<String> visited = new ArrayList<String>();
+      repo.walkAll(heads, new MembershipVisitor() {
+
+         @Override
+         public boolean visit(VCSCommit commit, BitSet bits) {
+            String id = commit.getID();
+            assertTrue(!visited.contains(id));
+            visited.add(id);
+            // Parents must not be visited before their children
+            try {
+               for (VCSCommit p : commit.getPrevious()) {
+                  assertTrue(!visited.contains(p.getID()));
+               }
+            } catch (VCSRepositoryException e) {
+               throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < heads.size(); i++) {
+               assertEquals(reachable.get(i).contains(id), bits.get(i));
+            }
+            return true;
+         }
+      });
+
+      Set<String> all = new HashSet<String>();
+      for (List<String> ids : reachable) {
+         all.addAll(ids);
+      }
+      assertEquals(all, new HashSet<String>(visited));
+      assertEquals(all.size(), visited.size());
+   }
+
+   /**
+    * Collect the ids of the given commit and all its ancestors.
+    */
+   private static List<String> ancestors(String cid) {
+
+      List<String> ids = new ArrayList<String>();
+      List<CommitMock> stack = new ArrayList<CommitMock>();
+      for (CommitMock c : CommitMock.COMMITS) {
+         if (c.id.equals(cid)) {
+            stack.add(c);
+         }
+      }
+      while (!stack.isEmpty()) {
+         CommitMock c = stack.remove(stack.size() - 1);
+         if (!ids.contains(c.id)) {
+            ids.add(c.id);
+            stack.addAll(c.parents());
+         }
+      }
+      return ids;
+   }
+
    /**
     * UNIMPLEMENTED.
     * <p>
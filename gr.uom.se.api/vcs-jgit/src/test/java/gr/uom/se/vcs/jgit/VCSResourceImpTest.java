@@ -3,6 +3,8 @@
  */
 package gr.uom.se.vcs.jgit;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -14,12 +16,16 @@ import gr.uom.se.vcs.jgit.mocks.CommitMock;
 import gr.uom.se.vcs.jgit.mocks.ResourceMock;
 import gr.uom.se.vcs.walker.Visitor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 
@@ -226,4 +232,64 @@ public class VCSResourceImpTest extends VCSTest {
          }
       }
    }
+
+   /**
+    * Test method for {@link VCSFileImp#getSize()},
+    * {@link VCSFileImp#getContentBuffer()} and
+    * {@link VCSFileImp#walkContents(Visitor)}.
+    * <p>
+    * The contents must be the same as those of the content stream.
+    */
+   @Test
+   public void testContents() throws Exception {
+
+      VCSRepository repo = UTILS.smallRepo();
+      for (ResourceMock rm : ResourceMock.RESOURCES) {
+         for (CommitMock cm : rm.commits()) {
+
+            VCSResource resource = repo.resolveCommit(cm.id).getResource(
+                  rm.path());
+            if (!(resource instanceof VCSFileImp)) {
+               continue;
+            }
+            VCSFileImp file = (VCSFileImp) resource;
+
+            InputStream in = file.getContentStream();
+            byte[] expected;
+            try {
+               expected = IOUtils.toByteArray(in);
+            } finally {
+               in.close();
+            }
+
+            assertArrayEquals(expected, file.getContents());
+            assertEquals(expected.length, file.getSize());
+
+            ByteBuffer buffer = file.getContentBuffer();
+            assertTrue(buffer.isReadOnly());
+            assertArrayEquals(expected, toBytes(buffer));
+
+            final ByteArrayOutputStream walked = new ByteArrayOutputStream();
+            file.walkContents(new Visitor<ByteBuffer>() {
+
+               @Override
+               public boolean visit(ByteBuffer entity) {
+                  try {
+                     walked.write(toBytes(entity));
+                  } catch (Exception e) {
+                     throw new IllegalStateException(e);
+                  }
+                  return true;
+               }
+            });
+            assertArrayEquals(expected, walked.toByteArray());
+         }
+      }
+   }
+
+   private static byte[] toBytes(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+   }
 }
@@ -0,0 +1,164 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import gr.uom.se.vcs.VCSChange;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.jgit.mocks.ResourceMock;
+import gr.uom.se.vcs.jgit.utils.RevUtils;
+import gr.uom.se.vcs.jgit.walker.DiffCollector;
+
+import java.io.File;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ChangeSummaryCache}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class ChangeSummaryCacheTest extends VCSTest {
+
+   private static final VCSChange.Type[] TYPES = { VCSChange.Type.ADDED,
+         VCSChange.Type.MODIFIED, VCSChange.Type.DELETED };
+
+   /**
+    * Test method for
+    * {@link ChangeSummaryCache#get(Repository, RevCommit)}.
+    * <p>
+    * The change of each path in {@link ResourceMock#RESOURCES}, compared to
+    * each parent of a commit, must be the same as the change a diff limited to
+    * this path finds.
+    */
+   @Test
+   public void testGet() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      ChangeSummaryCache cache = new ChangeSummaryCache();
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      RevWalk walk = new RevWalk(jrepo);
+      try {
+         for (CommitMock c : CommitMock.COMMITS) {
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(c.id));
+            ChangeSummaryCache.Summary summary = cache.get(jrepo, commit);
+            assertSame(summary, cache.get(jrepo, commit));
+            assertEquals(commit.getParentCount(), summary.getParentCount());
+
+            for (int i = 0; i < commit.getParentCount(); i++) {
+               for (ResourceMock mock : ResourceMock.RESOURCES) {
+                  for (VCSChange.Type type : TYPES) {
+                     assertEquals(
+                           hasChange(jrepo, commit.getParent(i), commit,
+                                 mock.path(), type),
+                           summary.hasChange(i, mock.path(), type));
+                  }
+               }
+            }
+         }
+      } finally {
+         walk.release();
+         jrepo.close();
+      }
+   }
+
+   /**
+    * Test method for
+    * {@link ChangeSummaryCache.Summary#hasChangeUnder(int, String)}.
+    * <p>
+    * A directory in {@link ResourceMock#DIRS} must have a change under it,
+    * compared to each parent of a commit, only if a diff limited to this
+    * directory finds any change.
+    */
+   @Test
+   public void testHasChangeUnder() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      ChangeSummaryCache cache = new ChangeSummaryCache();
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      RevWalk walk = new RevWalk(jrepo);
+      try {
+         for (CommitMock c : CommitMock.COMMITS) {
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(c.id));
+            ChangeSummaryCache.Summary summary = cache.get(jrepo, commit);
+
+            for (int i = 0; i < commit.getParentCount(); i++) {
+               for (ResourceMock mock : ResourceMock.DIRS) {
+                  DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
+                        jrepo, commit.getParent(i), commit);
+                  diffs.setPathFilters(PathFilter.create(mock.path()));
+                  assertEquals(!diffs.collect().isEmpty(),
+                        summary.hasChangeUnder(i, mock.path()));
+               }
+            }
+         }
+      } finally {
+         walk.release();
+         jrepo.close();
+      }
+   }
+
+   /**
+    * Test method for {@link ChangeSummaryCache#ChangeSummaryCache(int)}.
+    * <p>
+    * The least recently used summary must be removed when the cache is full.
+    */
+   @Test
+   public void testCapacity() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      ChangeSummaryCache cache = new ChangeSummaryCache(1);
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      RevWalk walk = new RevWalk(jrepo);
+      try {
+         RevCommit c1 = walk.parseCommit(ObjectId
+               .fromString(CommitMock.COMMITS[0].id));
+         RevCommit c2 = walk.parseCommit(ObjectId
+               .fromString(CommitMock.COMMITS[1].id));
+
+         ChangeSummaryCache.Summary s1 = cache.get(jrepo, c1);
+         cache.get(jrepo, c2);
+         assertNotSame(s1, cache.get(jrepo, c1));
+      } finally {
+         walk.release();
+         jrepo.close();
+      }
+   }
+
+   private static boolean hasChange(Repository repo, RevCommit parent,
+         RevCommit commit, String path, VCSChange.Type type) throws Exception {
+
+      DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(repo,
+            parent, commit);
+      diffs.setPathFilters(PathFilter.create(path));
+      for (DiffEntry e : diffs.collect()) {
+         VCSChange.Type t = RevUtils.changeType(e.getChangeType());
+         String p = t.isDelete() ? e.getOldPath() : e.getNewPath();
+         if (t.equals(type) && p.equals(path)) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -0,0 +1,203 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSResource;
+import gr.uom.se.vcs.jgit.VCSCommitImp;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.walker.CommitVisitor;
+import gr.uom.se.vcs.walker.filter.commit.VCSCommitFilter;
+import gr.uom.se.vcs.walker.filter.resource.PathPrefixFilter;
+import gr.uom.se.vcs.walker.filter.resource.VCSResourceFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ChangedPathIndex}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class ChangedPathIndexTest extends VCSTest {
+
+   /**
+    * Test method for {@link ChangedPathIndex#mightChange(AnyObjectId, String)}.
+    * <p>
+    * Each path a commit changes, and its parent directories, must be in the
+    * filter of the commit. The filters must be the same when they are loaded
+    * from their file.
+    */
+   @Test
+   public void testMightChange() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      ChangedPathIndex index = repo.getChangedPathIndex();
+      assertTrue(index.getFile().isFile());
+      assertEquals(CommitMock.COMMITS.length, index.size());
+
+      // Nothing changed, so updating must not change the index
+      index.update();
+      assertEquals(CommitMock.COMMITS.length, index.size());
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            index.getFile().getParentFile()).build();
+      ChangedPathIndex loaded = new ChangedPathIndex(jrepo);
+      try {
+         loaded.load();
+         assertEquals(index.size(), loaded.size());
+
+         for (CommitMock mock : CommitMock.COMMITS) {
+            ObjectId id = ObjectId.fromString(mock.id);
+            for (String path : changedPaths(jrepo, id)) {
+               assertEquals(Boolean.TRUE, index.mightChange(id, path));
+               assertEquals(Boolean.TRUE, loaded.mightChange(id, path));
+            }
+         }
+      } finally {
+         jrepo.close();
+      }
+
+      // An unknown commit
+      assertNull(index.mightChange(ObjectId.zeroId(), "a"));
+   }
+
+   /**
+    * Test method for
+    * {@link VCSCommitImp#walkAll(Repository, VCSRepositoryImp, java.util.Set, CommitVisitor, boolean)}
+    * .
+    * <p>
+    * A walk with a path filter checks the changed-path filters of the
+    * commits, and it must find the same commits as a walk that compares the
+    * trees of all commits.
+    */
+   @Test
+   public void testPathWalk() throws Exception {
+
+      final VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      VCSCommitImp head = (VCSCommitImp) repo.getHead();
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            repo.getChangedPathIndex().getFile().getParentFile()).build();
+      try {
+         Set<String> paths = new LinkedHashSet<String>();
+         for (CommitMock mock : CommitMock.COMMITS) {
+            paths.addAll(changedPaths(jrepo, ObjectId.fromString(mock.id)));
+         }
+
+         for (String path : paths) {
+            final VCSResourceFilter<VCSResource> filter = new PathPrefixFilter<VCSResource>(
+                  Arrays.asList(path));
+            final List<String> commits = new ArrayList<String>();
+            VCSCommitImp.walkAll(jrepo, repo, new LinkedHashSet<VCSCommit>(
+                  Arrays.asList(head)), new CommitVisitor() {
+
+               @Override
+               public boolean visit(VCSCommit entity) {
+                  commits.add(entity.getID());
+                  return true;
+               }
+
+               @SuppressWarnings("unchecked")
+               @Override
+               public <R extends VCSResource> VCSResourceFilter<R> getResourceFilter() {
+                  return (VCSResourceFilter<R>) filter;
+               }
+
+               @Override
+               public VCSCommitFilter getFilter() {
+                  return null;
+               }
+            }, true);
+            assertEquals(path, treeWalk(jrepo, head.getID(), path), commits);
+         }
+      } finally {
+         jrepo.close();
+      }
+   }
+
+   /**
+    * The commits reachable from the given commit, that change the given
+    * path, in the order of a descending walk.
+    */
+   private static List<String> treeWalk(Repository repo, String head,
+         String path) throws Exception {
+
+      List<String> commits = new ArrayList<String>();
+      RevWalk walk = new RevWalk(repo);
+      try {
+         walk.markStart(walk.parseCommit(ObjectId.fromString(head)));
+         walk.setRevFilter(new TreeRevFilter(walk, AndTreeFilter.create(
+               PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF)));
+         walk.sort(RevSort.COMMIT_TIME_DESC, true);
+         walk.sort(RevSort.TOPO, true);
+         for (RevCommit commit : walk) {
+            commits.add(commit.getName());
+         }
+      } finally {
+         walk.release();
+      }
+      return commits;
+   }
+
+   /**
+    * The paths changed by the given commit with respect to its first parent,
+    * and their parent directories.
+    */
+   private static List<String> changedPaths(Repository repo, ObjectId id)
+         throws Exception {
+
+      List<String> paths = new ArrayList<String>();
+      RevWalk walk = new RevWalk(repo);
+      TreeWalk tw = new TreeWalk(repo);
+      try {
+         RevCommit commit = walk.parseCommit(id);
+         if (commit.getParentCount() > 0) {
+            tw.addTree(walk.parseCommit(commit.getParent(0)).getTree());
+         } else {
+            tw.addTree(new EmptyTreeIterator());
+         }
+         tw.addTree(commit.getTree());
+         tw.setRecursive(true);
+         tw.setFilter(TreeFilter.ANY_DIFF);
+
+         while (tw.next()) {
+            String path = tw.getPathString();
+            paths.add(path);
+            int slash;
+            while ((slash = path.lastIndexOf('/')) > 0) {
+               path = path.substring(0, slash);
+               paths.add(path);
+            }
+         }
+      } finally {
+         tw.release();
+         walk.release();
+      }
+      return paths;
+   }
+}
@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CommitChildrenIndex}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class CommitChildrenIndexTest extends VCSTest {
+
+   /**
+    * Test method for {@link CommitChildrenIndex#getChildren(AnyObjectId)} and
+    * {@link CommitChildrenIndex#refresh()}.
+    * <p>
+    * The children of each commit in {@link CommitMock#COMMITS} must be the
+    * same before and after refreshing the index.
+    */
+   @Test
+   public void testGetChildren() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      CommitChildrenIndex index = repo.getChildrenIndex();
+      assertNotNull(index);
+
+      checkChildren(index);
+      int size = index.size();
+
+      // Nothing changed, so refreshing must not change the index
+      index.refresh();
+      assertEquals(size, index.size());
+      checkChildren(index);
+
+      // Rebuilding must produce the same index
+      index.build();
+      assertEquals(size, index.size());
+      checkChildren(index);
+   }
+
+   private static void checkChildren(CommitChildrenIndex index) {
+
+      for (CommitMock mock : CommitMock.COMMITS) {
+
+         ObjectId id = ObjectId.fromString(mock.id);
+         assertTrue(index.contains(id));
+
+         List<String> children = new ArrayList<String>();
+         for (ObjectId child : index.getChildren(id)) {
+            children.add(child.getName());
+         }
+
+         List<CommitMock> expected = mock.children();
+         assertEquals(expected.size(), children.size());
+         for (CommitMock c : expected) {
+            assertTrue(children.contains(c.id));
+         }
+      }
+   }
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CommitGraph}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class CommitGraphTest extends VCSTest {
+
+   /**
+    * Test method for {@link CommitGraph#getParents(AnyObjectId)} and
+    * {@link CommitGraph#isAncestor(AnyObjectId, AnyObjectId)}.
+    * <p>
+    * The graph must be written only when it is stored, and it must be the
+    * same when it is loaded from its file.
+    */
+   @Test
+   public void testGraph() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      CommitGraph graph = repo.getCommitGraph();
+      assertNotNull(graph);
+      checkGraph(graph);
+
+      // Nothing changed, so updating must not change the graph
+      int size = graph.size();
+      graph.update();
+      assertEquals(size, graph.size());
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            graph.getFile().getParentFile()).build();
+      CommitGraph loaded = new CommitGraph(jrepo);
+      try {
+         // Building a graph must not write to repository, until it is stored
+         CommitGraph built = new CommitGraph(jrepo);
+         built.getFile().delete();
+         built.update();
+         assertFalse(built.getFile().isFile());
+         built.store();
+         assertTrue(built.getFile().isFile());
+
+         // Load the graph from its file
+         loaded.load();
+         assertEquals(size, loaded.size());
+         checkGraph(loaded);
+      } finally {
+         jrepo.close();
+      }
+
+      // An unknown commit
+      ObjectId unknown = ObjectId.zeroId();
+      ObjectId first = ObjectId
+            .fromString(CommitMock.COMMITS[CommitMock.INDEX_FIRST_COMMIT].id);
+      assertFalse(loaded.contains(unknown));
+      assertNull(loaded.isAncestor(unknown, first));
+      assertEquals(0, loaded.getGeneration(unknown));
+      assertEquals(1, loaded.getGeneration(first));
+
+      // A repository opened after the graph is stored must use it
+      VCSRepositoryImp reopened = new VCSRepositoryImp(repo.getLocalPath(),
+            null);
+      try {
+         CommitGraph stored = reopened.getStoredCommitGraph();
+         assertNotNull(stored);
+         assertTrue(stored.isStored());
+         assertEquals(size, stored.size());
+      } finally {
+         reopened.close();
+      }
+   }
+
+   /**
+    * Test method for {@link CommitGraph#update()} and
+    * {@link CommitGraph#store()}.
+    * <p>
+    * The commits of an update must be appended to the file of a stored
+    * graph, and the loaded graph must see the commits of all updates.
+    */
+   @Test
+   public void testAppend() throws Exception {
+
+      File dir = Files.createTempDirectory("commit_graph").toFile();
+      Git git = Git.init().setDirectory(dir).call();
+      try {
+         Repository jrepo = git.getRepository();
+         ObjectId c1 = git.commit().setMessage("first").call();
+
+         CommitGraph graph = new CommitGraph(jrepo);
+         graph.update();
+         assertFalse(graph.isStored());
+         graph.store();
+         assertTrue(graph.isStored());
+         long length = graph.getFile().length();
+
+         ObjectId c2 = git.commit().setMessage("second").call();
+         ObjectId c3 = git.commit().setMessage("third").call();
+         graph.update();
+         assertEquals(3, graph.size());
+         graph.store();
+
+         // A layer of two commits: header, ids and data
+         assertEquals(length + 16 + (2 * (20 + 16)), graph.getFile().length());
+
+         CommitGraph loaded = new CommitGraph(jrepo);
+         loaded.load();
+         assertEquals(3, loaded.size());
+         assertEquals(1, loaded.getGeneration(c1));
+         assertEquals(2, loaded.getGeneration(c2));
+         assertEquals(3, loaded.getGeneration(c3));
+         assertTrue(loaded.isAncestor(c1, c3));
+         assertFalse(loaded.isAncestor(c3, c1));
+         assertEquals(c2, loaded.getParents(c3)[0]);
+      } finally {
+         git.getRepository().close();
+         FileUtils.deleteDirectory(dir);
+      }
+   }
+
+   private static void checkGraph(CommitGraph graph) {
+
+      for (CommitMock mock : CommitMock.COMMITS) {
+
+         ObjectId id = ObjectId.fromString(mock.id);
+         assertTrue(graph.contains(id));
+
+         List<String> parents = new ArrayList<String>();
+         for (ObjectId parent : graph.getParents(id)) {
+            parents.add(parent.getName());
+         }
+         List<CommitMock> expected = mock.parents();
+         assertEquals(expected.size(), parents.size());
+
+         for (CommitMock p : expected) {
+            ObjectId pid = ObjectId.fromString(p.id);
+            assertTrue(parents.contains(p.id));
+            assertTrue(graph.getGeneration(pid) < graph.getGeneration(id));
+            assertTrue(graph.isAncestor(pid, id));
+            assertFalse(graph.isAncestor(id, pid));
+         }
+
+         // The first commit is an ancestor of all commits
+         ObjectId first = ObjectId
+               .fromString(CommitMock.COMMITS[CommitMock.INDEX_FIRST_COMMIT].id);
+         assertTrue(graph.isAncestor(first, id));
+         assertTrue(graph.isAncestor(id, id));
+      }
+   }
+}
@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.VCSResource;
+import gr.uom.se.vcs.jgit.VCSFileImp;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.jgit.mocks.ResourceMock;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link LineCounter}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class LineCounterTest extends VCSTest {
+
+   /**
+    * Test method for {@link LineCounter#countLines(ObjectLoader)}.
+    * <p>
+    * The count must be the same as the lines a {@link BufferedReader} reads.
+    */
+   @Test
+   public void testCountLines() throws Exception {
+
+      String[] texts = { "", "a", "\n", "a\n", "a\nb", "a\r\nb\r\n", "\r\r",
+            "a\rb\n\nc", "\r\n\r\n", "a\n\rb" };
+
+      for (String text : texts) {
+         ObjectLoader loader = new ObjectLoader.SmallObject(
+               Constants.OBJ_BLOB, Constants.encode(text));
+         assertEquals(text, readLines(text), LineCounter.countLines(loader));
+      }
+   }
+
+   /**
+    * Test method for {@link LineCounter#count(Repository, AnyObjectId)} and
+    * {@link VCSFileImp#countLines()}.
+    * <p>
+    * The count of each file in {@link ResourceMock#RESOURCES} must be the same
+    * as the lines of its contents, and the same contents must be cached once.
+    */
+   @Test
+   public void testCount() throws Exception {
+
+      VCSRepository repo = UTILS.smallRepo();
+      LineCounter counter = ((VCSRepositoryImp) repo).getLineCounter();
+
+      for (ResourceMock mock : ResourceMock.RESOURCES) {
+         for (CommitMock c : mock.commits()) {
+
+            VCSCommit commit = repo.resolveCommit(c.id);
+            VCSResource resource = commit.getResource(mock.path());
+            if (!(resource instanceof VCSFileImp)) {
+               continue;
+            }
+            VCSFileImp file = (VCSFileImp) resource;
+
+            int expected = readLines(new String(file.getContents(), "UTF-8"));
+            assertEquals(expected, file.countLines());
+
+            // The second time the count comes from cache
+            int size = counter.size();
+            assertEquals(expected, file.countLines());
+            assertEquals(size, counter.size());
+         }
+      }
+      assertTrue(counter.size() > 0);
+   }
+
+   private static int readLines(String text) throws Exception {
+      BufferedReader reader = new BufferedReader(new StringReader(text));
+      int lines = 0;
+      while (reader.readLine() != null) {
+         lines++;
+      }
+      return lines;
+   }
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.jgit.mocks.ResourceMock;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link PathHistoryIndex}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class PathHistoryIndexTest extends VCSTest {
+
+   /**
+    * Test method for {@link PathHistoryIndex#getAdditions(String)},
+    * {@link PathHistoryIndex#getDeletions(String)} and
+    * {@link PathHistoryIndex#getChanges(AnyObjectId, String)}.
+    * <p>
+    * The events of each path must be the same as the ones of
+    * {@link ResourceMock#RESOURCES}.
+    */
+   @Test
+   public void testHistory() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      PathHistoryIndex index = repo.getPathHistoryIndex();
+      assertEquals(CommitMock.COMMITS.length, index.size());
+
+      // Nothing changed, so updating must not change the index
+      index.update();
+      assertEquals(CommitMock.COMMITS.length, index.size());
+
+      for (ResourceMock mock : ResourceMock.RESOURCES) {
+
+         assertEquals(mock.path(), ids(mock.created()),
+               new HashSet<ObjectId>(index.getAdditions(mock.path())));
+         assertEquals(mock.path(), ids(mock.deleted()),
+               new HashSet<ObjectId>(index.getDeletions(mock.path())));
+
+         for (CommitMock c : mock.modified()) {
+            int[] changes = index.getChanges(ObjectId.fromString(c.id),
+                  mock.path());
+            boolean modified = false;
+            for (int change : changes) {
+               modified |= (change & PathHistoryIndex.MODIFY) != 0;
+            }
+            assertTrue(mock.path() + " " + c.id, modified);
+         }
+
+         // All commits are ordered from newer to older
+         List<ObjectId> commits = index.getCommits(mock.path());
+         CommitGraph graph = repo.getCommitGraph();
+         for (int i = 1; i < commits.size(); i++) {
+            assertTrue(graph.getCommitTime(commits.get(i - 1)) >= graph
+                  .getCommitTime(commits.get(i)));
+         }
+      }
+
+      // An unknown commit
+      assertNull(index.getChanges(ObjectId.zeroId(), "a"));
+   }
+
+   /**
+    * Test method for {@link PathHistoryIndex#getAdditions(String)},
+    * {@link PathHistoryIndex#getCommits(String)} and
+    * {@link PathHistoryIndex#getChanges(AnyObjectId, String)}.
+    * <p>
+    * A file that becomes a directory, and back, is both deleted and added at
+    * the same path, so the commit changes the path but it doesn't create or
+    * delete it.
+    */
+   @Test
+   public void testTypeChange() throws Exception {
+
+      File dir = Files.createTempDirectory("path_history").toFile();
+      Git git = Git.init().setDirectory(dir).call();
+      try {
+         File a = new File(dir, "a");
+         FileUtils.write(a, "file");
+         git.add().addFilepattern("a").call();
+         ObjectId c1 = git.commit().setMessage("file").call();
+
+         git.rm().addFilepattern("a").call();
+         FileUtils.write(new File(a, "b"), "file in directory");
+         git.add().addFilepattern("a/b").call();
+         ObjectId c2 = git.commit().setMessage("directory").call();
+
+         git.rm().addFilepattern("a/b").call();
+         FileUtils.deleteDirectory(a);
+         FileUtils.write(a, "file again");
+         git.add().addFilepattern("a").call();
+         ObjectId c3 = git.commit().setMessage("file again").call();
+
+         PathHistoryIndex index = new PathHistoryIndex(git.getRepository());
+         index.update();
+
+         int both = PathHistoryIndex.ADD | PathHistoryIndex.DELETE;
+         assertTrue(Arrays.equals(new int[] { both },
+               index.getChanges(c2, "a")));
+         assertTrue(Arrays.equals(new int[] { both },
+               index.getChanges(c3, "a")));
+
+         assertEquals(new HashSet<ObjectId>(Arrays.asList(c1)),
+               new HashSet<ObjectId>(index.getAdditions("a")));
+         assertTrue(index.getDeletions("a").isEmpty());
+         assertEquals(new HashSet<ObjectId>(Arrays.asList(c1, c2, c3)),
+               new HashSet<ObjectId>(index.getCommits("a")));
+
+         assertEquals(new HashSet<ObjectId>(Arrays.asList(c2)),
+               new HashSet<ObjectId>(index.getAdditions("a/b")));
+         assertEquals(new HashSet<ObjectId>(Arrays.asList(c3)),
+               new HashSet<ObjectId>(index.getDeletions("a/b")));
+      } finally {
+         git.getRepository().close();
+         FileUtils.deleteDirectory(dir);
+      }
+   }
+
+   private static Set<ObjectId> ids(CommitMock[] mocks) {
+      Set<ObjectId> ids = new HashSet<ObjectId>();
+      for (CommitMock mock : mocks) {
+         ids.add(ObjectId.fromString(mock.id));
+      }
+      return ids;
+   }
+}
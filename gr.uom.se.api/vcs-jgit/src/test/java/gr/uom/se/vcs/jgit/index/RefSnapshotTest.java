@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.BranchMock;
+import gr.uom.se.vcs.jgit.mocks.TagMock;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link RefSnapshot}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class RefSnapshotTest extends VCSTest {
+
+   /**
+    * Test method for {@link RefSnapshot#load(Repository)}.
+    * <p>
+    * Each branch in {@link BranchMock#BRANCHES} must point to its head, and
+    * each tag in {@link TagMock#TAGS} must be peeled to its commit.
+    */
+   @Test
+   public void testLoad() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      try {
+         RefSnapshot snapshot = RefSnapshot.load(jrepo);
+
+         for (BranchMock b : BranchMock.BRANCHES) {
+            assertEquals(ObjectId.fromString(b.head),
+                  snapshot.getCommitId(b.id));
+         }
+
+         assertEquals(TagMock.TAGS.length, snapshot.getTags().size());
+         for (TagMock t : TagMock.TAGS) {
+            assertEquals(ObjectId.fromString(t.commit),
+                  snapshot.getCommitId(t.id));
+         }
+
+         assertNull(snapshot.getCommitId("refs/tags/not_a_tag"));
+      } finally {
+         jrepo.close();
+      }
+   }
+
+   /**
+    * Test method for {@link VCSRepositoryImp#getRefSnapshot()}.
+    * <p>
+    * The snapshot must be loaded once, and again only after
+    * {@link VCSRepositoryImp#refreshRefs()} is called.
+    */
+   @Test
+   public void testRefresh() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+
+      RefSnapshot snapshot = repo.getRefSnapshot();
+      assertSame(snapshot, repo.getRefSnapshot());
+
+      repo.refreshRefs();
+      assertNotSame(snapshot, repo.getRefSnapshot());
+   }
+}
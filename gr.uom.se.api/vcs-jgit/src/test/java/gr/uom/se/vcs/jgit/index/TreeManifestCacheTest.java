@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.jgit.mocks.ResourceMock;
+import gr.uom.se.vcs.jgit.utils.TreeUtils;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TreeManifestCache}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class TreeManifestCacheTest extends VCSTest {
+
+   /**
+    * Test method for
+    * {@link TreeManifestCache#find(Repository, AnyObjectId, String)}.
+    * <p>
+    * The entry of each path in {@link ResourceMock#RESOURCES}, and of its
+    * parent directories, must be the same as the entry a tree walk finds.
+    */
+   @Test
+   public void testFind() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      TreeManifestCache cache = new TreeManifestCache();
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      RevWalk walk = new RevWalk(jrepo);
+      try {
+         for (CommitMock c : CommitMock.COMMITS) {
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(c.id));
+
+            for (ResourceMock mock : ResourceMock.RESOURCES) {
+               String path = mock.path();
+               while (true) {
+                  assertEntry(jrepo, cache, commit, path);
+                  int slash = path.lastIndexOf('/');
+                  if (slash < 0) {
+                     break;
+                  }
+                  path = path.substring(0, slash);
+               }
+            }
+            assertNull(cache.find(jrepo, commit.getTree(), "no/such/path"));
+         }
+      } finally {
+         walk.release();
+         jrepo.close();
+      }
+   }
+
+   /**
+    * Test method for {@link TreeManifestCache#get(Repository, AnyObjectId)}.
+    * <p>
+    * The entries of a manifest must be sorted, and a subtree that is the same
+    * in two commits must have the same manifest.
+    */
+   @Test
+   public void testSharedManifests() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      TreeManifestCache cache = repo.getTreeManifestCache();
+
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), Constants.DOT_GIT)).build();
+      RevWalk walk = new RevWalk(jrepo);
+      try {
+         for (CommitMock c : CommitMock.COMMITS) {
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(c.id));
+            TreeManifestCache.Manifest manifest = cache.get(jrepo,
+                  commit.getTree());
+            assertSame(manifest, cache.get(jrepo, commit.getTree()));
+
+            for (int i = 1; i < manifest.size(); i++) {
+               assertTrue(manifest.getName(i - 1).compareTo(
+                     manifest.getName(i)) < 0);
+            }
+
+            for (RevCommit parent : commit.getParents()) {
+               TreeManifestCache.Manifest other = cache.get(jrepo, walk
+                     .parseCommit(parent).getTree());
+               for (int i = 0; i < manifest.size(); i++) {
+                  if (!FileMode.TREE.equals(manifest.getFileMode(i))) {
+                     continue;
+                  }
+                  int j = other.indexOf(Constants.encode(manifest.getName(i)));
+                  if (j >= 0
+                        && manifest.getObjectId(i).equals(
+                              other.getObjectId(j))) {
+                     assertSame(cache.get(jrepo, manifest.getObjectId(i)),
+                           cache.get(jrepo, other.getObjectId(j)));
+                  }
+               }
+            }
+         }
+      } finally {
+         walk.release();
+         jrepo.close();
+      }
+   }
+
+   private static void assertEntry(Repository repo, TreeManifestCache cache,
+         RevCommit commit, String path) throws Exception {
+
+      RevTree tree = commit.getTree();
+      TreeManifestCache.Entry entry = cache.find(repo, tree, path);
+      TreeWalk walk = TreeWalk.forPath(repo, path, tree);
+      try {
+         if (walk == null) {
+            assertNull(path, entry);
+         } else {
+            assertNotNull(path, entry);
+            assertEquals(path, walk.getRawMode(0), entry.getRawMode());
+            assertEquals(path, walk.getObjectId(0), entry.getObjectId());
+         }
+      } finally {
+         if (walk != null) {
+            walk.release();
+         }
+      }
+
+      // Without an owner the lookup is done by a tree walk
+      assertEquals(path, entry != null, TreeUtils.existPath(commit, repo, path));
+   }
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.VCSCommit;
+import gr.uom.se.vcs.VCSFileDiff;
+import gr.uom.se.vcs.VCSRepository;
+import gr.uom.se.vcs.jgit.VCSFileDiffImp;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DiffEngine}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class DiffEngineTest extends VCSTest {
+
+   /**
+    * Test method for {@link DiffEngine#diff(ObjectLoader, ObjectLoader)}.
+    * <p>
+    * Text blobs must be diffed by both algorithms, binary blobs must have no
+    * edits whatever their size, and oversized text blobs must be a
+    * whole-file change.
+    */
+   @Test
+   public void testDiff() throws Exception {
+
+      ObjectLoader a = blob("a\nb\nc\n");
+      ObjectLoader b = blob("a\nx\nc\nd\n");
+
+      for (SupportedAlgorithm algorithm : SupportedAlgorithm.values()) {
+         DiffEngine engine = new DiffEngine(algorithm,
+               DiffEngine.DEFAULT_BINARY_CHECK, DiffEngine.DEFAULT_MAX_SIZE);
+         DiffEngine.Result result = engine.diff(a, b);
+         assertEquals(DiffEngine.Policy.TEXT, result.getPolicy());
+         assertEquals(2, result.getEdits().size());
+         assertEquals(new Edit(1, 2, 1, 2), result.getEdits().get(0));
+         assertEquals(new Edit(3, 3, 3, 4), result.getEdits().get(1));
+      }
+
+      // A NUL byte in the first bytes
+      DiffEngine engine = new DiffEngine(SupportedAlgorithm.MYERS, 4,
+            DiffEngine.DEFAULT_MAX_SIZE);
+      DiffEngine.Result result = engine.diff(a, blob("a\n\0b"));
+      assertEquals(DiffEngine.Policy.BINARY, result.getPolicy());
+      assertTrue(result.getEdits().isEmpty());
+
+      // A NUL byte after the first bytes
+      result = engine.diff(a, blob("a\nb\0"));
+      assertEquals(DiffEngine.Policy.TEXT, result.getPolicy());
+
+      // Larger than the maximum size
+      engine = new DiffEngine(SupportedAlgorithm.HISTOGRAM,
+            DiffEngine.DEFAULT_BINARY_CHECK, 6);
+      result = engine.diff(a, b);
+      assertEquals(DiffEngine.Policy.OVERSIZED, result.getPolicy());
+      assertEquals(1, result.getEdits().size());
+      assertEquals(new Edit(0, 3, 0, 4), result.getEdits().get(0));
+
+      // A binary blob larger than the maximum size is still binary
+      result = engine.diff(a, blob("a\n\0b\nc\nd\n"));
+      assertEquals(DiffEngine.Policy.BINARY, result.getPolicy());
+      assertTrue(result.getEdits().isEmpty());
+   }
+
+   /**
+    * Test method for {@link DiffEngine#DEFAULT}.
+    * <p>
+    * The default engine has no maximum size, so a large text blob must be
+    * diffed as text.
+    */
+   @Test
+   public void testDefaultMaxSize() throws Exception {
+
+      assertEquals(Long.MAX_VALUE, DiffEngine.DEFAULT.getMaxSize());
+
+      StringBuilder text = new StringBuilder();
+      while (text.length() <= 2 * 1024 * 1024) {
+         text.append("line ").append(text.length()).append('\n');
+      }
+      ObjectLoader a = blob(text.toString());
+      ObjectLoader b = blob(text.append("last\n").toString());
+
+      DiffEngine.Result result = DiffEngine.DEFAULT.diff(a, b);
+      assertEquals(DiffEngine.Policy.TEXT, result.getPolicy());
+      assertEquals(1, result.getEdits().size());
+      assertEquals(Edit.Type.INSERT, result.getEdits().get(0).getType());
+   }
+
+   /**
+    * Test method for {@link VCSFileDiffImp#getPolicy()}.
+    * <p>
+    * The modified files of the small repository are text files, and must be
+    * reported as whole-file changes when the maximum size is zero.
+    */
+   @Test
+   public void testPolicy() throws Exception {
+
+      VCSRepository repo = UTILS.smallRepo();
+      VCSRepositoryImp imp = (VCSRepositoryImp) repo;
+      DiffEngine previous = imp.getDiffEngine();
+
+      try {
+         for (CommitMock mock : CommitMock.COMMITS) {
+            VCSCommit commit = repo.resolveCommit(mock.id);
+            for (VCSCommit old : commit.getPrevious()) {
+               for (VCSFileDiff<?> diff : old.getFileChanges(commit)) {
+                  VCSFileDiffImp<?> d = (VCSFileDiffImp<?>) diff;
+                  if (!diff.getType().isModify()) {
+                     assertNull(d.getPolicy());
+                  } else {
+                     assertEquals(DiffEngine.Policy.TEXT, d.getPolicy());
+                  }
+               }
+
+               imp.setDiffEngine(new DiffEngine(SupportedAlgorithm.MYERS,
+                     DiffEngine.DEFAULT_BINARY_CHECK, 0));
+               for (VCSFileDiff<?> diff : old.getFileChanges(commit)) {
+                  if (diff.getType().isModify()) {
+                     VCSFileDiffImp<?> d = (VCSFileDiffImp<?>) diff;
+                     assertEquals(DiffEngine.Policy.OVERSIZED, d.getPolicy());
+                     assertTrue(d.getEdits().size() <= 1);
+                  }
+               }
+               imp.setDiffEngine(previous);
+            }
+         }
+      } finally {
+         imp.setDiffEngine(previous);
+      }
+   }
+
+   private static ObjectLoader blob(String text) {
+      return new ObjectLoader.SmallObject(Constants.OBJ_BLOB,
+            Constants.encode(text));
+   }
+}
@@ -0,0 +1,128 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSRepositoryImp;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReaderPool}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class ReaderPoolTest extends VCSTest {
+
+   /**
+    * Test method for {@link ReaderPool#getReader()},
+    * {@link ReaderPool#newRevWalk()} and {@link ReaderPool#newTreeWalk()}.
+    * <p>
+    * Each thread must have its own reader, and the release of a walk must not
+    * release the reader.
+    */
+   @Test
+   public void testGetReader() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), ".git")).build();
+
+      try {
+         final ReaderPool pool = new ReaderPool(jrepo);
+         final ObjectReader reader = pool.getReader();
+         assertSame(reader, pool.getReader());
+         assertTrue(pool.isPooled(reader));
+         assertFalse(pool.isPooled(jrepo.newObjectReader()));
+
+         // Another thread has another reader, which is not the reader of
+         // this thread
+         final ObjectReader[] other = new ObjectReader[1];
+         final boolean[] pooled = new boolean[1];
+         Thread thread = new Thread() {
+            @Override
+            public void run() {
+               other[0] = pool.getReader();
+               pooled[0] = pool.isPooled(other[0]);
+            }
+         };
+         thread.start();
+         thread.join();
+         assertNotSame(reader, other[0]);
+         assertTrue(pooled[0]);
+         assertFalse(pool.isPooled(other[0]));
+
+         // Walks use the reader of the thread, and the reader can be used
+         // after they are released
+         ObjectId id = ObjectId
+               .fromString(CommitMock.COMMITS[CommitMock.INDEX_FIRST_COMMIT].id);
+         RevWalk walk = pool.newRevWalk();
+         assertSame(reader, walk.getObjectReader());
+         RevCommit commit = walk.parseCommit(id);
+         walk.release();
+
+         TreeWalk treeWalk = pool.newTreeWalk();
+         assertSame(reader, treeWalk.getObjectReader());
+         treeWalk.addTree(commit.getTree());
+         treeWalk.release();
+
+         walk = pool.newRevWalk();
+         assertEquals(commit, walk.parseCommit(id));
+         walk.release();
+
+         pool.release();
+      } finally {
+         jrepo.close();
+      }
+   }
+
+   /**
+    * Test method for {@link ReaderPool#reader(ReaderPool, Repository)} and
+    * {@link ReaderPool#release(ReaderPool, ObjectReader)}.
+    * <p>
+    * Without a pool each call must return a new reader, with a pool the
+    * reader of the thread must be returned.
+    */
+   @Test
+   public void testStaticReader() throws Exception {
+
+      VCSRepositoryImp repo = (VCSRepositoryImp) UTILS.smallRepo();
+      Repository jrepo = new FileRepositoryBuilder().setGitDir(
+            new File(repo.getLocalPath(), ".git")).build();
+
+      try {
+         ObjectReader r1 = ReaderPool.reader(null, jrepo);
+         ObjectReader r2 = ReaderPool.reader(null, jrepo);
+         assertNotSame(r1, r2);
+         ReaderPool.release(null, r1);
+         ReaderPool.release(null, r2);
+
+         ReaderPool pool = new ReaderPool(jrepo);
+         r1 = ReaderPool.reader(pool, jrepo);
+         assertSame(pool.getReader(), r1);
+         ReaderPool.release(pool, r1);
+         assertSame(r1, ReaderPool.reader(pool, jrepo));
+         pool.release();
+      } finally {
+         jrepo.close();
+      }
+   }
+}
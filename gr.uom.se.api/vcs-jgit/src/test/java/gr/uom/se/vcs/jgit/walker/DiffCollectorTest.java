@@ -0,0 +1,170 @@
+/**
+ *
+ */
+package gr.uom.se.vcs.jgit.walker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gr.uom.se.vcs.jgit.VCSTest;
+import gr.uom.se.vcs.jgit.mocks.CommitMock;
+import gr.uom.se.vcs.jgit.mocks.RepoMock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DiffCollector}.
+ * <p>
+ *
+ * @author Elvis Ligu
+ *
+ */
+public class DiffCollectorTest extends VCSTest {
+
+   /**
+    * Test method for {@link DiffCollector#collect()} and
+    * {@link DiffCollector#iterator()}.
+    * <p>
+    * For each commit in {@link CommitMock#COMMITS} and each of its parents,
+    * the collected entries must be the same as those of JGit diff command.
+    */
+   @Test
+   public void testCollect() throws Exception {
+
+      Repository repo = new FileRepositoryBuilder().setGitDir(
+            new File(RepoMock.LOCAL_GIT_SMALL, ".git")).build();
+      RevWalk walk = new RevWalk(repo);
+      ObjectReader reader = repo.newObjectReader();
+
+      try {
+         for (CommitMock mock : CommitMock.COMMITS) {
+
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(mock.id));
+            for (RevCommit parent : commit.getParents()) {
+
+               parent = walk.parseCommit(parent);
+               List<String> expected = toStrings(expected(repo, parent,
+                     commit));
+
+               DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
+                     repo, parent, commit);
+               assertEquals(expected, toStrings(diffs.collect()));
+
+               // Iterating with a shared reader must produce the same
+               diffs = new DiffCollector<DiffEntry>(repo, parent, commit,
+                     reader);
+               List<DiffEntry> iterated = new ArrayList<DiffEntry>();
+               for (DiffEntry e : diffs) {
+                  iterated.add(e);
+               }
+               assertEquals(expected, toStrings(iterated));
+
+               // Stopping early must produce the first entry only
+               Iterator<DiffEntry> it = diffs.iterator();
+               assertTrue(it.hasNext());
+               assertEquals(expected.get(0),
+                     toStrings(Collections.singletonList(it.next())).get(0));
+               diffs.release();
+            }
+         }
+      } finally {
+         reader.release();
+         walk.release();
+         repo.close();
+      }
+   }
+
+   /**
+    * Test method for
+    * {@link DiffCollector#setRenameDetection(RenameDetection)}.
+    * <p>
+    * For each commit in {@link CommitMock#COMMITS} and each of its parents,
+    * the collected entries must be the same as those of JGit rename detector,
+    * and the statistics of each detection must be recorded.
+    */
+   @Test
+   public void testRenameDetection() throws Exception {
+
+      Repository repo = new FileRepositoryBuilder().setGitDir(
+            new File(RepoMock.LOCAL_GIT_SMALL, ".git")).build();
+      RevWalk walk = new RevWalk(repo);
+      ObjectReader reader = repo.newObjectReader();
+      RenameDetection detection = new RenameDetection(
+            RenameDetection.DEFAULT_SCORE, RenameDetection.DEFAULT_LIMIT, true,
+            true);
+
+      try {
+         int detections = 0;
+         for (CommitMock mock : CommitMock.COMMITS) {
+
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(mock.id));
+            for (RevCommit parent : commit.getParents()) {
+
+               parent = walk.parseCommit(parent);
+               RenameDetector detector = new RenameDetector(repo);
+               detector.setRenameScore(RenameDetection.DEFAULT_SCORE);
+               detector.setRenameLimit(RenameDetection.DEFAULT_LIMIT);
+               detector.addAll(expected(repo, parent, commit));
+               List<String> expected = toStrings(detector.compute(reader,
+                     NullProgressMonitor.INSTANCE));
+
+               DiffCollector<DiffEntry> diffs = new DiffCollector<DiffEntry>(
+                     repo, parent, commit).setRenameDetection(detection);
+               List<String> collected = toStrings(diffs.collect());
+               assertEquals(expected.size(), collected.size());
+               assertEquals(new HashSet<String>(expected),
+                     new HashSet<String>(collected));
+               detections++;
+               assertEquals(detections, detection.getDetections());
+            }
+         }
+      } finally {
+         reader.release();
+         walk.release();
+         repo.close();
+      }
+   }
+
+   private static List<DiffEntry> expected(Repository repo, RevCommit c1,
+         RevCommit c2) throws Exception {
+
+      ObjectReader reader = repo.newObjectReader();
+      try {
+         CanonicalTreeParser oldTree = new CanonicalTreeParser();
+         oldTree.reset(reader, c1.getTree());
+         CanonicalTreeParser newTree = new CanonicalTreeParser();
+         newTree.reset(reader, c2.getTree());
+         return new Git(repo).diff().setOldTree(oldTree).setNewTree(newTree)
+               .setShowNameAndStatusOnly(true).call();
+      } finally {
+         reader.release();
+      }
+   }
+
+   private static List<String> toStrings(Collection<DiffEntry> entries) {
+      List<String> list = new ArrayList<String>();
+      for (DiffEntry e : entries) {
+         list.add(e.toString() + e.getOldId().name() + e.getNewId().name()
+               + e.getOldMode() + e.getNewMode() + e.getScore());
+      }
+      return list;
+   }
+}